@@ -24,6 +24,7 @@ public class Loan {
     private LocalDate borrowDate;
     private LocalDate dueDate;
     private LocalDate returnDate;
+    private String copyId;
 
     /**
      * Creates a new loan record for a user and a media item.
@@ -43,6 +44,22 @@ public class Loan {
         this.returnDate = null;
     }
 
+    /**
+     * Restores a loan read from storage, including its return date.
+     * Unlike {@link #returnItem(LocalDate)}, the availability of the media
+     * item is left unchanged.
+     *
+     * @param loanId     unique identifier of the loan
+     * @param user       the user who borrowed the item
+     * @param mediaItem  the borrowed media item
+     * @param borrowDate the date the loan began
+     * @param returnDate the date the item was returned, or null if still on loan
+     */
+    public Loan(String loanId, User user, MediaItem mediaItem, LocalDate borrowDate, LocalDate returnDate) {
+        this(loanId, user, mediaItem, borrowDate);
+        this.returnDate = returnDate;
+    }
+
     /**
      * Checks if this loan is overdue based on the given current date.
      *
@@ -105,6 +122,16 @@ public class Loan {
     /** @return the return date, or null if not returned yet */
     public LocalDate getReturnDate() { return returnDate; }
 
+    /** @return the ID of the physical copy on loan, or null if not recorded */
+    public String getCopyId() { return copyId; }
+
+    /**
+     * Records which physical copy of the media item this loan holds.
+     *
+     * @param copyId the copy ID
+     */
+    public void setCopyId(String copyId) { this.copyId = copyId; }
+
     /**
      * Returns a formatted string describing the loan.
      *
@@ -14,9 +14,42 @@ package Domain;
  */
 public class MediaCopy {
 
+    /**
+     * Notified whenever the availability of a copy changes, so that
+     * repositories can keep derived counters in step with the copy.
+     */
+    public interface AvailabilityListener {
+
+        /**
+         * Called after the availability of a copy has changed.
+         *
+         * @param copy      the copy that changed
+         * @param available the new availability status
+         */
+        void availabilityChanged(MediaCopy copy, boolean available);
+    }
+
+    /**
+     * Looks up the media item of a copy that only records the ISBN of its
+     * item, so that the copy does not keep the item in memory.
+     */
+    public interface ItemLookup {
+
+        /**
+         * Finds a media item by ISBN.
+         *
+         * @param isbn the ISBN of the item
+         * @return the item, or null if there is none
+         */
+        MediaItem find(String isbn);
+    }
+
     private String copyId;
     private MediaItem mediaItem;
+    private String isbn;
+    private ItemLookup lookup;
     private boolean available;
+    private AvailabilityListener listener;
 
     /**
      * Creates a new MediaCopy and marks it as available by default.
@@ -43,6 +76,22 @@ public class MediaCopy {
         this.available = available;
     }
 
+    /**
+     * Creates a new MediaCopy that records only the ISBN of its item and
+     * looks the item up each time it is needed.
+     *
+     * @param copyId     the unique identifier of this copy
+     * @param isbn       the ISBN of the media item that this copy represents
+     * @param lookup     finds the media item by ISBN
+     * @param available  the initial availability status
+     */
+    public MediaCopy(String copyId, String isbn, ItemLookup lookup, boolean available) {
+        this.copyId = copyId;
+        this.isbn = isbn;
+        this.lookup = lookup;
+        this.available = available;
+    }
+
     /**
      * Returns the unique ID of this media copy.
      *
@@ -64,10 +113,11 @@ public class MediaCopy {
     /**
      * Returns the media item associated with this copy.
      *
-     * @return the media item
+     * @return the media item, or null if it cannot be found
      */
     public MediaItem getMediaItem() {
-        return mediaItem;
+        if (mediaItem != null || lookup == null) return mediaItem;
+        return lookup.find(isbn);
     }
 
     /**
@@ -77,6 +127,18 @@ public class MediaCopy {
      */
     public void setMediaItem(MediaItem mediaItem) {
         this.mediaItem = mediaItem;
+        this.isbn = null;
+        this.lookup = null;
+    }
+
+    /**
+     * Returns the ISBN of the media item of this copy, without looking the
+     * item up.
+     *
+     * @return the ISBN, or null if the copy has no media item
+     */
+    public String getIsbn() {
+        return mediaItem != null ? mediaItem.getIsbnOrId() : isbn;
     }
 
     /**
@@ -94,7 +156,20 @@ public class MediaCopy {
      * @param available true if the item is available, false if borrowed
      */
     public void setAvailable(boolean available) {
+        if (this.available == available) return;
         this.available = available;
+        if (listener != null) {
+            listener.availabilityChanged(this, available);
+        }
+    }
+
+    /**
+     * Sets the listener notified when the availability of this copy changes.
+     *
+     * @param listener the listener, or null to remove it
+     */
+    public void setAvailabilityListener(AvailabilityListener listener) {
+        this.listener = listener;
     }
 
     /**
@@ -104,11 +179,12 @@ public class MediaCopy {
      */
     @Override
     public String toString() {
+        MediaItem item = getMediaItem();
         return String.format(
                 "Copy[%s]: %s - %s [%s] ",
                 copyId,
-                mediaItem.getTitle(),
-                mediaItem.getAuthor(),
+                item.getTitle(),
+                item.getAuthor(),
                 available ? "Available" : "Borrowed"
         );
     }
@@ -1,19 +1,32 @@
 package Presentation;
 
-import Service.BookServiceCustomer;
+import Service.FileLoanRepository;
+import Service.FileMediaCopyRepository;
+import Service.FileUserRepository;
 import Service.InputValidator;
-import Service.Doenev;
+import Service.JdbcDatabase;
+import Service.Repositories;
+import Service.RepositoryBootstrap;
+import Service.SnapshotWriter;
+
+import java.sql.SQLException;
 
 /**
  * Main entry point for the library application.
  * <p>
  * Displays the initial console menu for users to login, sign up, or exit.
- * Initializes necessary services for customer operations and authentication.
+ * With the text files, library data is loaded in the background while the
+ * menu is shown.
  * </p>
  *
+ * <p>The library is kept in the text files unless a JDBC URL is given, in
+ * which case it is kept in that database and the text files are not read;
+ * see {@link Service.RepositoryMigration} for importing the files.</p>
+ *
  * <p>Example usage:</p>
  * <pre><code>
  * java Presentation.HelloApplication
+ * java Presentation.HelloApplication jdbc:h2:./library
  * </code></pre>
  *
  * @since 1.0
@@ -23,12 +36,25 @@ public class HelloApplication {
     /**
      * Main method that starts the library application.
      *
-     * @param args command-line arguments (not used)
+     * @param args optionally, the JDBC URL of the database to use
      */
     public static void main(String[] args) {
 
-        Doenev di = new Doenev();
-        BookServiceCustomer service = new BookServiceCustomer(di.getUsername(), di.getPassword());
+        if (args.length > 0) {
+            try {
+                Repositories.useDatabase(JdbcDatabase.open(args[0]));
+            } catch (SQLException e) {
+                System.out.println("Error opening database: " + e.getMessage());
+                return;
+            }
+        } else {
+            FileLoanRepository.setJournalMode(true);
+            FileLoanRepository.setArchiveMode(true);
+            FileUserRepository.setLoginJournalMode(true);
+            FileMediaCopyRepository.setWriteBehindMillis(FileMediaCopyRepository.DEFAULT_WRITE_BEHIND_MILLIS);
+            SnapshotWriter.setSync(true);
+            RepositoryBootstrap.start();
+        }
 
         while (true) {
             System.out.println("==================================================");
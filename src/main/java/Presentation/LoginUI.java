@@ -2,7 +2,9 @@ package Presentation;
 
 import Domain.User;
 import Service.AdminService;
-import Service.FileUserRepository;
+import Service.Repositories;
+import Service.RepositoryBootstrap;
+import Service.UserRepository;
 
 import java.util.Scanner;
 
@@ -19,7 +21,7 @@ import java.util.Scanner;
 public class LoginUI {
 
     /** Repository used to manage and validate users. */
-    private FileUserRepository userRepo = new FileUserRepository();
+    private UserRepository userRepo = Repositories.users();
 
     /** Scanner used to read input from the console. */
     private Scanner cin = new Scanner(System.in);
@@ -45,6 +47,7 @@ public class LoginUI {
             if (foundUser != null) {
                 System.out.println(foundUser.getEmail());
                 System.out.println("Login successful!");
+                RepositoryBootstrap.awaitIfStarted();
 
                 switch (foundUser.getRole()) {
                     case "admin" -> {
@@ -1,7 +1,8 @@
 package Presentation;
 
 import Domain.User;
-import Service.FileUserRepository;
+import Service.Repositories;
+import Service.UserRepository;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -21,7 +22,7 @@ import java.util.Scanner;
 public class SignUp {
 
     /** Repository used to manage and store user data. */
-    private FileUserRepository repo = new FileUserRepository();
+    private UserRepository repo = Repositories.users();
 
     /** Scanner used to read user input from the console. */
     private Scanner scanner = new Scanner(System.in);
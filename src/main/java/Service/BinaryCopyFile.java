@@ -0,0 +1,251 @@
+package Service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed-width binary storage for media copies. Every copy occupies one
+ * slot of {@link #RECORD_SIZE} bytes, addressed by slot number, so a change
+ * to one copy is a single positional write instead of a rewrite of the
+ * whole inventory.
+ *
+ * <p>Layout: a {@link #HEADER_SIZE}-byte header (magic, version, record
+ * size) followed by the slots. Each slot holds:</p>
+ * <pre><code>
+ * [0]       availability (1 = available, 0 = borrowed)
+ * [1]       copy ID length
+ * [2..63]   copy ID, UTF-8, zero padded
+ * [64]      ISBN length
+ * [65..127] ISBN, UTF-8, zero padded
+ * </code></pre>
+ */
+public class BinaryCopyFile implements Closeable {
+
+    /** Size of one copy slot in bytes. */
+    public static final int RECORD_SIZE = 128;
+    /** Size of the file header in bytes. */
+    public static final int HEADER_SIZE = 16;
+
+    static final int MAGIC = 0x4D435059; // "MCPY"
+    static final short VERSION = 1;
+
+    private static final int COPY_ID_OFFSET = 1;
+    private static final int COPY_ID_MAX = 62;
+    private static final int ISBN_OFFSET = 64;
+    private static final int ISBN_MAX = 63;
+
+    /**
+     * Receives the records of the file during {@link #readAll(RecordHandler)}.
+     */
+    public interface RecordHandler {
+
+        /**
+         * Called once per slot, in slot order.
+         *
+         * @param slot      the slot number
+         * @param copyId    the copy ID
+         * @param isbn      the ISBN of the copied media item
+         * @param available the availability of the copy
+         */
+        void onRecord(int slot, String copyId, String isbn, boolean available);
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer flag = ByteBuffer.allocate(1);
+
+    /**
+     * Opens a binary copy file, creating it with an empty header if needed.
+     *
+     * @param path the file path
+     * @throws IOException if the file cannot be opened or is not a copy file
+     */
+    public BinaryCopyFile(String path) throws IOException {
+        this.channel = FileChannel.open(Path.of(path),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                writeHeader();
+            } else {
+                checkHeader();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_SIZE);
+        header.flip();
+        writeFully(header, 0);
+    }
+
+    private void checkHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getShort() != VERSION || header.getShort() != RECORD_SIZE) {
+            throw new IOException("Not a media copy file");
+        }
+    }
+
+    /**
+     * Returns the number of slots in the file. A torn last slot is not counted.
+     *
+     * @return the slot count
+     * @throws IOException if the file size cannot be read
+     */
+    public int getSlotCount() throws IOException {
+        return (int) ((channel.size() - HEADER_SIZE) / RECORD_SIZE);
+    }
+
+    /**
+     * Reads every slot in order.
+     *
+     * @param handler the callback receiving the records
+     * @return the number of slots read
+     * @throws IOException if the file cannot be read
+     */
+    public int readAll(RecordHandler handler) throws IOException {
+        int count = getSlotCount();
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 512);
+        byte[] record = new byte[RECORD_SIZE];
+        long position = HEADER_SIZE;
+        int slot = 0;
+
+        while (slot < count) {
+            buffer.clear();
+            int slots = Math.min(count - slot, buffer.capacity() / RECORD_SIZE);
+            buffer.limit(slots * RECORD_SIZE);
+            readFully(buffer, position);
+            buffer.flip();
+            for (int i = 0; i < slots; i++, slot++) {
+                buffer.get(record);
+                handler.onRecord(slot,
+                        decode(record, COPY_ID_OFFSET),
+                        decode(record, ISBN_OFFSET),
+                        record[0] == 1);
+            }
+            position += (long) slots * RECORD_SIZE;
+        }
+        return count;
+    }
+
+    /**
+     * Writes a complete record into a slot, extending the file if needed.
+     *
+     * @param slot      the slot number
+     * @param copyId    the copy ID
+     * @param isbn      the ISBN of the copied media item
+     * @param available the availability of the copy
+     * @throws IOException if the record cannot be written
+     * @throws IllegalArgumentException if the copy ID or ISBN does not fit a slot
+     */
+    public void writeRecord(int slot, String copyId, String isbn, boolean available) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.put(0, (byte) (available ? 1 : 0));
+        encode(record, COPY_ID_OFFSET, COPY_ID_MAX, copyId);
+        encode(record, ISBN_OFFSET, ISBN_MAX, isbn);
+        writeFully(record, slotPosition(slot));
+    }
+
+    /**
+     * Overwrites only the availability byte of a slot.
+     *
+     * @param slot      the slot number
+     * @param available the new availability
+     * @throws IOException if the byte cannot be written
+     */
+    public synchronized void writeAvailability(int slot, boolean available) throws IOException {
+        flag.clear();
+        flag.put((byte) (available ? 1 : 0)).flip();
+        writeFully(flag, slotPosition(slot));
+    }
+
+    /**
+     * Forces written records to the storage device.
+     *
+     * @throws IOException if the file cannot be synced
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Converts a semicolon-separated {@code copyId;isbn;available} text file
+     * into a new binary copy file. Malformed lines are skipped.
+     *
+     * @param textPath   the text file to read
+     * @param binaryPath the binary file to create; an existing file is replaced
+     * @return the number of copies converted
+     * @throws IOException if either file cannot be accessed, or a copy does not fit a slot
+     */
+    public static int convertFromText(String textPath, String binaryPath) throws IOException {
+        File target = new File(binaryPath);
+        File temp = new File(binaryPath + ".tmp");
+        if (temp.exists() && !temp.delete()) throw new IOException("Cannot replace " + temp);
+
+        int slot = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(textPath));
+             BinaryCopyFile out = new BinaryCopyFile(temp.getPath())) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] p = line.split(";");
+                if (p.length != 3) continue;
+                try {
+                    out.writeRecord(slot, p[0], p[1], Boolean.parseBoolean(p[2]));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Cannot convert copy " + p[0] + ": " + e.getMessage());
+                }
+                slot++;
+            }
+            out.force();
+        }
+
+        if (target.exists() && !target.delete()) throw new IOException("Cannot replace " + target);
+        if (!temp.renameTo(target)) throw new IOException("Cannot create " + target);
+        return slot;
+    }
+
+    private static long slotPosition(int slot) {
+        return HEADER_SIZE + (long) slot * RECORD_SIZE;
+    }
+
+    private static void encode(ByteBuffer record, int offset, int max, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > max) {
+            throw new IllegalArgumentException("value longer than " + max + " bytes: " + value);
+        }
+        record.put(offset, (byte) bytes.length);
+        record.put(offset + 1, bytes);
+    }
+
+    private static String decode(byte[] record, int offset) {
+        int length = Math.min(record[offset] & 0xFF, RECORD_SIZE - offset - 1);
+        return new String(record, offset + 1, length, StandardCharsets.UTF_8);
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new EOFException();
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package Service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Fixed-size Bloom filter over string keys. A key that was added is always
+ * reported as possibly present; a key that was not is reported as absent
+ * with a false positive rate of about 1% when the filter is sized for the
+ * number of keys added.
+ */
+final class BloomFilter {
+
+    /** Filter bits per expected key, for a false positive rate of about 1%. */
+    static final int BITS_PER_KEY = 10;
+
+    /** Number of bit positions set per key. */
+    static final int HASHES = 7;
+
+    private final long[] words;
+    private final long bits;
+
+    /**
+     * Creates an empty filter sized for the given number of keys.
+     *
+     * @param expectedKeys the number of keys that will be added
+     */
+    BloomFilter(int expectedKeys) {
+        this(new long[(int) ((Math.max(expectedKeys, 1) * (long) BITS_PER_KEY + 63) / 64)]);
+    }
+
+    private BloomFilter(long[] words) {
+        this.words = words;
+        this.bits = words.length * 64L;
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param key the key
+     */
+    void add(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            long bit = ((h1 + i * h2) & 0x7FFFFFFFL) % bits;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks whether a key may have been added.
+     *
+     * @param key the key
+     * @return false if the key was certainly not added
+     */
+    boolean mightContain(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            long bit = ((h1 + i * h2) & 0x7FFFFFFFL) % bits;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes the filter.
+     *
+     * @param out the destination
+     * @throws IOException if the filter cannot be written
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(words.length);
+        for (long word : words) out.writeLong(word);
+    }
+
+    /**
+     * Reads a filter written by {@link #write(DataOutput)}.
+     *
+     * @param in the source
+     * @return the filter
+     * @throws IOException if the filter cannot be read
+     */
+    static BloomFilter read(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length <= 0) throw new IOException("Bad Bloom filter length: " + length);
+        long[] words = new long[length];
+        for (int i = 0; i < length; i++) words[i] = in.readLong();
+        return new BloomFilter(words);
+    }
+
+    /** 64-bit FNV-1a over the characters of the key, with a final mix. */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
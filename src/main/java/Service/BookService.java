@@ -8,7 +8,7 @@ import java.util.List;
  */
 public class BookService {
 
-    protected FileBookRepository fileBook = FileBookRepository.getInstance();
+    protected CatalogRepository<Book> fileBook = Repositories.books();
     private final BookSearchContext searchContext = new BookSearchContext();
 
     /**
@@ -19,7 +19,7 @@ public class BookService {
      */
     public List<Book> searchByTitle(String title) {
         searchContext.setStrategy(new SearchByTitleStrategy());
-        return searchContext.executeSearch(fileBook.findAllBooks(), title);
+        return searchContext.executeSearch(fileBook.findAll(), title);
     }
 
     /**
@@ -30,7 +30,7 @@ public class BookService {
      */
     public List<Book> searchByAuthor(String author) {
         searchContext.setStrategy(new SearchByAuthorStrategy());
-        return searchContext.executeSearch(fileBook.findAllBooks(), author);
+        return searchContext.executeSearch(fileBook.findAll(), author);
     }
 
     /**
@@ -41,6 +41,6 @@ public class BookService {
      */
     public List<Book> searchByISBN(String isbn) {
         searchContext.setStrategy(new SearchByISBNStrategy());
-        return searchContext.executeSearch(fileBook.findAllBooks(), isbn);
+        return searchContext.executeSearch(fileBook.findAll(), isbn);
     }
 }
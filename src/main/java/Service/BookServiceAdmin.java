@@ -11,9 +11,9 @@ import java.util.List;
  */
 public class BookServiceAdmin extends BookService {
 
-    private final FileLoanRepository loanFile = new FileLoanRepository();
-    private final FileUserRepository userFile = new FileUserRepository();
-    private final FileCDRepository fileCD = FileCDRepository.getInstance();
+    private final LoanRepository loanFile = Repositories.loans();
+    private final UserRepository userFile = Repositories.users();
+    private final CatalogRepository<CD> fileCD = Repositories.cds();
 
     /**
      * Adds a new book with the specified number of copies.
@@ -25,15 +25,10 @@ public class BookServiceAdmin extends BookService {
     public boolean addBook(Book book, int numberOfCopies) {
         if (numberOfCopies <= 0) return false;
 
-        List<Book> existingBooks = this.fileBook.findAllBooks();
-        boolean exists = existingBooks.stream()
-                .anyMatch(b -> b.getIsbn().equalsIgnoreCase(book.getIsbn()));
-
         if (fileCD.findByIsbn(book.getIsbn()) != null) return false;
-        if (exists) return false;
+        if (fileBook.findByIsbn(book.getIsbn()) != null) return false;
 
-        FileBookRepository.getInstance();
-        FileBookRepository.saveBook(book, numberOfCopies);
+        fileBook.add(book, numberOfCopies);
 
         return true;
     }
@@ -89,15 +84,10 @@ public class BookServiceAdmin extends BookService {
     public boolean addCD(CD cd, int numberOfCopies) {
         if (numberOfCopies <= 0) return false;
 
-        List<CD> existingCDs = this.fileCD.findAllCDs();
-        boolean exists = existingCDs.stream()
-                .anyMatch(b -> b.getIsbn().equalsIgnoreCase(cd.getIsbn()));
-
         if (fileBook.findByIsbn(cd.getIsbn()) != null) return false;
-        if (exists) return false;
+        if (fileCD.findByIsbn(cd.getIsbn()) != null) return false;
 
-        FileCDRepository.getInstance();
-        FileCDRepository.saveCD(cd, numberOfCopies);
+        fileCD.add(cd, numberOfCopies);
 
         return true;
     }
@@ -14,11 +14,11 @@ import java.util.Map;
  */
 public class BookServiceCustomer extends BookService {
 
-    private  FileLoanRepository loanRepository = new FileLoanRepository();
-    private  FileBookRepository fileBook = FileBookRepository.getInstance();
+    private  LoanRepository loanRepository = Repositories.loans();
+    private  CatalogRepository<Book> fileBook = Repositories.books();
     private User currentUser;
     private Map<String, List<User>> waitList = new HashMap<>();
-    private FileCDRepository fileCD = FileCDRepository.getInstance();
+    private CatalogRepository<CD> fileCD = Repositories.cds();
     private String emailUser;
     private String emailPass;
     private static BookServiceCustomer instance;
@@ -82,12 +82,9 @@ public class BookServiceCustomer extends BookService {
             return false;
         }
 
-        List<MediaCopy> availableCopies = FileMediaCopyRepository.getInstance()
-                .getCopiesByIsbn(isbn).stream()
-                .filter(MediaCopy::isAvailable)
-                .toList();
+        CopyRepository copyRepository = Repositories.copies();
 
-        if (availableCopies.isEmpty()) {
+        if (copyRepository.getAvailableCopiesCount(isbn) == 0) {
             System.out.println(item.getClass().getSimpleName() + " is currently borrowed.");
             System.out.println("We will notify you by email when it becomes available.");
 
@@ -122,16 +119,27 @@ public class BookServiceCustomer extends BookService {
             return false;
         }
 
-        MediaCopy copyToBorrow = availableCopies.get(0);
-        copyToBorrow.setAvailable(false);
-        FileMediaCopyRepository.getInstance().saveToFile();
+        MediaCopy copyToBorrow;
+        Loan loan;
+        try (LibraryTransaction tx = LibraryTransaction.begin()) {
+            copyToBorrow = copyRepository.checkoutCopy(isbn);
+            if (copyToBorrow == null) {
+                System.out.println(item.getClass().getSimpleName() + " is currently borrowed.");
+                return false;
+            }
 
-        Loan loan = loanRepository.borrowItem(currentUser, item);
+            // Leaving the block without a commit rolls back the checkout.
+            loan = loanRepository.borrowItem(currentUser, item, copyToBorrow.getCopyId());
+            if (loan == null) {
+                System.out.println("Error: the loan could not be saved.");
+                return false;
+            }
 
-        if (item instanceof Book) {
-            FileBookRepository.getInstance().updateBookAvailability(isbn);
-        } else if (item instanceof CD) {
-            FileCDRepository.getInstance().updateCDAvailability(isbn);
+            updateAvailability(item);
+            if (!tx.commit()) {
+                System.out.println("Error: the loan could not be saved.");
+                return false;
+            }
         }
 
         System.out.println(item.getClass().getSimpleName() + " borrowed successfully!");
@@ -174,15 +182,12 @@ public class BookServiceCustomer extends BookService {
         MediaItem item = loan.getMediaItem();
         String isbn = item.getIsbnOrId();
 
-        returnCopyByLoan(loan);
-
-        loanRepository.returnItem(loanId, today);
+        if (!completeReturnTransaction(loan, today)) {
+            System.out.println("Error: the return could not be saved.");
+            return false;
+        }
 
-        if (item instanceof Book) {
-            FileBookRepository.getInstance().updateBookAvailability(isbn);
-            BookInventory.getInstance().notifyBookReturned(isbn);
-        } else if (item instanceof CD) {
-            FileCDRepository.getInstance().updateCDAvailability(isbn);
+        if (item instanceof Book || item instanceof CD) {
             BookInventory.getInstance().notifyBookReturned(isbn);
         }
 
@@ -207,19 +212,17 @@ public class BookServiceCustomer extends BookService {
 
         String isbn = loan.getMediaItem().getIsbnOrId();
 
-        returnCopyByLoan(loan);
-
-        loanRepository.returnItem(loanId, today);
+        if (!completeReturnTransaction(loan, today)) {
+            System.out.println("Error: the return could not be saved.");
+            return false;
+        }
         System.out.println("Fine paid. Item returned successfully!");
 
         MediaItem item = loan.getMediaItem();
 
         if (item instanceof Book) {
-            FileBookRepository.getInstance().updateBookAvailability(isbn);
             BookInventory.getInstance().notifyBookReturned(isbn);
-
         } else if (item instanceof CD) {
-            FileCDRepository.getInstance().updateCDAvailability(isbn);
             System.out.println("CD availability updated.");
         }
 
@@ -227,24 +230,59 @@ public class BookServiceCustomer extends BookService {
     }
 
     /**
-     * Updates the availability of a media copy upon return.
+     * Releases the copy held by a loan, closes the loan and updates the
+     * availability of its item as one {@link LibraryTransaction}. Nothing
+     * is committed if the loan cannot be closed.
+     *
+     * @param loan the loan being returned.
+     * @param returnDate the return date.
+     * @return true if the return was saved.
+     */
+    private boolean completeReturnTransaction(Loan loan, LocalDate returnDate) {
+        try (LibraryTransaction tx = LibraryTransaction.begin()) {
+            returnCopyByLoan(loan);
+            // Leaving the block without a commit puts the copy back on loan.
+            if (!loanRepository.returnItem(loan.getLoanId(), returnDate)) return false;
+            updateAvailability(loan.getMediaItem());
+            return tx.commit();
+        }
+    }
+
+    /**
+     * Recomputes the availability of a book or CD from its copies.
+     *
+     * @param item the media item.
+     */
+    private void updateAvailability(MediaItem item) {
+        if (item instanceof Book) {
+            Repositories.books().updateAvailability(item.getIsbnOrId());
+        } else if (item instanceof CD) {
+            Repositories.cds().updateAvailability(item.getIsbnOrId());
+        }
+    }
+
+    /**
+     * Puts the copy held by a loan back on the shelf. Loans recorded before
+     * copies were tracked release any borrowed copy of the same title.
      *
      * @param loan the Loan object for which the copy is being returned.
      */
     private void returnCopyByLoan(Loan loan) {
-        String isbn = loan.getMediaItem().getIsbnOrId();
-        List<MediaCopy> copies = FileMediaCopyRepository.getInstance().getCopiesByIsbn(isbn);
-
-        for (MediaCopy copy : copies) {
-            if (!copy.isAvailable()) {
-                copy.setAvailable(true);
-                FileMediaCopyRepository.getInstance().saveToFile();
-                System.out.println("Copy " + copy.getCopyId() + " returned successfully.");
-                return;
-            }
+        CopyRepository copyRepository = Repositories.copies();
+        String copyId = loan.getCopyId();
+
+        if (copyId == null) {
+            MediaCopy copy = copyRepository.releaseAnyCopy(loan.getMediaItem().getIsbnOrId());
+            copyId = copy == null ? null : copy.getCopyId();
+        } else if (!copyRepository.releaseCopy(copyId)) {
+            copyId = null;
         }
 
-        System.out.println("Error: No borrowed copy found to return.");
+        if (copyId != null) {
+            System.out.println("Copy " + copyId + " returned successfully.");
+        } else {
+            System.out.println("Error: No borrowed copy found to return.");
+        }
     }
 
     /**
@@ -333,11 +371,11 @@ public class BookServiceCustomer extends BookService {
      * @return a list of available books.
      */
     public List<Book> getAllAvailableBooks() {
-        List<Book> allBooks = fileBook.findAllBooks();
+        List<Book> allBooks = fileBook.findAll();
         List<Book> availableBooks = new ArrayList<>();
 
         for (Book book : allBooks) {
-            int availableCopies = FileMediaCopyRepository.getInstance()
+            int availableCopies = Repositories.copies()
                     .getAvailableCopiesCount(book.getIsbn());
 
             if (availableCopies > 0) {
@@ -355,11 +393,11 @@ public class BookServiceCustomer extends BookService {
      * @return a list of available CDs.
      */
     public List<CD> getAllAvailableCDs() {
-        List<CD> allCDs = fileCD.findAllCDs();
+        List<CD> allCDs = fileCD.findAll();
         List<CD> availableCDs = new ArrayList<>();
 
         for (CD cd : allCDs) {
-            int availableCopies = FileMediaCopyRepository.getInstance()
+            int availableCopies = Repositories.copies()
                     .getAvailableCopiesCount(cd.getIsbn());
 
             if (availableCopies > 0) {
@@ -478,7 +516,7 @@ public class BookServiceCustomer extends BookService {
      * @return the list of MediaCopy objects for the given ISBN.
      */
     public List<MediaCopy> getCopiesByISBN(String isbn) {
-        return FileMediaCopyRepository.getInstance().getCopiesByIsbn(isbn);
+        return Repositories.copies().getCopiesByIsbn(isbn);
     }
 }
 
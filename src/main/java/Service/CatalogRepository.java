@@ -0,0 +1,44 @@
+package Service;
+
+import Domain.MediaItem;
+
+import java.util.List;
+
+/**
+ * Storage of one kind of catalog item, books or CDs.
+ *
+ * @param <T> the kind of item
+ * @see Repositories
+ */
+public interface CatalogRepository<T extends MediaItem> {
+
+    /**
+     * Returns every item of this kind, in the order they were added.
+     *
+     * @return list of items
+     */
+    List<T> findAll();
+
+    /**
+     * Finds an item by ISBN, ignoring case and surrounding whitespace.
+     *
+     * @param isbn the ISBN to search for
+     * @return the item if found, otherwise null
+     */
+    T findByIsbn(String isbn);
+
+    /**
+     * Adds an item to the catalog together with its copies.
+     *
+     * @param item           the item to add
+     * @param numberOfCopies the number of copies to add
+     */
+    void add(T item, int numberOfCopies);
+
+    /**
+     * Recomputes the availability of an item from its copies.
+     *
+     * @param isbn the ISBN of the item
+     */
+    void updateAvailability(String isbn);
+}
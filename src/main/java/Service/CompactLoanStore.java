@@ -0,0 +1,605 @@
+package Service;
+
+import Domain.Loan;
+import Domain.MediaItem;
+import Domain.User;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * In-memory loan table held in parallel primitive arrays.
+ *
+ * <p>Each loan occupies one slot. Time-ordered loan IDs (see
+ * {@link TimeOrderedLoanIdGenerator}) are kept as one long and UUIDs as
+ * two, dates as epoch days, and users and media items as ordinals into
+ * interned tables, so a loan costs a few dozen bytes instead of a graph of
+ * strings and date objects. Copy IDs of the usual {@code isbn-n} form are
+ * kept as the number {@code n}. Other IDs go to small side tables.</p>
+ *
+ * <p>Active loans are threaded into circular lists per user and per due
+ * day through {@code int} links, so those queries visit only the loans
+ * they return. {@link Loan} objects are built on demand and cached weakly,
+ * so a caller holding a loan keeps getting the same instance.</p>
+ *
+ * <p>The store is not thread-safe; {@link FileLoanRepository} guards it.</p>
+ */
+final class CompactLoanStore {
+
+    private static final int NONE = Integer.MIN_VALUE;
+    private static final int NO_COPY = -1;
+    private static final int TEXT_COPY = -2;
+    private static final int FREE = -1;
+    private static final byte UUID_ID = 0;
+    private static final byte ORDERED_ID = 1;
+    private static final byte TEXT_ID = 2;
+
+    private byte[] idKind;
+    private long[] idHigh;
+    private long[] idLow;
+    private int[] userOrdinal;
+    private int[] itemOrdinal;
+    private int[] borrowDay;
+    private int[] dueDay;
+    private int[] returnDay;
+    private int[] copyIndex;
+    private int[] userNext;
+    private int[] userPrev;
+    private int[] dueNext;
+    private int[] duePrev;
+    private WeakReference<Loan>[] views;
+
+    private int highWater;
+    private int count;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    private int[] idTable = new int[16];
+    private int idTableUsed;
+    private final Map<Integer, String> textIds = new HashMap<>();
+    private final Map<String, Integer> textIdSlots = new HashMap<>();
+    private final Map<Integer, String> textCopyIds = new HashMap<>();
+
+    private final List<User> users = new ArrayList<>();
+    private final Map<String, Integer> userOrdinals = new HashMap<>();
+    private int[] userHeads = new int[16];
+    private final List<MediaItem> items = new ArrayList<>();
+    private final Map<MediaItem, Integer> itemOrdinals = new IdentityHashMap<>();
+    private final TreeMap<Integer, Integer> dueHeads = new TreeMap<>();
+
+    CompactLoanStore() {
+        allocate(16);
+        Arrays.fill(userHeads, NONE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        idKind = new byte[capacity];
+        idHigh = new long[capacity];
+        idLow = new long[capacity];
+        userOrdinal = new int[capacity];
+        itemOrdinal = new int[capacity];
+        borrowDay = new int[capacity];
+        dueDay = new int[capacity];
+        returnDay = new int[capacity];
+        copyIndex = new int[capacity];
+        userNext = new int[capacity];
+        userPrev = new int[capacity];
+        dueNext = new int[capacity];
+        duePrev = new int[capacity];
+        views = newViews(capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static WeakReference<Loan>[] newViews(int capacity) {
+        return (WeakReference<Loan>[]) new WeakReference<?>[capacity];
+    }
+
+    private void grow() {
+        int capacity = idHigh.length * 2;
+        idKind = Arrays.copyOf(idKind, capacity);
+        idHigh = Arrays.copyOf(idHigh, capacity);
+        idLow = Arrays.copyOf(idLow, capacity);
+        userOrdinal = Arrays.copyOf(userOrdinal, capacity);
+        itemOrdinal = Arrays.copyOf(itemOrdinal, capacity);
+        borrowDay = Arrays.copyOf(borrowDay, capacity);
+        dueDay = Arrays.copyOf(dueDay, capacity);
+        returnDay = Arrays.copyOf(returnDay, capacity);
+        copyIndex = Arrays.copyOf(copyIndex, capacity);
+        userNext = Arrays.copyOf(userNext, capacity);
+        userPrev = Arrays.copyOf(userPrev, capacity);
+        dueNext = Arrays.copyOf(dueNext, capacity);
+        duePrev = Arrays.copyOf(duePrev, capacity);
+        views = Arrays.copyOf(views, capacity);
+    }
+
+    /**
+     * Removes every loan. The user and item tables are kept.
+     */
+    void clear() {
+        allocate(16);
+        highWater = 0;
+        count = 0;
+        freeCount = 0;
+        idTable = new int[16];
+        idTableUsed = 0;
+        textIds.clear();
+        textIdSlots.clear();
+        textCopyIds.clear();
+        Arrays.fill(userHeads, NONE);
+        dueHeads.clear();
+    }
+
+    /**
+     * Returns the number of loans held.
+     *
+     * @return the loan count
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Adds a loan. If a loan with the same ID is already held, lookups by
+     * that ID keep finding the first one.
+     *
+     * @param loanId     the loan ID
+     * @param user       the borrowing user; the first user seen for a username is kept
+     * @param item       the borrowed item
+     * @param borrowDate the borrow date
+     * @param returnDate the return date, or null if active
+     * @param copyId     the borrowed copy, or null
+     * @return the slot of the new loan
+     */
+    int add(String loanId, User user, MediaItem item, LocalDate borrowDate, LocalDate returnDate, String copyId) {
+        return add(loanId, user.getUsername(), u -> user, item, borrowDate, returnDate, copyId);
+    }
+
+    /**
+     * Adds a loan, creating the user only if its username is new.
+     *
+     * @see #add(String, User, MediaItem, LocalDate, LocalDate, String)
+     */
+    int add(String loanId, String username, Function<String, User> userFactory, MediaItem item,
+            LocalDate borrowDate, LocalDate returnDate, String copyId) {
+        int slot = allocateSlot();
+        int user = internUser(username, userFactory);
+        int itemIndex = internItem(item);
+
+        userOrdinal[slot] = user;
+        itemOrdinal[slot] = itemIndex;
+        borrowDay[slot] = (int) borrowDate.toEpochDay();
+        dueDay[slot] = borrowDay[slot] + item.getBorrowingPeriodDays();
+        returnDay[slot] = returnDate == null ? NONE : (int) returnDate.toEpochDay();
+        storeCopyId(slot, item, copyId);
+        storeId(slot, loanId);
+        views[slot] = null;
+        count++;
+
+        if (returnDay[slot] == NONE) linkActive(slot);
+        return slot;
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) return freeSlots[--freeCount];
+        if (highWater == idHigh.length) grow();
+        return highWater++;
+    }
+
+    private int internUser(String username, Function<String, User> userFactory) {
+        Integer ordinal = userOrdinals.get(username);
+        if (ordinal != null) return ordinal;
+        ordinal = users.size();
+        users.add(userFactory.apply(username));
+        userOrdinals.put(username, ordinal);
+        if (ordinal == userHeads.length) {
+            userHeads = Arrays.copyOf(userHeads, ordinal * 2);
+            Arrays.fill(userHeads, ordinal, userHeads.length, NONE);
+        }
+        return ordinal;
+    }
+
+    private int internItem(MediaItem item) {
+        Integer ordinal = itemOrdinals.get(item);
+        if (ordinal != null) return ordinal;
+        ordinal = items.size();
+        items.add(item);
+        itemOrdinals.put(item, ordinal);
+        return ordinal;
+    }
+
+    private void storeCopyId(int slot, MediaItem item, String copyId) {
+        textCopyIds.remove(slot);
+        if (copyId == null) {
+            copyIndex[slot] = NO_COPY;
+            return;
+        }
+        int index = CopyGroup.parseCopyIndex(copyId);
+        if (index >= 0 && copyId.equals(item.getIsbnOrId() + "-" + index)) {
+            copyIndex[slot] = index;
+        } else {
+            copyIndex[slot] = TEXT_COPY;
+            textCopyIds.put(slot, copyId);
+        }
+    }
+
+    /**
+     * Finds the slot of a loan by ID.
+     *
+     * @param loanId the loan ID
+     * @return the slot, or -1 if no loan has that ID
+     */
+    int find(String loanId) {
+        if (loanId == null) return -1;
+        long ordered = TimeOrderedLoanIdGenerator.decode(loanId);
+        if (ordered >= 0) return findPacked(ORDERED_ID, 0, ordered);
+        if (isUuid(loanId)) {
+            UUID uuid = UUID.fromString(loanId);
+            return findPacked(UUID_ID, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        }
+        Integer slot = textIdSlots.get(loanId);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Marks a loan as returned and removes it from the active-loan lists.
+     *
+     * @param slot       the loan slot
+     * @param returnDate the return date
+     */
+    void markReturned(int slot, LocalDate returnDate) {
+        if (returnDay[slot] == NONE) unlinkActive(slot);
+        returnDay[slot] = (int) returnDate.toEpochDay();
+    }
+
+    /**
+     * Removes a loan and frees its slot for reuse.
+     *
+     * @param slot the loan slot
+     */
+    void remove(int slot) {
+        if (returnDay[slot] == NONE) unlinkActive(slot);
+        removeId(slot);
+        textCopyIds.remove(slot);
+        itemOrdinal[slot] = FREE;
+        views[slot] = null;
+        count--;
+        if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Checks whether a loan has not been returned yet.
+     *
+     * @param slot the loan slot
+     * @return true if the loan is active
+     */
+    boolean isActive(int slot) {
+        return returnDay[slot] == NONE;
+    }
+
+    /**
+     * Returns the loan in a slot, building it if no caller holds it.
+     *
+     * @param slot the loan slot
+     * @return the loan
+     */
+    Loan view(int slot) {
+        WeakReference<Loan> ref = views[slot];
+        Loan loan = ref == null ? null : ref.get();
+        if (loan == null) {
+            loan = new Loan(loanId(slot), users.get(userOrdinal[slot]), items.get(itemOrdinal[slot]),
+                    LocalDate.ofEpochDay(borrowDay[slot]),
+                    returnDay[slot] == NONE ? null : LocalDate.ofEpochDay(returnDay[slot]));
+            loan.setCopyId(copyId(slot));
+            views[slot] = new WeakReference<>(loan);
+        }
+        return loan;
+    }
+
+    /**
+     * Makes a loan object the view of a slot, so the caller that created it
+     * keeps seeing changes.
+     *
+     * @param slot the loan slot
+     * @param loan the loan object
+     */
+    void attachView(int slot, Loan loan) {
+        views[slot] = new WeakReference<>(loan);
+    }
+
+    /**
+     * Returns all loans, in slot order.
+     *
+     * @return the loans
+     */
+    List<Loan> all() {
+        List<Loan> result = new ArrayList<>(count);
+        for (int slot = 0; slot < highWater; slot++) {
+            if (itemOrdinal[slot] != FREE) result.add(view(slot));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the active loans, in slot order.
+     *
+     * @return the active loans
+     */
+    List<Loan> active() {
+        List<Loan> result = new ArrayList<>();
+        for (int slot = 0; slot < highWater; slot++) {
+            if (itemOrdinal[slot] != FREE && returnDay[slot] == NONE) result.add(view(slot));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the slots of the returned loans.
+     *
+     * @return the slots
+     */
+    int[] returnedSlots() {
+        int[] result = new int[count];
+        int n = 0;
+        for (int slot = 0; slot < highWater; slot++) {
+            if (itemOrdinal[slot] != FREE && returnDay[slot] != NONE) result[n++] = slot;
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Returns a user's active loans, in the order they were added.
+     *
+     * @param username the username
+     * @return the active loans
+     */
+    List<Loan> activeFor(String username) {
+        Integer ordinal = userOrdinals.get(username);
+        List<Loan> result = new ArrayList<>();
+        if (ordinal == null) return result;
+        int head = userHeads[ordinal];
+        if (head == NONE) return result;
+        int slot = head;
+        do {
+            result.add(view(slot));
+            slot = userNext[slot];
+        } while (slot != head);
+        return result;
+    }
+
+    /**
+     * Returns the active loans due in a range of days, ordered by due date.
+     *
+     * @param fromDay first due day, inclusive
+     * @param toDay   last due day, inclusive
+     * @return the loans
+     */
+    List<Loan> activeDueBetween(long fromDay, long toDay) {
+        List<Loan> result = new ArrayList<>();
+        int from = (int) Math.max(fromDay, Integer.MIN_VALUE + 1L);
+        int to = (int) Math.min(toDay, Integer.MAX_VALUE);
+        if (from > to) return result;
+        for (int head : dueHeads.subMap(from, true, to, true).values()) {
+            int slot = head;
+            do {
+                result.add(view(slot));
+                slot = dueNext[slot];
+            } while (slot != head);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the ID of a loan.
+     *
+     * @param slot the loan slot
+     * @return the loan ID
+     */
+    String loanId(int slot) {
+        return switch (idKind[slot]) {
+            case ORDERED_ID -> TimeOrderedLoanIdGenerator.encode(idLow[slot]);
+            case UUID_ID -> new UUID(idHigh[slot], idLow[slot]).toString();
+            default -> textIds.get(slot);
+        };
+    }
+
+    private String copyId(int slot) {
+        int index = copyIndex[slot];
+        if (index == NO_COPY) return null;
+        if (index == TEXT_COPY) return textCopyIds.get(slot);
+        return items.get(itemOrdinal[slot]).getIsbnOrId() + "-" + index;
+    }
+
+    /**
+     * Returns a copy of the store for writing a snapshot outside the lock
+     * that guards this store.
+     *
+     * @return a copy holding the same loans
+     */
+    CompactLoanStore copy() {
+        CompactLoanStore copy = new CompactLoanStore();
+        copy.idKind = Arrays.copyOf(idKind, highWater);
+        copy.idHigh = Arrays.copyOf(idHigh, highWater);
+        copy.idLow = Arrays.copyOf(idLow, highWater);
+        copy.userOrdinal = Arrays.copyOf(userOrdinal, highWater);
+        copy.itemOrdinal = Arrays.copyOf(itemOrdinal, highWater);
+        copy.borrowDay = Arrays.copyOf(borrowDay, highWater);
+        copy.returnDay = Arrays.copyOf(returnDay, highWater);
+        copy.copyIndex = Arrays.copyOf(copyIndex, highWater);
+        copy.highWater = highWater;
+        copy.count = count;
+        copy.textIds.putAll(textIds);
+        copy.textCopyIds.putAll(textCopyIds);
+        copy.users.addAll(users);
+        copy.items.addAll(items);
+        return copy;
+    }
+
+    /**
+     * Writes every loan as a line of the loans file, in slot order.
+     *
+     * @param out the destination
+     * @throws IOException if out cannot be written
+     */
+    void writeRecords(Appendable out) throws IOException {
+        StringBuilder line = new StringBuilder(96);
+        for (int slot = 0; slot < highWater; slot++) {
+            if (itemOrdinal[slot] == FREE) continue;
+            line.setLength(0);
+            line.append(loanId(slot)).append(';')
+                    .append(users.get(userOrdinal[slot]).getUsername()).append(';')
+                    .append(items.get(itemOrdinal[slot]).getIsbnOrId()).append(';')
+                    .append(LocalDate.ofEpochDay(borrowDay[slot])).append(';')
+                    .append(returnDay[slot] == NONE ? "NULL" : LocalDate.ofEpochDay(returnDay[slot]).toString());
+            String copyId = copyId(slot);
+            if (copyId != null) line.append(';').append(copyId);
+            out.append(line).append('\n');
+        }
+    }
+
+    // ---- Active-loan lists ----
+
+    private void linkActive(int slot) {
+        int user = userOrdinal[slot];
+        userHeads[user] = link(userNext, userPrev, userHeads[user], slot);
+        Integer head = dueHeads.get(dueDay[slot]);
+        dueHeads.put(dueDay[slot], link(dueNext, duePrev, head == null ? NONE : head, slot));
+    }
+
+    private void unlinkActive(int slot) {
+        int user = userOrdinal[slot];
+        userHeads[user] = unlink(userNext, userPrev, userHeads[user], slot);
+        int head = unlink(dueNext, duePrev, dueHeads.get(dueDay[slot]), slot);
+        if (head == NONE) dueHeads.remove(dueDay[slot]);
+        else dueHeads.put(dueDay[slot], head);
+    }
+
+    /** Appends a slot to the circular list starting at head and returns the head. */
+    private static int link(int[] next, int[] prev, int head, int slot) {
+        if (head == NONE) {
+            next[slot] = slot;
+            prev[slot] = slot;
+            return slot;
+        }
+        int tail = prev[head];
+        next[tail] = slot;
+        prev[slot] = tail;
+        next[slot] = head;
+        prev[head] = slot;
+        return head;
+    }
+
+    /** Removes a slot from the circular list starting at head and returns the new head. */
+    private static int unlink(int[] next, int[] prev, int head, int slot) {
+        if (next[slot] == slot) return NONE;
+        next[prev[slot]] = next[slot];
+        prev[next[slot]] = prev[slot];
+        return head == slot ? next[slot] : head;
+    }
+
+    // ---- Loan ID index ----
+    //
+    // Time-ordered and UUID IDs are found through an open-addressing table
+    // of slot + 1 (0 empty, -1 deleted); other IDs through textIdSlots.
+
+    /**
+     * Checks whether an ID is a UUID in the canonical lower-case form, which
+     * converts to two longs and back without change.
+     */
+    static boolean isUuid(String id) {
+        if (id.length() != 36) return false;
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') return false;
+            } else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void storeId(int slot, String loanId) {
+        textIds.remove(slot);
+        long ordered = TimeOrderedLoanIdGenerator.decode(loanId);
+        if (ordered >= 0) {
+            idKind[slot] = ORDERED_ID;
+            idHigh[slot] = 0;
+            idLow[slot] = ordered;
+        } else if (isUuid(loanId)) {
+            UUID uuid = UUID.fromString(loanId);
+            idKind[slot] = UUID_ID;
+            idHigh[slot] = uuid.getMostSignificantBits();
+            idLow[slot] = uuid.getLeastSignificantBits();
+        } else {
+            idKind[slot] = TEXT_ID;
+            textIds.put(slot, loanId);
+            textIdSlots.putIfAbsent(loanId, slot);
+            return;
+        }
+        if (findPacked(idKind[slot], idHigh[slot], idLow[slot]) < 0) insertPacked(slot);
+    }
+
+    private void removeId(int slot) {
+        if (idKind[slot] == TEXT_ID) {
+            textIdSlots.remove(textIds.remove(slot), slot);
+            return;
+        }
+        int mask = idTable.length - 1;
+        for (int i = hash(idHigh[slot], idLow[slot]) & mask; idTable[i] != 0; i = (i + 1) & mask) {
+            if (idTable[i] == slot + 1) {
+                idTable[i] = -1;
+                return;
+            }
+        }
+    }
+
+    private int findPacked(byte kind, long high, long low) {
+        int mask = idTable.length - 1;
+        for (int i = hash(high, low) & mask; idTable[i] != 0; i = (i + 1) & mask) {
+            int slot = idTable[i] - 1;
+            if (slot >= 0 && idLow[slot] == low && idHigh[slot] == high && idKind[slot] == kind) return slot;
+        }
+        return -1;
+    }
+
+    private void insertPacked(int slot) {
+        if ((idTableUsed + 1) * 2 > idTable.length) rehash();
+        int mask = idTable.length - 1;
+        int i = hash(idHigh[slot], idLow[slot]) & mask;
+        while (idTable[i] > 0) i = (i + 1) & mask;
+        if (idTable[i] == 0) idTableUsed++;
+        idTable[i] = slot + 1;
+    }
+
+    /** Rebuilds the ID table without deleted entries, doubling it if it is half full of live ones. */
+    private void rehash() {
+        int[] old = idTable;
+        int live = 0;
+        for (int entry : old) if (entry > 0) live++;
+        int capacity = old.length;
+        while ((live + 1) * 4 > capacity) capacity *= 2;
+        idTable = new int[capacity];
+        idTableUsed = 0;
+        int mask = capacity - 1;
+        for (int entry : old) {
+            if (entry <= 0) continue;
+            int slot = entry - 1;
+            int i = hash(idHigh[slot], idLow[slot]) & mask;
+            while (idTable[i] != 0) i = (i + 1) & mask;
+            idTable[i] = entry;
+            idTableUsed++;
+        }
+    }
+
+    private static int hash(long high, long low) {
+        long h = high * 0x9E3779B97F4A7C15L ^ low;
+        h ^= h >>> 33;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 29));
+    }
+}
@@ -0,0 +1,116 @@
+package Service;
+
+import Domain.MediaCopy;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All copies of one title, with the number of available copies and the
+ * highest copy index kept up to date as copies are added or change state.
+ * A bitset over the copy positions marks which copies are on the shelf,
+ * so a free copy is found without filtering the whole group.
+ */
+class CopyGroup implements MediaCopy.AvailabilityListener {
+
+    private final List<MediaCopy> copies = new ArrayList<>();
+    private final Map<MediaCopy, Integer> positions = new IdentityHashMap<>();
+    private final BitSet free = new BitSet();
+    private int availableCount;
+    private int maxCopyIndex;
+    private final MediaCopy.AvailabilityListener onChange;
+
+    /**
+     * Creates an empty group.
+     *
+     * @param onChange notified after the group has recorded a change in the
+     *                 availability of one of its copies, or null
+     */
+    CopyGroup(MediaCopy.AvailabilityListener onChange) {
+        this.onChange = onChange;
+    }
+
+    /**
+     * Adds a copy to the group and starts tracking its availability.
+     *
+     * @param copy the copy to add
+     */
+    void add(MediaCopy copy) {
+        positions.put(copy, copies.size());
+        if (copy.isAvailable()) {
+            free.set(copies.size());
+            availableCount++;
+        }
+        copies.add(copy);
+        maxCopyIndex = Math.max(maxCopyIndex, parseCopyIndex(copy.getCopyId()));
+        copy.setAvailabilityListener(this);
+    }
+
+    @Override
+    public void availabilityChanged(MediaCopy copy, boolean available) {
+        Integer position = positions.get(copy);
+        if (position == null) return;
+        free.set(position, available);
+        availableCount += available ? 1 : -1;
+        if (onChange != null) onChange.availabilityChanged(copy, available);
+    }
+
+    /**
+     * Takes the first available copy off the shelf.
+     *
+     * @return the copy, now marked unavailable, or null if none is available
+     */
+    MediaCopy checkout() {
+        int position = free.nextSetBit(0);
+        if (position < 0) return null;
+        MediaCopy copy = copies.get(position);
+        copy.setAvailable(false);
+        return copy;
+    }
+
+    /**
+     * Returns the first copy that is currently out on loan.
+     *
+     * @return the copy, or null if every copy is available
+     */
+    MediaCopy firstBorrowed() {
+        int position = free.nextClearBit(0);
+        return position < copies.size() ? copies.get(position) : null;
+    }
+
+    /**
+     * Returns the copies in the order they were added.
+     *
+     * @return a new list of the copies
+     */
+    List<MediaCopy> getCopies() {
+        return new ArrayList<>(copies);
+    }
+
+    int getAvailableCount() {
+        return availableCount;
+    }
+
+    int getMaxCopyIndex() {
+        return maxCopyIndex;
+    }
+
+    /**
+     * Extracts the numeric suffix of a copy ID such as {@code 978-1-3}.
+     *
+     * @param copyId the copy ID
+     * @return the suffix, or 0 if the ID has no numeric suffix
+     */
+    static int parseCopyIndex(String copyId) {
+        String[] parts = copyId.split("-");
+        if (parts.length > 1) {
+            try {
+                return Integer.parseInt(parts[parts.length - 1]);
+            } catch (NumberFormatException ignored) {}
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,71 @@
+package Service;
+
+import Domain.MediaCopy;
+
+import java.util.List;
+
+/**
+ * Storage of the physical copies of catalog items.
+ *
+ * @see Repositories
+ */
+public interface CopyRepository {
+
+    /**
+     * Adds copies of a catalog item, numbered after its existing copies.
+     *
+     * @param isbn           the ISBN of the item
+     * @param numberOfCopies the number of copies to add
+     * @param available      whether the copies are initially available
+     */
+    void addCopiesByBookIsbn(String isbn, int numberOfCopies, boolean available);
+
+    /**
+     * Returns the number of available copies for a given ISBN.
+     *
+     * @param isbn the ISBN to check
+     * @return the number of available copies
+     */
+    int getAvailableCopiesCount(String isbn);
+
+    /**
+     * Returns the copies of a catalog item.
+     *
+     * @param isbn the ISBN to search for
+     * @return list of copies
+     */
+    List<MediaCopy> getCopiesByIsbn(String isbn);
+
+    /**
+     * Finds a copy by its ID.
+     *
+     * @param copyId the copy ID
+     * @return the copy, or null if there is no such copy
+     */
+    MediaCopy findCopyById(String copyId);
+
+    /**
+     * Checks out an available copy of a title.
+     *
+     * @param isbn the ISBN of the item
+     * @return the checked-out copy, or null if no copy is available
+     */
+    MediaCopy checkoutCopy(String isbn);
+
+    /**
+     * Puts a borrowed copy back on the shelf.
+     *
+     * @param copyId the ID of the copy being returned
+     * @return true if the copy was on loan and is now available
+     */
+    boolean releaseCopy(String copyId);
+
+    /**
+     * Puts any borrowed copy of a title back on the shelf. Used for loans
+     * recorded before loans tracked which copy they hold.
+     *
+     * @param isbn the ISBN of the item
+     * @return the released copy, or null if no copy was on loan
+     */
+    MediaCopy releaseAnyCopy(String isbn);
+}
@@ -5,20 +5,65 @@ import Domain.MediaItem;
 
 import java.io.*;
 import java.util.*;
+import java.util.function.BooleanSupplier;
 
 /**
  * Repository class for managing Books stored in a file.
  * Provides methods to save, update, query, and manage availability of books.
+ *
+ * <p>By default every book is cached in memory. In index mode the file is
+ * read through an {@link IndexedCatalog} instead, so only books that have
+ * been looked up are kept and {@link #findAllBooks()} reads the file.</p>
  */
-public class FileBookRepository {
+public class FileBookRepository implements CatalogRepository<Book> {
 
     static FileBookRepository instance;
     private static final String FILE_PATH = "books.txt";
     public static String repoPath = FILE_PATH;
     private static List<Book> cachedBooks = new ArrayList<>();
+    private static final IsbnIndex<Book> isbnIndex = new IsbnIndex<>();
+    private static final Map<Book, Boolean> writtenAvailability = new IdentityHashMap<>();
+    private static final MediaItemRegistry registry = MediaItemRegistry.getInstance();
+    private static boolean indexMode = false;
+    private static IndexedCatalog<Book> indexed;
 
     private FileBookRepository() {
-        loadBooksFromFile();
+        if (indexMode) {
+            openIndexedCatalog();
+        } else {
+            loadBooksFromFile();
+        }
+    }
+
+    /**
+     * Keeps the books file on disk behind an ISBN index instead of caching
+     * every book. Listings then read the whole file, so this only pays off
+     * for catalogs too large to keep in memory. Off by default; changing it
+     * resets the instance.
+     *
+     * @param enabled true to use the index
+     */
+    public static void setIndexMode(boolean enabled) {
+        indexMode = enabled;
+        reset();
+    }
+
+    /**
+     * Returns whether the books file is read through an ISBN index.
+     *
+     * @return true in index mode
+     */
+    public static boolean isIndexMode() {
+        return indexMode;
+    }
+
+    private void openIndexedCatalog() {
+        try {
+            indexed = new IndexedCatalog<>(getFilePath(), Book.class, Book::new);
+        } catch (IOException e) {
+            System.out.println("Error opening books index: " + e.getMessage());
+            loadBooksFromFile();
+        }
     }
 
     private String getFilePath() {
@@ -32,8 +77,7 @@ public class FileBookRepository {
      */
     public static void setRepoPath(String newPath) {
         repoPath = newPath;
-        instance = null;
-        cachedBooks.clear();
+        reset();
     }
 
     /**
@@ -53,7 +97,18 @@ public class FileBookRepository {
      */
     public static void reset() {
         instance = null;
+        if (indexed != null) {
+            try {
+                indexed.close();
+            } catch (IOException e) {
+                System.out.println("Error closing books index: " + e.getMessage());
+            }
+            indexed = null;
+        }
         cachedBooks.clear();
+        isbnIndex.clear();
+        writtenAvailability.clear();
+        registry.clear(Book.class);
     }
 
     /**
@@ -64,9 +119,15 @@ public class FileBookRepository {
      */
     public static void saveBook(Book book, int numberOfCopies) {
         FileBookRepository instance = getInstance();
-        try (PrintWriter pw = new PrintWriter(new FileWriter(instance.getFilePath(), true))) {
-            pw.println(book.getTitle() + ";" + book.getAuthor() + ";" + book.getIsbn() + ";" + true);
-            cachedBooks.add(book);
+        try {
+            if (indexed != null) {
+                indexed.append(book, true);
+            } else {
+                try (PrintWriter pw = new PrintWriter(new FileWriter(instance.getFilePath(), true))) {
+                    pw.println(book.getTitle() + ";" + book.getAuthor() + ";" + book.getIsbn() + ";" + true);
+                }
+                instance.addLoadedBook(book, true);
+            }
         } catch (Exception e) {
             System.out.println("Error writing to books file: " + e.getMessage());
         }
@@ -74,80 +135,154 @@ public class FileBookRepository {
         FileMediaCopyRepository.getInstance().addCopiesByBookIsbn(book.getIsbn(), numberOfCopies, true);
     }
 
-    /** Loads books from file into cache. */
+    /**
+     * Loads books from file into cache and rebuilds the ISBN index. Books
+     * already known to the {@link MediaItemRegistry} are updated in place.
+     */
     private void loadBooksFromFile() {
         cachedBooks.clear();
-        try (BufferedReader br = new BufferedReader(new FileReader(getFilePath()))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] p = line.split(";");
-                if (p.length == 4) {
-                    Book book = new Book(p[0], p[1], p[2]);
-                    book.setAvailable(Boolean.parseBoolean(p[3]));
-                    cachedBooks.add(book);
+        isbnIndex.clear();
+        writtenAvailability.clear();
+        try {
+            RecordScanner.scan(getFilePath(), r -> {
+                if (r.fieldCount() == 4) {
+                    Book book = new Book(r.field(0), r.field(1), r.field(2));
+                    book.setAvailable(r.booleanField(3));
+                    addLoadedBook(book, book.isAvailable());
                 }
-            }
+            });
         } catch (Exception e) {
             System.out.println("Error loading books file.");
         }
     }
 
+    /**
+     * Adds a book that is stored in the file to the cache. The first book
+     * with an ISBN is interned; later duplicates are kept as they are.
+     *
+     * @param book    the book read or appended
+     * @param written the availability stored in the file
+     */
+    private void addLoadedBook(Book book, boolean written) {
+        if (isbnIndex.get(book.getIsbn()) == null) {
+            book = registry.intern(book);
+            isbnIndex.putIfAbsent(book);
+        }
+        cachedBooks.add(book);
+        writtenAvailability.put(book, written);
+    }
+
     /**
      * Returns a list of all books in the repository.
      *
      * @return list of books
      */
     public List<Book> findAllBooks() {
+        if (indexed != null) {
+            try {
+                return indexed.findAll();
+            } catch (IOException e) {
+                System.out.println("Error reading books file: " + e.getMessage());
+                return new ArrayList<>();
+            }
+        }
         return new ArrayList<>(cachedBooks);
     }
 
+    @Override
+    public List<Book> findAll() {
+        return findAllBooks();
+    }
+
+    @Override
+    public void add(Book book, int numberOfCopies) {
+        saveBook(book, numberOfCopies);
+    }
+
+    @Override
+    public void updateAvailability(String isbn) {
+        updateBookAvailability(isbn);
+    }
+
     /**
      * Updates the information of a book.
      *
      * @param item the book or media item to update
      */
     public void updateBooks(MediaItem item) {
-        for (Book b : cachedBooks) {
-            if (b.getIsbn().equals(item.getIsbnOrId())) {
-                b.setAvailable(item.isAvailable());
-                b.setTitle(item.getTitle());
-                b.setAuthor(item.getAuthor());
+        Book b = findByIsbn(item.getIsbnOrId());
+        if (b != null) {
+            b.setAvailable(item.isAvailable());
+            b.setTitle(item.getTitle());
+            b.setAuthor(item.getAuthor());
+        }
+        if (indexed == null) {
+            saveAllBooksToFile();
+        } else if (b != null) {
+            try {
+                indexed.replace(b);
+            } catch (IOException e) {
+                System.out.println("Error saving books file: " + e.getMessage());
             }
         }
-        saveAllBooksToFile();
     }
 
-    /** Saves all cached books to file. */
-    private void saveAllBooksToFile() {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(getFilePath()))) {
+    /**
+     * Saves all cached books to file.
+     *
+     * @return true if the file was written
+     */
+    private boolean saveAllBooksToFile() {
+        try (SnapshotWriter out = SnapshotWriter.open(getFilePath())) {
             for (Book b : cachedBooks) {
-                pw.println(b.getTitle() + ";" + b.getAuthor() + ";" + b.getIsbn() + ";" + b.isAvailable());
+                out.writeLine(b.getTitle() + ";" + b.getAuthor() + ";" + b.getIsbn() + ";" + b.isAvailable());
             }
-        } catch (Exception e) {
-            System.out.println("Error saving books file");
+            out.commit();
+        } catch (IOException e) {
+            System.out.println("Error saving books file: " + e.getMessage());
+            return false;
         }
+        for (Book b : cachedBooks) writtenAvailability.put(b, b.isAvailable());
+        return true;
     }
 
-    /** Reloads books from file into cache. */
+    /** Reloads books from file into cache, or re-indexes the file if it changed in index mode. */
     public void reloadBooks() {
+        if (indexed != null) {
+            try {
+                indexed.refresh();
+            } catch (IOException e) {
+                System.out.println("Error loading books file: " + e.getMessage());
+            }
+            return;
+        }
         loadBooksFromFile();
     }
 
     /**
-     * Finds a book by ISBN.
+     * Finds a book by ISBN, ignoring case and surrounding whitespace.
      *
      * @param isbn the ISBN to search for
      * @return the book if found, otherwise null
      */
+    @Override
     public Book findByIsbn(String isbn) {
-        return findAllBooks().stream()
-                .filter(book -> book.getIsbn().equalsIgnoreCase(isbn.trim()))
-                .findFirst()
-                .orElse(null);
+        if (indexed != null) {
+            try {
+                return indexed.find(isbn);
+            } catch (IOException e) {
+                System.out.println("Error reading books file: " + e.getMessage());
+                return null;
+            }
+        }
+        return isbnIndex.get(isbn);
     }
 
     /**
      * Updates the availability status of a book based on available copies.
+     * The file is only rewritten when the stored availability changes, and
+     * inside a {@link LibraryTransaction} the rewrite is staged. In index
+     * mode only the availability field of the book is overwritten.
      *
      * @param isbn the ISBN of the book
      */
@@ -155,15 +290,44 @@ public class FileBookRepository {
         Book book = findByIsbn(isbn);
         if (book != null) {
             int availableCopies = FileMediaCopyRepository.getInstance().getAvailableCopiesCount(isbn);
-            boolean wasAvailable = book.isAvailable();
+            boolean wasAvailable = storedAvailability(book);
             boolean nowAvailable = (availableCopies > 0);
 
+            boolean previous = book.isAvailable();
             book.setAvailable(nowAvailable);
-            saveAllBooksToFile();
+            LibraryTransaction.onRollback(() -> book.setAvailable(previous));
+            BooleanSupplier write = indexed != null
+                    ? () -> writeIndexedAvailability(isbn, nowAvailable)
+                    : this::saveAllBooksToFile;
+            if (wasAvailable != nowAvailable
+                    && !LibraryTransaction.stage(indexed != null ? null : this, write, "A;" + isbn)) {
+                write.getAsBoolean();
+            }
 
             if (!wasAvailable && nowAvailable) {
                 System.out.println("Book is now available - notifying waitlist...");
             }
         }
     }
+
+    private boolean storedAvailability(Book book) {
+        if (indexed != null) {
+            try {
+                Boolean stored = indexed.storedAvailability(book.getIsbn());
+                if (stored != null) return stored;
+            } catch (IOException e) {
+                System.out.println("Error reading books file: " + e.getMessage());
+            }
+        }
+        return writtenAvailability.getOrDefault(book, book.isAvailable());
+    }
+
+    private boolean writeIndexedAvailability(String isbn, boolean available) {
+        try {
+            return indexed.writeAvailability(isbn, available);
+        } catch (IOException e) {
+            System.out.println("Error saving books file: " + e.getMessage());
+            return false;
+        }
+    }
 }
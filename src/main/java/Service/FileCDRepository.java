@@ -4,24 +4,76 @@ import Domain.CD;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
 
 /**
  * Repository class for managing CDs stored in a file.
  * Provides methods to save, update, query, and manage availability of CDs.
+ *
+ * <p>By default every CD is cached in memory. In index mode the file is
+ * read through an {@link IndexedCatalog} instead, so only CDs that have
+ * been looked up are kept and {@link #findAllCDs()} reads the file.</p>
  */
-public class FileCDRepository {
+public class FileCDRepository implements CatalogRepository<CD> {
 
     private static final String FILE_PATH = "CD.txt";
     public static String repoPath = FILE_PATH;
     private static FileCDRepository instance;
+    private static boolean indexMode = false;
+    private final List<CD> cachedCDs = new ArrayList<>();
+    private final IsbnIndex<CD> isbnIndex = new IsbnIndex<>();
+    private final Map<CD, Boolean> writtenAvailability = new IdentityHashMap<>();
+    private final MediaItemRegistry registry = MediaItemRegistry.getInstance();
+    private IndexedCatalog<CD> indexed;
+
+    private FileCDRepository() {
+        if (indexMode) {
+            openIndexedCatalog();
+        } else {
+            loadCDsFromFile();
+        }
+    }
+
+    /**
+     * Keeps the CD file on disk behind an ISBN index instead of caching
+     * every CD. Listings then read the whole file, so this only pays off
+     * for catalogs too large to keep in memory. Off by default; changing it
+     * resets the instance.
+     *
+     * @param enabled true to use the index
+     */
+    public static void setIndexMode(boolean enabled) {
+        indexMode = enabled;
+        reset();
+    }
+
+    /**
+     * Returns whether the CD file is read through an ISBN index.
+     *
+     * @return true in index mode
+     */
+    public static boolean isIndexMode() {
+        return indexMode;
+    }
+
+    private void openIndexedCatalog() {
+        try {
+            indexed = new IndexedCatalog<>(getFilePath(), CD.class, CD::new);
+        } catch (IOException e) {
+            System.out.println("Error opening CD index: " + e.getMessage());
+            loadCDsFromFile();
+        }
+    }
 
     /**
      * Returns the singleton instance of FileCDRepository.
      *
      * @return the repository instance
      */
-    public static FileCDRepository getInstance() {
+    public static synchronized FileCDRepository getInstance() {
         if (instance == null) {
             instance = new FileCDRepository();
         }
@@ -31,8 +83,16 @@ public class FileCDRepository {
     /**
      * Resets the singleton instance.
      */
-    public static void reset() {
+    public static synchronized void reset() {
+        if (instance != null && instance.indexed != null) {
+            try {
+                instance.indexed.close();
+            } catch (IOException e) {
+                System.out.println("Error closing CD index: " + e.getMessage());
+            }
+        }
         instance = null;
+        MediaItemRegistry.getInstance().clear(CD.class);
     }
 
     /**
@@ -44,6 +104,80 @@ public class FileCDRepository {
         return (repoPath != null && !repoPath.isEmpty()) ? repoPath : FILE_PATH;
     }
 
+    /**
+     * Re-reads the CD file into the cache, discarding any in-memory state.
+     * CDs already known to the {@link MediaItemRegistry} are updated in place.
+     * In index mode the file is re-indexed if it changed.
+     */
+    public synchronized void reload() {
+        if (indexed != null) {
+            try {
+                indexed.refresh();
+            } catch (IOException e) {
+                System.out.println("Error reading CDs: " + e.getMessage());
+            }
+            return;
+        }
+        loadCDsFromFile();
+    }
+
+    private void loadCDsFromFile() {
+        cachedCDs.clear();
+        isbnIndex.clear();
+        writtenAvailability.clear();
+        File file = new File(getFilePath());
+        if (file.exists()) {
+            try {
+                RecordScanner.scan(file.getPath(), r -> {
+                    if (r.isBlank()) return;
+                    if (r.fieldCount() >= 4) {
+                        CD cd = new CD(r.field(0), r.field(1), r.field(2));
+                        cd.setAvailable(r.booleanField(3));
+                        addStoredCD(cd, cd.isAvailable());
+                    }
+                });
+            } catch (IOException e) {
+                System.out.println("Error reading CDs: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds a CD that is stored in the file to the cache. The first CD with
+     * an ISBN is interned; later duplicates are kept as they are.
+     *
+     * @param cd      the CD read, appended or replaced
+     * @param written the availability stored in the file
+     * @return the cached CD
+     */
+    private CD addStoredCD(CD cd, boolean written) {
+        if (isbnIndex.get(cd.getIsbn()) == null) {
+            cd = registry.intern(cd);
+            isbnIndex.putIfAbsent(cd);
+        }
+        cachedCDs.add(cd);
+        writtenAvailability.put(cd, written);
+        return cd;
+    }
+
+    private boolean saveAllCDsToFile() {
+        try (SnapshotWriter out = SnapshotWriter.open(getFilePath())) {
+            for (CD cd : cachedCDs) {
+                out.writeLine(cd.getTitle() + ";" + cd.getAuthor() + ";" + cd.getIsbn() + ";" + cd.isAvailable());
+            }
+            out.commit();
+        } catch (IOException e) {
+            System.out.println("Error updating CD file: " + e.getMessage());
+            return false;
+        }
+        for (CD cd : cachedCDs) writtenAvailability.put(cd, cd.isAvailable());
+        return true;
+    }
+
+    private synchronized boolean saveStagedCDs() {
+        return saveAllCDsToFile();
+    }
+
     /**
      * Saves a CD to the file and adds its copies to the media copy repository.
      *
@@ -52,10 +186,19 @@ public class FileCDRepository {
      */
     public static void saveCD(CD cd, int numberOfCopies) {
         FileCDRepository repo = getInstance();
-        try (PrintWriter pw = new PrintWriter(new FileWriter(repo.getFilePath(), true))) {
-            pw.println(cd.getTitle() + ";" + cd.getAuthor() + ";" + cd.getIsbn() + ";" + true);
-        } catch (Exception e) {
-            System.out.println("Error writing to CDs file: " + e.getMessage());
+        synchronized (repo) {
+            try {
+                if (repo.indexed != null) {
+                    repo.indexed.append(cd, true);
+                } else {
+                    try (PrintWriter pw = new PrintWriter(new FileWriter(repo.getFilePath(), true))) {
+                        pw.println(cd.getTitle() + ";" + cd.getAuthor() + ";" + cd.getIsbn() + ";" + true);
+                    }
+                    repo.addStoredCD(cd, true);
+                }
+            } catch (Exception e) {
+                System.out.println("Error writing to CDs file: " + e.getMessage());
+            }
         }
 
         FileMediaCopyRepository.getInstance().addCopiesByBookIsbn(cd.getIsbn(), numberOfCopies, true);
@@ -66,100 +209,152 @@ public class FileCDRepository {
      *
      * @return list of CDs
      */
-    public List<CD> findAllCDs() {
-        List<CD> cds = new ArrayList<>();
-        File file = new File(getFilePath());
-        if (!file.exists()) return cds;
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                String[] parts = line.split(";");
-                if (parts.length >= 4) {
-                    CD cd = new CD(parts[0], parts[1], parts[2]);
-                    cd.setAvailable(Boolean.parseBoolean(parts[3]));
-                    cds.add(cd);
-                }
+    public synchronized List<CD> findAllCDs() {
+        if (indexed != null) {
+            try {
+                return indexed.findAll();
+            } catch (IOException e) {
+                System.out.println("Error reading CDs: " + e.getMessage());
+                return new ArrayList<>();
             }
-        } catch (IOException e) {
-            System.out.println("Error reading CDs: " + e.getMessage());
         }
-        return cds;
+        return new ArrayList<>(cachedCDs);
+    }
+
+    @Override
+    public List<CD> findAll() {
+        return findAllCDs();
+    }
+
+    @Override
+    public void add(CD cd, int numberOfCopies) {
+        saveCD(cd, numberOfCopies);
+    }
+
+    @Override
+    public void updateAvailability(String isbn) {
+        updateCDAvailability(isbn);
     }
 
     /**
-     * Updates all CDs in the repository by overwriting the file.
+     * Replaces all CDs in the repository, overwriting the file
+     * and re-indexing them.
      *
      * @param cds the list of CDs to write
      */
-    public void updateAll(List<CD> cds) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(getFilePath()))) {
-            for (CD cd : cds) {
-                writer.write(cd.getTitle() + ";" + cd.getAuthor() + ";" + cd.getIsbn() + ";" + cd.isAvailable());
-                writer.newLine();
+    public synchronized void updateAll(List<CD> cds) {
+        if (indexed != null) {
+            try {
+                indexed.replaceAll(new ArrayList<>(cds));
+            } catch (IOException e) {
+                System.out.println("Error updating CD file: " + e.getMessage());
             }
-        } catch (IOException e) {
-            System.out.println("Error updating CD file");
+            return;
+        }
+        List<CD> replacement = new ArrayList<>(cds);
+        cachedCDs.clear();
+        isbnIndex.clear();
+        writtenAvailability.clear();
+        for (CD cd : replacement) {
+            addStoredCD(cd, cd.isAvailable());
         }
+        saveAllCDsToFile();
     }
 
     /**
-     * Finds a CD by its ISBN.
+     * Finds a CD by its ISBN, ignoring case and surrounding whitespace.
      *
      * @param isbn the ISBN to search for
      * @return the CD if found, otherwise null
      */
-    public CD findByIsbn(String isbn) {
-        return findAllCDs().stream()
-                .filter(cd -> cd.getIsbn().equalsIgnoreCase(isbn))
-                .findFirst()
-                .orElse(null);
+    @Override
+    public synchronized CD findByIsbn(String isbn) {
+        if (indexed != null) {
+            try {
+                return indexed.find(isbn);
+            } catch (IOException e) {
+                System.out.println("Error reading CDs: " + e.getMessage());
+                return null;
+            }
+        }
+        return isbnIndex.get(isbn);
     }
 
     /**
      * Updates the availability status of a CD based on available copies.
+     * The file is only rewritten when the stored availability changes, and
+     * inside a {@link LibraryTransaction} the rewrite is staged. In index
+     * mode only the availability field of the CD is overwritten.
      *
      * @param isbn the ISBN of the CD
      */
     public void updateCDAvailability(String isbn) {
-        CD cd = findByIsbn(isbn);
-        if (cd != null) {
-            int availableCopies = FileMediaCopyRepository.getInstance().getAvailableCopiesCount(isbn);
-            boolean nowAvailable = (availableCopies > 0);
-            cd.setAvailable(nowAvailable);
-
-            List<CD> cds = findAllCDs();
-            for (int i = 0; i < cds.size(); i++) {
-                if (cds.get(i).getIsbn().equalsIgnoreCase(isbn)) {
-                    cds.set(i, cd);
-                    break;
+        int availableCopies = FileMediaCopyRepository.getInstance().getAvailableCopiesCount(isbn);
+        synchronized (this) {
+            CD cd = findByIsbn(isbn);
+            if (cd != null) {
+                boolean wasAvailable = storedAvailability(cd);
+                boolean nowAvailable = availableCopies > 0;
+                boolean previous = cd.isAvailable();
+                cd.setAvailable(nowAvailable);
+                LibraryTransaction.onRollback(() -> cd.setAvailable(previous));
+                BooleanSupplier write = indexed != null
+                        ? () -> writeIndexedAvailability(isbn, nowAvailable)
+                        : this::saveStagedCDs;
+                if (wasAvailable != nowAvailable
+                        && !LibraryTransaction.stage(indexed != null ? null : this, write, "A;" + isbn)) {
+                    write.getAsBoolean();
                 }
             }
-
-            updateAll(cds);
         }
     }
 
     /**
-     * Updates or adds a CD in the repository.
+     * Updates or adds a CD in the repository. An existing CD with the same
+     * ISBN is updated in place, so references to it stay current.
      *
      * @param cd the CD to update or add
      */
-    public void updateCD(CD cd) {
+    public synchronized void updateCD(CD cd) {
         if (cd == null) return;
-        List<CD> cds = findAllCDs();
-        boolean replaced = false;
-        for (int i = 0; i < cds.size(); i++) {
-            if (cds.get(i).getIsbn() != null && cds.get(i).getIsbn().equalsIgnoreCase(cd.getIsbn())) {
-                cds.set(i, cd);
-                replaced = true;
-                break;
+        CD existing = findByIsbn(cd.getIsbn());
+        if (existing != null) {
+            existing.setTitle(cd.getTitle());
+            existing.setAuthor(cd.getAuthor());
+            existing.setAvailable(cd.isAvailable());
+        }
+        if (indexed != null) {
+            try {
+                indexed.replace(existing != null ? existing : cd);
+            } catch (IOException e) {
+                System.out.println("Error updating CD file: " + e.getMessage());
             }
+            return;
         }
-        if (!replaced) {
-            cds.add(cd);
+        if (existing == null) {
+            addStoredCD(cd, cd.isAvailable());
+        }
+        saveAllCDsToFile();
+    }
+
+    private boolean storedAvailability(CD cd) {
+        if (indexed != null) {
+            try {
+                Boolean stored = indexed.storedAvailability(cd.getIsbn());
+                if (stored != null) return stored;
+            } catch (IOException e) {
+                System.out.println("Error reading CDs: " + e.getMessage());
+            }
+        }
+        return writtenAvailability.getOrDefault(cd, cd.isAvailable());
+    }
+
+    private synchronized boolean writeIndexedAvailability(String isbn, boolean available) {
+        try {
+            return indexed.writeAvailability(isbn, available);
+        } catch (IOException e) {
+            System.out.println("Error updating CD file: " + e.getMessage());
+            return false;
         }
-        updateAll(cds);
     }
 }
@@ -4,19 +4,71 @@ import Domain.*;
 
 import java.io.*;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
 
 /**
  * Repository class for managing loans stored in a file.
  * Provides methods to borrow, return, and query loans.
+ *
+ * <p>By default every mutation rewrites the loans file. In journal mode
+ * (see {@link #setJournalMode(boolean)}) a borrow or return appends one
+ * record to a {@link LoanJournal} instead, and a background task folds the
+ * journal into a new snapshot once it grows past
+ * {@link #COMPACTION_THRESHOLD} records.</p>
+ *
+ * <p>Loans are held in a {@link CompactLoanStore} of primitive arrays and
+ * indexed by loan ID. Each user's active loans are linked together, so
+ * lookups for one loan or one user do not scan the whole loan history.
+ * Active loans are also ordered by due date, so overdue and due-soon
+ * queries only visit the loans they return. {@link Loan} objects are
+ * built only for the loans a caller asks for.</p>
+ *
+ * <p>Inside a {@link LibraryTransaction} the write of a borrow or return
+ * is staged and performed when the transaction commits.</p>
+ *
+ * <p>In archive mode (see {@link #setArchiveMode(boolean)}) returned loans
+ * leave memory and the loans file. They are moved into monthly
+ * {@link LoanArchive} partitions when the next snapshot is written, and
+ * are read back only on request through {@link #getArchivedLoans(YearMonth)}.
+ * They are also indexed by loan ID in a {@link LoanLedger}, so
+ * {@link #findLoanById(String)} still finds them. The repository then
+ * holds active loans only.</p>
  */
-public class FileLoanRepository {
+public class FileLoanRepository implements LoanRepository {
     static FileLoanRepository instance;
     public static String FILE_PATH = "loans.txt";
     public static String repoPath = FILE_PATH;
-    private final List<Loan> loans = new ArrayList<>();
+    private static boolean journalMode = false;
+    private static boolean archiveMode = false;
+    private static LoanIdGenerator idGenerator = new TimeOrderedLoanIdGenerator();
+
+    /** Number of journal records that triggers a background compaction. */
+    static final int COMPACTION_THRESHOLD = 1000;
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "loan-journal-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final CompactLoanStore store = new CompactLoanStore();
     private final FileBookRepository bookRepository; // Reuse cached books
     private final FileCDRepository cdRepository;
+    private final LoanJournal journal;
+    private final LoanArchive archive;
+    private final LoanLedger ledger;
+    private final List<Loan> pendingArchive = new ArrayList<>();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+    private final Object snapshotLock = new Object();
+    private long snapshotSeq;
+    private long writtenSeq;
+    private LoadReport lastLoad;
 
     /**
      * Returns the file path for the repository.
@@ -37,6 +89,67 @@ public class FileLoanRepository {
         instance = null;
     }
 
+    /**
+     * Enables or disables journal mode and resets the repository instance.
+     *
+     * @param enabled true to append mutations to the journal instead of
+     *                rewriting the loans file
+     */
+    public static void setJournalMode(boolean enabled) {
+        journalMode = enabled;
+        instance = null;
+    }
+
+    /**
+     * Checks whether journal mode is enabled.
+     *
+     * @return true if mutations are journaled
+     */
+    public static boolean isJournalMode() {
+        return journalMode;
+    }
+
+    /**
+     * Enables or disables archive mode and resets the repository instance.
+     *
+     * @param enabled true to move returned loans into monthly archive
+     *                partitions instead of keeping them with active loans
+     */
+    public static void setArchiveMode(boolean enabled) {
+        archiveMode = enabled;
+        instance = null;
+    }
+
+    /**
+     * Checks whether archive mode is enabled.
+     *
+     * @return true if returned loans are archived
+     */
+    public static boolean isArchiveMode() {
+        return archiveMode;
+    }
+
+    /**
+     * Replaces the generator that mints the IDs of new loans. Takes effect
+     * for the next borrow; loans already stored keep their IDs.
+     *
+     * @param generator the ID generator
+     * @throws IllegalArgumentException if generator is null
+     */
+    public static void setIdGenerator(LoanIdGenerator generator) {
+        if (generator == null) throw new IllegalArgumentException("generator is null");
+        idGenerator = generator;
+    }
+
+    /**
+     * Returns the generator that mints the IDs of new loans.
+     *
+     * @return the ID generator
+     */
+    public static LoanIdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+
     /**
      * Returns the singleton instance of FileLoanRepository.
      *
@@ -62,6 +175,9 @@ public class FileLoanRepository {
     public FileLoanRepository() {
         this.bookRepository = FileBookRepository.getInstance();
         this.cdRepository = FileCDRepository.getInstance();
+        this.journal = new LoanJournal(getFilePath());
+        this.archive = new LoanArchive(getFilePath());
+        this.ledger = new LoanLedger(getFilePath());
         loadLoans();
     }
 
@@ -74,14 +190,35 @@ public class FileLoanRepository {
      * @throws IllegalArgumentException if user or item is null
      * @throws IllegalStateException if item is not available
      */
-    public synchronized Loan borrowItem(User user, MediaItem item) {
+    @Override
+    public Loan borrowItem(User user, MediaItem item) {
+        return borrowItem(user, item, null);
+    }
+
+    /**
+     * Borrows a specific copy of a media item for a user and creates a new loan
+     * that records the copy, so the return can release exactly that copy.
+     * The loan refers to the catalog's instance of the item.
+     *
+     * @param user the user borrowing the item
+     * @param item the media item to borrow
+     * @param copyId the ID of the borrowed copy, or null if not tracked
+     * @return the created Loan
+     * @throws IllegalArgumentException if user or item is null
+     * @throws IllegalStateException if item is not available
+     */
+    @Override
+    public synchronized Loan borrowItem(User user, MediaItem item, String copyId) {
         if (user == null) throw new IllegalArgumentException("user is null");
         if (item == null) throw new IllegalArgumentException("item is null");
+        item = MediaItemRegistry.getInstance().canonical(item);
         if (!item.isAvailable()) throw new IllegalStateException("Item is not available");
 
-        Loan loan = new Loan(UUID.randomUUID().toString(), user, item, LocalDate.now());
-        this.loans.add(loan);
-        saveToFile();
+        Loan loan = new Loan(idGenerator.nextId(), user, item, LocalDate.now());
+        loan.setCopyId(copyId);
+        addLoan(loan);
+        LibraryTransaction.onRollback(() -> discardLoan(loan));
+        persist(LoanJournal.borrowRecord(loan));
         return loan;
     }
 
@@ -92,26 +229,104 @@ public class FileLoanRepository {
      * @param returnDate the return date (null = today)
      * @return true if return successful, false otherwise
      */
+    @Override
     public synchronized boolean returnItem(String loanId, LocalDate returnDate) {
-        Loan loan = findLoanById(loanId);
-        if (loan == null || loan.getReturnDate() != null) return false;
+        int slot = slotOf(loanId);
+        if (slot < 0 || !store.isActive(slot)) return false;
 
+        Loan loan = store.view(slot);
+        boolean itemAvailable = loan.getMediaItem().isAvailable();
         loan.returnItem(returnDate != null ? returnDate : LocalDate.now());
-        saveToFile();
+        store.markReturned(slot, loan.getReturnDate());
+        if (archiveMode) retire(slot, loan);
+        LibraryTransaction.onRollback(() -> reopenLoan(loan, itemAvailable));
+        persist(LoanJournal.returnRecord(loan.getLoanId(), loan.getReturnDate()));
         return true;
     }
 
+    /** Forgets a loan whose borrow was rolled back. */
+    private synchronized void discardLoan(Loan loan) {
+        int slot = slotOf(loan.getLoanId());
+        if (slot >= 0) store.remove(slot);
+    }
+
+    /** Makes a loan whose return was rolled back active again. */
+    private synchronized void reopenLoan(Loan loan, boolean itemAvailable) {
+        if (!pendingArchive.remove(loan)) discardLoan(loan);
+        loan.returnItem(null); // clears the return date
+        loan.getMediaItem().setAvailable(itemAvailable);
+        addLoan(loan);
+    }
+
+    /**
+     * Persists one borrow or return: appended to the journal in journal
+     * mode, otherwise by rewriting the loans file. Inside a transaction the
+     * write is staged, with the record as its redo record.
+     *
+     * @param record the journal record of the change
+     */
+    private void persist(String record) {
+        BooleanSupplier write = journalMode ? () -> appendToJournal(record) : this::saveSnapshot;
+        if (!LibraryTransaction.stage(journalMode ? null : this, write, record)) {
+            write.getAsBoolean();
+        }
+    }
+
+    private synchronized boolean appendToJournal(String record) {
+        try {
+            journal.append(record);
+            compactIfNeeded();
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error journaling loan: " + e.getMessage());
+            return saveToFile();
+        }
+    }
+
+    private synchronized boolean saveSnapshot() {
+        return saveToFile();
+    }
+
+    /**
+     * Applies a borrow or return record of a committed transaction that may
+     * not have reached the loans file. Records already applied are ignored.
+     *
+     * @param fields the fields of the record
+     */
+    synchronized void redo(String[] fields) {
+        LoanJournal.dispatch(fields, new LoanJournal.Listener() {
+            @Override
+            public void onBorrow(String loanId, String username, String itemId, LocalDate borrowDate, String copyId) {
+                if (slotOf(loanId) >= 0) return;
+                MediaItem item = findMediaItemById(itemId);
+                if (item == null) {
+                    System.out.println("Skipping loan of unknown item: " + itemId);
+                    return;
+                }
+                Loan loan = new Loan(loanId, findUserByUsername(username), item, borrowDate, null);
+                loan.setCopyId(copyId);
+                item.setAvailable(false);
+                idGenerator.observe(loanId);
+                addLoan(loan);
+                persist(LoanJournal.borrowRecord(loan));
+            }
+
+            @Override
+            public void onReturn(String loanId, LocalDate returnDate) {
+                returnItem(loanId, returnDate);
+            }
+        });
+    }
+
     /**
      * Returns all active loans for a specific user.
      *
      * @param username the user's username
      * @return list of active loans
      */
-    public List<Loan> getActiveLoansForUser(String username) {
-        return loans.stream()
-                .filter(loan -> loan.getUser().getUsername().equals(username))
-                .filter(loan -> loan.getReturnDate() == null)
-                .toList();
+    @Override
+    public synchronized List<Loan> getActiveLoansForUser(String username) {
+        return Collections.unmodifiableList(store.activeFor(username));
     }
 
     /**
@@ -119,10 +334,19 @@ public class FileLoanRepository {
      *
      * @return list of active loans
      */
-    public List<Loan> getAllActiveLoans() {
-        return loans.stream()
-                .filter(loan -> loan.getReturnDate() == null)
-                .toList();
+    @Override
+    public synchronized List<Loan> getAllActiveLoans() {
+        return Collections.unmodifiableList(store.active());
+    }
+
+    /**
+     * Returns every loan held in memory, active or returned but not yet
+     * archived.
+     *
+     * @return the loans, in file order
+     */
+    synchronized List<Loan> getAllLoans() {
+        return Collections.unmodifiableList(store.all());
     }
 
     /**
@@ -131,78 +355,405 @@ public class FileLoanRepository {
      * @param currentDate the date to check overdue
      * @return list of overdue loans
      */
-    public List<Loan> getOverdueLoans(LocalDate currentDate) {
-        return loans.stream()
-                .filter(loan -> loan.getReturnDate() == null)
-                .filter(loan -> loan.isOverdue(currentDate))
-                .toList();
+    @Override
+    public synchronized List<Loan> getOverdueLoans(LocalDate currentDate) {
+        return store.activeDueBetween(Long.MIN_VALUE, currentDate.toEpochDay() - 1);
+    }
+
+    /**
+     * Returns the active loans that fall due within the given number of days,
+     * from the specified date up to and including the last day, ordered by
+     * due date. Loans that are already overdue are not included.
+     *
+     * @param currentDate the first day of the period
+     * @param days        the number of days after currentDate to include
+     * @return list of loans due in the period
+     */
+    @Override
+    public synchronized List<Loan> getLoansDueWithin(LocalDate currentDate, int days) {
+        long from = currentDate.toEpochDay();
+        return store.activeDueBetween(from, from + Math.max(days, 0));
     }
 
     /**
-     * Finds a loan by its ID.
+     * Finds a loan by its ID. Time-ordered IDs are also found as typed by
+     * a user, ignoring case, hyphens and look-alike characters.
      *
      * @param loanId the loan ID
      * @return the Loan if found, null otherwise
      */
-    public Loan findLoanById(String loanId) {
-        return loans.stream()
-                .filter(l -> l.getLoanId().equals(loanId))
-                .findFirst()
-                .orElse(null);
+    @Override
+    public synchronized Loan findLoanById(String loanId) {
+        int slot = slotOf(loanId);
+        if (slot >= 0) return store.view(slot);
+        return archiveMode ? findReturnedLoan(loanId) : null;
+    }
+
+    /**
+     * Finds a loan that was returned and left memory in archive mode, first
+     * among the loans waiting to be archived and then in the ledger.
+     */
+    private Loan findReturnedLoan(String loanId) {
+        if (loanId == null) return null;
+        String typed = TimeOrderedLoanIdGenerator.normalize(loanId);
+        for (int i = pendingArchive.size() - 1; i >= 0; i--) {
+            String id = pendingArchive.get(i).getLoanId();
+            if (id.equals(loanId) || id.equals(typed)) return pendingArchive.get(i);
+        }
+        try {
+            String record = ledger.get(loanId);
+            if (record == null && typed != null && !typed.equals(loanId)) record = ledger.get(typed);
+            return record == null ? null : parseRecord(record);
+        } catch (IOException e) {
+            System.out.println("Error reading loan ledger: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Builds a loan from a record in the loans file format.
+     *
+     * @return the loan, or null if the record is malformed or its item is
+     *         no longer in the catalog
+     */
+    private Loan parseRecord(String record) {
+        String[] fields = record.split(";", -1);
+        if (fields.length != 5 && fields.length != 6) return null;
+        MediaItem item = findMediaItemById(fields[2]);
+        if (item == null) return null;
+        try {
+            Loan loan = new Loan(fields[0], findUserByUsername(fields[1]), item, LocalDate.parse(fields[3]),
+                    fields[4].equals("NULL") ? null : LocalDate.parse(fields[4]));
+            loan.setCopyId(fields.length == 6 ? fields[5] : null);
+            return loan;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private int slotOf(String loanId) {
+        int slot = store.find(loanId);
+        if (slot >= 0) return slot;
+        String typed = TimeOrderedLoanIdGenerator.normalize(loanId);
+        return typed == null || typed.equals(loanId) ? -1 : store.find(typed);
+    }
+
+    /**
+     * Adds a loan to the store, keeping the given object as its view. If a
+     * loan with the same ID is already known, the ID keeps referring to the
+     * first one.
+     */
+    private void addLoan(Loan loan) {
+        int slot = store.add(loan.getLoanId(), loan.getUser(), loan.getMediaItem(),
+                loan.getBorrowDate(), loan.getReturnDate(), loan.getCopyId());
+        store.attachView(slot, loan);
+    }
+
+    /**
+     * Moves a returned loan out of the in-memory loans, to be archived with
+     * the next snapshot.
+     */
+    private void retire(int slot, Loan loan) {
+        store.remove(slot);
+        pendingArchive.add(loan);
+    }
+
+    /**
+     * Appends returned loans to the archive and the ledger and takes them
+     * off the queue.
+     * Every snapshot archives the whole queue captured with it first, so a
+     * snapshot that drops a returned loan is never written before the loan
+     * is in the archive. A loan can end up archived twice by overlapping
+     * snapshots, which readers of the archive tolerate.
+     *
+     * @param batch the queued loans captured with the snapshot
+     * @return true if the loans are archived and the snapshot may be written
+     */
+    private boolean archiveReturned(List<Loan> batch) {
+        if (batch.isEmpty()) return true;
+        try {
+            archive.append(batch);
+            List<String> records = new ArrayList<>(batch.size());
+            for (Loan loan : batch) records.add(toRecord(loan));
+            ledger.putAll(records);
+        } catch (IOException e) {
+            System.out.println("Error archiving loans: " + e.getMessage());
+            return false;
+        }
+        Set<Loan> archived = Collections.newSetFromMap(new IdentityHashMap<>());
+        archived.addAll(batch);
+        synchronized (this) {
+            pendingArchive.removeIf(archived::contains);
+        }
+        return true;
+    }
+
+    /**
+     * Folds the journal into a new snapshot of the loans file.
+     * The journal is rotated first, so borrows and returns can keep
+     * appending while the snapshot is written.
+     */
+    public void compactJournal() {
+        CompactLoanStore snapshot;
+        List<Loan> batch;
+        long seq;
+        synchronized (this) {
+            journal.rotate();
+            snapshot = store.copy();
+            batch = new ArrayList<>(pendingArchive);
+            seq = ++snapshotSeq;
+        }
+        if (archiveReturned(batch) && writeSnapshot(snapshot, seq)) {
+            journal.discardRotated();
+        }
     }
 
     /**
-     * Saves all loans to the file.
+     * Schedules a background compaction once the journal is large enough.
      */
-    private void saveToFile() {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(getFilePath()))) {
-            for (Loan loan : loans) {
-                String returnDateStr = loan.getReturnDate() == null ? "NULL" : loan.getReturnDate().toString();
-                pw.println(String.format("%s;%s;%s;%s;%s",
-                        loan.getLoanId(),
-                        loan.getUser().getUsername(),
-                        loan.getMediaItem().getIsbnOrId(),
-                        loan.getBorrowDate(),
-                        returnDateStr));
+    private void compactIfNeeded() {
+        if (journal.getRecordCount() < COMPACTION_THRESHOLD) return;
+        if (!compactionScheduled.compareAndSet(false, true)) return;
+
+        COMPACTOR.execute(() -> {
+            try {
+                compactJournal();
+            } finally {
+                compactionScheduled.set(false);
             }
+        });
+    }
+
+    /**
+     * Saves all loans to the file and drops any journal it supersedes.
+     *
+     * @return true if the file was written
+     */
+    private boolean saveToFile() {
+        if (!archiveReturned(new ArrayList<>(pendingArchive))) return false;
+        if (writeSnapshot(store, ++snapshotSeq)) {
+            journal.clear();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Writes the given loans to the snapshot file. A snapshot captured before
+     * one that has already been written is skipped, so a slow background
+     * compaction never overwrites newer state.
+     *
+     * @param snapshot the loans to write
+     * @param seq      the capture sequence number of the snapshot
+     * @return true if the file holds this snapshot or a newer one
+     */
+    private boolean writeSnapshot(CompactLoanStore snapshot, long seq) {
+        synchronized (snapshotLock) {
+            if (seq < writtenSeq) return true;
+            if (writeLoans(snapshot)) {
+                writtenSeq = seq;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private boolean writeLoans(CompactLoanStore snapshot) {
+        try (SnapshotWriter out = SnapshotWriter.open(getFilePath())) {
+            snapshot.writeRecords(out);
+            out.commit();
+            return true;
         } catch (IOException e) {
             System.out.println("Error saving loans: " + e.getMessage());
+            return false;
         }
     }
 
     /**
-     * Loads all loans from the file into memory.
+     * Formats a loan as a line of the loans file, in the same form as
+     * {@link CompactLoanStore#writeRecords(Appendable)}.
+     *
+     * @param loan the loan
+     * @return the record, without a line separator
+     */
+    static String toRecord(Loan loan) {
+        String returnDateStr = loan.getReturnDate() == null ? "NULL" : loan.getReturnDate().toString();
+        String line = String.format("%s;%s;%s;%s;%s",
+                loan.getLoanId(),
+                loan.getUser().getUsername(),
+                loan.getMediaItem().getIsbnOrId(),
+                loan.getBorrowDate(),
+                returnDateStr);
+        return loan.getCopyId() == null ? line : line + ";" + loan.getCopyId();
+    }
+
+    /**
+     * Loads all loans from the snapshot file into memory, then replays
+     * the journal on top of it. Items are resolved through a map built once
+     * per load, records go straight into the store without building
+     * {@link Loan} objects, and the counts and time taken are kept in a
+     * {@link LoadReport}.
      */
     private void loadLoans() {
-        loans.clear();
+        long start = System.nanoTime();
+        store.clear();
+        pendingArchive.clear();
+        LoadContext context = new LoadContext(buildItemIndex());
+        LoanSink loader = this::addLoadedLoan;
         File file = new File(getFilePath());
-        if (!file.exists()) return;
+        int lines = 0;
+
+        if (file.exists()) {
+            try {
+                lines = RecordScanner.scan(file.getPath(), r -> readRecord(r, context, loader));
+            } catch (Exception e) {
+                System.out.println("Error loading loans: " + e.getMessage());
+            }
+        }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] p = line.split(";");
-                if (p.length != 5) continue;
+        int journalRecords = journal.replay(new LoanJournal.Listener() {
+            @Override
+            public void onBorrow(String loanId, String username, String itemId, LocalDate borrowDate, String copyId) {
+                if (store.find(loanId) < 0) {
+                    resolveLoan(context, loanId, username, itemId, borrowDate, null, copyId, loader);
+                }
+            }
 
-                String loanId = p[0];
-                String username = p[1];
-                String itemId = p[2];
-                LocalDate borrowDate = LocalDate.parse(p[3]);
-                LocalDate returnDate = p[4].equals("NULL") ? null : LocalDate.parse(p[4]);
+            @Override
+            public void onReturn(String loanId, LocalDate returnDate) {
+                int slot = store.find(loanId);
+                if (slot >= 0 && store.isActive(slot)) {
+                    store.view(slot).returnItem(returnDate);
+                    store.markReturned(slot, returnDate);
+                }
+            }
+        });
 
-                User user = findUserByUsername(username);
-                MediaItem item = findMediaItemById(itemId);
+        if (archiveMode) {
+            for (int slot : store.returnedSlots()) retire(slot, store.view(slot));
+        }
+
+        lastLoad = new LoadReport(lines, journalRecords, journal.getLastRecovery(), store.size(),
+                context.skipped, context.items.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Builds the item lookup for one load from both catalogs, keyed by
+     * normalized ISBN. Books win over CDs with the same ISBN, as in
+     * {@link #findMediaItemById(String)}. Returns null when a catalog is in
+     * index mode, so items are looked up as loans refer to them instead of
+     * reading the whole catalog.
+     */
+    private Map<String, MediaItem> buildItemIndex() {
+        if (FileBookRepository.isIndexMode() || FileCDRepository.isIndexMode()) return null;
+        List<Book> books = bookRepository.findAllBooks();
+        List<CD> cds = cdRepository.findAllCDs();
+        Map<String, MediaItem> items = new HashMap<>((books.size() + cds.size()) * 4 / 3 + 1);
+        for (Book book : books) items.putIfAbsent(IsbnIndex.normalize(book.getIsbn()), book);
+        for (CD cd : cds) items.putIfAbsent(IsbnIndex.normalize(cd.getIsbn()), cd);
+        return items;
+    }
+
+    /**
+     * Parses a snapshot or archive line and passes the loan to the sink.
+     * Malformed lines are counted as skipped.
+     */
+    private void readRecord(RecordScanner.Record r, LoadContext context, LoanSink sink) {
+        int fields = r.fieldCount();
+        if (fields != 5 && fields != 6) {
+            if (!r.isBlank()) context.skipped++;
+            return;
+        }
+
+        LocalDate borrowDate = r.dateField(3);
+        LocalDate returnDate = r.fieldEquals(4, "NULL") ? null : r.dateField(4);
+        String copyId = fields == 6 ? r.field(5) : null;
+        resolveLoan(context, r.field(0), r.field(1), r.field(2), borrowDate, returnDate, copyId, sink);
+    }
+
+    /**
+     * Resolves the item of a stored loan and passes the loan to the sink.
+     * Loans whose media item no longer exists are skipped.
+     */
+    private void resolveLoan(LoadContext context, String loanId, String username, String itemId,
+                             LocalDate borrowDate, LocalDate returnDate, String copyId, LoanSink sink) {
+        String key = IsbnIndex.normalize(itemId);
+        MediaItem item = context.items.get(key);
+        if (item == null && context.lazy) {
+            item = findMediaItemById(itemId);
+            if (item != null) context.items.put(key, item);
+        }
+        if (item == null) {
+            context.skipped++;
+            return;
+        }
+        sink.accept(loanId, username, item, borrowDate, returnDate, copyId);
+    }
+
+    /**
+     * Adds a loan read from the snapshot or journal to the store and
+     * updates the availability of its item.
+     */
+    private void addLoadedLoan(String loanId, String username, MediaItem item,
+                               LocalDate borrowDate, LocalDate returnDate, String copyId) {
+        item.setAvailable(returnDate != null);
+        idGenerator.observe(loanId);
+        store.add(loanId, username, this::findUserByUsername, item, borrowDate, returnDate, copyId);
+    }
+
+    /**
+     * Returns the months that have archived loans.
+     *
+     * @return the archived periods, oldest first
+     */
+    @Override
+    public List<YearMonth> getArchivedPeriods() {
+        return archive.getPeriods();
+    }
 
-                if (item != null) {
-                    Loan loan = new Loan(loanId, user, item, borrowDate);
-                    if (returnDate != null) loan.returnItem(returnDate);
-                    else item.setAvailable(false);
-                    loans.add(loan);
+    /**
+     * Reads the loans returned in one month from the archive, including
+     * returned loans that are still waiting to be archived. The partition
+     * is read on every call and not kept in memory.
+     *
+     * @param period the month the loans were returned in
+     * @return the returned loans, in archive order
+     */
+    @Override
+    public List<Loan> getArchivedLoans(YearMonth period) {
+        LoadContext context = new LoadContext(buildItemIndex());
+        Map<String, User> users = new HashMap<>();
+        Map<String, Loan> byId = new LinkedHashMap<>();
+        try {
+            archive.scan(period, r -> readRecord(r, context, (loanId, username, item, borrowDate, returnDate, copyId) -> {
+                if (returnDate == null) return;
+                Loan loan = new Loan(loanId, users.computeIfAbsent(username, this::findUserByUsername),
+                        item, borrowDate, returnDate);
+                loan.setCopyId(copyId);
+                byId.remove(loanId);
+                byId.put(loanId, loan);
+            }));
+        } catch (IOException e) {
+            System.out.println("Error reading loan archive: " + e.getMessage());
+        }
+        synchronized (this) {
+            for (Loan loan : pendingArchive) {
+                if (YearMonth.from(loan.getReturnDate()).equals(period)) {
+                    byId.remove(loan.getLoanId());
+                    byId.put(loan.getLoanId(), loan);
                 }
             }
-        } catch (Exception e) {
-            System.out.println("Error loading loans: " + e.getMessage());
         }
+        return new ArrayList<>(byId.values());
+    }
+
+    /**
+     * Returns the counts and duration of the most recent load.
+     *
+     * @return the load report
+     */
+    public LoadReport getLoadReport() {
+        return lastLoad;
     }
 
     /**
@@ -213,16 +764,130 @@ public class FileLoanRepository {
     }
 
     /**
-     * Finds a MediaItem by its ID.
+     * Finds a MediaItem by its ID using the catalog ISBN indexes.
      */
     private MediaItem findMediaItemById(String id) {
-        MediaItem book = bookRepository.findAllBooks().stream()
-                .filter(b -> b.getIsbn().equals(id))
-                .findFirst().orElse(null);
+        MediaItem book = bookRepository.findByIsbn(id);
         if (book != null) return book;
 
-        return cdRepository.findAllCDs().stream()
-                .filter(cd -> cd.getIsbn().equals(id))
-                .findFirst().orElse(null);
+        return cdRepository.findByIsbn(id);
+    }
+
+    /** Receives the fields of a stored loan once its item is resolved. */
+    private interface LoanSink {
+        void accept(String loanId, String username, MediaItem item,
+                    LocalDate borrowDate, LocalDate returnDate, String copyId);
+    }
+
+    /**
+     * Item lookup and counters shared by the snapshot scan and journal replay
+     * of one load. Without a prebuilt lookup, items are looked up and
+     * remembered as they are first needed.
+     */
+    private static final class LoadContext {
+        final Map<String, MediaItem> items;
+        final boolean lazy;
+        int skipped;
+
+        LoadContext(Map<String, MediaItem> items) {
+            this.lazy = items == null;
+            this.items = lazy ? new HashMap<>() : items;
+        }
+    }
+
+    /**
+     * Summary of one load of the loans file and journal.
+     */
+    public static final class LoadReport {
+        private final int snapshotLines;
+        private final int journalRecords;
+        private final RecordLog.Recovery journalRecovery;
+        private final int loansLoaded;
+        private final int recordsSkipped;
+        private final int catalogItems;
+        private final long elapsedMillis;
+
+        LoadReport(int snapshotLines, int journalRecords, RecordLog.Recovery journalRecovery,
+                   int loansLoaded, int recordsSkipped, int catalogItems, long elapsedMillis) {
+            this.snapshotLines = snapshotLines;
+            this.journalRecords = journalRecords;
+            this.journalRecovery = journalRecovery;
+            this.loansLoaded = loansLoaded;
+            this.recordsSkipped = recordsSkipped;
+            this.catalogItems = catalogItems;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Returns the number of lines read from the loans file.
+         *
+         * @return the line count
+         */
+        public int getSnapshotLines() {
+            return snapshotLines;
+        }
+
+        /**
+         * Returns the number of journal records replayed.
+         *
+         * @return the journal record count
+         */
+        public int getJournalRecords() {
+            return journalRecords;
+        }
+
+        /**
+         * Returns the journal pass of the load, including the bytes of a
+         * torn tail that were cut off.
+         *
+         * @return the journal recovery report
+         */
+        public RecordLog.Recovery getJournalRecovery() {
+            return journalRecovery;
+        }
+
+        /**
+         * Returns the number of loans held in memory after the load.
+         *
+         * @return the loan count
+         */
+        public int getLoansLoaded() {
+            return loansLoaded;
+        }
+
+        /**
+         * Returns the number of malformed records or loans of unknown items skipped.
+         *
+         * @return the skipped record count
+         */
+        public int getRecordsSkipped() {
+            return recordsSkipped;
+        }
+
+        /**
+         * Returns the number of catalog items available for resolving loans.
+         *
+         * @return the catalog item count
+         */
+        public int getCatalogItems() {
+            return catalogItems;
+        }
+
+        /**
+         * Returns the load time in milliseconds.
+         *
+         * @return the elapsed time
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Loaded " + loansLoaded + " loans (" + snapshotLines + " lines, "
+                    + journalRecords + " journal records, " + journalRecovery.getBytesDiscarded()
+                    + " journal bytes discarded, " + recordsSkipped + " skipped) against "
+                    + catalogItems + " catalog items in " + elapsedMillis + " ms";
+        }
     }
 }
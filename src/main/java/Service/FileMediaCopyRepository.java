@@ -4,17 +4,62 @@ import Domain.MediaCopy;
 import Domain.MediaItem;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Repository class for managing media copies (books, CDs) stored in a file.
  * Provides methods to add copies, query availability, and persist changes.
+ * Copies are grouped by ISBN, so availability counts and copy ID
+ * generation do not scan the whole inventory.
+ *
+ * <p>By default every change rewrites the copies file. In write-behind mode
+ * (see {@link #setWriteBehindMillis(long)}) changed copies are only marked
+ * dirty, and all changes made within the write-behind window are written
+ * together by a background thread. {@link #flush()} and a shutdown hook
+ * write out anything still pending.</p>
+ *
+ * <p>In binary mode (see {@link #setBinaryFormat(boolean)}) copies are kept
+ * in a {@link BinaryCopyFile} next to the text file instead, and a changed
+ * copy is written to its own slot rather than rewriting the inventory. The
+ * binary file is created from the text file the first time it is needed.</p>
  */
-public class FileMediaCopyRepository {
+public class FileMediaCopyRepository implements CopyRepository {
 
     private static FileMediaCopyRepository instance;
     private static final String FILE_PATH = "media_copies.txt";
     public static String repoPath = FILE_PATH;
+    private static long writeBehindMillis = 0;
+    private static boolean binaryFormat = false;
+
+    /** Suffix appended to the repository path to name the binary copy file. */
+    public static final String BINARY_SUFFIX = ".bin";
+
+    /** Write-behind window used by the application. */
+    public static final long DEFAULT_WRITE_BEHIND_MILLIS = 200;
+
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "media-copy-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final AtomicBoolean shutdownHookInstalled = new AtomicBoolean(false);
+
     private List<MediaCopy> copies = new ArrayList<>();
+    private final Map<String, CopyGroup> groups = new HashMap<>();
+    private final Map<String, MediaCopy> copiesById = new HashMap<>();
+    private final Set<MediaCopy> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final String filePath;
+    private BinaryCopyFile binaryFile;
+    private final Map<MediaCopy, Integer> slots = new IdentityHashMap<>();
+    private final BitSet storedSlots = new BitSet();
+    private int nextSlot;
+    private final Object writeLock = new Object();
+    private boolean flushScheduled;
+    private long snapshotSeq;
+    private long writtenSeq;
 
     /**
      * Returns the file path for the repository.
@@ -30,11 +75,84 @@ public class FileMediaCopyRepository {
      *
      * @param newPath the new file path
      */
-    public static void setRepoPath(String newPath) {
+    public static synchronized void setRepoPath(String newPath) {
+        closeInstance();
         repoPath = newPath;
         instance = null;
     }
 
+    /**
+     * Sets the write-behind window and resets the instance. Changes made
+     * within the window are coalesced into one background write.
+     *
+     * @param millis the window in milliseconds, or 0 to write every change
+     *               through immediately
+     */
+    public static synchronized void setWriteBehindMillis(long millis) {
+        closeInstance();
+        writeBehindMillis = Math.max(0, millis);
+        instance = null;
+        if (writeBehindMillis > 0 && shutdownHookInstalled.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(FileMediaCopyRepository::flushInstance,
+                    "media-copy-flush"));
+        }
+    }
+
+    /**
+     * Returns the write-behind window.
+     *
+     * @return the window in milliseconds, 0 if write-behind is disabled
+     */
+    public static long getWriteBehindMillis() {
+        return writeBehindMillis;
+    }
+
+    /**
+     * Switches between the text file and the fixed-width binary copy file,
+     * and resets the instance.
+     *
+     * @param enabled true to store copies in the binary format
+     */
+    public static synchronized void setBinaryFormat(boolean enabled) {
+        closeInstance();
+        binaryFormat = enabled;
+        instance = null;
+    }
+
+    /**
+     * Checks whether copies are stored in the binary format.
+     *
+     * @return true if the binary format is used
+     */
+    public static boolean isBinaryFormat() {
+        return binaryFormat;
+    }
+
+    private static void flushInstance() {
+        FileMediaCopyRepository current = instance;
+        if (current != null) current.flush();
+    }
+
+    private static void closeInstance() {
+        FileMediaCopyRepository current = instance;
+        if (current != null) current.close();
+    }
+
+    /**
+     * Writes out pending changes and releases the binary copy file, if open.
+     */
+    synchronized void close() {
+        flush();
+        if (binaryFile != null) {
+            try {
+                binaryFile.close();
+            } catch (IOException e) {
+                System.out.println("Error closing media copies file: " + e.getMessage());
+            }
+            binaryFile = null;
+        }
+    }
+
     /**
      * Returns the singleton instance of FileMediaCopyRepository.
      *
@@ -50,11 +168,13 @@ public class FileMediaCopyRepository {
     /**
      * Resets the singleton instance.
      */
-    public static void reset() {
+    public static synchronized void reset() {
+        closeInstance();
         instance = null;
     }
 
     private FileMediaCopyRepository() {
+        this.filePath = getFilePath();
         loadFromFile();
     }
 
@@ -65,6 +185,7 @@ public class FileMediaCopyRepository {
      * @param numberOfCopies the number of copies to add
      * @param available whether the copies are initially available
      */
+    @Override
     public void addCopiesByBookIsbn(String mediaIsbn, int numberOfCopies, boolean available) {
         if (numberOfCopies <= 0) return;
 
@@ -74,13 +195,17 @@ public class FileMediaCopyRepository {
             return;
         }
 
-        int startIndex = getMaxCopyIndexForIsbn(mediaIsbn) + 1;
+        // The item is looked up before taking the monitor, so the catalog
+        // locks are never taken while holding it.
+        synchronized (this) {
+            int startIndex = getMaxCopyIndexForIsbn(mediaIsbn) + 1;
 
-        for (int i = 0; i < numberOfCopies; i++) {
-            String copyId = generateCopyId(mediaIsbn, startIndex + i);
-            MediaCopy copy = new MediaCopy(copyId, item);
-            copy.setAvailable(available);
-            copies.add(copy);
+            for (int i = 0; i < numberOfCopies; i++) {
+                String copyId = generateCopyId(mediaIsbn, startIndex + i);
+                MediaCopy copy = newCopy(copyId, item, available);
+                addCopy(copy);
+                markDirty(copy);
+            }
         }
 
         saveToFile();
@@ -92,14 +217,10 @@ public class FileMediaCopyRepository {
      * @param isbn the ISBN to check
      * @return the number of available copies
      */
+    @Override
     public int getAvailableCopiesCount(String isbn) {
-        int count = 0;
-        for (MediaCopy copy : copies) {
-            if (copy.getMediaItem().getIsbnOrId().equals(isbn) && copy.isAvailable()) {
-                count++;
-            }
-        }
-        return count;
+        CopyGroup group = findGroup(isbn);
+        return group == null ? 0 : group.getAvailableCount();
     }
 
     /**
@@ -108,14 +229,163 @@ public class FileMediaCopyRepository {
      * @param isbn the ISBN to search for
      * @return list of media copies
      */
+    @Override
     public List<MediaCopy> getCopiesByIsbn(String isbn) {
-        List<MediaCopy> result = new ArrayList<>();
-        for (MediaCopy c : copies) {
-            if (c.getMediaItem().getIsbnOrId().equals(isbn)) {
-                result.add(c);
-            }
+        CopyGroup group = findGroup(isbn);
+        return group == null ? new ArrayList<>() : group.getCopies();
+    }
+
+    private CopyGroup findGroup(String isbn) {
+        String key = IsbnIndex.normalize(isbn);
+        return key == null ? null : groups.get(key);
+    }
+
+    /**
+     * Adds a copy to the inventory and to the group of its title.
+     * Copies without a media item are ignored.
+     *
+     * @param copy the copy to add
+     */
+    synchronized void addCopy(MediaCopy copy) {
+        addCopy(copy, -1);
+    }
+
+    /**
+     * Adds a copy that is stored in the given slot of the binary copy file,
+     * or in the next free slot if slot is negative.
+     */
+    private synchronized void addCopy(MediaCopy copy, int slot) {
+        if (copy.getIsbn() == null) return;
+        if (binaryFile != null) {
+            if (slot < 0) slot = nextSlot;
+            slots.put(copy, slot);
+            nextSlot = Math.max(nextSlot, slot + 1);
         }
-        return result;
+        copies.add(copy);
+        copiesById.putIfAbsent(copy.getCopyId(), copy);
+        groups.computeIfAbsent(IsbnIndex.normalize(copy.getIsbn()),
+                        k -> new CopyGroup((changed, available) -> markDirty(changed)))
+                .add(copy);
+    }
+
+    /**
+     * Records that a copy has to be written. Only used in write-behind
+     * and binary mode.
+     */
+    private synchronized void markDirty(MediaCopy copy) {
+        if (writeBehindMillis > 0 || binaryFile != null) dirty.add(copy);
+    }
+
+    /**
+     * Finds a copy by its ID.
+     *
+     * @param copyId the copy ID
+     * @return the copy, or null if there is no such copy
+     */
+    @Override
+    public MediaCopy findCopyById(String copyId) {
+        return copiesById.get(copyId);
+    }
+
+    /**
+     * Checks out an available copy of a title and persists the change.
+     *
+     * @param isbn the ISBN of the media item
+     * @return the checked-out copy, or null if no copy is available
+     */
+    @Override
+    public synchronized MediaCopy checkoutCopy(String isbn) {
+        CopyGroup group = findGroup(isbn);
+        MediaCopy copy = group == null ? null : group.checkout();
+        if (copy != null) persist(copy);
+        return copy;
+    }
+
+    /**
+     * Puts a borrowed copy back on the shelf and persists the change.
+     *
+     * @param copyId the ID of the copy being returned
+     * @return true if the copy was on loan and is now available
+     */
+    @Override
+    public synchronized boolean releaseCopy(String copyId) {
+        MediaCopy copy = copiesById.get(copyId);
+        if (copy == null || copy.isAvailable()) return false;
+        copy.setAvailable(true);
+        persist(copy);
+        return true;
+    }
+
+    /**
+     * Sets the availability of a copy as recorded by a committed
+     * transaction, and persists it if it changed.
+     *
+     * @param copyId    the copy ID
+     * @param available the recorded availability
+     * @return false if there is no such copy
+     */
+    synchronized boolean restoreCopy(String copyId, boolean available) {
+        MediaCopy copy = copiesById.get(copyId);
+        if (copy == null) return false;
+        if (copy.isAvailable() != available) {
+            copy.setAvailable(available);
+            persist(copy);
+        }
+        return true;
+    }
+
+    /**
+     * Persists a changed copy. Inside a {@link LibraryTransaction} the write
+     * is staged, and performed at commit whatever the write mode, and the
+     * change is undone if the transaction does not commit.
+     */
+    private void persist(MediaCopy copy) {
+        boolean available = copy.isAvailable();
+        String record = "C;" + copy.getCopyId() + ";" + available;
+        if (LibraryTransaction.stage(this, this::writeNow, record)) {
+            LibraryTransaction.onRollback(() -> undoAvailability(copy, !available));
+        } else {
+            saveToFile();
+        }
+    }
+
+    private synchronized void undoAvailability(MediaCopy copy, boolean available) {
+        copy.setAvailable(available);
+    }
+
+    /**
+     * Writes all changes now: the changed slots in binary mode, otherwise
+     * the whole file.
+     *
+     * @return true if the changes were written
+     */
+    private boolean writeNow() {
+        if (binaryFile != null) return flushSlots();
+        List<String> lines;
+        long seq;
+        synchronized (this) {
+            dirty.clear();
+            lines = snapshotLines();
+            seq = ++snapshotSeq;
+        }
+        return writeCopies(getFilePath(), lines, seq);
+    }
+
+    /**
+     * Puts any borrowed copy of a title back on the shelf. Used for loans
+     * recorded before loans tracked which copy they hold.
+     *
+     * @param isbn the ISBN of the media item
+     * @return the released copy, or null if no copy was on loan
+     */
+    @Override
+    public synchronized MediaCopy releaseAnyCopy(String isbn) {
+        CopyGroup group = findGroup(isbn);
+        MediaCopy copy = group == null ? null : group.firstBorrowed();
+        if (copy == null) return null;
+        copy.setAvailable(true);
+        persist(copy);
+        return copy;
     }
 
     /**
@@ -130,67 +400,224 @@ public class FileMediaCopyRepository {
         return FileCDRepository.getInstance().findByIsbn(isbn);
     }
 
+    /**
+     * Creates a copy of an item. When a catalog is in index mode the copy
+     * only records the ISBN and looks the item up when it is needed, so the
+     * inventory does not keep every item of the catalog in memory.
+     */
+    private MediaCopy newCopy(String copyId, MediaItem item, boolean available) {
+        if (FileBookRepository.isIndexMode() || FileCDRepository.isIndexMode()) {
+            return new MediaCopy(copyId, item.getIsbnOrId(), this::findMediaItem, available);
+        }
+        return new MediaCopy(copyId, item, available);
+    }
+
     /**
      * Loads all media copies from the file into memory.
      */
     void loadFromFile() {
         copies.clear();
+        groups.clear();
+        copiesById.clear();
+        slots.clear();
+        storedSlots.clear();
+        nextSlot = 0;
+        if (binaryFormat) {
+            loadFromBinaryFile();
+            return;
+        }
         File file = new File(getFilePath());
         if (!file.exists()) return;
 
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] p = line.split(";");
-                if (p.length == 3) {
-                    String copyId = p[0];
-                    String isbn = p[1];
-                    boolean available = Boolean.parseBoolean(p[2]);
-
-                    MediaItem item = findMediaItem(isbn);
+        try {
+            RecordScanner.scan(file.getPath(), r -> {
+                if (r.fieldCount() == 3) {
+                    MediaItem item = findMediaItem(r.field(1));
                     if (item != null) {
-                        MediaCopy copy = new MediaCopy(copyId, item);
-                        copy.setAvailable(available);
-                        copies.add(copy);
+                        addCopy(newCopy(r.field(0), item, r.booleanField(2)));
                     }
                 }
-            }
+            });
         } catch (Exception e) {
             System.out.println("Error loading media copies.");
         }
     }
 
     /**
-     * Saves all media copies from memory to the file.
+     * Opens the binary copy file, converting the text file first if there is
+     * no binary file yet, and loads its slots into memory.
+     */
+    private void loadFromBinaryFile() {
+        String binaryPath = filePath + BINARY_SUFFIX;
+        try {
+            if (binaryFile == null) {
+                if (!new File(binaryPath).exists() && new File(filePath).exists()) {
+                    BinaryCopyFile.convertFromText(filePath, binaryPath);
+                }
+                binaryFile = new BinaryCopyFile(binaryPath);
+            }
+            nextSlot = binaryFile.getSlotCount();
+            storedSlots.set(0, nextSlot);
+            binaryFile.readAll((slot, copyId, isbn, available) -> {
+                MediaItem item = findMediaItem(isbn);
+                if (item != null) {
+                    addCopy(newCopy(copyId, item, available), slot);
+                }
+            });
+        } catch (IOException e) {
+            System.out.println("Error loading media copies: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Saves all media copies from memory to the file. In write-behind mode
+     * the write is scheduled for the end of the current window instead, and
+     * in binary mode only the changed slots are written.
      */
     public void saveToFile() {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(getFilePath()))) {
-            for (MediaCopy c : copies) {
-                pw.println(c.getCopyId() + ";" + c.getMediaItem().getIsbnOrId() + ";" + c.isAvailable());
+        if (writeBehindMillis > 0) {
+            scheduleFlush();
+            return;
+        }
+        if (binaryFile != null) {
+            flush();
+            return;
+        }
+        List<String> lines;
+        long seq;
+        synchronized (this) {
+            lines = snapshotLines();
+            seq = ++snapshotSeq;
+        }
+        writeCopies(getFilePath(), lines, seq);
+    }
+
+    /**
+     * Writes out all pending changes now. Does nothing if no change is pending.
+     * If the write fails, the changes stay pending and, in write-behind
+     * mode, another write is scheduled for the end of the next window.
+     */
+    public void flush() {
+        if (binaryFile != null) {
+            if (!flushSlots()) retryFlush();
+            return;
+        }
+        List<MediaCopy> flushed;
+        List<String> lines;
+        long seq;
+        synchronized (this) {
+            if (dirty.isEmpty()) return;
+            flushed = new ArrayList<>(dirty);
+            dirty.clear();
+            lines = snapshotLines();
+            seq = ++snapshotSeq;
+        }
+        if (!writeCopies(filePath, lines, seq)) {
+            synchronized (this) {
+                dirty.addAll(flushed);
             }
-        } catch (Exception e) {
-            System.out.println("Error saving media copies.");
+            retryFlush();
         }
     }
 
-    // Helper methods for copy ID generation and max index
-    private String generateCopyId(String isbn, int index) {
-        return isbn + "-" + index;
+    /** Schedules another write of the pending changes in write-behind mode. */
+    private void retryFlush() {
+        if (writeBehindMillis > 0) scheduleFlush();
     }
 
-    private int getMaxCopyIndexForIsbn(String isbn) {
-        int max = 0;
+    /**
+     * Returns the number of copies changed since the last write.
+     *
+     * @return the number of dirty copies
+     */
+    public synchronized int getPendingWriteCount() {
+        return dirty.size();
+    }
+
+    /**
+     * Writes each dirty copy to its slot of the binary copy file: a new copy
+     * as a full record, a known one as a single availability byte.
+     */
+    private synchronized boolean flushSlots() {
+        Iterator<MediaCopy> it = dirty.iterator();
+        while (it.hasNext()) {
+            MediaCopy copy = it.next();
+            int slot = slots.get(copy);
+            try {
+                if (storedSlots.get(slot)) {
+                    binaryFile.writeAvailability(slot, copy.isAvailable());
+                } else {
+                    binaryFile.writeRecord(slot, copy.getCopyId(), copy.getIsbn(),
+                            copy.isAvailable());
+                    storedSlots.set(slot);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Error saving media copy " + copy.getCopyId() + ": " + e.getMessage());
+                return false;
+            }
+            it.remove();
+        }
+        if (SnapshotWriter.isSyncing()) {
+            try {
+                binaryFile.force();
+            } catch (IOException e) {
+                System.out.println("Error saving media copies: " + e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void scheduleFlush() {
+        if (flushScheduled || dirty.isEmpty()) return;
+        flushScheduled = true;
+        WRITER.schedule(() -> {
+            synchronized (this) {
+                flushScheduled = false;
+            }
+            flush();
+        }, writeBehindMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized List<String> snapshotLines() {
+        List<String> lines = new ArrayList<>(copies.size());
         for (MediaCopy c : copies) {
-            if (c.getMediaItem() != null && isbn.equalsIgnoreCase(c.getMediaItem().getIsbnOrId())) {
-                String[] parts = c.getCopyId().split("-");
-                if (parts.length > 1) {
-                    try {
-                        int idx = Integer.parseInt(parts[parts.length - 1]);
-                        if (idx > max) max = idx;
-                    } catch (NumberFormatException ignored) {}
+            lines.add(c.getCopyId() + ";" + c.getIsbn() + ";" + c.isAvailable());
+        }
+        return lines;
+    }
+
+    /**
+     * Writes a snapshot of the copies file. A snapshot taken before one that
+     * has already been written is skipped, so a late background write never
+     * overwrites newer state.
+     *
+     * @return true if the file holds this snapshot or a newer one
+     */
+    private boolean writeCopies(String path, List<String> lines, long seq) {
+        synchronized (writeLock) {
+            if (seq < writtenSeq) return true;
+            try (SnapshotWriter out = SnapshotWriter.open(path)) {
+                for (String line : lines) {
+                    out.writeLine(line);
                 }
+                out.commit();
+                writtenSeq = seq;
+                return true;
+            } catch (IOException e) {
+                System.out.println("Error saving media copies: " + e.getMessage());
+                return false;
             }
         }
-        return max;
+    }
+
+    // Helper methods for copy ID generation and max index
+    private String generateCopyId(String isbn, int index) {
+        return isbn + "-" + index;
+    }
+
+    private int getMaxCopyIndexForIsbn(String isbn) {
+        CopyGroup group = findGroup(isbn);
+        return group == null ? 0 : group.getMaxCopyIndex();
     }
 }
@@ -3,19 +3,55 @@ package Service;
 import Domain.User;
 
 import java.io.*;
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.stream.Collectors;
 
 /**
  * Repository class for managing users stored in a file.
  * Provides methods for adding, finding, updating, and unregistering users.
+ *
+ * <p>Users are kept in memory in file order with a username index, so
+ * lookups do not read the file. Every change is written through to the
+ * file, so the users in memory stay current without reading it again.
+ * Changes made to the file outside this repository are picked up by
+ * {@link #reload()}.</p>
+ *
+ * <p>In login journal mode (see {@link #setLoginJournalMode(boolean)}) a
+ * login appends its date to a {@link LoginJournal} instead of rewriting
+ * the users file. The journal is merged into the users whenever the file
+ * is read, and folded into the file by the next full rewrite or once it
+ * reaches {@link #LOGIN_COMPACTION_THRESHOLD} records.</p>
  */
-public class FileUserRepository {
+public class FileUserRepository implements UserRepository {
 
     private static FileUserRepository instance;
     private static final String FILE_PATH = "users.txt";
     public static String repoPath = FILE_PATH;
+    private static boolean loginJournalMode = false;
+
+    /** Buffer size used when streaming the users file. */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /** Number of journaled logins that triggers a rewrite of the users file. */
+    static final int LOGIN_COMPACTION_THRESHOLD = 500;
+
+    private final List<User> users = new ArrayList<>();
+    private final Map<String, User> usersByName = new HashMap<>();
+    private final Map<String, List<User>> duplicatesByName = new HashMap<>();
+    private String loadedPath;
+    private LoginJournal loginJournal;
+
+    /**
+     * Creates a repository and loads the users file.
+     */
+    public FileUserRepository() {
+        ensureLoaded();
+    }
 
     /**
      * Returns the file path of the user repository.
@@ -36,6 +72,26 @@ public class FileUserRepository {
         instance = null;
     }
 
+    /**
+     * Enables or disables login journal mode and resets the repository instance.
+     *
+     * @param enabled true to append logins to the journal instead of
+     *                rewriting the users file
+     */
+    public static synchronized void setLoginJournalMode(boolean enabled) {
+        loginJournalMode = enabled;
+        instance = null;
+    }
+
+    /**
+     * Checks whether login journal mode is enabled.
+     *
+     * @return true if logins are journaled
+     */
+    public static boolean isLoginJournalMode() {
+        return loginJournalMode;
+    }
+
     /**
      * Returns the singleton instance of FileUserRepository.
      *
@@ -62,23 +118,11 @@ public class FileUserRepository {
      * @param password the password
      * @return the user if found, otherwise null
      */
-    public User findUser(String username, String password) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        try (BufferedReader br = new BufferedReader(new FileReader(repoPath))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(";");
-                if (parts.length == 5) {
-                    if (parts[0].equals(username) && parts[1].equals(password)) {
-                        Date lastLoginDate = dateFormat.parse(parts[4]);
-                        return new User(parts[0], parts[1], parts[2], parts[3], lastLoginDate);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            System.out.println("Error reading users file.");
-        }
-        return null;
+    @Override
+    public synchronized User findUser(String username, String password) {
+        ensureLoaded();
+        User user = usersByName.get(username);
+        return user != null && user.getPassword().equals(password) ? user : null;
     }
 
     /**
@@ -90,25 +134,26 @@ public class FileUserRepository {
      * @param current the current date
      * @return true if added successfully, false if username exists or error occurs
      */
-    public boolean addUser(String username, String password, String email, Date current) {
+    @Override
+    public synchronized boolean addUser(String username, String password, String email, Date current) {
         if (isUsernameExists(username)) {
             System.out.println("Username already exists!");
             return false;
         }
 
         String role = "customer";
+        User user = new User(username, password, role, email, current);
 
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(repoPath, true))) {
-            SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-            String formattedDate = df.format(current);
-
-            bw.write(username + ";" + password + ";" + role + ";" + email + ";" + formattedDate);
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(getFilePath(), true))) {
+            bw.write(toLine(user));
             bw.newLine();
-            return true;
         } catch (IOException e) {
             System.out.println("Error writing to users file.");
             return false;
         }
+
+        addLoadedUser(user);
+        return true;
     }
 
     /**
@@ -117,46 +162,41 @@ public class FileUserRepository {
      * @param username the username to check
      * @return true if exists, false otherwise
      */
-    public boolean isUsernameExists(String username) {
-        try (BufferedReader br = new BufferedReader(new FileReader(repoPath))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(";");
-                if (parts.length >= 1 && parts[0].equals(username)) {
-                    return true;
-                }
-            }
-        } catch (Exception e) {
-            System.out.println("Error reading users file.");
-        }
-        return false;
+    @Override
+    public synchronized boolean isUsernameExists(String username) {
+        ensureLoaded();
+        return usersByName.containsKey(username);
     }
 
     /**
-     * Updates the last login date of a user.
+     * Updates the last login date of a user. Nothing is written if the
+     * stored date is already today.
      *
      * @param foundUser the user to update
      */
-    public void updateDate(User foundUser) {
-        StringBuilder fileContent = new StringBuilder();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        String currentDate = dateFormat.format(new Date());
-        try (BufferedReader br = new BufferedReader(new FileReader(repoPath))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(";");
-                if (parts.length == 5) {
-                    if (parts[0].equals(foundUser.getUsername()) && parts[1].equals(foundUser.getPassword())) {
-                        parts[4] = currentDate;
-                        line = String.join(";", parts);
-                    }
-                }
-                fileContent.append(line).append("\n");
+    @Override
+    public synchronized void updateDate(User foundUser) {
+        ensureLoaded();
+        Date now = new Date();
+        LocalDate today = LocalDate.now();
+        boolean changed = false;
+        for (User user : usersNamed(foundUser.getUsername())) {
+            if (user.getPassword().equals(foundUser.getPassword())) {
+                changed |= !today.equals(toLocalDate(user.getLastLoginDate()));
+                user.setLastLoginDate(now);
             }
-            try (BufferedWriter bw = new BufferedWriter(new FileWriter(repoPath))) {
-                bw.write(fileContent.toString());
+        }
+        if (!changed) return;
+
+        if (loginJournalMode) {
+            try {
+                loginJournal.append(foundUser.getUsername(), today);
+                if (loginJournal.getRecordCount() < LOGIN_COMPACTION_THRESHOLD) return;
+            } catch (IOException e) {
+                System.out.println("Error journaling login: " + e.getMessage());
             }
-        } catch (IOException e) {
+        }
+        if (!saveAllUsersToFile()) {
             System.out.println("Error processing the file.");
         }
     }
@@ -166,23 +206,10 @@ public class FileUserRepository {
      *
      * @return list of users
      */
-    public List<User> getAllUsers() {
-        List<User> users = new ArrayList<>();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        try (BufferedReader br = new BufferedReader(new FileReader(repoPath))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(";");
-                if (parts.length == 5) {
-                    Date lastLoginDate = dateFormat.parse(parts[4]);
-                    User user = new User(parts[0], parts[1], parts[2], parts[3], lastLoginDate);
-                    users.add(user);
-                }
-            }
-        } catch (Exception e) {
-            System.out.println("Error reading users file.");
-        }
-        return users;
+    @Override
+    public synchronized List<User> getAllUsers() {
+        ensureLoaded();
+        return new ArrayList<>(users);
     }
 
     /**
@@ -191,36 +218,22 @@ public class FileUserRepository {
      * @param username the username to remove
      * @return true if user was removed, false otherwise
      */
-    public boolean unregisterUserByUsername(String username) {
-        List<User> users = getAllUsers();
-        boolean userFound = false;
-        StringBuilder fileContent = new StringBuilder();
-        for (User user : users) {
-            if (!user.getUsername().equals(username)) {
-                fileContent.append(user.getUsername()).append(";")
-                        .append(user.getPassword()).append(";")
-                        .append(user.getRole()).append(";")
-                        .append(user.getEmail()).append(";")
-                        .append(new SimpleDateFormat("yyyy-MM-dd").format(user.getLastLoginDate()))
-                        .append("\n");
-            } else {
-                userFound = true;
-            }
-        }
-
-        if (userFound) {
-            try (BufferedWriter bw = new BufferedWriter(new FileWriter(repoPath))) {
-                bw.write(fileContent.toString());
-                System.out.println("User " + username + " has been unregistered.");
-                return true;
-            } catch (IOException e) {
-                System.out.println("Error updating the users file.");
-            }
-        } else {
+    @Override
+    public synchronized boolean unregisterUserByUsername(String username) {
+        ensureLoaded();
+        if (!usersByName.containsKey(username)) {
             System.out.println("User " + username + " not found.");
+            return false;
         }
 
-        return false;
+        try {
+            removeRows(Set.of(username));
+        } catch (IOException e) {
+            System.out.println("Error updating the users file.");
+            return false;
+        }
+        System.out.println("User " + username + " has been unregistered.");
+        return true;
     }
 
     /**
@@ -229,34 +242,79 @@ public class FileUserRepository {
      * @param inActiveUsers list of inactive users
      * @return true if operation succeeded, false otherwise
      */
-    public boolean unregisterAllUsers(List<User> inActiveUsers) {
-        List<User> allUsers = getAllUsers();
-        StringBuilder fileContent = new StringBuilder();
+    @Override
+    public synchronized boolean unregisterAllUsers(List<User> inActiveUsers) {
+        ensureLoaded();
         Set<String> inactiveUsernames = inActiveUsers.stream()
                 .map(User::getUsername)
                 .collect(Collectors.toSet());
 
-        for (User user : allUsers) {
-            if (!inactiveUsernames.contains(user.getUsername())) {
-                fileContent.append(user.getUsername()).append(";")
-                        .append(user.getPassword()).append(";")
-                        .append(user.getRole()).append(";")
-                        .append(user.getEmail()).append(";")
-                        .append(new SimpleDateFormat("yyyy-MM-dd").format(user.getLastLoginDate()))
-                        .append("\n");
-            } else {
-                System.out.println("User " + user.getUsername() + " is inactive and has been unregistered.");
-            }
-        }
-
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(repoPath))) {
-            bw.write(fileContent.toString());
-            System.out.println("All inactive users have been unregistered.");
-            return true;
+        List<String> removed;
+        try {
+            removed = removeRows(inactiveUsernames);
         } catch (IOException e) {
             System.out.println("Error updating the users file.");
             return false;
         }
+        for (String username : removed) {
+            System.out.println("User " + username + " is inactive and has been unregistered.");
+        }
+        System.out.println("All inactive users have been unregistered.");
+        return true;
+    }
+
+    /**
+     * Removes the rows of the given users from the users file in a single
+     * streaming pass. Rows are copied byte for byte into a
+     * {@link SnapshotWriter}, except those whose username is in the set, and
+     * the new file then replaces the users file with an atomic rename. Only the username of
+     * each row is decoded, so memory use does not depend on the file size.
+     *
+     * @param usernames the users to remove
+     * @return the usernames of the removed rows, in file order
+     * @throws IOException if the file cannot be rewritten; it is then unchanged
+     */
+    private List<String> removeRows(Set<String> usernames) throws IOException {
+        Path source = Path.of(getFilePath());
+        List<String> removed = new ArrayList<>();
+
+        try (InputStream in = Files.exists(source)
+                     ? new BufferedInputStream(Files.newInputStream(source), STREAM_BUFFER_SIZE)
+                     : InputStream.nullInputStream();
+             SnapshotWriter out = SnapshotWriter.open(source.toString())) {
+            byte[] line = new byte[256];
+            int length = 0;
+            int b;
+            do {
+                b = in.read();
+                if (b != -1) {
+                    if (length == line.length) line = Arrays.copyOf(line, length * 2);
+                    line[length++] = (byte) b;
+                }
+                if ((b == '\n' || b == -1) && length > 0) {
+                    String username = rowUsername(line, length);
+                    if (usernames.contains(username)) {
+                        removed.add(username);
+                    } else {
+                        out.write(line, 0, length);
+                    }
+                    length = 0;
+                }
+            } while (b != -1);
+            out.commit();
+        }
+
+        removeUsers(new HashSet<>(removed));
+        return removed;
+    }
+
+    /**
+     * Decodes the username, the first field, of a raw users file row.
+     */
+    private static String rowUsername(byte[] line, int length) {
+        int end = 0;
+        while (end < length && line[end] != ';' && line[end] != '\n' && line[end] != '\r') end++;
+        return new String(line, 0, end, StandardCharsets.UTF_8);
     }
 
     /**
@@ -265,11 +323,138 @@ public class FileUserRepository {
      * @param username the username to search for
      * @return the user if found, otherwise null
      */
-    public User findUserByUsername(String username) {
-        List<User> allUsers = getAllUsers();
-        return allUsers.stream()
-                .filter(user -> user.getUsername().equals(username))
-                .findFirst()
-                .orElse(null);
+    @Override
+    public synchronized User findUserByUsername(String username) {
+        ensureLoaded();
+        return usersByName.get(username);
+    }
+
+    /**
+     * Returns what the last read of the login journal found, including the
+     * bytes of a torn tail that were cut off.
+     *
+     * @return the login journal recovery report
+     */
+    public synchronized RecordLog.Recovery getLoginJournalRecovery() {
+        ensureLoaded();
+        return loginJournal.getLastRecovery();
+    }
+
+    /**
+     * Reads the users file again and merges the login journal into it, for
+     * changes made to the file outside this repository.
+     */
+    public synchronized void reload() {
+        load(getFilePath());
+    }
+
+    /**
+     * Reads the users file if the repository path changed since it was
+     * last read. Does not touch the disk otherwise.
+     */
+    private void ensureLoaded() {
+        String path = getFilePath();
+        if (!path.equals(loadedPath)) load(path);
+    }
+
+    /** Reads the users file and merges the login journal into it. */
+    private void load(String path) {
+        if (!path.equals(loadedPath)) {
+            if (loginJournal != null) loginJournal.close();
+            loginJournal = new LoginJournal(path);
+        }
+        users.clear();
+        usersByName.clear();
+        duplicatesByName.clear();
+        try {
+            RecordScanner.scan(path, r -> {
+                if (r.fieldCount() != 5) return;
+                try {
+                    LocalDate lastLogin = r.dateField(4);
+                    addLoadedUser(new User(r.field(0), r.field(1), r.field(2), r.field(3), toDate(lastLogin)));
+                } catch (java.time.DateTimeException e) {
+                    // Lines with an unreadable date are ignored like other malformed lines
+                }
+            });
+        } catch (Exception e) {
+            System.out.println("Error reading users file.");
+        }
+        Map<String, LocalDate> latestLogins = new HashMap<>();
+        loginJournal.replay((username, loginDate) -> latestLogins.merge(username, loginDate,
+                (a, b) -> b.isAfter(a) ? b : a));
+        latestLogins.forEach((username, loginDate) -> {
+            for (User user : usersNamed(username)) {
+                LocalDate stored = toLocalDate(user.getLastLoginDate());
+                if (stored == null || loginDate.isAfter(stored)) user.setLastLoginDate(toDate(loginDate));
+            }
+        });
+        loadedPath = path;
+    }
+
+    private void addLoadedUser(User user) {
+        users.add(user);
+        if (usersByName.putIfAbsent(user.getUsername(), user) != null) {
+            duplicatesByName.computeIfAbsent(user.getUsername(), k -> new ArrayList<>()).add(user);
+        }
+    }
+
+    private void removeUsers(Set<String> usernames) {
+        users.removeIf(user -> usernames.contains(user.getUsername()));
+        for (String username : usernames) {
+            usersByName.remove(username);
+            duplicatesByName.remove(username);
+        }
+    }
+
+    /**
+     * Returns every row with a username, the first one first. Later rows
+     * with the same name are rare and kept apart from the username index.
+     */
+    private List<User> usersNamed(String username) {
+        User first = usersByName.get(username);
+        if (first == null) return List.of();
+        List<User> duplicates = duplicatesByName.get(username);
+        if (duplicates == null) return List.of(first);
+        List<User> named = new ArrayList<>(duplicates.size() + 1);
+        named.add(first);
+        named.addAll(duplicates);
+        return named;
+    }
+
+    /**
+     * Writes all users in memory to the users file, which then holds every
+     * journaled login, and clears the login journal.
+     *
+     * @return true if the file was written
+     */
+    private boolean saveAllUsersToFile() {
+        try (SnapshotWriter out = SnapshotWriter.open(getFilePath())) {
+            for (User user : users) {
+                out.writeLine(toLine(user));
+            }
+            out.commit();
+        } catch (IOException e) {
+            System.out.println("Error saving users file: " + e.getMessage());
+            return false;
+        }
+        loginJournal.clear();
+        return true;
+    }
+
+    private static String toLine(User user) {
+        return user.getUsername() + ";" + user.getPassword() + ";" + user.getRole() + ";"
+                + user.getEmail() + ";" + formatDate(user.getLastLoginDate());
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date == null ? null : LocalDate.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+
+    private static String formatDate(Date date) {
+        return toLocalDate(date).toString();
     }
 }
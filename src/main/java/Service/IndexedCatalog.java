@@ -0,0 +1,432 @@
+package Service;
+
+import Domain.MediaItem;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A catalog file of {@code title;author;isbn;available} records read through
+ * an {@link IsbnBTree} instead of being held in memory.
+ *
+ * <p>The tree maps each normalized ISBN to the byte offset of the first
+ * record with that ISBN, and is kept next to the catalog file with the
+ * suffix {@value #INDEX_SUFFIX}. It is rebuilt with one pass over the file
+ * whenever the file was changed by something else. Only items that have
+ * been looked up are kept, in the {@link MediaItemRegistry}.</p>
+ *
+ * <p>The availability field is written padded to the width of
+ * {@code false}, so a change of availability overwrites the field where it
+ * is and no record moves. Records written without padding are padded the
+ * first time they need to grow.</p>
+ *
+ * <p>Records are read and written through one file channel that stays open
+ * until the file is rewritten or the catalog is closed.</p>
+ *
+ * @param <T> the item type
+ */
+final class IndexedCatalog<T extends MediaItem> implements Closeable {
+
+    /** Suffix of the index file, appended to the catalog file name. */
+    static final String INDEX_SUFFIX = ".idx";
+
+    /**
+     * Creates an item from the first three fields of a record.
+     *
+     * @param <T> the item type
+     */
+    interface ItemFactory<T> {
+        T create(String title, String author, String isbn);
+    }
+
+    private final File file;
+    private final File indexFile;
+    private final Class<T> type;
+    private final ItemFactory<T> factory;
+    private final MediaItemRegistry registry = MediaItemRegistry.getInstance();
+    private final IsbnBTree index;
+    private final ByteBuffer chunk = ByteBuffer.allocate(256);
+    private FileChannel channel;
+
+    /**
+     * Opens a catalog file and its index, rebuilding the index if it is
+     * missing or out of date.
+     *
+     * @param path       the catalog file
+     * @param type       the item type, used for the registry
+     * @param factory    creates items from records
+     * @param cachePages the number of index pages to cache
+     * @throws IOException if the index cannot be opened or rebuilt
+     */
+    IndexedCatalog(String path, Class<T> type, ItemFactory<T> factory, int cachePages) throws IOException {
+        this.file = new File(path);
+        this.indexFile = new File(path + INDEX_SUFFIX);
+        this.type = type;
+        this.factory = factory;
+        this.index = IsbnBTree.open(indexFile, cachePages);
+        try {
+            refresh();
+        } catch (IOException e) {
+            index.close();
+            throw e;
+        }
+    }
+
+    IndexedCatalog(String path, Class<T> type, ItemFactory<T> factory) throws IOException {
+        this(path, type, factory, IsbnBTree.DEFAULT_CACHE_PAGES);
+    }
+
+    /**
+     * Rebuilds the index if the catalog file changed since it was written.
+     *
+     * @throws IOException if the file cannot be read or the index written
+     */
+    synchronized void refresh() throws IOException {
+        if (index.isCurrent(file.length(), file.lastModified())) return;
+        closeChannel();
+        rebuild();
+    }
+
+    private void rebuild() throws IOException {
+        index.clear();
+        scan((offset, fields) -> {
+            String key = IsbnIndex.normalize(fields[2]);
+            if (key != null && index.get(key) < 0) index.put(key, offset);
+        });
+        commitIndex();
+    }
+
+    private void commitIndex() throws IOException {
+        index.setSource(file.length(), file.lastModified());
+        index.flush();
+    }
+
+    /**
+     * Finds an item by ISBN, reading its record if it is not registered yet.
+     *
+     * @param isbn the ISBN, ignoring case and surrounding whitespace
+     * @return the registered item, or null if the catalog has none
+     * @throws IOException if the record cannot be read
+     */
+    synchronized T find(String isbn) throws IOException {
+        T known = registry.find(type, isbn);
+        if (known != null) return known;
+
+        String[] fields = readRecord(isbn);
+        return fields == null ? null : registry.intern(create(fields));
+    }
+
+    /**
+     * Reads the availability stored for an ISBN.
+     *
+     * @param isbn the ISBN
+     * @return the stored availability, or null if the catalog has no such record
+     * @throws IOException if the record cannot be read
+     */
+    synchronized Boolean storedAvailability(String isbn) throws IOException {
+        String[] fields = readRecord(isbn);
+        return fields == null ? null : parseAvailable(fields[3]);
+    }
+
+    /**
+     * Returns every item in file order. Registered items are returned as
+     * they are; the others are read without being registered, so a full
+     * listing does not stay in memory.
+     *
+     * @return the items
+     * @throws IOException if the file cannot be read
+     */
+    synchronized List<T> findAll() throws IOException {
+        List<T> items = new ArrayList<>();
+        scan((offset, fields) -> {
+            T known = registry.find(type, fields[2]);
+            String key = IsbnIndex.normalize(fields[2]);
+            boolean first = known != null && key != null && index.get(key) == offset;
+            items.add(first ? known : create(fields));
+        });
+        return items;
+    }
+
+    /**
+     * Appends an item. The first item with an ISBN is indexed and
+     * registered; later duplicates are stored but not indexed.
+     *
+     * @param item      the item to append
+     * @param available the availability to store
+     * @return the registered item, or item itself if it is a duplicate
+     * @throws IOException if the file or the index cannot be written
+     */
+    synchronized T append(T item, boolean available) throws IOException {
+        long offset = file.length();
+        StringBuilder line = new StringBuilder();
+        if (offset > 0 && lastByte() != '\n') {
+            line.append('\n');
+            offset++;
+        }
+        line.append(format(item.getTitle(), item.getAuthor(), item.getIsbnOrId(), available)).append('\n');
+        FileChannel out = channel();
+        write(out, line.toString().getBytes(StandardCharsets.UTF_8), out.size());
+
+        String key = IsbnIndex.normalize(item.getIsbnOrId());
+        if (key != null && index.get(key) < 0) {
+            index.put(key, offset);
+            item = registry.intern(item);
+        }
+        commitIndex();
+        return item;
+    }
+
+    /**
+     * Stores the availability of an item. The field is overwritten in place
+     * when it is wide enough; otherwise the file is rewritten with every
+     * availability field padded.
+     *
+     * @param isbn      the ISBN of the item
+     * @param available the availability to store
+     * @return true if the record exists and was written
+     * @throws IOException if the file or the index cannot be written
+     */
+    synchronized boolean writeAvailability(String isbn, boolean available) throws IOException {
+        String key = IsbnIndex.normalize(isbn);
+        long offset = key == null ? -1 : index.get(key);
+        if (offset < 0) return false;
+
+        byte[] line = readLine(offset);
+        int start = fieldStart(line, 3);
+        if (start < 0) return false;
+        int end = start;
+        while (end < line.length && line[end] != ';' && line[end] != '\r') end++;
+
+        byte[] value = availability(available).getBytes(StandardCharsets.UTF_8);
+        if (value.length > end - start) {
+            rewrite(key, offset, fields -> format(fields[0], fields[1], fields[2], available));
+            return true;
+        }
+        byte[] field = new byte[end - start];
+        System.arraycopy(value, 0, field, 0, value.length);
+        for (int i = value.length; i < field.length; i++) field[i] = ' ';
+        write(channel(), field, offset + start);
+        commitIndex();
+        return true;
+    }
+
+    /**
+     * Replaces the record of an item, or appends one if there is none.
+     *
+     * @param item the item to store
+     * @throws IOException if the file or the index cannot be written
+     */
+    synchronized void replace(T item) throws IOException {
+        String key = IsbnIndex.normalize(item.getIsbnOrId());
+        long offset = key == null ? -1 : index.get(key);
+        if (offset < 0) {
+            append(item, item.isAvailable());
+            return;
+        }
+        rewrite(key, offset, fields -> format(item.getTitle(), item.getAuthor(), item.getIsbnOrId(), item.isAvailable()));
+    }
+
+    /**
+     * Replaces the whole catalog. Registered items with an ISBN in the new
+     * catalog take over its title, author and availability.
+     *
+     * @param items the new catalog
+     * @throws IOException if the file or the index cannot be written
+     */
+    synchronized void replaceAll(List<T> items) throws IOException {
+        try (SnapshotWriter out = SnapshotWriter.open(file.getPath())) {
+            for (T item : items) {
+                out.writeLine(format(item.getTitle(), item.getAuthor(), item.getIsbnOrId(), item.isAvailable()));
+            }
+            closeChannel();
+            out.commit();
+        }
+        for (T item : items) {
+            if (registry.find(type, item.getIsbnOrId()) != null) registry.intern(item);
+        }
+        rebuild();
+    }
+
+    /**
+     * Returns the index, for tests.
+     *
+     * @return the index
+     */
+    IsbnBTree getIndex() {
+        return index;
+    }
+
+    /** Closes the catalog file and flushes and closes the index. */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            closeChannel();
+        } finally {
+            index.close();
+        }
+    }
+
+    /** Returns the channel of the catalog file, opening it if needed. */
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        }
+        return channel;
+    }
+
+    /**
+     * Closes the channel of the catalog file. Called before the file is
+     * replaced, since an open file cannot be renamed over on every platform.
+     */
+    private void closeChannel() throws IOException {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } finally {
+            channel = null;
+        }
+    }
+
+    /**
+     * Rewrites the file, formatting the record at the given offset with the
+     * given function and padding every other record, then rebuilds the index.
+     */
+    private void rewrite(String key, long offset, RecordFormatter changed) throws IOException {
+        try (SnapshotWriter out = SnapshotWriter.open(file.getPath())) {
+            scan((at, fields) -> {
+                boolean target = at == offset && key.equals(IsbnIndex.normalize(fields[2]));
+                out.writeLine(target ? changed.format(fields)
+                        : format(fields[0], fields[1], fields[2], parseAvailable(fields[3])));
+            });
+            closeChannel();
+            out.commit();
+        }
+        rebuild();
+    }
+
+    private String[] readRecord(String isbn) throws IOException {
+        String key = IsbnIndex.normalize(isbn);
+        long offset = key == null ? -1 : index.get(key);
+        return offset < 0 ? null : parse(readLine(offset));
+    }
+
+    /** Reads the line starting at an offset, without its line break. */
+    private byte[] readLine(long offset) throws IOException {
+        FileChannel in = channel();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        byte[] bytes = chunk.array();
+        long position = offset;
+        int n;
+        while ((n = in.read(chunk.clear(), position)) > 0) {
+            for (int i = 0; i < n; i++) {
+                if (bytes[i] == '\n') {
+                    line.write(bytes, 0, i);
+                    return line.toByteArray();
+                }
+            }
+            line.write(bytes, 0, n);
+            position += n;
+        }
+        return line.toByteArray();
+    }
+
+    private int lastByte() throws IOException {
+        FileChannel in = channel();
+        ByteBuffer last = chunk.clear().limit(1);
+        return in.read(last, in.size() - 1) == 1 ? last.get(0) : -1;
+    }
+
+    /**
+     * Writes bytes at a position of the catalog file, forcing them to disk
+     * when {@link SnapshotWriter#isSyncing()}.
+     */
+    private static void write(FileChannel out, byte[] bytes, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            position += out.write(buffer, position);
+        }
+        if (SnapshotWriter.isSyncing()) out.force(false);
+    }
+
+    /**
+     * Calls the handler with the offset and fields of every record with at
+     * least four fields, in file order.
+     */
+    private void scan(RecordHandler handler) throws IOException {
+        if (!file.exists()) return;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long offset = 0;
+            long start = 0;
+            int b;
+            do {
+                b = in.read();
+                if (b != -1 && b != '\n') line.write(b);
+                if (b == '\n' || (b == -1 && line.size() > 0)) {
+                    String[] fields = parse(line.toByteArray());
+                    if (fields != null) handler.accept(start, fields);
+                    line.reset();
+                    start = offset + 1;
+                }
+                offset++;
+            } while (b != -1);
+        }
+    }
+
+    private static String[] parse(byte[] line) {
+        int length = line.length;
+        if (length > 0 && line[length - 1] == '\r') length--;
+        String[] fields = new String(line, 0, length, StandardCharsets.UTF_8).split(";", -1);
+        return fields.length >= 4 ? fields : null;
+    }
+
+    /** Byte position where a field of a record starts, or -1 if the record is shorter. */
+    private static int fieldStart(byte[] line, int field) {
+        int position = 0;
+        for (int i = 0; i < field; i++) {
+            while (position < line.length && line[position] != ';') position++;
+            if (position == line.length) return -1;
+            position++;
+        }
+        return position;
+    }
+
+    private T create(String[] fields) {
+        T item = factory.create(fields[0], fields[1], fields[2]);
+        item.setAvailable(parseAvailable(fields[3]));
+        return item;
+    }
+
+    private static boolean parseAvailable(String field) {
+        return Boolean.parseBoolean(field.stripTrailing());
+    }
+
+    private static String format(String title, String author, String isbn, boolean available) {
+        return title + ";" + author + ";" + isbn + ";" + availability(available);
+    }
+
+    /** The availability field, padded to the width of {@code false}. */
+    private static String availability(boolean available) {
+        return available ? "true " : "false";
+    }
+
+    private interface RecordHandler {
+        void accept(long offset, String[] fields) throws IOException;
+    }
+
+    private interface RecordFormatter {
+        String format(String[] fields);
+    }
+}
@@ -0,0 +1,454 @@
+package Service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk B+tree from normalized ISBN to the offset of a record in a
+ * catalog file. The tree is kept in fixed-size pages and read through a
+ * page cache of bounded size, so a lookup costs one page read per level
+ * the cache does not hold, and memory use does not depend on the number
+ * of keys.
+ *
+ * <p>Page 0 is a header holding the root page, the key count, the length
+ * and modification time of the catalog file the tree was last brought up
+ * to date with, and a dirty flag. The flag is set on disk before the first
+ * change after a {@link #flush()} and cleared by the next one, so a tree
+ * left half-written by a crash is detected on open and can be rebuilt from
+ * the catalog file.</p>
+ */
+final class IsbnBTree implements Closeable {
+
+    static final int PAGE_SIZE = 4096;
+
+    /** Pages held by the cache unless a size is given, 1 MB. */
+    static final int DEFAULT_CACHE_PAGES = 256;
+
+    /** Longest key accepted, in UTF-8 bytes. */
+    static final int MAX_KEY_LENGTH = 256;
+
+    private static final int MAGIC = 0x49534231;
+    private static final byte LEAF = 0;
+    private static final byte INTERNAL = 1;
+
+    private final FileChannel channel;
+    private final PageCache cache;
+    private boolean valid;
+    private boolean clean;
+    private int root;
+    private int pageCount;
+    private long size;
+    private long sourceLength = -1;
+    private long sourceModified = -1;
+    private long pageReads;
+
+    private IsbnBTree(FileChannel channel, int cachePages) {
+        this.channel = channel;
+        this.cache = new PageCache(Math.max(cachePages, 4));
+    }
+
+    /**
+     * Opens a tree file, creating an empty tree if the file is missing,
+     * damaged or was left dirty.
+     *
+     * @param file       the tree file
+     * @param cachePages the number of pages the cache may hold
+     * @return the open tree
+     * @throws IOException if the file cannot be opened
+     */
+    static IsbnBTree open(File file, int cachePages) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        IsbnBTree tree = new IsbnBTree(channel, cachePages);
+        try {
+            if (!tree.readHeader()) tree.clear();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return tree;
+    }
+
+    /**
+     * Checks whether the tree was completely written for a catalog file of
+     * the given length and modification time.
+     *
+     * @param length   the catalog file length
+     * @param modified the catalog file modification time
+     * @return true if the tree can be used as it is
+     */
+    boolean isCurrent(long length, long modified) {
+        return valid && sourceLength == length && sourceModified == modified;
+    }
+
+    /**
+     * Records the state of the catalog file the tree now matches. Written
+     * with the next {@link #flush()}.
+     *
+     * @param length   the catalog file length
+     * @param modified the catalog file modification time
+     */
+    void setSource(long length, long modified) {
+        sourceLength = length;
+        sourceModified = modified;
+    }
+
+    /**
+     * Looks up a key.
+     *
+     * @param key the normalized ISBN
+     * @return the record offset, or -1 if the key is not in the tree
+     * @throws IOException if a page cannot be read
+     */
+    long get(String key) throws IOException {
+        Node node = page(root);
+        while (!node.leaf) node = page(node.children.get(childIndex(node, key)));
+        int i = Collections.binarySearch(node.keys, key);
+        return i >= 0 ? node.values.get(i) : -1;
+    }
+
+    /**
+     * Inserts a key or replaces its offset.
+     *
+     * @param key   the normalized ISBN
+     * @param value the record offset
+     * @throws IOException if a page cannot be read or written
+     * @throws IllegalArgumentException if the key is longer than {@link #MAX_KEY_LENGTH} bytes
+     */
+    void put(String key, long value) throws IOException {
+        if (key.getBytes(StandardCharsets.UTF_8).length > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Key too long: " + key);
+        }
+        beginWrite();
+        Split split = insert(root, key, value);
+        if (split != null) {
+            Node newRoot = new Node(false);
+            newRoot.children.add(root);
+            newRoot.keys.add(split.key);
+            newRoot.children.add(split.right);
+            root = allocate(newRoot);
+        }
+    }
+
+    /**
+     * Returns the number of keys in the tree.
+     *
+     * @return the key count
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of pages read from disk since the tree was opened.
+     *
+     * @return the page read count
+     */
+    long getPageReads() {
+        return pageReads;
+    }
+
+    /**
+     * Returns the number of pages held by the cache.
+     *
+     * @return the cached page count
+     */
+    int getCachedPages() {
+        return cache.pages.size();
+    }
+
+    /**
+     * Empties the tree. The file is left marked dirty until the next
+     * {@link #flush()}.
+     *
+     * @throws IOException if the file cannot be truncated
+     */
+    void clear() throws IOException {
+        cache.pages.clear();
+        channel.truncate(0);
+        clean = false;
+        valid = true;
+        pageCount = 1;
+        size = 0;
+        sourceLength = -1;
+        sourceModified = -1;
+        writeHeader(true);
+        root = allocate(new Node(true));
+    }
+
+    /**
+     * Writes every changed page and then the header, marking the tree
+     * clean.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    void flush() throws IOException {
+        for (Map.Entry<Integer, CachedPage> entry : cache.pages.entrySet()) {
+            CachedPage cached = entry.getValue();
+            if (cached.dirty) {
+                writePage(entry.getKey(), cached.node);
+                cached.dirty = false;
+            }
+        }
+        writeHeader(false);
+        clean = true;
+    }
+
+    /** Flushes the tree and closes the file. */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void beginWrite() throws IOException {
+        if (!clean) return;
+        writeHeader(true);
+        clean = false;
+    }
+
+    private Split insert(int pageId, String key, long value) throws IOException {
+        Node node = page(pageId);
+        if (node.leaf) {
+            int i = Collections.binarySearch(node.keys, key);
+            if (i >= 0) {
+                node.values.set(i, value);
+            } else {
+                node.keys.add(-i - 1, key);
+                node.values.add(-i - 1, value);
+                size++;
+            }
+        } else {
+            int child = childIndex(node, key);
+            Split split = insert(node.children.get(child), key, value);
+            if (split == null) return null;
+            node.keys.add(child, split.key);
+            node.children.add(child + 1, split.right);
+        }
+
+        if (node.encodedSize() <= PAGE_SIZE) {
+            store(pageId, node);
+            return null;
+        }
+        return split(pageId, node);
+    }
+
+    /**
+     * Splits an overfull node at the middle of its encoded size, so both
+     * halves fit a page whatever the key lengths.
+     */
+    private Split split(int pageId, Node node) throws IOException {
+        int n = node.keys.size();
+        int half = node.encodedSize() / 2;
+        int mid = 0;
+        for (int used = 0; mid < n - 1 && used < half; mid++) used += node.entrySize(mid);
+        mid = Math.max(mid, 1);
+
+        Node right = new Node(node.leaf);
+        String separator;
+        if (node.leaf) {
+            right.keys.addAll(node.keys.subList(mid, n));
+            right.values.addAll(node.values.subList(mid, n));
+            node.keys.subList(mid, n).clear();
+            node.values.subList(mid, n).clear();
+            separator = right.keys.get(0);
+        } else {
+            separator = node.keys.get(mid);
+            right.keys.addAll(node.keys.subList(mid + 1, n));
+            right.children.addAll(node.children.subList(mid + 1, n + 1));
+            node.keys.subList(mid, n).clear();
+            node.children.subList(mid + 1, n + 1).clear();
+        }
+        store(pageId, node);
+        return new Split(separator, allocate(right));
+    }
+
+    /** Index of the child whose subtree holds the key. */
+    private static int childIndex(Node node, String key) {
+        int i = Collections.binarySearch(node.keys, key);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    private int allocate(Node node) throws IOException {
+        int pageId = pageCount++;
+        store(pageId, node);
+        return pageId;
+    }
+
+    /**
+     * Puts a changed node in the cache. A node can have been evicted while
+     * its children were updated, so it is always put back.
+     */
+    private void store(int pageId, Node node) throws IOException {
+        cache.put(pageId, node, true);
+    }
+
+    private Node page(int pageId) throws IOException {
+        CachedPage cached = cache.pages.get(pageId);
+        if (cached != null) return cached.node;
+
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        readFully(buffer, (long) pageId * PAGE_SIZE);
+        pageReads++;
+        Node node = Node.decode(buffer);
+        cache.put(pageId, node, false);
+        return node;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) throw new IOException("Unexpected end of index at " + position);
+        }
+        buffer.flip();
+    }
+
+    private void writePage(int pageId, Node node) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        node.encode(buffer);
+        buffer.position(0).limit(PAGE_SIZE);
+        writeFully(buffer, (long) pageId * PAGE_SIZE);
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) channel.write(buffer, start + buffer.position());
+    }
+
+    private boolean readHeader() throws IOException {
+        if (channel.size() < 2L * PAGE_SIZE) return false;
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        readFully(buffer, 0);
+        if (buffer.getInt() != MAGIC) return false;
+        root = buffer.getInt();
+        pageCount = buffer.getInt();
+        size = buffer.getLong();
+        sourceLength = buffer.getLong();
+        sourceModified = buffer.getLong();
+        boolean dirty = buffer.get() != 0;
+        if (dirty || root < 1 || root >= pageCount || (long) pageCount * PAGE_SIZE > channel.size()) return false;
+        valid = true;
+        clean = true;
+        return true;
+    }
+
+    private void writeHeader(boolean dirty) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        buffer.putInt(MAGIC).putInt(root).putInt(pageCount).putLong(size)
+                .putLong(sourceLength).putLong(sourceModified).put((byte) (dirty ? 1 : 0));
+        buffer.position(0).limit(PAGE_SIZE);
+        writeFully(buffer, 0);
+    }
+
+    /** Separator key and new right sibling produced by a split. */
+    private record Split(String key, int right) {
+    }
+
+    /** A decoded page: sorted keys with offsets in a leaf, or with child pages in an inner node. */
+    private static final class Node {
+        final boolean leaf;
+        final List<String> keys = new ArrayList<>();
+        final List<Long> values = new ArrayList<>();
+        final List<Integer> children = new ArrayList<>();
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        int entrySize(int i) {
+            return 2 + keys.get(i).getBytes(StandardCharsets.UTF_8).length + (leaf ? 8 : 4);
+        }
+
+        int encodedSize() {
+            int size = 3 + (leaf ? 0 : 4);
+            for (int i = 0; i < keys.size(); i++) size += entrySize(i);
+            return size;
+        }
+
+        void encode(ByteBuffer buffer) {
+            buffer.put(leaf ? LEAF : INTERNAL).putShort((short) keys.size());
+            if (!leaf) buffer.putInt(children.get(0));
+            for (int i = 0; i < keys.size(); i++) {
+                byte[] key = keys.get(i).getBytes(StandardCharsets.UTF_8);
+                buffer.putShort((short) key.length).put(key);
+                if (leaf) {
+                    buffer.putLong(values.get(i));
+                } else {
+                    buffer.putInt(children.get(i + 1));
+                }
+            }
+        }
+
+        static Node decode(ByteBuffer buffer) throws IOException {
+            byte type = buffer.get();
+            if (type != LEAF && type != INTERNAL) throw new IOException("Corrupt index page");
+            Node node = new Node(type == LEAF);
+            int count = buffer.getShort() & 0xFFFF;
+            if (!node.leaf) node.children.add(buffer.getInt());
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(key);
+                node.keys.add(new String(key, StandardCharsets.UTF_8));
+                if (node.leaf) {
+                    node.values.add(buffer.getLong());
+                } else {
+                    node.children.add(buffer.getInt());
+                }
+            }
+            return node;
+        }
+    }
+
+    private static final class CachedPage {
+        final Node node;
+        boolean dirty;
+
+        CachedPage(Node node, boolean dirty) {
+            this.node = node;
+            this.dirty = dirty;
+        }
+    }
+
+    /**
+     * Least recently used pages, up to a fixed number. A changed page is
+     * written out when it is evicted.
+     */
+    private final class PageCache {
+        final int capacity;
+        final LinkedHashMap<Integer, CachedPage> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+        PageCache(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void put(int pageId, Node node, boolean dirty) throws IOException {
+            CachedPage cached = pages.get(pageId);
+            if (cached != null && cached.node == node) {
+                cached.dirty |= dirty;
+            } else {
+                pages.put(pageId, new CachedPage(node, dirty));
+            }
+            Iterator<Map.Entry<Integer, CachedPage>> eldest = pages.entrySet().iterator();
+            while (pages.size() > capacity) {
+                Map.Entry<Integer, CachedPage> entry = eldest.next();
+                if (entry.getKey() == pageId) continue;
+                if (entry.getValue().dirty) writePage(entry.getKey(), entry.getValue().node);
+                eldest.remove();
+            }
+        }
+    }
+}
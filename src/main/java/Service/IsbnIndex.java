@@ -0,0 +1,89 @@
+package Service;
+
+import Domain.MediaItem;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Hash index from normalized ISBN to catalog item.
+ * ISBNs are trimmed and case-folded, so lookups match the
+ * case-insensitive comparison the repositories have always used.
+ *
+ * @param <T> the type of media item indexed
+ */
+public class IsbnIndex<T extends MediaItem> {
+
+    private final Map<String, T> items = new HashMap<>();
+
+    /**
+     * Normalizes an ISBN into its index key.
+     *
+     * @param isbn the raw ISBN
+     * @return the trimmed, lower-cased ISBN, or null if isbn is null
+     */
+    public static String normalize(String isbn) {
+        return isbn == null ? null : isbn.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the item with the given ISBN.
+     *
+     * @param isbn the ISBN to look up
+     * @return the item, or null if none is indexed
+     */
+    public T get(String isbn) {
+        String key = normalize(isbn);
+        return key == null ? null : items.get(key);
+    }
+
+    /**
+     * Indexes an item under its ISBN, replacing any previous entry.
+     * Items without an ISBN are not indexed.
+     *
+     * @param item the item to index
+     */
+    public void put(T item) {
+        String key = normalize(item.getIsbnOrId());
+        if (key != null) items.put(key, item);
+    }
+
+    /**
+     * Indexes an item only if no item with the same ISBN is indexed yet,
+     * so the first of several duplicate entries wins, as a linear scan would.
+     *
+     * @param item the item to index
+     */
+    public void putIfAbsent(T item) {
+        String key = normalize(item.getIsbnOrId());
+        if (key != null) items.putIfAbsent(key, item);
+    }
+
+    /**
+     * Replaces the whole index with the given items.
+     *
+     * @param all the items to index
+     */
+    public void rebuild(List<? extends T> all) {
+        items.clear();
+        for (T item : all) {
+            putIfAbsent(item);
+        }
+    }
+
+    /** Removes every entry. */
+    public void clear() {
+        items.clear();
+    }
+
+    /**
+     * Returns the number of indexed ISBNs.
+     *
+     * @return the index size
+     */
+    public int size() {
+        return items.size();
+    }
+}
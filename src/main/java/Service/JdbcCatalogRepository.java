@@ -0,0 +1,133 @@
+package Service;
+
+import Domain.Book;
+import Domain.CD;
+import Domain.MediaItem;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link CatalogRepository} on the {@code items} table of a
+ * {@link JdbcDatabase}. Books and CDs share the table and are told apart
+ * by their kind, with a unique index on kind and normalized ISBN.
+ *
+ * @param <T> the kind of item
+ */
+final class JdbcCatalogRepository<T extends MediaItem> implements CatalogRepository<T> {
+
+    /** Builds an item from its stored fields. */
+    interface ItemFactory<T> {
+        T create(String title, String author, String isbn);
+    }
+
+    static final String BOOK_KIND = "B";
+    static final String CD_KIND = "C";
+    static final String INSERT =
+            "INSERT INTO items (kind, isbn, isbn_key, title, author, available) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String COLUMNS = "title, author, isbn, available";
+
+    private final JdbcDatabase db;
+    private final String kind;
+    private final ItemFactory<T> factory;
+
+    private JdbcCatalogRepository(JdbcDatabase db, String kind, ItemFactory<T> factory) {
+        this.db = db;
+        this.kind = kind;
+        this.factory = factory;
+    }
+
+    static JdbcCatalogRepository<Book> books(JdbcDatabase db) {
+        return new JdbcCatalogRepository<>(db, BOOK_KIND, Book::new);
+    }
+
+    static JdbcCatalogRepository<CD> cds(JdbcDatabase db) {
+        return new JdbcCatalogRepository<>(db, CD_KIND, CD::new);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return db.run("reading catalog", new ArrayList<>(), c -> {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT " + COLUMNS + " FROM items WHERE kind = ? ORDER BY seq")) {
+                ps.setString(1, kind);
+                List<T> items = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) items.add(read(rs));
+                }
+                return items;
+            }
+        });
+    }
+
+    @Override
+    public T findByIsbn(String isbn) {
+        String key = IsbnIndex.normalize(isbn);
+        if (key == null) return null;
+        return db.run("reading catalog", null, c -> {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT " + COLUMNS + " FROM items WHERE kind = ? AND isbn_key = ?")) {
+                ps.setString(1, kind);
+                ps.setString(2, key);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? read(rs) : null;
+                }
+            }
+        });
+    }
+
+    private T read(ResultSet rs) throws SQLException {
+        T item = factory.create(rs.getString(1), rs.getString(2), rs.getString(3));
+        item.setAvailable(rs.getBoolean(4));
+        return item;
+    }
+
+    @Override
+    public void add(T item, int numberOfCopies) {
+        db.run("adding to catalog", false, c -> {
+            try (PreparedStatement ps = c.prepareStatement(INSERT)) {
+                bind(ps, item, true);
+                ps.executeUpdate();
+            }
+            db.copies().addCopiesByBookIsbn(item.getIsbnOrId(), numberOfCopies, true);
+            return true;
+        });
+    }
+
+    /**
+     * Sets the parameters of {@link #INSERT} for an item.
+     *
+     * @param ps        the insert statement
+     * @param item      the book or CD
+     * @param available the availability to store
+     * @throws SQLException if a parameter cannot be set
+     */
+    static void bind(PreparedStatement ps, MediaItem item, boolean available) throws SQLException {
+        ps.setString(1, item instanceof CD ? CD_KIND : BOOK_KIND);
+        ps.setString(2, item.getIsbnOrId());
+        ps.setString(3, IsbnIndex.normalize(item.getIsbnOrId()));
+        ps.setString(4, item.getTitle());
+        ps.setString(5, item.getAuthor());
+        ps.setBoolean(6, available);
+    }
+
+    @Override
+    public void updateAvailability(String isbn) {
+        String key = IsbnIndex.normalize(isbn);
+        if (key == null) return;
+        db.run("updating availability", 0, c -> {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "UPDATE items SET available = EXISTS (SELECT 1 FROM copies "
+                            + "WHERE copies.isbn_key = items.isbn_key AND copies.available) "
+                            + "WHERE kind = ? AND isbn_key = ?")) {
+                ps.setString(1, kind);
+                ps.setString(2, key);
+                return ps.executeUpdate();
+            }
+        });
+    }
+}
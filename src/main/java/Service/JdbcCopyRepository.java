@@ -0,0 +1,180 @@
+package Service;
+
+import Domain.MediaCopy;
+import Domain.MediaItem;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link CopyRepository} on the {@code copies} table of a
+ * {@link JdbcDatabase}, indexed by normalized ISBN and availability. Copy
+ * IDs are numbered per title as in the copies file, {@code isbn-index}.
+ */
+final class JdbcCopyRepository implements CopyRepository {
+
+    static final String INSERT = "INSERT INTO copies (copy_id, isbn_key, copy_index, available) VALUES (?, ?, ?, ?)";
+
+    private final JdbcDatabase db;
+
+    JdbcCopyRepository(JdbcDatabase db) {
+        this.db = db;
+    }
+
+    @Override
+    public void addCopiesByBookIsbn(String isbn, int numberOfCopies, boolean available) {
+        if (numberOfCopies <= 0) return;
+        if (db.findItem(isbn) == null) {
+            System.out.println("Cannot find media item with ISBN: " + isbn);
+            return;
+        }
+        String key = IsbnIndex.normalize(isbn);
+        db.run("adding copies", 0, c -> {
+            int start;
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT COALESCE(MAX(copy_index), 0) FROM copies WHERE isbn_key = ?")) {
+                ps.setString(1, key);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    start = rs.getInt(1) + 1;
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement(INSERT)) {
+                for (int i = 0; i < numberOfCopies; i++) {
+                    bind(ps, isbn + "-" + (start + i), key, available);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            return numberOfCopies;
+        });
+    }
+
+    /**
+     * Sets the parameters of {@link #INSERT} for a copy.
+     *
+     * @param ps        the insert statement
+     * @param copyId    the copy ID
+     * @param isbnKey   the normalized ISBN of the copied item
+     * @param available whether the copy is on the shelf
+     * @throws SQLException if a parameter cannot be set
+     */
+    static void bind(PreparedStatement ps, String copyId, String isbnKey, boolean available) throws SQLException {
+        ps.setString(1, copyId);
+        ps.setString(2, isbnKey);
+        ps.setInt(3, copyIndexOf(copyId));
+        ps.setBoolean(4, available);
+    }
+
+    /**
+     * Reads the number at the end of a copy ID.
+     *
+     * @param copyId the copy ID
+     * @return the copy number, or 0 if the ID does not end in one
+     */
+    static int copyIndexOf(String copyId) {
+        int dash = copyId.lastIndexOf('-');
+        try {
+            return dash < 0 ? 0 : Integer.parseInt(copyId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public int getAvailableCopiesCount(String isbn) {
+        String key = IsbnIndex.normalize(isbn);
+        if (key == null) return 0;
+        return db.run("reading copies", 0, c -> {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT COUNT(*) FROM copies WHERE isbn_key = ? AND available")) {
+                ps.setString(1, key);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    return rs.getInt(1);
+                }
+            }
+        });
+    }
+
+    @Override
+    public List<MediaCopy> getCopiesByIsbn(String isbn) {
+        MediaItem item = db.findItem(isbn);
+        if (item == null) return new ArrayList<>();
+        return db.run("reading copies", new ArrayList<>(), c -> {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT copy_id, available FROM copies WHERE isbn_key = ? ORDER BY seq")) {
+                ps.setString(1, IsbnIndex.normalize(isbn));
+                List<MediaCopy> copies = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) copies.add(new MediaCopy(rs.getString(1), item, rs.getBoolean(2)));
+                }
+                return copies;
+            }
+        });
+    }
+
+    @Override
+    public MediaCopy findCopyById(String copyId) {
+        return db.run("reading copies", null, c -> find(c, "copy_id = ?", copyId));
+    }
+
+    @Override
+    public MediaCopy checkoutCopy(String isbn) {
+        return db.run("checking out copy", null, c -> {
+            MediaCopy copy = find(c, "isbn_key = ? AND available", IsbnIndex.normalize(isbn));
+            if (copy != null) setAvailable(c, copy, false);
+            return copy;
+        });
+    }
+
+    @Override
+    public boolean releaseCopy(String copyId) {
+        return db.run("releasing copy", false, c -> {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "UPDATE copies SET available = TRUE WHERE copy_id = ? AND NOT available")) {
+                ps.setString(1, copyId);
+                return ps.executeUpdate() > 0;
+            }
+        });
+    }
+
+    @Override
+    public MediaCopy releaseAnyCopy(String isbn) {
+        return db.run("releasing copy", null, c -> {
+            MediaCopy copy = find(c, "isbn_key = ? AND NOT available", IsbnIndex.normalize(isbn));
+            if (copy != null) setAvailable(c, copy, true);
+            return copy;
+        });
+    }
+
+    /**
+     * Finds the first copy, in insertion order, matching a condition on one
+     * parameter.
+     */
+    private MediaCopy find(Connection c, String condition, String value) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT copy_id, isbn_key, available FROM copies WHERE " + condition
+                        + " ORDER BY seq FETCH FIRST 1 ROWS ONLY")) {
+            ps.setString(1, value);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                MediaItem item = db.findItem(rs.getString(2));
+                return item == null ? null : new MediaCopy(rs.getString(1), item, rs.getBoolean(3));
+            }
+        }
+    }
+
+    private static void setAvailable(Connection c, MediaCopy copy, boolean available) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("UPDATE copies SET available = ? WHERE copy_id = ?")) {
+            ps.setBoolean(1, available);
+            ps.setString(2, copy.getCopyId());
+            ps.executeUpdate();
+        }
+        copy.setAvailable(available);
+    }
+}
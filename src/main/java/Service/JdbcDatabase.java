@@ -0,0 +1,292 @@
+package Service;
+
+import Domain.Book;
+import Domain.CD;
+import Domain.MediaItem;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Embedded database holding the library in indexed tables, as an
+ * alternative to the text files. Opening a database creates any missing
+ * tables and indexes, and the repositories on it are handed out by
+ * {@link Repositories} once {@link Repositories#useDatabase(JdbcDatabase)}
+ * is called.
+ *
+ * <p>Any JDBC URL works; the in-process H2 engine is on the classpath, for
+ * example {@code jdbc:h2:./library} for a file next to the text files or
+ * {@code jdbc:h2:mem:test} for a throwaway database.</p>
+ *
+ * <p>Every repository operation runs as one transaction on a single shared
+ * connection, one operation at a time. Between {@link #begin()} and
+ * {@link #end(boolean)} the operations of one thread join a single
+ * transaction instead, which is how a {@link LibraryTransaction} makes a
+ * borrow or return atomic on this backend.</p>
+ */
+public final class JdbcDatabase implements AutoCloseable {
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS items ("
+                    + "seq BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "kind CHAR(1) NOT NULL, "
+                    + "isbn VARCHAR(64) NOT NULL, "
+                    + "isbn_key VARCHAR(64) NOT NULL, "
+                    + "title VARCHAR(512) NOT NULL, "
+                    + "author VARCHAR(512) NOT NULL, "
+                    + "available BOOLEAN NOT NULL, "
+                    + "CONSTRAINT items_by_isbn UNIQUE (kind, isbn_key))",
+            "CREATE TABLE IF NOT EXISTS copies ("
+                    + "seq BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "copy_id VARCHAR(96) NOT NULL UNIQUE, "
+                    + "isbn_key VARCHAR(64) NOT NULL, "
+                    + "copy_index INT NOT NULL, "
+                    + "available BOOLEAN NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS copies_by_item ON copies (isbn_key, available)",
+            "CREATE TABLE IF NOT EXISTS loans ("
+                    + "seq BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "loan_id VARCHAR(64) NOT NULL UNIQUE, "
+                    + "username VARCHAR(128) NOT NULL, "
+                    + "isbn VARCHAR(64) NOT NULL, "
+                    + "borrow_date DATE NOT NULL, "
+                    + "due_date DATE NOT NULL, "
+                    + "return_date DATE, "
+                    + "copy_id VARCHAR(96))",
+            "CREATE INDEX IF NOT EXISTS loans_by_user ON loans (username, return_date)",
+            "CREATE INDEX IF NOT EXISTS loans_by_due ON loans (return_date, due_date)",
+            "CREATE TABLE IF NOT EXISTS users ("
+                    + "seq BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "username VARCHAR(128) NOT NULL UNIQUE, "
+                    + "password VARCHAR(256) NOT NULL, "
+                    + "role VARCHAR(32) NOT NULL, "
+                    + "email VARCHAR(256), "
+                    + "last_login DATE)"
+    };
+
+    /**
+     * Work done on the connection inside a transaction.
+     *
+     * @param <T> the result type
+     */
+    interface Work<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    private final String url;
+    private final Connection connection;
+    private final JdbcCatalogRepository<Book> books;
+    private final JdbcCatalogRepository<CD> cds;
+    private final JdbcCopyRepository copies;
+    private final JdbcLoanRepository loans;
+    private final JdbcUserRepository users;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int depth;
+    private boolean rollbackOnly;
+
+    private JdbcDatabase(String url, Connection connection) {
+        this.url = url;
+        this.connection = connection;
+        this.books = JdbcCatalogRepository.books(this);
+        this.cds = JdbcCatalogRepository.cds(this);
+        this.copies = new JdbcCopyRepository(this);
+        this.loans = new JdbcLoanRepository(this, new TimeOrderedLoanIdGenerator());
+        this.users = new JdbcUserRepository(this);
+    }
+
+    /**
+     * Opens a database and creates any missing tables and indexes.
+     *
+     * @param url the JDBC URL
+     * @return the open database
+     * @throws SQLException if the database cannot be opened
+     */
+    public static JdbcDatabase open(String url) throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            for (String ddl : SCHEMA) statement.execute(ddl);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return new JdbcDatabase(url, connection);
+    }
+
+    /**
+     * Runs work as one transaction, rolled back if it fails. Work started
+     * from inside another transaction becomes part of it, and if it fails
+     * the enclosing transaction is rolled back too.
+     *
+     * @param work the work
+     * @param <T>  the result type
+     * @return the result of the work
+     * @throws SQLException if the work fails
+     */
+    <T> T transaction(Work<T> work) throws SQLException {
+        begin();
+        T result;
+        try {
+            result = work.run(connection);
+        } catch (SQLException | RuntimeException e) {
+            try {
+                end(false);
+            } catch (SQLException rollback) {
+                e.addSuppressed(rollback);
+            }
+            throw e;
+        }
+        end(true);
+        return result;
+    }
+
+    /**
+     * Starts a transaction on the current thread, or joins the one it has
+     * open. Other threads wait until the matching {@link #end(boolean)}.
+     *
+     * @throws SQLException if the transaction cannot be started
+     */
+    void begin() throws SQLException {
+        lock.lock();
+        if (depth++ > 0) return;
+        try {
+            connection.setAutoCommit(false);
+            rollbackOnly = false;
+        } catch (SQLException e) {
+            depth = 0;
+            lock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Ends the transaction started by the matching {@link #begin()}. A
+     * nested end only records whether its part failed; the outermost one
+     * commits, unless any part failed, or rolls back.
+     *
+     * @param commit true if the work succeeded
+     * @throws SQLException if the transaction cannot be finished, or was
+     *                      rolled back although commit was asked for
+     */
+    void end(boolean commit) throws SQLException {
+        try {
+            if (!commit) rollbackOnly = true;
+            if (--depth > 0) return;
+
+            boolean rollback = rollbackOnly;
+            rollbackOnly = false;
+            try {
+                if (rollback) {
+                    connection.rollback();
+                } else {
+                    connection.commit();
+                }
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            if (commit && rollback) throw new SQLException("Transaction rolled back after an earlier failure");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs work as one transaction for a repository operation. A failure is
+     * reported and the fallback returned, as the file repositories do with
+     * I/O errors.
+     *
+     * @param action   what the work does, for the error message
+     * @param fallback the result if the work fails
+     * @param work     the work
+     * @param <T>      the result type
+     * @return the result of the work, or the fallback
+     */
+    <T> T run(String action, T fallback, Work<T> work) {
+        try {
+            return transaction(work);
+        } catch (SQLException e) {
+            System.out.println("Error " + action + ": " + e.getMessage());
+            return fallback;
+        }
+    }
+
+    /**
+     * Returns the JDBC URL the database was opened with.
+     *
+     * @return the URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the books stored in this database.
+     *
+     * @return the book repository
+     */
+    public CatalogRepository<Book> books() {
+        return books;
+    }
+
+    /**
+     * Returns the CDs stored in this database.
+     *
+     * @return the CD repository
+     */
+    public CatalogRepository<CD> cds() {
+        return cds;
+    }
+
+    /**
+     * Returns the media copies stored in this database.
+     *
+     * @return the copy repository
+     */
+    public CopyRepository copies() {
+        return copies;
+    }
+
+    /**
+     * Returns the loans stored in this database.
+     *
+     * @return the loan repository
+     */
+    public LoanRepository loans() {
+        return loans;
+    }
+
+    /**
+     * Returns the users stored in this database.
+     *
+     * @return the user repository
+     */
+    public UserRepository users() {
+        return users;
+    }
+
+    /**
+     * Finds a book or CD by ISBN. Books win over CDs with the same ISBN, as
+     * in the file repositories.
+     *
+     * @param isbn the ISBN
+     * @return the item, or null if there is none
+     */
+    MediaItem findItem(String isbn) {
+        MediaItem book = books.findByIsbn(isbn);
+        return book != null ? book : cds.findByIsbn(isbn);
+    }
+
+    /** Closes the connection. */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.out.println("Error closing database: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
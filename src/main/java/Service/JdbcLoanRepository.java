@@ -0,0 +1,228 @@
+package Service;
+
+import Domain.Loan;
+import Domain.MediaItem;
+import Domain.User;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link LoanRepository} on the {@code loans} table of a
+ * {@link JdbcDatabase}. The due date is stored with each loan, so active,
+ * overdue and soon-due loans are index range scans. Returned loans stay in
+ * the table and make up the archive. Loan IDs come from the
+ * {@link LoanIdGenerator} the repository is created with.
+ */
+final class JdbcLoanRepository implements LoanRepository {
+
+    static final String INSERT = "INSERT INTO loans (loan_id, username, isbn, borrow_date, due_date, return_date, copy_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String COLUMNS = "loan_id, username, isbn, borrow_date, return_date, copy_id";
+
+    private final JdbcDatabase db;
+    private final LoanIdGenerator idGenerator;
+    private volatile boolean idsObserved;
+
+    JdbcLoanRepository(JdbcDatabase db, LoanIdGenerator idGenerator) {
+        this.db = db;
+        this.idGenerator = idGenerator;
+    }
+
+    /**
+     * Tells the ID generator about the newest time-ordered loan ID in the
+     * table, so it never issues an ID that is already taken.
+     */
+    private void observeLatestId() {
+        String latest = db.run("reading loans", null, c -> {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT MAX(loan_id) FROM loans WHERE CHAR_LENGTH(loan_id) = ?")) {
+                ps.setInt(1, TimeOrderedLoanIdGenerator.LENGTH);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getString(1) : null;
+                }
+            }
+        });
+        if (latest != null) idGenerator.observe(latest);
+    }
+
+    @Override
+    public Loan borrowItem(User user, MediaItem item, String copyId) {
+        if (user == null) throw new IllegalArgumentException("user is null");
+        if (item == null) throw new IllegalArgumentException("item is null");
+        if (!item.isAvailable()) throw new IllegalStateException("Item is not available");
+
+        if (!idsObserved) {
+            observeLatestId();
+            idsObserved = true;
+        }
+        Loan loan = new Loan(idGenerator.nextId(), user, item, LocalDate.now());
+        loan.setCopyId(copyId);
+        boolean saved = db.run("saving loan", false, c -> {
+            try (PreparedStatement ps = c.prepareStatement(INSERT)) {
+                bind(ps, loan);
+                return ps.executeUpdate() == 1;
+            }
+        });
+        return saved ? loan : null;
+    }
+
+    /**
+     * Sets the parameters of {@link #INSERT} for a loan.
+     *
+     * @param ps   the insert statement
+     * @param loan the loan
+     * @throws SQLException if a parameter cannot be set
+     */
+    static void bind(PreparedStatement ps, Loan loan) throws SQLException {
+        ps.setString(1, loan.getLoanId());
+        ps.setString(2, loan.getUser().getUsername());
+        ps.setString(3, loan.getMediaItem().getIsbnOrId());
+        ps.setDate(4, Date.valueOf(loan.getBorrowDate()));
+        ps.setDate(5, Date.valueOf(loan.getDueDate()));
+        ps.setDate(6, loan.getReturnDate() == null ? null : Date.valueOf(loan.getReturnDate()));
+        ps.setString(7, loan.getCopyId());
+    }
+
+    @Override
+    public boolean returnItem(String loanId, LocalDate returnDate) {
+        LocalDate date = returnDate != null ? returnDate : LocalDate.now();
+        return db.run("returning loan", false, c -> {
+            String id = resolveId(c, loanId);
+            if (id == null) return false;
+            try (PreparedStatement ps = c.prepareStatement(
+                    "UPDATE loans SET return_date = ? WHERE loan_id = ? AND return_date IS NULL")) {
+                ps.setDate(1, Date.valueOf(date));
+                ps.setString(2, id);
+                return ps.executeUpdate() > 0;
+            }
+        });
+    }
+
+    /**
+     * Finds the stored form of a loan ID. Time-ordered IDs are also found as
+     * typed by a user, as in {@link FileLoanRepository#findLoanById(String)}.
+     */
+    private static String resolveId(Connection c, String loanId) throws SQLException {
+        if (loanId == null) return null;
+        if (exists(c, loanId)) return loanId;
+        String typed = TimeOrderedLoanIdGenerator.normalize(loanId);
+        return typed != null && !typed.equals(loanId) && exists(c, typed) ? typed : null;
+    }
+
+    private static boolean exists(Connection c, String loanId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT 1 FROM loans WHERE loan_id = ?")) {
+            ps.setString(1, loanId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    @Override
+    public Loan findLoanById(String loanId) {
+        return db.run("reading loans", null, c -> {
+            String id = resolveId(c, loanId);
+            if (id == null) return null;
+            List<Loan> loans = query(c, "loan_id = ?", ps -> ps.setString(1, id));
+            return loans.isEmpty() ? null : loans.get(0);
+        });
+    }
+
+    @Override
+    public List<Loan> getActiveLoansForUser(String username) {
+        return select("username = ? AND return_date IS NULL ORDER BY seq", ps -> ps.setString(1, username));
+    }
+
+    @Override
+    public List<Loan> getAllActiveLoans() {
+        return select("return_date IS NULL ORDER BY seq", ps -> { });
+    }
+
+    @Override
+    public List<Loan> getOverdueLoans(LocalDate currentDate) {
+        return select("return_date IS NULL AND due_date < ? ORDER BY due_date, seq",
+                ps -> ps.setDate(1, Date.valueOf(currentDate)));
+    }
+
+    @Override
+    public List<Loan> getLoansDueWithin(LocalDate currentDate, int days) {
+        return select("return_date IS NULL AND due_date BETWEEN ? AND ? ORDER BY due_date, seq", ps -> {
+            ps.setDate(1, Date.valueOf(currentDate));
+            ps.setDate(2, Date.valueOf(currentDate.plusDays(Math.max(days, 0))));
+        });
+    }
+
+    @Override
+    public List<YearMonth> getArchivedPeriods() {
+        return db.run("reading loans", new ArrayList<>(), c -> {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT DISTINCT EXTRACT(YEAR FROM return_date) y, EXTRACT(MONTH FROM return_date) m "
+                            + "FROM loans WHERE return_date IS NOT NULL ORDER BY y, m");
+                 ResultSet rs = ps.executeQuery()) {
+                List<YearMonth> periods = new ArrayList<>();
+                while (rs.next()) periods.add(YearMonth.of(rs.getInt(1), rs.getInt(2)));
+                return periods;
+            }
+        });
+    }
+
+    @Override
+    public List<Loan> getArchivedLoans(YearMonth period) {
+        return select("return_date BETWEEN ? AND ? ORDER BY return_date, seq", ps -> {
+            ps.setDate(1, Date.valueOf(period.atDay(1)));
+            ps.setDate(2, Date.valueOf(period.atEndOfMonth()));
+        });
+    }
+
+    /** Sets the parameters of a loan query. */
+    private interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    private List<Loan> select(String where, Binder binder) {
+        return db.run("reading loans", new ArrayList<>(), c -> query(c, where, binder));
+    }
+
+    /**
+     * Reads the loans matching a condition. Each item is looked up once per
+     * query; loans of items no longer in the catalog are skipped, as when
+     * the loans file is loaded.
+     */
+    private List<Loan> query(Connection c, String where, Binder binder) throws SQLException {
+        Map<String, MediaItem> items = new HashMap<>();
+        Map<String, User> users = new HashMap<>();
+        List<Loan> loans = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement("SELECT " + COLUMNS + " FROM loans WHERE " + where)) {
+            binder.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    MediaItem item = items.computeIfAbsent(rs.getString(3), db::findItem);
+                    if (item == null) continue;
+                    Date returned = rs.getDate(5);
+                    Loan loan = new Loan(rs.getString(1),
+                            users.computeIfAbsent(rs.getString(2), JdbcLoanRepository::loanUser),
+                            item, rs.getDate(4).toLocalDate(), returned == null ? null : returned.toLocalDate());
+                    loan.setCopyId(rs.getString(6));
+                    loans.add(loan);
+                }
+            }
+        }
+        return loans;
+    }
+
+    /** The borrower of a loan, as the loans file records it: by username only. */
+    private static User loanUser(String username) {
+        return new User(username, "temp", username.equals("admin") ? "admin" : "customer");
+    }
+}
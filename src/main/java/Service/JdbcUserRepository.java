@@ -0,0 +1,160 @@
+package Service;
+
+import Domain.User;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * {@link UserRepository} on the {@code users} table of a
+ * {@link JdbcDatabase}, with a unique index on the username. The last login
+ * is stored as a date, as in the users file.
+ */
+final class JdbcUserRepository implements UserRepository {
+
+    static final String INSERT = "INSERT INTO users (username, password, role, email, last_login) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String COLUMNS = "username, password, role, email, last_login";
+
+    private final JdbcDatabase db;
+
+    JdbcUserRepository(JdbcDatabase db) {
+        this.db = db;
+    }
+
+    @Override
+    public User findUser(String username, String password) {
+        User user = findUserByUsername(username);
+        return user != null && user.getPassword().equals(password) ? user : null;
+    }
+
+    @Override
+    public User findUserByUsername(String username) {
+        return db.run("reading users", null, c -> {
+            try (PreparedStatement ps = c.prepareStatement("SELECT " + COLUMNS + " FROM users WHERE username = ?")) {
+                ps.setString(1, username);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? read(rs) : null;
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean addUser(String username, String password, String email, Date current) {
+        if (isUsernameExists(username)) {
+            System.out.println("Username already exists!");
+            return false;
+        }
+        User user = new User(username, password, "customer", email, current);
+        return db.run("writing users", false, c -> {
+            try (PreparedStatement ps = c.prepareStatement(INSERT)) {
+                bind(ps, user);
+                return ps.executeUpdate() == 1;
+            }
+        });
+    }
+
+    /**
+     * Sets the parameters of {@link #INSERT} for a user.
+     *
+     * @param ps   the insert statement
+     * @param user the user
+     * @throws SQLException if a parameter cannot be set
+     */
+    static void bind(PreparedStatement ps, User user) throws SQLException {
+        ps.setString(1, user.getUsername());
+        ps.setString(2, user.getPassword());
+        ps.setString(3, user.getRole());
+        ps.setString(4, user.getEmail());
+        ps.setDate(5, user.getLastLoginDate() == null ? null : java.sql.Date.valueOf(toLocalDate(user.getLastLoginDate())));
+    }
+
+    @Override
+    public boolean isUsernameExists(String username) {
+        return findUserByUsername(username) != null;
+    }
+
+    @Override
+    public void updateDate(User foundUser) {
+        Date now = new Date();
+        db.run("updating login date", 0, c -> {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "UPDATE users SET last_login = ? WHERE username = ? AND password = ?")) {
+                ps.setDate(1, java.sql.Date.valueOf(toLocalDate(now)));
+                ps.setString(2, foundUser.getUsername());
+                ps.setString(3, foundUser.getPassword());
+                return ps.executeUpdate();
+            }
+        });
+        foundUser.setLastLoginDate(now);
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        return db.run("reading users", new ArrayList<>(), c -> {
+            try (PreparedStatement ps = c.prepareStatement("SELECT " + COLUMNS + " FROM users ORDER BY seq");
+                 ResultSet rs = ps.executeQuery()) {
+                List<User> users = new ArrayList<>();
+                while (rs.next()) users.add(read(rs));
+                return users;
+            }
+        });
+    }
+
+    @Override
+    public boolean unregisterUserByUsername(String username) {
+        if (!delete(username)) {
+            System.out.println("User " + username + " not found.");
+            return false;
+        }
+        System.out.println("User " + username + " has been unregistered.");
+        return true;
+    }
+
+    @Override
+    public boolean unregisterAllUsers(List<User> inActiveUsers) {
+        List<String> removed = db.run("writing users", null, c -> {
+            List<String> names = new ArrayList<>();
+            for (User user : inActiveUsers) {
+                if (delete(user.getUsername())) names.add(user.getUsername());
+            }
+            return names;
+        });
+        if (removed == null) return false;
+        for (String username : removed) {
+            System.out.println("User " + username + " is inactive and has been unregistered.");
+        }
+        System.out.println("All inactive users have been unregistered.");
+        return true;
+    }
+
+    private boolean delete(String username) {
+        return db.run("writing users", false, c -> {
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM users WHERE username = ?")) {
+                ps.setString(1, username);
+                return ps.executeUpdate() > 0;
+            }
+        });
+    }
+
+    private static User read(ResultSet rs) throws SQLException {
+        java.sql.Date lastLogin = rs.getDate(5);
+        return new User(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                lastLogin == null ? null : toDate(lastLogin.toLocalDate()));
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return LocalDate.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+}
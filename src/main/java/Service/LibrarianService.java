@@ -3,6 +3,7 @@ package Service;
 import Domain.Loan;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
 
 /**
@@ -10,7 +11,7 @@ import java.util.List;
  */
 public class LibrarianService {
 
-    private FileLoanRepository loanRepository = new FileLoanRepository();
+    private LoanRepository loanRepository = Repositories.loans();
 
     public LibrarianService() {}
 
@@ -65,6 +66,39 @@ public class LibrarianService {
                 .toList();
     }
 
+    /**
+     * Returns a list of active loans due within the next given number of days.
+     *
+     * @param days the number of days to look ahead
+     * @return list of loans due soon, ordered by due date
+     */
+    public List<Loan> getLoansDueWithin(int days) {
+        return getLoansDueWithin(LocalDate.now(), days);
+    }
+
+    /**
+     * Returns a list of active loans due within the given number of days
+     * after the specified date.
+     *
+     * @param currentDate the date to count from
+     * @param days the number of days to look ahead
+     * @return list of loans due soon, ordered by due date
+     */
+    public List<Loan> getLoansDueWithin(LocalDate currentDate, int days) {
+        return loanRepository.getLoansDueWithin(currentDate, days);
+    }
+
+    /**
+     * Returns the loans that were returned in a given month, read from the
+     * loan archive.
+     *
+     * @param period the month the loans were returned in
+     * @return list of returned loans
+     */
+    public List<Loan> getReturnedLoans(YearMonth period) {
+        return loanRepository.getArchivedLoans(period);
+    }
+
     /**
      * Calculates the total fines for all overdue loans as of the specified date.
      *
@@ -0,0 +1,374 @@
+package Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Makes the file changes of one borrow or return atomic.
+ *
+ * <p>While a transaction is open on a thread, the repositories change their
+ * in-memory state as usual but hand their file writes to {@link #stage}
+ * instead of performing them, together with a redo record describing the
+ * change. {@link #commit()} appends all redo records and a commit record to
+ * the transaction log in a single write and forces it to disk. Only then
+ * are the staged writes performed, each file once and forced to disk, and
+ * the log deleted.</p>
+ *
+ * <p>A crash before the commit record reaches the disk leaves every data
+ * file untouched, so the transaction is simply dropped. A crash after it is
+ * repaired by {@link #recover()}, which replays the committed redo records
+ * into the repositories and writes their files again. Transactions run one
+ * at a time.</p>
+ *
+ * <p>The repositories also register how to undo each in-memory change with
+ * {@link #onRollback}. If the transaction ends without a successful commit,
+ * the changes are undone in reverse order, so memory matches the data files
+ * again.</p>
+ *
+ * <p>When {@link Repositories} holds a {@link JdbcDatabase}, the
+ * repositories write to its tables instead, and the transaction is a
+ * database transaction: {@link #begin()} starts it, {@link #commit()}
+ * commits it and {@link #close()} without a commit rolls it back. A failed
+ * repository operation inside it makes the commit roll back as well.</p>
+ *
+ * <p>The log is a {@link RecordLog} next to the loans file, so a block torn
+ * by a crash is cut off by its checksums. One block per transaction:</p>
+ * <pre><code>
+ * T;txId
+ * C;copyId;available                         (media copy)
+ * B;loanId;username;isbn;borrowDate[;copyId] (new loan, as in the loan journal)
+ * R;loanId;returnDate                        (returned loan)
+ * A;isbn                                     (catalog availability)
+ * K;txId;recordCount
+ * </code></pre>
+ */
+public final class LibraryTransaction implements AutoCloseable {
+
+    static final String SUFFIX = ".txn";
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    private static final ThreadLocal<LibraryTransaction> CURRENT = new ThreadLocal<>();
+    private static long lastId;
+    private static volatile RecordLog.Recovery lastRecovery = RecordLog.Recovery.NONE;
+
+    private final long id;
+    private final boolean logged;
+    private final JdbcDatabase db;
+    private final List<String> redo = new ArrayList<>();
+    private final Map<Object, BooleanSupplier> writes = new LinkedHashMap<>();
+    private final List<Runnable> undo = new ArrayList<>();
+    private boolean finished;
+
+    private LibraryTransaction(long id, boolean logged, JdbcDatabase db) {
+        this.id = id;
+        this.logged = logged;
+        this.db = db;
+    }
+
+    /**
+     * Opens a transaction on the current thread, waiting for any transaction
+     * open on another thread to finish. With the text files, a log left
+     * behind by a crash is recovered first; with a database, a database
+     * transaction is started.
+     *
+     * @return the open transaction
+     * @throws IllegalStateException if the thread already has a transaction,
+     *                               or the database transaction cannot start
+     */
+    public static LibraryTransaction begin() {
+        if (CURRENT.get() != null) throw new IllegalStateException("Transaction already open");
+        LOCK.lock();
+        JdbcDatabase db = Repositories.getDatabase();
+        try {
+            if (db != null) {
+                db.begin();
+            } else if (logFile().exists()) {
+                recover();
+            }
+        } catch (SQLException e) {
+            LOCK.unlock();
+            throw new IllegalStateException("Cannot start database transaction: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            LOCK.unlock();
+            throw e;
+        }
+        LibraryTransaction tx = new LibraryTransaction(++lastId, true, db);
+        CURRENT.set(tx);
+        return tx;
+    }
+
+    /**
+     * Stages a file write in the transaction open on the current thread.
+     * Writes staged under the same key are performed once, so a repository
+     * that rewrites a whole file passes itself as the key.
+     *
+     * @param key     identifies the write, or null if it must not be merged
+     * @param write   performs the write and reports success
+     * @param records the redo records describing the change
+     * @return true if the write was staged, false if there is no open
+     *         transaction and the caller has to write now
+     */
+    static boolean stage(Object key, BooleanSupplier write, String... records) {
+        LibraryTransaction tx = CURRENT.get();
+        if (tx == null) return false;
+        Collections.addAll(tx.redo, records);
+        tx.writes.put(key != null ? key : new Object(), write);
+        return true;
+    }
+
+    /**
+     * Registers how to undo an in-memory change made in the transaction open
+     * on the current thread, in case it ends without a successful commit.
+     *
+     * @param action restores the state before the change
+     * @return true if the action was registered, false if there is no open
+     *         transaction
+     */
+    static boolean onRollback(Runnable action) {
+        LibraryTransaction tx = CURRENT.get();
+        if (tx == null) return false;
+        tx.undo.add(action);
+        return true;
+    }
+
+    /**
+     * Checks whether a transaction is open on the current thread.
+     *
+     * @return true if writes are being staged
+     */
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Makes the staged changes durable with one commit record, then writes
+     * the data files. If the log cannot be written, the files are still
+     * written, without the crash guarantee. With a database, commits the
+     * database transaction. If the commit fails, the in-memory changes are
+     * undone.
+     *
+     * @return true if every data file was written, or the database
+     *         transaction committed
+     * @throws IllegalStateException if the transaction is already finished
+     */
+    public boolean commit() {
+        if (finished) throw new IllegalStateException("Transaction already finished");
+        finished = true;
+        try {
+            boolean committed = endDatabase(true);
+            boolean logWritten = !logged || redo.isEmpty() || appendToLog();
+            boolean written = performWrites();
+            if (written && logWritten) deleteLog();
+            if (!committed || !written) rollBack();
+            return committed && written;
+        } finally {
+            end();
+        }
+    }
+
+    /**
+     * Ends the transaction. If it was not committed, the staged writes are
+     * dropped, the data files stay as they were and the in-memory changes
+     * are undone. A database transaction is rolled back.
+     */
+    @Override
+    public void close() {
+        if (finished) return;
+        finished = true;
+        try {
+            endDatabase(false);
+            rollBack();
+        } finally {
+            end();
+        }
+    }
+
+    /** Undoes the registered in-memory changes, the last one first. */
+    private void rollBack() {
+        for (int i = undo.size() - 1; i >= 0; i--) {
+            try {
+                undo.get(i).run();
+            } catch (RuntimeException e) {
+                System.out.println("Error undoing transaction change: " + e.getMessage());
+            }
+        }
+        undo.clear();
+    }
+
+    private boolean endDatabase(boolean commit) {
+        if (db == null) return true;
+        try {
+            db.end(commit);
+            return true;
+        } catch (SQLException e) {
+            System.out.println("Error " + (commit ? "committing" : "rolling back") + " transaction: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void end() {
+        writes.clear();
+        undo.clear();
+        CURRENT.remove();
+        LOCK.unlock();
+    }
+
+    /**
+     * Performs the staged writes and forces them to disk whatever the sync
+     * mode, since the log that could redo them is deleted afterwards.
+     */
+    private boolean performWrites() {
+        boolean written = true;
+        SnapshotWriter.setThreadSync(true);
+        try {
+            for (BooleanSupplier write : writes.values()) {
+                written &= write.getAsBoolean();
+            }
+        } finally {
+            SnapshotWriter.setThreadSync(false);
+        }
+        return written;
+    }
+
+    private boolean appendToLog() {
+        List<String> block = new ArrayList<>(redo.size() + 2);
+        block.add("T;" + id);
+        block.addAll(redo);
+        block.add("K;" + id + ";" + redo.size());
+
+        RecordLog log = new RecordLog(logFile());
+        try {
+            log.appendAll(block, true);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error writing transaction log: " + e.getMessage());
+            return false;
+        } finally {
+            log.close();
+        }
+    }
+
+    private static void deleteLog() {
+        File log = logFile();
+        if (log.exists() && !log.delete()) {
+            System.out.println("Error deleting " + log.getName());
+        }
+    }
+
+    /**
+     * Replays the committed transactions in the log into the repositories,
+     * writes their files and deletes the log. An unfinished transaction at
+     * the end of the log never touched the data files and is dropped.
+     *
+     * @return the number of transactions replayed
+     */
+    public static int recover() {
+        LOCK.lock();
+        LibraryTransaction outer = CURRENT.get();
+        try {
+            File log = logFile();
+            if (!log.exists()) return 0;
+            List<List<String>> committed = readCommitted(log);
+
+            LibraryTransaction tx = new LibraryTransaction(0, false, null);
+            CURRENT.set(tx);
+            for (List<String> records : committed) {
+                for (String record : records) redo(record);
+            }
+            if (tx.performWrites()) deleteLog();
+            return committed.size();
+        } finally {
+            if (outer == null) CURRENT.remove();
+            else CURRENT.set(outer);
+            LOCK.unlock();
+        }
+    }
+
+    private static List<List<String>> readCommitted(File log) {
+        BlockReader reader = new BlockReader();
+        lastRecovery = new RecordLog(log).replay(reader);
+        return reader.committed;
+    }
+
+    /** Collects the records of each block that ends in a matching commit record. */
+    private static final class BlockReader implements Consumer<String> {
+        final List<List<String>> committed = new ArrayList<>();
+        String txId;
+        List<String> records;
+
+        @Override
+        public void accept(String line) {
+            if (line.startsWith("T;")) {
+                txId = line.substring(2);
+                records = new ArrayList<>();
+            } else if (line.startsWith("K;")) {
+                String[] p = line.split(";");
+                if (records != null && p.length == 3 && p[1].equals(txId)
+                        && p[2].equals(Integer.toString(records.size()))) {
+                    committed.add(records);
+                    lastId = Math.max(lastId, parseId(txId));
+                }
+                txId = null;
+                records = null;
+            } else if (records != null) {
+                records.add(line);
+            }
+        }
+    }
+
+    /**
+     * Returns what the last {@link #recover()} found in the log: records
+     * read, bytes of torn tail discarded and time taken.
+     *
+     * @return the recovery report
+     */
+    public static RecordLog.Recovery getLastRecovery() {
+        return lastRecovery;
+    }
+
+    private static long parseId(String txId) {
+        try {
+            return Long.parseLong(txId);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void redo(String record) {
+        String[] p = record.split(";");
+        try {
+            switch (p[0]) {
+                case "C" -> {
+                    if (p.length == 3) {
+                        FileMediaCopyRepository.getInstance().restoreCopy(p[1], Boolean.parseBoolean(p[2]));
+                    }
+                }
+                case "A" -> {
+                    if (p.length == 2) refreshAvailability(p[1]);
+                }
+                default -> FileLoanRepository.getInstance().redo(p);
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Skipping bad transaction record: " + record);
+        }
+    }
+
+    private static void refreshAvailability(String isbn) {
+        if (FileBookRepository.getInstance().findByIsbn(isbn) != null) {
+            FileBookRepository.getInstance().updateBookAvailability(isbn);
+        } else {
+            FileCDRepository.getInstance().updateCDAvailability(isbn);
+        }
+    }
+
+    static File logFile() {
+        String loansPath = FileLoanRepository.repoPath;
+        if (loansPath == null || loansPath.isEmpty()) loansPath = FileLoanRepository.FILE_PATH;
+        return new File(loansPath + SUFFIX);
+    }
+}
@@ -0,0 +1,113 @@
+package Service;
+
+import Domain.Loan;
+
+import java.io.*;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Archive of returned loans, kept in one partition file per month next to
+ * the loans snapshot file. A returned loan is filed under the month it was
+ * returned in, so new records only ever go to the latest partitions and
+ * older months are never rewritten.
+ *
+ * <p>Partitions use the loans file record format and live in a directory
+ * named after the snapshot file:</p>
+ * <pre><code>
+ * loans.txt.archive/2025-01.txt
+ * loans.txt.archive/2025-02.txt
+ * </code></pre>
+ *
+ * A loan can be archived twice if the process stops between archiving it
+ * and writing the snapshot that drops it, so readers keep the last record
+ * for each loan ID.
+ */
+public class LoanArchive {
+
+    static final String DIRECTORY_SUFFIX = ".archive";
+    private static final String PARTITION_SUFFIX = ".txt";
+
+    private final File directory;
+
+    /**
+     * Creates an archive for the given snapshot file path.
+     *
+     * @param snapshotPath the path of the loans snapshot file
+     */
+    public LoanArchive(String snapshotPath) {
+        this.directory = new File(snapshotPath + DIRECTORY_SUFFIX);
+    }
+
+    /**
+     * Appends returned loans to the partitions of their return months.
+     *
+     * @param returned the returned loans to archive
+     * @throws IOException if a partition cannot be written
+     */
+    public synchronized void append(List<Loan> returned) throws IOException {
+        if (returned.isEmpty()) return;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        Map<YearMonth, List<Loan>> byPeriod = new TreeMap<>();
+        for (Loan loan : returned) {
+            byPeriod.computeIfAbsent(YearMonth.from(loan.getReturnDate()), p -> new ArrayList<>()).add(loan);
+        }
+        for (Map.Entry<YearMonth, List<Loan>> entry : byPeriod.entrySet()) {
+            try (FileOutputStream file = new FileOutputStream(partitionFile(entry.getKey()), true);
+                 PrintWriter pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(file)))) {
+                for (Loan loan : entry.getValue()) {
+                    pw.println(FileLoanRepository.toRecord(loan));
+                }
+                pw.flush();
+                if (pw.checkError()) {
+                    throw new IOException("Error appending to " + partitionFile(entry.getKey()).getName());
+                }
+                if (SnapshotWriter.isSyncing()) file.getFD().sync();
+            }
+        }
+    }
+
+    /**
+     * Returns the months that have archived loans.
+     *
+     * @return the archived periods, oldest first
+     */
+    public synchronized List<YearMonth> getPeriods() {
+        List<YearMonth> periods = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(PARTITION_SUFFIX));
+        if (files == null) return periods;
+        for (File file : files) {
+            String name = file.getName();
+            try {
+                periods.add(YearMonth.parse(name.substring(0, name.length() - PARTITION_SUFFIX.length())));
+            } catch (DateTimeParseException e) {
+                // Not a partition file
+            }
+        }
+        Collections.sort(periods);
+        return periods;
+    }
+
+    /**
+     * Scans the partition of one month.
+     *
+     * @param period  the month to read
+     * @param handler the callback receiving each line of the partition
+     * @return false if the month has no partition
+     * @throws IOException if the partition cannot be read
+     */
+    public synchronized boolean scan(YearMonth period, RecordScanner.Handler handler) throws IOException {
+        File file = partitionFile(period);
+        if (!file.exists()) return false;
+        RecordScanner.scan(file.getPath(), handler);
+        return true;
+    }
+
+    private File partitionFile(YearMonth period) {
+        return new File(directory, period + PARTITION_SUFFIX);
+    }
+}
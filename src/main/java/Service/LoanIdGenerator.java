@@ -0,0 +1,30 @@
+package Service;
+
+import java.util.UUID;
+
+/**
+ * Strategy interface for minting loan IDs.
+ *
+ * @see FileLoanRepository#setIdGenerator(LoanIdGenerator)
+ */
+public interface LoanIdGenerator {
+
+    /** Random UUIDs, as loans were numbered before time-ordered IDs. */
+    LoanIdGenerator RANDOM_UUID = () -> UUID.randomUUID().toString();
+
+    /**
+     * Returns a new loan ID, different from every ID returned before.
+     *
+     * @return the loan ID
+     */
+    String nextId();
+
+    /**
+     * Tells the generator about an ID that is already in use, so it never
+     * issues that ID again. Called for every loan read at startup.
+     *
+     * @param existingId a loan ID found in storage
+     */
+    default void observe(String existingId) {
+    }
+}
@@ -0,0 +1,264 @@
+package Service;
+
+import Domain.Loan;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only journal of loan mutations kept next to the loans snapshot file.
+ * Each borrow or return is written as a single {@link RecordLog} record, so
+ * recording a checkout costs one append instead of a rewrite of the whole
+ * loan history, and a record torn by a crash is cut off at the next replay.
+ *
+ * <p>Record format:</p>
+ * <pre><code>
+ * B;loanId;username;itemId;borrowDate[;copyId]
+ * R;loanId;returnDate
+ * </code></pre>
+ *
+ * Replaying the journal is idempotent, so a snapshot that already contains
+ * some of the journaled records can safely be replayed on top of.
+ */
+public class LoanJournal {
+
+    static final String SUFFIX = ".journal";
+    static final String ROTATED_SUFFIX = ".compacting";
+
+    /**
+     * Receives journal records during {@link #replay(Listener)}.
+     */
+    public interface Listener {
+
+        /**
+         * Called for each borrow record.
+         *
+         * @param loanId     the loan ID
+         * @param username   the borrowing user
+         * @param itemId     the ISBN of the borrowed item
+         * @param borrowDate the borrow date
+         * @param copyId     the borrowed copy, or null if not recorded
+         */
+        void onBorrow(String loanId, String username, String itemId, LocalDate borrowDate, String copyId);
+
+        /**
+         * Called for each return record.
+         *
+         * @param loanId     the loan ID
+         * @param returnDate the return date
+         */
+        void onReturn(String loanId, LocalDate returnDate);
+    }
+
+    private final File file;
+    private final File rotated;
+    private final RecordLog log;
+    private final RecordLog rotatedLog;
+    private int recordCount;
+    private RecordLog.Recovery lastRecovery = RecordLog.Recovery.NONE;
+
+    /**
+     * Creates a journal for the given snapshot file path.
+     *
+     * @param snapshotPath the path of the loans snapshot file
+     */
+    public LoanJournal(String snapshotPath) {
+        this.file = new File(snapshotPath + SUFFIX);
+        this.rotated = new File(snapshotPath + SUFFIX + ROTATED_SUFFIX);
+        this.log = new RecordLog(file);
+        this.rotatedLog = new RecordLog(rotated);
+    }
+
+    /**
+     * Appends a borrow record for the given loan.
+     *
+     * @param loan the new loan
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void appendBorrow(Loan loan) throws IOException {
+        append(borrowRecord(loan));
+    }
+
+    /**
+     * Appends a return record.
+     *
+     * @param loanId     the returned loan
+     * @param returnDate the return date
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void appendReturn(String loanId, LocalDate returnDate) throws IOException {
+        append(returnRecord(loanId, returnDate));
+    }
+
+    /**
+     * Formats the borrow record of a loan.
+     *
+     * @param loan the new loan
+     * @return the record, without a line separator
+     */
+    static String borrowRecord(Loan loan) {
+        String record = String.format("B;%s;%s;%s;%s",
+                loan.getLoanId(),
+                loan.getUser().getUsername(),
+                loan.getMediaItem().getIsbnOrId(),
+                loan.getBorrowDate());
+        return loan.getCopyId() == null ? record : record + ";" + loan.getCopyId();
+    }
+
+    /**
+     * Formats a return record.
+     *
+     * @param loanId     the returned loan
+     * @param returnDate the return date
+     * @return the record, without a line separator
+     */
+    static String returnRecord(String loanId, LocalDate returnDate) {
+        return "R;" + loanId + ";" + returnDate;
+    }
+
+    /**
+     * Passes one borrow or return record to a listener.
+     *
+     * @param p        the fields of the record
+     * @param listener the callback receiving the record
+     * @return true if the fields form a borrow or return record
+     * @throws RuntimeException if a date in the record is malformed
+     */
+    static boolean dispatch(String[] p, Listener listener) {
+        if ((p.length == 5 || p.length == 6) && p[0].equals("B")) {
+            listener.onBorrow(p[1], p[2], p[3], LocalDate.parse(p[4]), p.length == 6 ? p[5] : null);
+            return true;
+        }
+        if (p.length == 3 && p[0].equals("R")) {
+            listener.onReturn(p[1], LocalDate.parse(p[2]));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Appends a record formatted by {@link #borrowRecord(Loan)} or
+     * {@link #returnRecord(String, LocalDate)}.
+     *
+     * The record is forced to disk when {@link SnapshotWriter#isSyncing()}.
+     *
+     * @param record the record, without a line separator
+     * @throws IOException if the record cannot be written
+     */
+    synchronized void append(String record) throws IOException {
+        log.appendAll(List.of(record), SnapshotWriter.isSyncing());
+        recordCount++;
+    }
+
+    /**
+     * Replays every record in the journal, in write order. Records of a
+     * rotated journal left behind by an interrupted compaction come first.
+     * A torn or corrupt tail is cut off, and malformed records are skipped.
+     *
+     * @param listener the callback receiving the records
+     * @return the number of records replayed
+     */
+    public synchronized int replay(Listener listener) {
+        int[] replayed = {0};
+        RecordLog.Recovery recovery = replayLog(rotatedLog, listener, replayed)
+                .plus(replayLog(log, listener, replayed));
+        recordCount = replayed[0];
+        lastRecovery = recovery;
+        return replayed[0];
+    }
+
+    private static RecordLog.Recovery replayLog(RecordLog source, Listener listener, int[] replayed) {
+        return source.replay(record -> {
+            try {
+                if (dispatch(record.split(";"), listener)) replayed[0]++;
+            } catch (RuntimeException e) {
+                System.out.println("Skipping bad journal record: " + record);
+            }
+        });
+    }
+
+    /**
+     * Returns what the last {@link #replay(Listener)} found in the journal
+     * files: records read, bytes of torn tail discarded and time taken.
+     *
+     * @return the recovery report
+     */
+    public synchronized RecordLog.Recovery getLastRecovery() {
+        return lastRecovery;
+    }
+
+    /**
+     * Moves the current records aside so a snapshot can be written while new
+     * records keep going to a fresh journal. If an earlier rotated journal is
+     * still present, the current records are appended to it.
+     */
+    public synchronized void rotate() {
+        log.close();
+        rotatedLog.close();
+        recordCount = 0;
+        if (!file.exists()) return;
+
+        if (!rotated.exists()) {
+            if (file.renameTo(rotated)) return;
+        }
+        List<String> records = new ArrayList<>();
+        log.replay(records::add);
+        try {
+            if (!records.isEmpty()) rotatedLog.appendAll(records, false);
+        } catch (IOException e) {
+            System.out.println("Error rotating loan journal: " + e.getMessage());
+            return;
+        }
+        deleteLog(log);
+    }
+
+    /**
+     * Deletes the rotated journal once its records are in a snapshot.
+     */
+    public synchronized void discardRotated() {
+        deleteLog(rotatedLog);
+    }
+
+    /**
+     * Discards all journaled records. Called once they have been folded
+     * into a new snapshot.
+     */
+    public synchronized void clear() {
+        deleteLog(log);
+        deleteLog(rotatedLog);
+        recordCount = 0;
+    }
+
+    private static void deleteLog(RecordLog target) {
+        if (!target.delete()) {
+            System.out.println("Error deleting " + target.getFile().getName());
+        }
+    }
+
+    /**
+     * Returns the number of records written or replayed since the last clear.
+     *
+     * @return the journal record count
+     */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Checks whether there is a journal on disk.
+     *
+     * @return true if there is a journal to replay
+     */
+    public boolean exists() {
+        return file.exists() || rotated.exists();
+    }
+
+    /** Closes the journal files, if open. */
+    public synchronized void close() {
+        log.close();
+        rotatedLog.close();
+    }
+}
@@ -0,0 +1,498 @@
+package Service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Log-structured store of returned loans, keyed by loan ID, kept next to
+ * the loans snapshot file. It lets a loan be found by ID after the
+ * {@link LoanArchive} has taken it out of memory, without scanning the
+ * monthly partitions.
+ *
+ * <p>New records go into a sorted in-memory memtable and are appended to a
+ * {@link RecordLog}, so they survive a restart. Once the memtable holds
+ * {@link #DEFAULT_FLUSH_THRESHOLD} records it is written out as an
+ * immutable segment file: the records sorted by loan ID, followed by a
+ * sparse index of every {@value #INDEX_INTERVAL}th key and a
+ * {@link BloomFilter}. Only the index and filter of a segment are held in
+ * memory. A lookup checks the memtable, then the segments from newest to
+ * oldest, skipping any whose filter rules the ID out, and reads one index
+ * block from each remaining segment.</p>
+ *
+ * <p>Segments are merged in the background, {@value #FAN_IN} of a similar
+ * size at a time, so their number grows with the logarithm of the loan
+ * history. A segment file is named after the range of flushes it holds. A
+ * merge writes its output before deleting its inputs, and a segment whose
+ * range lies inside another's is left over from an interrupted merge and
+ * is deleted on open.</p>
+ * <pre><code>
+ * loans.txt.ledger/memtable.log
+ * loans.txt.ledger/0000000001-0000000004.seg
+ * loans.txt.ledger/0000000005-0000000005.seg
+ * </code></pre>
+ *
+ * Records use the loans file format, with the loan ID as the first field.
+ * A later record for the same ID replaces an earlier one.
+ */
+public class LoanLedger {
+
+    static final String DIRECTORY_SUFFIX = ".ledger";
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String MEMTABLE_LOG = "memtable.log";
+
+    /** Number of memtable records that triggers a flush to a new segment. */
+    static final int DEFAULT_FLUSH_THRESHOLD = 4096;
+
+    /** Number of segments of one size that are merged into one. */
+    static final int FAN_IN = 4;
+
+    /** Number of records per sparse index entry. */
+    static final int INDEX_INTERVAL = 32;
+
+    private static final int MAGIC = 0x4C4C5331;
+    private static final int FOOTER_LENGTH = 16;
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "loan-ledger-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final File directory;
+    private final int flushThreshold;
+    private final RecordLog memtableLog;
+    private final TreeMap<String, String> memtable = new TreeMap<>();
+    private final List<Segment> segments = new ArrayList<>();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+    private final Object compactionLock = new Object();
+    private boolean opened;
+    private long lastSeq;
+
+    /**
+     * Creates a ledger for the given snapshot file path. Nothing is read
+     * until the ledger is first used.
+     *
+     * @param snapshotPath the path of the loans snapshot file
+     */
+    public LoanLedger(String snapshotPath) {
+        this(snapshotPath, DEFAULT_FLUSH_THRESHOLD);
+    }
+
+    LoanLedger(String snapshotPath, int flushThreshold) {
+        this.directory = new File(snapshotPath + DIRECTORY_SUFFIX);
+        this.flushThreshold = flushThreshold;
+        this.memtableLog = new RecordLog(new File(directory, MEMTABLE_LOG));
+    }
+
+    /**
+     * Adds loan records, replacing any earlier record with the same loan ID.
+     *
+     * @param records the records, in the loans file format
+     * @throws IOException if the records cannot be logged or flushed
+     */
+    public synchronized void putAll(Collection<String> records) throws IOException {
+        if (records.isEmpty()) return;
+        ensureOpen();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        memtableLog.appendAll(records, SnapshotWriter.isSyncing());
+        for (String record : records) memtable.put(keyOf(record), record);
+        if (memtable.size() >= flushThreshold) flush();
+    }
+
+    /**
+     * Finds the record of a loan.
+     *
+     * @param loanId the loan ID
+     * @return the latest record for the loan, or null if there is none
+     * @throws IOException if a segment cannot be read
+     */
+    public synchronized String get(String loanId) throws IOException {
+        ensureOpen();
+        String record = memtable.get(loanId);
+        for (int i = segments.size() - 1; record == null && i >= 0; i--) {
+            record = segments.get(i).get(loanId);
+        }
+        return record;
+    }
+
+    /**
+     * Writes the memtable out as a new segment and schedules a background
+     * merge if enough segments of one size have built up.
+     *
+     * @throws IOException if the segment cannot be written; the memtable is
+     *                     then kept
+     */
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        if (memtable.isEmpty()) return;
+        long seq = lastSeq + 1;
+        segments.add(Segment.write(directory, seq, seq, memtable.values().iterator(), memtable.size()));
+        lastSeq = seq;
+        memtable.clear();
+        memtableLog.delete();
+        scheduleCompaction();
+    }
+
+    /**
+     * Merges runs of {@value #FAN_IN} or more adjacent segments of a similar
+     * size until there are none left. Lookups and flushes continue while a
+     * merge is written.
+     *
+     * @throws IOException if a merged segment cannot be written; the
+     *                     segments are then unchanged
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            List<Segment> run;
+            while ((run = nextRun()) != null) {
+                Segment merged = Segment.merge(directory, run);
+                synchronized (this) {
+                    int at = segments.indexOf(run.get(0));
+                    segments.subList(at, at + run.size()).clear();
+                    segments.add(at, merged);
+                }
+                for (Segment segment : run) segment.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of segment files.
+     *
+     * @return the segment count
+     * @throws IOException if the ledger cannot be opened
+     */
+    public synchronized int getSegmentCount() throws IOException {
+        ensureOpen();
+        return segments.size();
+    }
+
+    /**
+     * Returns the number of records waiting in the memtable.
+     *
+     * @return the memtable size
+     * @throws IOException if the ledger cannot be opened
+     */
+    public synchronized int getMemtableSize() throws IOException {
+        ensureOpen();
+        return memtable.size();
+    }
+
+    /**
+     * Loads the segment indexes and filters and replays the memtable log.
+     * Segments left over from an interrupted merge are deleted.
+     */
+    private void ensureOpen() throws IOException {
+        if (opened) return;
+        List<Segment> found = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                long[] range = parseRange(file.getName());
+                if (range != null) found.add(Segment.open(file, range[0], range[1]));
+            }
+        }
+        found.sort(Comparator.comparingLong((Segment s) -> s.firstSeq).thenComparingLong(s -> -s.lastSeq));
+        for (Segment segment : found) {
+            if (segment.lastSeq <= lastSeq) {
+                segment.delete();
+                continue;
+            }
+            segments.add(segment);
+            lastSeq = segment.lastSeq;
+        }
+        memtableLog.replay(record -> memtable.put(keyOf(record), record));
+        opened = true;
+    }
+
+    private void scheduleCompaction() {
+        if (nextRun() == null) return;
+        if (!compactionScheduled.compareAndSet(false, true)) return;
+
+        COMPACTOR.execute(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                System.out.println("Error compacting loan ledger: " + e.getMessage());
+            } finally {
+                compactionScheduled.set(false);
+            }
+        });
+    }
+
+    /**
+     * Finds the oldest run of adjacent segments of the same size tier that
+     * is long enough to merge.
+     */
+    private synchronized List<Segment> nextRun() {
+        int start = 0;
+        for (int i = 1; i <= segments.size(); i++) {
+            if (i == segments.size() || tier(segments.get(i)) != tier(segments.get(start))) {
+                if (i - start >= FAN_IN) return new ArrayList<>(segments.subList(start, i));
+                start = i;
+            }
+        }
+        return null;
+    }
+
+    /** Size tier of a segment: a tier holds up to FAN_IN times the records of the one below. */
+    private int tier(Segment segment) {
+        int tier = 0;
+        for (long limit = (long) flushThreshold * FAN_IN; segment.recordCount >= limit && tier < 32; limit *= FAN_IN) {
+            tier++;
+        }
+        return tier;
+    }
+
+    static String keyOf(String record) {
+        int end = record.indexOf(';');
+        return end < 0 ? record : record.substring(0, end);
+    }
+
+    private static String segmentName(long firstSeq, long lastSeq) {
+        return String.format("%010d-%010d%s", firstSeq, lastSeq, SEGMENT_SUFFIX);
+    }
+
+    private static long[] parseRange(String name) {
+        String[] parts = name.substring(0, name.length() - SEGMENT_SUFFIX.length()).split("-");
+        if (parts.length != 2) return null;
+        try {
+            return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * An immutable segment file, with its sparse index and filter in memory.
+     * The file holds a magic number, the length-prefixed records in key
+     * order, the index, the filter and a footer giving the end of the
+     * records, the record count and the magic number again.
+     */
+    private static final class Segment {
+        final File file;
+        final long firstSeq;
+        final long lastSeq;
+        final int recordCount;
+        final String[] indexKeys;
+        final long[] indexOffsets;
+        final long dataEnd;
+        final BloomFilter filter;
+
+        private Segment(File file, long firstSeq, long lastSeq, int recordCount,
+                        String[] indexKeys, long[] indexOffsets, long dataEnd, BloomFilter filter) {
+            this.file = file;
+            this.firstSeq = firstSeq;
+            this.lastSeq = lastSeq;
+            this.recordCount = recordCount;
+            this.indexKeys = indexKeys;
+            this.indexOffsets = indexOffsets;
+            this.dataEnd = dataEnd;
+            this.filter = filter;
+        }
+
+        /**
+         * Writes records, sorted by key with no key twice, to a new segment
+         * file through a {@link SnapshotWriter}.
+         */
+        static Segment write(File directory, long firstSeq, long lastSeq, Iterator<String> records,
+                             int expectedRecords) throws IOException {
+            File file = new File(directory, segmentName(firstSeq, lastSeq));
+            BloomFilter filter = new BloomFilter(expectedRecords);
+            List<String> keys = new ArrayList<>();
+            List<Long> offsets = new ArrayList<>();
+            byte[] length = new byte[4];
+            long offset = 4;
+            int count = 0;
+
+            try (SnapshotWriter out = SnapshotWriter.open(file.getPath())) {
+                out.write(ByteBuffer.wrap(length).putInt(0, MAGIC).array(), 0, 4);
+                while (records.hasNext()) {
+                    String record = records.next();
+                    String key = keyOf(record);
+                    filter.add(key);
+                    if (count % INDEX_INTERVAL == 0) {
+                        keys.add(key);
+                        offsets.add(offset);
+                    }
+                    byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+                    out.write(ByteBuffer.wrap(length).putInt(0, bytes.length).array(), 0, 4);
+                    out.write(bytes, 0, bytes.length);
+                    offset += 4 + bytes.length;
+                    count++;
+                }
+
+                ByteArrayOutputStream tail = new ByteArrayOutputStream();
+                DataOutputStream data = new DataOutputStream(tail);
+                data.writeInt(keys.size());
+                for (int i = 0; i < keys.size(); i++) {
+                    data.writeUTF(keys.get(i));
+                    data.writeLong(offsets.get(i));
+                }
+                filter.write(data);
+                data.writeLong(offset);
+                data.writeInt(count);
+                data.writeInt(MAGIC);
+                out.write(tail.toByteArray(), 0, tail.size());
+                out.commit();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            long[] indexOffsets = new long[offsets.size()];
+            for (int i = 0; i < indexOffsets.length; i++) indexOffsets[i] = offsets.get(i);
+            return new Segment(file, firstSeq, lastSeq, count, keys.toArray(new String[0]), indexOffsets,
+                    offset, filter);
+        }
+
+        /** Reads the index and filter of a segment file. */
+        static Segment open(File file, long firstSeq, long lastSeq) throws IOException {
+            try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                long length = in.length();
+                if (length < 4 + FOOTER_LENGTH) throw new IOException("Truncated segment " + file.getName());
+                in.seek(length - FOOTER_LENGTH);
+                long dataEnd = in.readLong();
+                int count = in.readInt();
+                if (in.readInt() != MAGIC || dataEnd < 4 || dataEnd > length - FOOTER_LENGTH) {
+                    throw new IOException("Corrupt segment " + file.getName());
+                }
+
+                byte[] tail = new byte[(int) (length - FOOTER_LENGTH - dataEnd)];
+                in.seek(dataEnd);
+                in.readFully(tail);
+                DataInputStream data = new DataInputStream(new ByteArrayInputStream(tail));
+                int entries = data.readInt();
+                String[] keys = new String[entries];
+                long[] offsets = new long[entries];
+                for (int i = 0; i < entries; i++) {
+                    keys[i] = data.readUTF();
+                    offsets[i] = data.readLong();
+                }
+                return new Segment(file, firstSeq, lastSeq, count, keys, offsets, dataEnd, BloomFilter.read(data));
+            }
+        }
+
+        /**
+         * Merges adjacent segments, oldest first, into one. For a key held by
+         * several of them the record of the newest wins.
+         */
+        static Segment merge(File directory, List<Segment> run) throws IOException {
+            List<Cursor> cursors = new ArrayList<>();
+            PriorityQueue<Cursor> queue = new PriorityQueue<>(
+                    Comparator.comparing((Cursor c) -> c.key).thenComparingInt(c -> -c.age));
+            try {
+                int expected = 0;
+                for (int i = 0; i < run.size(); i++) {
+                    Cursor cursor = new Cursor(run.get(i), i);
+                    cursors.add(cursor);
+                    expected += run.get(i).recordCount;
+                    if (cursor.advance()) queue.add(cursor);
+                }
+
+                Iterator<String> merged = new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return !queue.isEmpty();
+                    }
+
+                    @Override
+                    public String next() {
+                        Cursor top = queue.poll();
+                        String record = top.record;
+                        String key = top.key;
+                        requeue(top);
+                        while (!queue.isEmpty() && queue.peek().key.equals(key)) requeue(queue.poll());
+                        return record;
+                    }
+
+                    private void requeue(Cursor cursor) {
+                        try {
+                            if (cursor.advance()) queue.add(cursor);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                };
+                return write(directory, run.get(0).firstSeq, run.get(run.size() - 1).lastSeq, merged, expected);
+            } finally {
+                for (Cursor cursor : cursors) cursor.close();
+            }
+        }
+
+        /** Finds a record through the filter and one index block. */
+        String get(String key) throws IOException {
+            if (indexKeys.length == 0 || !filter.mightContain(key)) return null;
+            int block = Arrays.binarySearch(indexKeys, key);
+            if (block < 0) block = -block - 2;
+            if (block < 0) return null;
+
+            long start = indexOffsets[block];
+            long end = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataEnd;
+            byte[] bytes = new byte[(int) (end - start)];
+            try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                in.seek(start);
+                in.readFully(bytes);
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt();
+                String record = new String(bytes, buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+                int order = keyOf(record).compareTo(key);
+                if (order == 0) return record;
+                if (order > 0) return null;
+            }
+            return null;
+        }
+
+        void delete() {
+            if (file.exists() && !file.delete()) {
+                System.out.println("Error deleting " + file.getName());
+            }
+        }
+    }
+
+    /** Reads the records of a segment in order, for a merge. */
+    private static final class Cursor implements Closeable {
+        final int age;
+        final DataInputStream in;
+        int remaining;
+        String record;
+        String key;
+
+        Cursor(Segment segment, int age) throws IOException {
+            this.age = age;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file), 64 * 1024));
+            this.remaining = segment.recordCount;
+            try {
+                if (in.readInt() != MAGIC) throw new IOException("Corrupt segment " + segment.file.getName());
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) return false;
+            remaining--;
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            record = new String(bytes, StandardCharsets.UTF_8);
+            key = keyOf(record);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
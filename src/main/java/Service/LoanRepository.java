@@ -0,0 +1,108 @@
+package Service;
+
+import Domain.Loan;
+import Domain.MediaItem;
+import Domain.User;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Storage of loans, active and returned.
+ *
+ * @see Repositories
+ */
+public interface LoanRepository {
+
+    /**
+     * Borrows a media item for a user and creates a new loan.
+     *
+     * @param user the user borrowing the item
+     * @param item the media item to borrow
+     * @return the created Loan
+     * @throws IllegalArgumentException if user or item is null
+     * @throws IllegalStateException if item is not available
+     */
+    default Loan borrowItem(User user, MediaItem item) {
+        return borrowItem(user, item, null);
+    }
+
+    /**
+     * Borrows a specific copy of a media item for a user and creates a new
+     * loan that records the copy.
+     *
+     * @param user   the user borrowing the item
+     * @param item   the media item to borrow
+     * @param copyId the ID of the borrowed copy, or null if not tracked
+     * @return the created Loan
+     * @throws IllegalArgumentException if user or item is null
+     * @throws IllegalStateException if item is not available
+     */
+    Loan borrowItem(User user, MediaItem item, String copyId);
+
+    /**
+     * Returns a borrowed item by loan ID.
+     *
+     * @param loanId     the loan ID
+     * @param returnDate the return date (null = today)
+     * @return true if return successful, false otherwise
+     */
+    boolean returnItem(String loanId, LocalDate returnDate);
+
+    /**
+     * Finds a loan by its ID.
+     *
+     * @param loanId the loan ID
+     * @return the Loan if found, null otherwise
+     */
+    Loan findLoanById(String loanId);
+
+    /**
+     * Returns all active loans for a specific user.
+     *
+     * @param username the user's username
+     * @return list of active loans
+     */
+    List<Loan> getActiveLoansForUser(String username);
+
+    /**
+     * Returns all active loans.
+     *
+     * @return list of active loans
+     */
+    List<Loan> getAllActiveLoans();
+
+    /**
+     * Returns all overdue loans as of the specified date.
+     *
+     * @param currentDate the date to check overdue
+     * @return list of overdue loans
+     */
+    List<Loan> getOverdueLoans(LocalDate currentDate);
+
+    /**
+     * Returns the active loans that fall due from the specified date up to
+     * and including the given number of days later, ordered by due date.
+     *
+     * @param currentDate the first day of the period
+     * @param days        the number of days after currentDate to include
+     * @return list of loans due in the period
+     */
+    List<Loan> getLoansDueWithin(LocalDate currentDate, int days);
+
+    /**
+     * Returns the months that have archived loans.
+     *
+     * @return the archived periods, oldest first
+     */
+    List<YearMonth> getArchivedPeriods();
+
+    /**
+     * Returns the loans returned in one month.
+     *
+     * @param period the month the loans were returned in
+     * @return the returned loans
+     */
+    List<Loan> getArchivedLoans(YearMonth period);
+}
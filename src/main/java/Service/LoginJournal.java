@@ -0,0 +1,129 @@
+package Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Append-only journal of last-login dates kept next to the users file.
+ * A login is recorded as one short {@link RecordLog} record instead of a
+ * rewrite of every user, and the dates are merged into the users when the
+ * file is read.
+ *
+ * <p>Record format:</p>
+ * <pre><code>
+ * username;loginDate
+ * </code></pre>
+ *
+ * Later records for the same user win, so replaying the journal on top of
+ * a users file that already contains some of the dates is harmless.
+ */
+public class LoginJournal {
+
+    static final String SUFFIX = ".logins";
+
+    /**
+     * Receives journal records during {@link #replay(Listener)}.
+     */
+    public interface Listener {
+
+        /**
+         * Called for each login record.
+         *
+         * @param username  the user who logged in
+         * @param loginDate the login date
+         */
+        void onLogin(String username, LocalDate loginDate);
+    }
+
+    private final RecordLog log;
+    private int recordCount;
+
+    /**
+     * Creates a journal for the given users file path.
+     *
+     * @param usersPath the path of the users file
+     */
+    public LoginJournal(String usersPath) {
+        this.log = new RecordLog(new File(usersPath + SUFFIX));
+    }
+
+    /**
+     * Appends a login record.
+     *
+     * @param username  the user who logged in
+     * @param loginDate the login date
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void append(String username, LocalDate loginDate) throws IOException {
+        log.append(username + ";" + loginDate);
+        recordCount++;
+    }
+
+    /**
+     * Replays every record in the journal, in write order. A torn or
+     * corrupt tail is cut off, and malformed records are skipped.
+     *
+     * @param listener the callback receiving the records
+     * @return the number of records replayed
+     */
+    public synchronized int replay(Listener listener) {
+        int[] replayed = {0};
+        log.replay(record -> {
+            String[] p = record.split(";");
+            if (p.length != 2) return;
+            try {
+                listener.onLogin(p[0], LocalDate.parse(p[1]));
+                replayed[0]++;
+            } catch (RuntimeException e) {
+                System.out.println("Skipping bad login record: " + p[0]);
+            }
+        });
+        recordCount = replayed[0];
+        return replayed[0];
+    }
+
+    /**
+     * Returns what the last {@link #replay(Listener)} found in the journal:
+     * records read, bytes of torn tail discarded and time taken.
+     *
+     * @return the recovery report
+     */
+    public synchronized RecordLog.Recovery getLastRecovery() {
+        return log.getLastRecovery();
+    }
+
+    /**
+     * Discards all journaled records. Called once they have been written
+     * into the users file.
+     */
+    public synchronized void clear() {
+        if (!log.delete()) {
+            System.out.println("Error deleting " + log.getFile().getName());
+        }
+        recordCount = 0;
+    }
+
+    /**
+     * Returns the number of records written or replayed since the last clear.
+     *
+     * @return the journal record count
+     */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Checks whether there is a journal on disk.
+     *
+     * @return true if there is a journal to replay
+     */
+    public boolean exists() {
+        return log.exists();
+    }
+
+    /** Closes the journal file, if open. */
+    public synchronized void close() {
+        log.close();
+    }
+}
@@ -0,0 +1,145 @@
+package Service;
+
+import Domain.MediaItem;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Catalog-wide identity map of media items.
+ *
+ * <p>Each book or CD is held by exactly one object per ISBN. The catalog
+ * repositories intern every item they load, so reloading a catalog updates
+ * the objects that loans and media copies already point at instead of
+ * creating new ones next to them.</p>
+ *
+ * <p>Items are held weakly: an item that nothing else refers to any more is
+ * dropped, and is read again the next time it is looked up. This keeps the
+ * registry from growing with the catalog in index mode, where only the
+ * items in use are kept.</p>
+ */
+public final class MediaItemRegistry {
+
+    private static final MediaItemRegistry INSTANCE = new MediaItemRegistry();
+
+    private final Map<Class<?>, Map<String, Entry>> items = new HashMap<>();
+    private final ReferenceQueue<MediaItem> collected = new ReferenceQueue<>();
+
+    private MediaItemRegistry() {}
+
+    /**
+     * Returns the shared registry.
+     *
+     * @return the registry
+     */
+    public static MediaItemRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the registered item of the same type and ISBN, registering the
+     * given item if there is none. An existing item takes over the title,
+     * author and availability of the given one.
+     *
+     * @param item the item to intern
+     * @param <T>  the item type
+     * @return the registered item, or null if item is null
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T extends MediaItem> T intern(T item) {
+        if (item == null) return null;
+        String key = IsbnIndex.normalize(item.getIsbnOrId());
+        if (key == null) return item;
+
+        purge();
+        Map<String, Entry> byIsbn = items.computeIfAbsent(item.getClass(), c -> new HashMap<>());
+        Entry entry = byIsbn.get(key);
+        MediaItem existing = entry == null ? null : entry.get();
+        if (existing == null) {
+            byIsbn.put(key, new Entry(item.getClass(), key, item, collected));
+            return item;
+        }
+        if (existing == item) return item;
+
+        existing.setTitle(item.getTitle());
+        existing.setAuthor(item.getAuthor());
+        existing.setAvailable(item.isAvailable());
+        return (T) existing;
+    }
+
+    /**
+     * Returns the registered item of the same type and ISBN as the given
+     * one, without registering or changing anything.
+     *
+     * @param item the item to look up
+     * @param <T>  the item type
+     * @return the registered item, or item itself if none is registered
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T extends MediaItem> T canonical(T item) {
+        if (item == null) return null;
+        MediaItem existing = find(item.getClass(), item.getIsbnOrId());
+        return existing == null ? item : (T) existing;
+    }
+
+    /**
+     * Finds a registered item by type and ISBN.
+     *
+     * @param type the item type
+     * @param isbn the ISBN, ignoring case and surrounding whitespace
+     * @param <T>  the item type
+     * @return the item, or null if none is registered
+     */
+    public synchronized <T extends MediaItem> T find(Class<T> type, String isbn) {
+        purge();
+        Map<String, Entry> byIsbn = items.get(type);
+        String key = IsbnIndex.normalize(isbn);
+        if (byIsbn == null || key == null) return null;
+        Entry entry = byIsbn.get(key);
+        return entry == null ? null : type.cast(entry.get());
+    }
+
+    /**
+     * Forgets every registered item of a type.
+     *
+     * @param type the item type to clear
+     */
+    public synchronized void clear(Class<? extends MediaItem> type) {
+        items.remove(type);
+    }
+
+    /**
+     * Returns the number of registered items that have not been dropped yet.
+     *
+     * @return the item count
+     */
+    public synchronized int size() {
+        purge();
+        int size = 0;
+        for (Map<String, Entry> byIsbn : items.values()) size += byIsbn.size();
+        return size;
+    }
+
+    /** Removes the entries of items that have been garbage collected. */
+    private void purge() {
+        Entry entry;
+        while ((entry = (Entry) collected.poll()) != null) {
+            Map<String, Entry> byIsbn = items.get(entry.type);
+            if (byIsbn != null) byIsbn.remove(entry.key, entry);
+        }
+    }
+
+    /** A weakly held item, with the keys it is registered under. */
+    private static final class Entry extends WeakReference<MediaItem> {
+        private final Class<?> type;
+        private final String key;
+
+        Entry(Class<?> type, String key, MediaItem item, ReferenceQueue<MediaItem> queue) {
+            super(item, queue);
+            this.type = type;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package Service;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only file of text records, each framed with its length and a
+ * CRC32C checksum, shared by the loan journal, the login journal and the
+ * transaction log.
+ *
+ * <p>Layout:</p>
+ * <pre><code>
+ * header  0xFF 'L' 'L' '1'
+ * record  int length | int crc32c(payload) | payload (UTF-8, length bytes)
+ * </code></pre>
+ *
+ * <p>{@link #replay(Consumer)} reads the file once from front to back and
+ * stops at the first frame that is cut short or fails its checksum. That
+ * frame and everything after it is what a crash left half written, so the
+ * file is truncated there and the next append continues from the last
+ * good record. The records read, the bytes discarded and the time taken
+ * are kept in a {@link Recovery}.</p>
+ *
+ * <p>Files written before records were framed hold one record per line.
+ * They are still read, with a last line lacking its line separator counted
+ * as torn, and are rewritten in the framed layout before the first append.</p>
+ */
+public final class RecordLog {
+
+    /** First bytes of every framed file; 0xFF never starts a UTF-8 line. */
+    static final int MAGIC = 0xFF4C4C31;
+    static final int HEADER_LENGTH = 4;
+    static final int FRAME_OVERHEAD = 8;
+
+    /** Largest payload accepted; a longer length is taken as corruption. */
+    static final int MAX_RECORD_LENGTH = 1024 * 1024;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private FileChannel channel;
+    private Recovery lastRecovery = Recovery.NONE;
+
+    /**
+     * Creates a log on the given file. Nothing is read or created yet.
+     *
+     * @param file the log file
+     */
+    public RecordLog(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the file the log is kept in.
+     *
+     * @return the log file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Appends one record.
+     *
+     * @param record the record, without a line separator
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void append(String record) throws IOException {
+        appendAll(List.of(record), false);
+    }
+
+    /**
+     * Appends several records with a single write, optionally forcing them
+     * to disk before returning.
+     *
+     * @param records the records, without line separators
+     * @param force   true to fsync the file after writing
+     * @throws IOException if the records cannot be written
+     */
+    public synchronized void appendAll(Collection<String> records, boolean force) throws IOException {
+        List<byte[]> payloads = new ArrayList<>(records.size());
+        int size = 0;
+        for (String record : records) {
+            byte[] payload = record.getBytes(StandardCharsets.UTF_8);
+            if (payload.length == 0 || payload.length > MAX_RECORD_LENGTH) {
+                throw new IllegalArgumentException("Record length " + payload.length + " out of range");
+            }
+            payloads.add(payload);
+            size += FRAME_OVERHEAD + payload.length;
+        }
+
+        ByteBuffer frames = ByteBuffer.allocate(size);
+        CRC32C crc = new CRC32C();
+        for (byte[] payload : payloads) {
+            crc.reset();
+            crc.update(payload, 0, payload.length);
+            frames.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        }
+        frames.flip();
+
+        try {
+            FileChannel out = openChannel();
+            while (frames.hasRemaining()) out.write(frames);
+            if (force) out.force(false);
+        } catch (IOException e) {
+            closeChannel();
+            throw new IOException("Error appending to " + file.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens the file for appending. A new or empty file gets the header, and
+     * a file in the line layout is rewritten framed first.
+     */
+    private FileChannel openChannel() throws IOException {
+        if (channel != null) return channel;
+        if (file.length() > 0 && !isFramed()) convertLegacy();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).flip();
+            while (header.hasRemaining()) channel.write(header);
+        }
+        return channel;
+    }
+
+    private boolean isFramed() throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private void convertLegacy() throws IOException {
+        List<String> records = new ArrayList<>();
+        readLines(records::add);
+        try (SnapshotWriter out = SnapshotWriter.open(file.getPath())) {
+            ByteBuffer frame = ByteBuffer.allocate(FRAME_OVERHEAD);
+            CRC32C crc = new CRC32C();
+            frame.putInt(MAGIC);
+            out.write(frame.array(), 0, HEADER_LENGTH);
+            for (String record : records) {
+                if (record.isEmpty()) continue;
+                byte[] payload = record.getBytes(StandardCharsets.UTF_8);
+                crc.reset();
+                crc.update(payload, 0, payload.length);
+                frame.clear();
+                frame.putInt(payload.length).putInt((int) crc.getValue());
+                out.write(frame.array(), 0, FRAME_OVERHEAD);
+                out.write(payload, 0, payload.length);
+            }
+            out.commit();
+        }
+    }
+
+    /**
+     * Passes every intact record to the consumer, in write order, and cuts
+     * off a torn or corrupt tail.
+     *
+     * @param consumer receives the records
+     * @return what the pass found
+     */
+    public synchronized Recovery replay(Consumer<String> consumer) {
+        long start = System.nanoTime();
+        closeChannel();
+        Recovery recovery;
+        if (!file.exists()) {
+            recovery = Recovery.NONE;
+        } else {
+            try {
+                recovery = isFramed() || file.length() < HEADER_LENGTH
+                        ? readFrames(consumer, start)
+                        : readLines(consumer).finish(start);
+            } catch (IOException e) {
+                System.out.println("Error reading " + file.getName() + ": " + e.getMessage());
+                recovery = Recovery.NONE;
+            }
+        }
+        if (recovery.getBytesDiscarded() > 0) {
+            System.out.println("Discarded " + recovery.getBytesDiscarded()
+                    + " bytes of torn records at the end of " + file.getName());
+        }
+        lastRecovery = recovery;
+        return recovery;
+    }
+
+    private Recovery readFrames(Consumer<String> consumer, long start) throws IOException {
+        long fileLength = file.length();
+        long good = 0;
+        int records = 0;
+        byte[] payload = new byte[256];
+        CRC32C crc = new CRC32C();
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), READ_BUFFER_SIZE))) {
+            if (fileLength >= HEADER_LENGTH) {
+                in.readInt();
+                good = HEADER_LENGTH;
+            }
+            while (fileLength - good >= FRAME_OVERHEAD) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_LENGTH || length > fileLength - good - FRAME_OVERHEAD) break;
+                if (payload.length < length) payload = new byte[Math.max(length, payload.length * 2)];
+                in.readFully(payload, 0, length);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) break;
+
+                consumer.accept(new String(payload, 0, length, StandardCharsets.UTF_8));
+                good += FRAME_OVERHEAD + length;
+                records++;
+            }
+        }
+
+        long discarded = fileLength - good;
+        if (discarded > 0) truncate(good);
+        return new Recovery(records, good, discarded, System.nanoTime() - start);
+    }
+
+    private void truncate(long length) throws IOException {
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            out.truncate(length);
+            out.force(false);
+        }
+    }
+
+    /**
+     * Reads a file in the line layout. A last line without its separator
+     * was cut short by a crash and is counted as discarded.
+     */
+    private LegacyScan readLines(Consumer<String> consumer) throws IOException {
+        LegacyScan scan = new LegacyScan();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), READ_BUFFER_SIZE)) {
+            ByteArrayLine line = new ByteArrayLine();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    scan.bytesRead += line.length + 1;
+                    String record = line.take();
+                    if (!record.isEmpty()) {
+                        consumer.accept(record);
+                        scan.records++;
+                    }
+                } else {
+                    line.add((byte) b);
+                }
+            }
+            scan.bytesDiscarded = line.length;
+        }
+        return scan;
+    }
+
+    /** Grows a byte array for one line of a file in the line layout. */
+    private static final class ByteArrayLine {
+        byte[] bytes = new byte[256];
+        int length;
+
+        void add(byte b) {
+            if (length == bytes.length) bytes = Arrays.copyOf(bytes, length * 2);
+            bytes[length++] = b;
+        }
+
+        String take() {
+            int end = length > 0 && bytes[length - 1] == '\r' ? length - 1 : length;
+            String line = new String(bytes, 0, end, StandardCharsets.UTF_8);
+            length = 0;
+            return line;
+        }
+    }
+
+    /** Counters of one pass over a file in the line layout. */
+    private static final class LegacyScan {
+        int records;
+        long bytesRead;
+        long bytesDiscarded;
+
+        Recovery finish(long start) {
+            return new Recovery(records, bytesRead, bytesDiscarded, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns what the most recent {@link #replay(Consumer)} found.
+     *
+     * @return the recovery report
+     */
+    public synchronized Recovery getLastRecovery() {
+        return lastRecovery;
+    }
+
+    /**
+     * Checks whether the log file exists.
+     *
+     * @return true if there is a log on disk
+     */
+    public boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * Deletes the log file.
+     *
+     * @return true if there is no log file afterwards
+     */
+    public synchronized boolean delete() {
+        closeChannel();
+        return !file.exists() || file.delete();
+    }
+
+    /** Closes the file if it is open for appending. */
+    public synchronized void close() {
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Error closing " + file.getName() + ": " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    /**
+     * Outcome of one pass over a log at startup.
+     */
+    public static final class Recovery {
+
+        /** The report for a log that does not exist. */
+        public static final Recovery NONE = new Recovery(0, 0, 0, 0);
+
+        private final int records;
+        private final long bytesRead;
+        private final long bytesDiscarded;
+        private final long elapsedNanos;
+
+        Recovery(int records, long bytesRead, long bytesDiscarded, long elapsedNanos) {
+            this.records = records;
+            this.bytesRead = bytesRead;
+            this.bytesDiscarded = bytesDiscarded;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Combines two reports, for a store kept in more than one log.
+         *
+         * @param other the other report
+         * @return the sum of both
+         */
+        public Recovery plus(Recovery other) {
+            return new Recovery(records + other.records, bytesRead + other.bytesRead,
+                    bytesDiscarded + other.bytesDiscarded, elapsedNanos + other.elapsedNanos);
+        }
+
+        /**
+         * Returns the number of intact records read.
+         *
+         * @return the record count
+         */
+        public int getRecords() {
+            return records;
+        }
+
+        /**
+         * Returns the number of bytes holding intact records, header included.
+         *
+         * @return the valid length of the log
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * Returns the number of bytes of the torn or corrupt tail that was cut off.
+         *
+         * @return the discarded byte count
+         */
+        public long getBytesDiscarded() {
+            return bytesDiscarded;
+        }
+
+        /**
+         * Returns the time taken by the pass in milliseconds.
+         *
+         * @return the elapsed time
+         */
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            return "Recovered " + records + " records (" + bytesRead + " bytes, "
+                    + bytesDiscarded + " discarded) in " + getElapsedMillis() + " ms";
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Reads semicolon-separated record files in large blocks through a reused
+ * direct buffer. Lines are split into fields by recording their offsets in
+ * the buffer, so no line {@code String} or field array is allocated; a
+ * field becomes a {@code String} only when a loader asks for it.
+ *
+ * <p>The file is read rather than memory-mapped: a mapping stays open until
+ * the garbage collector frees it, and on Windows an open mapping makes the
+ * rename that replaces the file after a {@link SnapshotWriter} commit
+ * fail.</p>
+ *
+ * <p>Field splitting follows {@code line.split(";")}: trailing empty fields
+ * are not counted. Lines may end in {@code \n} or {@code \r\n}.</p>
+ */
+public final class RecordScanner {
+
+    /** Largest region of the file read at once, and the longest line accepted. */
+    static final int MAX_WINDOW = 1024 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<>();
+
+    /**
+     * Receives each line of the scanned file.
+     */
+    public interface Handler {
+
+        /**
+         * Called once per line. The record is only valid during the call.
+         *
+         * @param record the current line
+         */
+        void onRecord(Record record);
+    }
+
+    private RecordScanner() {}
+
+    /**
+     * Scans every line of a file.
+     *
+     * @param path    the file to read
+     * @param handler the callback receiving the lines
+     * @return the number of lines scanned
+     * @throws IOException if the file does not exist or cannot be read
+     */
+    public static int scan(String path, Handler handler) throws IOException {
+        return scan(path, handler, MAX_WINDOW);
+    }
+
+    static int scan(String path, Handler handler, int window) throws IOException {
+        int lines = 0;
+        ByteBuffer buffer = takeBuffer(window);
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            Record record = new Record();
+
+            while (position < size) {
+                buffer.clear().limit((int) Math.min(window, size - position));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) break;
+                }
+                int limit = buffer.position();
+                boolean lastWindow = position + limit >= size || limit < buffer.limit();
+                int start = 0;
+
+                for (int i = 0; i < limit; i++) {
+                    if (buffer.get(i) == '\n') {
+                        record.reset(buffer, start, i);
+                        handler.onRecord(record);
+                        lines++;
+                        start = i + 1;
+                    }
+                }
+
+                if (lastWindow) {
+                    if (start < limit) {
+                        record.reset(buffer, start, limit);
+                        handler.onRecord(record);
+                        lines++;
+                    }
+                    break;
+                }
+                if (start == 0) {
+                    throw new IOException("Line longer than " + window + " bytes in " + path);
+                }
+                position += start;
+            }
+        } finally {
+            releaseBuffer(buffer);
+        }
+        return lines;
+    }
+
+    /**
+     * Takes the buffer cached for this thread if it is large enough. A scan
+     * started from inside a handler gets a buffer of its own.
+     */
+    private static ByteBuffer takeBuffer(int window) {
+        ByteBuffer cached = BUFFERS.get();
+        if (cached != null && cached.capacity() >= window) {
+            BUFFERS.set(null);
+            return cached;
+        }
+        return ByteBuffer.allocateDirect(window);
+    }
+
+    private static void releaseBuffer(ByteBuffer buffer) {
+        ByteBuffer cached = BUFFERS.get();
+        if (cached == null || cached.capacity() < buffer.capacity()) BUFFERS.set(buffer);
+    }
+
+    /**
+     * One line of the scanned file, split into fields.
+     */
+    public static final class Record {
+
+        private ByteBuffer buffer;
+        private int[] starts = new int[8];
+        private int[] ends = new int[8];
+        private int count;
+        private int lineStart;
+        private int lineEnd;
+        private byte[] scratch = new byte[64];
+
+        private void reset(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            if (end > start && buffer.get(end - 1) == '\r') end--;
+            this.lineStart = start;
+            this.lineEnd = end;
+
+            count = 0;
+            int fieldStart = start;
+            for (int i = start; i <= end; i++) {
+                if (i == end || buffer.get(i) == ';') {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                        ends = Arrays.copyOf(ends, count * 2);
+                    }
+                    starts[count] = fieldStart;
+                    ends[count] = i;
+                    count++;
+                    fieldStart = i + 1;
+                }
+            }
+            while (count > 0 && starts[count - 1] == ends[count - 1]) count--;
+        }
+
+        /**
+         * Returns the number of fields, not counting trailing empty ones.
+         *
+         * @return the field count
+         */
+        public int fieldCount() {
+            return count;
+        }
+
+        /**
+         * Checks whether the line contains only whitespace.
+         *
+         * @return true if the line is blank
+         */
+        public boolean isBlank() {
+            for (int i = lineStart; i < lineEnd; i++) {
+                if ((buffer.get(i) & 0xFF) > ' ') return false;
+            }
+            return true;
+        }
+
+        /**
+         * Returns a field as a string.
+         *
+         * @param index the field index
+         * @return the field value
+         */
+        public String field(int index) {
+            int length = length(index);
+            if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            buffer.get(starts[index], scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Compares a field with an ASCII string without creating a string.
+         *
+         * @param index the field index
+         * @param value the ASCII value to compare with
+         * @return true if the field equals value
+         */
+        public boolean fieldEquals(int index, String value) {
+            int length = length(index);
+            if (length != value.length()) return false;
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(starts[index] + i) != value.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        /**
+         * Parses a field the way {@link Boolean#parseBoolean(String)} does,
+         * ignoring trailing spaces left by fixed-width availability fields.
+         *
+         * @param index the field index
+         * @return true if the field is "true", ignoring case
+         */
+        public boolean booleanField(int index) {
+            int s = starts[index];
+            int length = length(index);
+            while (length > 4 && buffer.get(s + length - 1) == ' ') length--;
+            if (length != 4) return false;
+            return (buffer.get(s) | 0x20) == 't' && (buffer.get(s + 1) | 0x20) == 'r'
+                    && (buffer.get(s + 2) | 0x20) == 'u' && (buffer.get(s + 3) | 0x20) == 'e';
+        }
+
+        /**
+         * Parses a {@code yyyy-MM-dd} field as a date.
+         *
+         * @param index the field index
+         * @return the date
+         * @throws java.time.DateTimeException if the field is not a valid date
+         */
+        public LocalDate dateField(int index) {
+            int s = starts[index];
+            if (length(index) == 10 && buffer.get(s + 4) == '-' && buffer.get(s + 7) == '-') {
+                int year = digits(s, 4);
+                int month = digits(s + 5, 2);
+                int day = digits(s + 8, 2);
+                if (year >= 0 && month >= 0 && day >= 0) {
+                    return LocalDate.of(year, month, day);
+                }
+            }
+            return LocalDate.parse(field(index));
+        }
+
+        private int digits(int from, int n) {
+            int value = 0;
+            for (int i = from; i < from + n; i++) {
+                int d = buffer.get(i) - '0';
+                if (d < 0 || d > 9) return -1;
+                value = value * 10 + d;
+            }
+            return value;
+        }
+
+        private int length(int index) {
+            if (index < 0 || index >= count) throw new IndexOutOfBoundsException(index);
+            return ends[index] - starts[index];
+        }
+    }
+}
@@ -22,8 +22,8 @@ import java.util.*;
  */
 public class ReminderService {
 
-    private FileLoanRepository loanRepository;
-    private FileUserRepository userRepository;
+    private LoanRepository loanRepository;
+    private UserRepository userRepository;
     private EmailService emailService;
 
     private LocalDate today;
@@ -32,8 +32,8 @@ public class ReminderService {
 
 
     public ReminderService() {
-        this.loanRepository = new FileLoanRepository();
-        this.userRepository = new FileUserRepository();
+        this.loanRepository = Repositories.loans();
+        this.userRepository = Repositories.users();
 
         Doenev env = new Doenev();
         this.emailService = new EmailService(env.getUsername(), env.getPassword());
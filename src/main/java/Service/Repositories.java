@@ -0,0 +1,93 @@
+package Service;
+
+import Domain.Book;
+import Domain.CD;
+
+/**
+ * Hands out the repositories the services work on. By default these are
+ * the text file repositories; after {@link #useDatabase(JdbcDatabase)} they
+ * are the tables of an embedded database instead.
+ *
+ * <p>Services look their repositories up when they are created, so the
+ * backend should be chosen at startup, before any service exists.</p>
+ */
+public final class Repositories {
+
+    private static volatile JdbcDatabase database;
+
+    private Repositories() {
+    }
+
+    /**
+     * Stores the library in a database from now on.
+     *
+     * @param db the open database
+     */
+    public static void useDatabase(JdbcDatabase db) {
+        database = db;
+    }
+
+    /** Stores the library in the text files from now on. This is the default. */
+    public static void useFiles() {
+        database = null;
+    }
+
+    /**
+     * Returns the database in use.
+     *
+     * @return the database, or null if the text files are in use
+     */
+    public static JdbcDatabase getDatabase() {
+        return database;
+    }
+
+    /**
+     * Returns the book repository of the current backend.
+     *
+     * @return the book repository
+     */
+    public static CatalogRepository<Book> books() {
+        JdbcDatabase db = database;
+        return db == null ? FileBookRepository.getInstance() : db.books();
+    }
+
+    /**
+     * Returns the CD repository of the current backend.
+     *
+     * @return the CD repository
+     */
+    public static CatalogRepository<CD> cds() {
+        JdbcDatabase db = database;
+        return db == null ? FileCDRepository.getInstance() : db.cds();
+    }
+
+    /**
+     * Returns the copy repository of the current backend.
+     *
+     * @return the copy repository
+     */
+    public static CopyRepository copies() {
+        JdbcDatabase db = database;
+        return db == null ? FileMediaCopyRepository.getInstance() : db.copies();
+    }
+
+    /**
+     * Returns the loan repository of the current backend.
+     *
+     * @return the loan repository
+     */
+    public static LoanRepository loans() {
+        JdbcDatabase db = database;
+        return db == null ? FileLoanRepository.getInstance() : db.loans();
+    }
+
+    /**
+     * Returns the user repository of the current backend.
+     *
+     * @return the user repository
+     */
+    public static UserRepository users() {
+        JdbcDatabase db = database;
+        return db == null ? FileUserRepository.getInstance() : db.users();
+    }
+}
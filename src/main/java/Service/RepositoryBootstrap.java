@@ -0,0 +1,134 @@
+package Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the file repositories in the background at application startup.
+ *
+ * <p>Books, CDs and users are loaded concurrently on a small bounded
+ * executor. Media copies and loans refer to catalog items, so they are
+ * loaded, again concurrently, as soon as both catalogs are in memory.
+ * Committed transactions left in the {@link LibraryTransaction} log by a
+ * crash are then replayed.
+ * {@link #getCompletion()} completes once every repository is ready, so
+ * the user interface can start before the larger files are read and wait
+ * only when it first needs the data.</p>
+ */
+public class RepositoryBootstrap {
+
+    /** Upper bound on the number of loader threads. */
+    static final int MAX_THREADS = 4;
+
+    private static RepositoryBootstrap current;
+
+    private final ExecutorService executor;
+    private final CompletableFuture<Void> completion;
+    private final long startNanos = System.nanoTime();
+    private volatile long elapsedMillis = -1;
+
+    RepositoryBootstrap(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "repository-bootstrap-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        CompletableFuture<Void> books = CompletableFuture.runAsync(FileBookRepository::getInstance, executor);
+        CompletableFuture<Void> cds = CompletableFuture.runAsync(FileCDRepository::getInstance, executor);
+        CompletableFuture<Void> users = CompletableFuture.runAsync(FileUserRepository::getInstance, executor);
+
+        CompletableFuture<Void> catalog = CompletableFuture.allOf(books, cds);
+        CompletableFuture<Void> copies = catalog.thenRunAsync(FileMediaCopyRepository::getInstance, executor);
+        CompletableFuture<Void> loans = catalog.thenRunAsync(FileLoanRepository::getInstance, executor);
+
+        this.completion = CompletableFuture.allOf(users, copies, loans)
+                .thenRun(LibraryTransaction::recover)
+                .whenComplete((ignored, error) -> {
+                    elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+                    executor.shutdown();
+                });
+    }
+
+    /**
+     * Starts loading the repositories in the background. Later calls return
+     * the bootstrap that is already running.
+     *
+     * @return the running bootstrap
+     */
+    public static synchronized RepositoryBootstrap start() {
+        if (current == null) {
+            current = new RepositoryBootstrap(Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+        }
+        return current;
+    }
+
+    /**
+     * Returns the running bootstrap.
+     *
+     * @return the bootstrap, or null if none was started
+     */
+    public static synchronized RepositoryBootstrap getCurrent() {
+        return current;
+    }
+
+    /**
+     * Waits for the running bootstrap, if any, printing a notice while the
+     * library data is still loading.
+     */
+    public static void awaitIfStarted() {
+        RepositoryBootstrap bootstrap = getCurrent();
+        if (bootstrap == null) return;
+        if (!bootstrap.isDone()) {
+            System.out.println("Loading library data...");
+        }
+        bootstrap.await();
+    }
+
+    /**
+     * Returns a future that completes once every repository is loaded.
+     *
+     * @return the completion barrier
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion.copy();
+    }
+
+    /**
+     * Checks whether loading has finished.
+     *
+     * @return true if every repository is loaded or loading failed
+     */
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    /**
+     * Blocks until loading has finished. A failed load is reported, and the
+     * affected repository is loaded again on its next use.
+     *
+     * @return true if every repository loaded successfully
+     */
+    public boolean await() {
+        try {
+            completion.join();
+            return true;
+        } catch (CompletionException e) {
+            System.out.println("Error loading library data: " + e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Returns how long loading took.
+     *
+     * @return the load time in milliseconds, or -1 if still loading
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,208 @@
+package Service;
+
+import Domain.Loan;
+import Domain.MediaCopy;
+import Domain.MediaItem;
+import Domain.User;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Copies the library from the text files into a {@link JdbcDatabase}.
+ *
+ * <p>The migration replaces whatever the database held, in a single
+ * transaction: if any insert fails, the database is left as it was. Loans
+ * are taken from the loans file and from every archive partition. Items,
+ * loans and users that appear twice in the files are imported once.</p>
+ *
+ * <p>Run it from the directory holding the text files, optionally passing
+ * the JDBC URL of the target database:</p>
+ * <pre><code>
+ * java Service.RepositoryMigration jdbc:h2:./library
+ * </code></pre>
+ */
+public final class RepositoryMigration {
+
+    /** Database used when none is given on the command line. */
+    public static final String DEFAULT_URL = "jdbc:h2:./library";
+
+    private RepositoryMigration() {
+    }
+
+    /**
+     * Replaces the contents of a database with the file repositories.
+     *
+     * @param db the target database
+     * @return what was imported
+     * @throws SQLException if the import fails; the database is then unchanged
+     */
+    public static Report migrate(JdbcDatabase db) throws SQLException {
+        long start = System.nanoTime();
+        int[] counts = db.transaction(c -> {
+            try (Statement statement = c.createStatement()) {
+                for (String table : new String[]{"loans", "copies", "items", "users"}) {
+                    statement.executeUpdate("DELETE FROM " + table);
+                }
+            }
+            List<MediaItem> items = new ArrayList<>(FileBookRepository.getInstance().findAllBooks());
+            items.addAll(FileCDRepository.getInstance().findAllCDs());
+            items = importItems(c, items);
+            return new int[]{items.size(), importCopies(c, items), importLoans(c), importUsers(c)};
+        });
+        return new Report(counts[0], counts[1], counts[2], counts[3], (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static List<MediaItem> importItems(Connection c, List<MediaItem> items) throws SQLException {
+        Set<String> seen = new HashSet<>();
+        List<MediaItem> imported = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(JdbcCatalogRepository.INSERT)) {
+            for (MediaItem item : items) {
+                if (!seen.add(IsbnIndex.normalize(item.getIsbnOrId()))) continue;
+                JdbcCatalogRepository.bind(ps, item, item.isAvailable());
+                ps.addBatch();
+                imported.add(item);
+            }
+            ps.executeBatch();
+        }
+        return imported;
+    }
+
+    private static int importCopies(Connection c, List<MediaItem> items) throws SQLException {
+        FileMediaCopyRepository copies = FileMediaCopyRepository.getInstance();
+        Set<String> seen = new HashSet<>();
+        try (PreparedStatement ps = c.prepareStatement(JdbcCopyRepository.INSERT)) {
+            for (MediaItem item : items) {
+                String key = IsbnIndex.normalize(item.getIsbnOrId());
+                for (MediaCopy copy : copies.getCopiesByIsbn(item.getIsbnOrId())) {
+                    if (!seen.add(copy.getCopyId())) continue;
+                    JdbcCopyRepository.bind(ps, copy.getCopyId(), key, copy.isAvailable());
+                    ps.addBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+        return seen.size();
+    }
+
+    private static int importLoans(Connection c) throws SQLException {
+        FileLoanRepository loans = FileLoanRepository.getInstance();
+        List<Loan> all = new ArrayList<>(loans.getAllLoans());
+        for (YearMonth period : loans.getArchivedPeriods()) all.addAll(loans.getArchivedLoans(period));
+
+        Set<String> seen = new HashSet<>();
+        try (PreparedStatement ps = c.prepareStatement(JdbcLoanRepository.INSERT)) {
+            for (Loan loan : all) {
+                if (!seen.add(loan.getLoanId())) continue;
+                JdbcLoanRepository.bind(ps, loan);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        return seen.size();
+    }
+
+    private static int importUsers(Connection c) throws SQLException {
+        Set<String> seen = new HashSet<>();
+        try (PreparedStatement ps = c.prepareStatement(JdbcUserRepository.INSERT)) {
+            for (User user : FileUserRepository.getInstance().getAllUsers()) {
+                if (!seen.add(user.getUsername())) continue;
+                JdbcUserRepository.bind(ps, user);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        return seen.size();
+    }
+
+    /**
+     * Migrates the text files in the working directory into a database.
+     *
+     * @param args the JDBC URL of the database, {@link #DEFAULT_URL} if omitted
+     */
+    public static void main(String[] args) {
+        String url = args.length > 0 ? args[0] : DEFAULT_URL;
+        try (JdbcDatabase db = JdbcDatabase.open(url)) {
+            System.out.println(migrate(db));
+        } catch (SQLException e) {
+            System.out.println("Error migrating to " + url + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * What a migration imported.
+     */
+    public static final class Report {
+        private final int items;
+        private final int copies;
+        private final int loans;
+        private final int users;
+        private final long elapsedMillis;
+
+        Report(int items, int copies, int loans, int users, long elapsedMillis) {
+            this.items = items;
+            this.copies = copies;
+            this.loans = loans;
+            this.users = users;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Returns the number of books and CDs imported.
+         *
+         * @return the item count
+         */
+        public int getItems() {
+            return items;
+        }
+
+        /**
+         * Returns the number of media copies imported.
+         *
+         * @return the copy count
+         */
+        public int getCopies() {
+            return copies;
+        }
+
+        /**
+         * Returns the number of loans imported, active and returned.
+         *
+         * @return the loan count
+         */
+        public int getLoans() {
+            return loans;
+        }
+
+        /**
+         * Returns the number of users imported.
+         *
+         * @return the user count
+         */
+        public int getUsers() {
+            return users;
+        }
+
+        /**
+         * Returns the migration time in milliseconds.
+         *
+         * @return the elapsed time
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Migrated " + items + " items, " + copies + " copies, " + loans + " loans and "
+                    + users + " users in " + elapsedMillis + " ms";
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a complete new version of a data file without ever exposing a
+ * partial one.
+ *
+ * <p>The content goes to a temporary file next to the target, which
+ * replaces the target with an atomic rename on {@link #commit()}. A crash
+ * or an I/O error before that leaves the old file as it was, and
+ * {@link #close()} without a commit deletes the temporary file. In sync
+ * mode (see {@link #setSync(boolean)}) the data and the rename are also
+ * forced to disk, as they are on a thread that is committing a
+ * {@link LibraryTransaction} (see {@link #isSyncing()}).</p>
+ *
+ * <p>Text is encoded as UTF-8 straight into a 1 MB direct buffer, which
+ * each thread reuses, so a rewrite costs a few large channel writes.</p>
+ *
+ * <pre><code>
+ * try (SnapshotWriter out = SnapshotWriter.open(path)) {
+ *     for (String line : lines) out.writeLine(line);
+ *     out.commit();
+ * }
+ * </code></pre>
+ */
+public final class SnapshotWriter implements Appendable, Closeable {
+
+    static final String TEMP_SUFFIX = ".tmp";
+
+    /** Size of the direct buffer each thread writes through. */
+    static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<>();
+    private static volatile boolean sync = false;
+    private static final ThreadLocal<Boolean> THREAD_SYNC = new ThreadLocal<>();
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private boolean finished;
+
+    private SnapshotWriter(Path target, Path temp, FileChannel channel) {
+        this.target = target;
+        this.temp = temp;
+        this.channel = channel;
+        ByteBuffer cached = BUFFERS.get();
+        if (cached != null) {
+            BUFFERS.set(null);
+            this.buffer = cached;
+        } else {
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Enables or disables forcing snapshots to disk before they replace the
+     * old file.
+     *
+     * @param enabled true to fsync every snapshot
+     */
+    public static void setSync(boolean enabled) {
+        sync = enabled;
+    }
+
+    /**
+     * Checks whether snapshots are forced to disk.
+     *
+     * @return true if every snapshot is fsynced
+     */
+    public static boolean isSync() {
+        return sync;
+    }
+
+    /**
+     * Forces the data files written on the current thread to disk, whatever
+     * the sync mode, until called again with false. Used while a transaction
+     * writes its data files, so that its log is only deleted once they are
+     * durable.
+     *
+     * @param enabled true to force the writes of the current thread
+     */
+    static void setThreadSync(boolean enabled) {
+        if (enabled) THREAD_SYNC.set(Boolean.TRUE);
+        else THREAD_SYNC.remove();
+    }
+
+    /**
+     * Checks whether data files written now on the current thread have to
+     * be forced to disk: in sync mode, or inside {@link #setThreadSync}.
+     * Writers that append or overwrite in place consult this as well.
+     *
+     * @return true if writes have to be forced to disk
+     */
+    static boolean isSyncing() {
+        return sync || THREAD_SYNC.get() != null;
+    }
+
+    /**
+     * Starts a new version of a file.
+     *
+     * @param path the file to replace
+     * @return the writer
+     * @throws IOException if the temporary file cannot be created
+     */
+    public static SnapshotWriter open(String path) throws IOException {
+        Path target = Path.of(path);
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new SnapshotWriter(target, temp, channel);
+    }
+
+    /**
+     * Writes a line followed by {@code \n}.
+     *
+     * @param line the line
+     * @return this writer
+     * @throws IOException if the data cannot be written
+     */
+    public SnapshotWriter writeLine(CharSequence line) throws IOException {
+        return append(line).append('\n');
+    }
+
+    /**
+     * Writes raw bytes.
+     *
+     * @param bytes  the source array
+     * @param offset the first byte to write
+     * @param length the number of bytes
+     * @return this writer
+     * @throws IOException if the data cannot be written
+     */
+    public SnapshotWriter write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        while (length > 0) {
+            if (!buffer.hasRemaining()) drain();
+            int n = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, n);
+            offset += n;
+            length -= n;
+        }
+        return this;
+    }
+
+    @Override
+    public SnapshotWriter append(CharSequence text) throws IOException {
+        ensureOpen();
+        if (text == null) text = "null";
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                encode(CharBuffer.wrap(text, i, length));
+                return this;
+            }
+            if (!buffer.hasRemaining()) drain();
+            buffer.put((byte) c);
+        }
+        return this;
+    }
+
+    @Override
+    public SnapshotWriter append(CharSequence text, int start, int end) throws IOException {
+        return append((text == null ? "null" : text).subSequence(start, end));
+    }
+
+    @Override
+    public SnapshotWriter append(char c) throws IOException {
+        if (c >= 0x80) return append(String.valueOf(c));
+        ensureOpen();
+        if (!buffer.hasRemaining()) drain();
+        buffer.put((byte) c);
+        return this;
+    }
+
+    private void encode(CharBuffer chars) throws IOException {
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                break;
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) drain();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (finished) throw new IOException("Snapshot of " + target.getFileName() + " is already finished");
+    }
+
+    /**
+     * Writes out the buffered data and replaces the target file with the
+     * new version.
+     *
+     * @throws IOException if the new version cannot be completed; the
+     *                     target file is then unchanged
+     */
+    public void commit() throws IOException {
+        ensureOpen();
+        boolean force = isSyncing();
+        try {
+            drain();
+            if (force) channel.force(true);
+            channel.close();
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (force) syncDirectory();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        finished = true;
+        releaseBuffer();
+    }
+
+    /**
+     * Forces the rename to disk. Not every platform can open a directory,
+     * in which case the rename is left to the file system.
+     */
+    private void syncDirectory() {
+        Path dir = target.toAbsolutePath().getParent();
+        if (dir == null) return;
+        try (FileChannel directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Directories cannot be synced here.
+        }
+    }
+
+    /**
+     * Abandons the new version if it was not committed. The target file is
+     * left as it was.
+     */
+    @Override
+    public void close() {
+        if (finished) return;
+        finished = true;
+        try {
+            channel.close();
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            System.out.println("Error removing " + temp.getFileName() + ": " + e.getMessage());
+        }
+        releaseBuffer();
+    }
+
+    private void releaseBuffer() {
+        buffer.clear();
+        BUFFERS.set(buffer);
+    }
+}
@@ -0,0 +1,143 @@
+package Service;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Default {@link LoanIdGenerator}: short loan IDs that sort in the order
+ * they were issued.
+ *
+ * <p>An ID is a 50-bit number written as ten Crockford base-32 characters,
+ * for example {@code 0C7KQ9T4ZM}. The upper 40 bits are milliseconds since
+ * 2024-01-01 UTC and the lower 10 bits a sequence within the millisecond.
+ * Every ID has the same length, so string order is issue order and loans
+ * can be grouped or range-scanned by comparing IDs.</p>
+ *
+ * <p>IDs are strictly increasing across all threads. The last issued value
+ * is advanced with a single compare-and-set, with no lock and no
+ * {@code SecureRandom}. If more than 1024 IDs are requested within one
+ * millisecond, or the clock goes back, the sequence runs ahead of the clock
+ * until the clock catches up.</p>
+ *
+ * <p>The alphabet leaves out I, L, O and U, so typed IDs are read case
+ * insensitively with I and L taken as 1 and O as 0 (see
+ * {@link #normalize(String)}).</p>
+ */
+public final class TimeOrderedLoanIdGenerator implements LoanIdGenerator {
+
+    /** Number of characters in every ID. */
+    public static final int LENGTH = 10;
+
+    static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    static final int SEQUENCE_BITS = 10;
+    static final long MAX_VALUE = (1L << (5 * LENGTH)) - 1;
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int[] DIGITS = new int[128];
+
+    static {
+        Arrays.fill(DIGITS, -1);
+        for (int i = 0; i < ALPHABET.length; i++) DIGITS[ALPHABET[i]] = i;
+    }
+
+    private final LongSupplier clock;
+    private final AtomicLong last = new AtomicLong(-1);
+
+    /**
+     * Creates a generator on the system clock.
+     */
+    public TimeOrderedLoanIdGenerator() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a generator on the given clock.
+     *
+     * @param clock supplies the current time in epoch milliseconds
+     */
+    TimeOrderedLoanIdGenerator(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public String nextId() {
+        long floor = Math.max(0, clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long value = last.accumulateAndGet(floor, (prev, candidate) -> Math.max(prev + 1, candidate));
+        if (value > MAX_VALUE) throw new IllegalStateException("Loan ID space exhausted");
+        return encode(value);
+    }
+
+    @Override
+    public void observe(String existingId) {
+        long value = decode(existingId);
+        if (value >= 0) last.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Returns the time an ID was issued at, to the millisecond.
+     *
+     * @param id a loan ID
+     * @return the issue time, or null if id was not made by this generator
+     */
+    public static Instant timestampOf(String id) {
+        long value = decode(id);
+        return value < 0 ? null : Instant.ofEpochMilli((value >>> SEQUENCE_BITS) + EPOCH_MILLIS);
+    }
+
+    /**
+     * Turns an ID as a user typed it into its canonical form. Case,
+     * surrounding whitespace and hyphens are ignored, and the look-alike
+     * letters I, L and O are read as 1, 1 and 0.
+     *
+     * @param typed the text entered
+     * @return the canonical ID, or null if the text cannot be one
+     */
+    public static String normalize(String typed) {
+        if (typed == null) return null;
+        StringBuilder id = new StringBuilder(LENGTH);
+        for (int i = 0; i < typed.length(); i++) {
+            char c = Character.toUpperCase(typed.charAt(i));
+            if (c == '-' || Character.isWhitespace(c)) continue;
+            if (c == 'I' || c == 'L') c = '1';
+            else if (c == 'O') c = '0';
+            if (c >= 128 || DIGITS[c] < 0 || id.length() == LENGTH) return null;
+            id.append(c);
+        }
+        return id.length() == LENGTH ? id.toString() : null;
+    }
+
+    /**
+     * Writes a value as an ID.
+     *
+     * @param value a value between 0 and {@link #MAX_VALUE}
+     * @return the ID
+     */
+    static String encode(long value) {
+        char[] id = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            id[i] = ALPHABET[(int) (value & 31)];
+            value >>>= 5;
+        }
+        return new String(id);
+    }
+
+    /**
+     * Reads the value of an ID in canonical form.
+     *
+     * @param id the ID
+     * @return the value, or -1 if id is not a canonical ID
+     */
+    static long decode(String id) {
+        if (id == null || id.length() != LENGTH) return -1;
+        long value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            char c = id.charAt(i);
+            int digit = c < 128 ? DIGITS[c] : -1;
+            if (digit < 0) return -1;
+            value = (value << 5) | digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,80 @@
+package Service;
+
+import Domain.User;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Storage of user accounts.
+ *
+ * @see Repositories
+ */
+public interface UserRepository {
+
+    /**
+     * Finds a user by username and password.
+     *
+     * @param username the username
+     * @param password the password
+     * @return the user if found, otherwise null
+     */
+    User findUser(String username, String password);
+
+    /**
+     * Finds a user by username.
+     *
+     * @param username the username to search for
+     * @return the user if found, otherwise null
+     */
+    User findUserByUsername(String username);
+
+    /**
+     * Adds a new customer.
+     *
+     * @param username the username
+     * @param password the password
+     * @param email    the user email
+     * @param current  the current date
+     * @return true if added successfully, false if username exists or error occurs
+     */
+    boolean addUser(String username, String password, String email, Date current);
+
+    /**
+     * Checks if a username already exists.
+     *
+     * @param username the username to check
+     * @return true if exists, false otherwise
+     */
+    boolean isUsernameExists(String username);
+
+    /**
+     * Sets the last login date of a user to now.
+     *
+     * @param foundUser the user to update
+     */
+    void updateDate(User foundUser);
+
+    /**
+     * Returns a list of all users.
+     *
+     * @return list of users
+     */
+    List<User> getAllUsers();
+
+    /**
+     * Unregisters a user by username.
+     *
+     * @param username the username to remove
+     * @return true if user was removed, false otherwise
+     */
+    boolean unregisterUserByUsername(String username);
+
+    /**
+     * Unregisters the given users.
+     *
+     * @param inActiveUsers list of users to remove
+     * @return true if operation succeeded, false otherwise
+     */
+    boolean unregisterAllUsers(List<User> inActiveUsers);
+}
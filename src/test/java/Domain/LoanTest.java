@@ -117,4 +117,27 @@ class LoanTest {
         assertTrue(str.contains("alice"));
         assertTrue(str.contains(today.plusDays(28).toString())); // due date
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("copyId is null until the borrowed copy is recorded")
+    void copyId_recordsBorrowedCopy() {
+        Loan loan = new Loan("C1", user, book, today);
+        assertNull(loan.getCopyId());
+
+        loan.setCopyId("978-1");
+
+        assertEquals("978-1", loan.getCopyId());
+    }
+
+    @Test
+    @DisplayName("restoring a returned loan leaves the item's availability alone")
+    void restoreReturnedLoan_keepsItemAvailability() {
+        book.setAvailable(false);
+
+        Loan loan = new Loan("R1", user, book, today.minusDays(10), today.minusDays(2));
+
+        assertEquals(today.minusDays(2), loan.getReturnDate());
+        assertEquals(today.plusDays(18), loan.getDueDate());
+        assertFalse(book.isAvailable());
+    }
+}
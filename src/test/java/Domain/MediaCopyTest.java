@@ -89,6 +89,23 @@ public class MediaCopyTest {
 
 
 
+    @Test
+    @DisplayName("MediaCopy: listener is notified only when availability changes")
+    void testAvailabilityListener() {
+        MediaCopy copy = new MediaCopy("C1", sampleItem());
+        int[] calls = new int[1];
+        copy.setAvailabilityListener((c, available) -> calls[0]++);
+
+        copy.setAvailable(true);
+        copy.setAvailable(false);
+        copy.setAvailable(false);
+
+        assertEquals(1, calls[0]);
+    }
+
+
+
+
     @Test
     @DisplayName("MediaCopy: toString contains correct formatted data")
     void testToString() {
@@ -0,0 +1,87 @@
+package Service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryCopyFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<String> readRecords(Path file) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (BinaryCopyFile in = new BinaryCopyFile(file.toString())) {
+            in.readAll((slot, copyId, isbn, available) ->
+                    records.add(slot + " " + copyId + " " + isbn + " " + available));
+        }
+        return records;
+    }
+
+    @Test
+    @DisplayName("records written to slots are read back in slot order")
+    void writeRecord_thenReadAll() throws IOException {
+        Path file = tempDir.resolve("copies.bin");
+        try (BinaryCopyFile out = new BinaryCopyFile(file.toString())) {
+            out.writeRecord(0, "978-1", "978", true);
+            out.writeRecord(1, "978-2", "978", false);
+            assertEquals(2, out.getSlotCount());
+        }
+
+        assertEquals(List.of("0 978-1 978 true", "1 978-2 978 false"), readRecords(file));
+        assertEquals(BinaryCopyFile.HEADER_SIZE + 2L * BinaryCopyFile.RECORD_SIZE, Files.size(file));
+    }
+
+    @Test
+    @DisplayName("writeAvailability changes one slot without touching the others")
+    void writeAvailability_updatesSingleSlot() throws IOException {
+        Path file = tempDir.resolve("copies.bin");
+        try (BinaryCopyFile out = new BinaryCopyFile(file.toString())) {
+            out.writeRecord(0, "A-1", "A", true);
+            out.writeRecord(1, "A-2", "A", true);
+            out.writeAvailability(1, false);
+        }
+
+        assertEquals(List.of("0 A-1 A true", "1 A-2 A false"), readRecords(file));
+    }
+
+    @Test
+    @DisplayName("ids that do not fit a slot are rejected")
+    void writeRecord_rejectsLongIds() throws IOException {
+        Path file = tempDir.resolve("copies.bin");
+        try (BinaryCopyFile out = new BinaryCopyFile(file.toString())) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> out.writeRecord(0, "X".repeat(63), "978", true));
+        }
+    }
+
+    @Test
+    @DisplayName("opening a file that is not a copy file fails")
+    void open_rejectsForeignFile() throws IOException {
+        Path file = tempDir.resolve("copies.bin");
+        Files.writeString(file, "978-1;978;true\n");
+
+        assertThrows(IOException.class, () -> new BinaryCopyFile(file.toString()));
+    }
+
+    @Test
+    @DisplayName("convertFromText converts every valid line and skips malformed ones")
+    void convertFromText_convertsValidLines() throws IOException {
+        Path text = tempDir.resolve("media_copies.txt");
+        Path binary = tempDir.resolve("media_copies.txt.bin");
+        Files.writeString(text, "978-1;978;true\nbroken;line\nCD-1;CD;false\n");
+
+        int converted = BinaryCopyFile.convertFromText(text.toString(), binary.toString());
+
+        assertEquals(2, converted);
+        assertEquals(List.of("0 978-1 978 true", "1 CD-1 CD false"), readRecords(binary));
+    }
+}
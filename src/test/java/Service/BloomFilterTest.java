@@ -0,0 +1,45 @@
+package Service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    @DisplayName("added keys are always reported and few others are")
+    void mightContain_noFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000);
+        for (int i = 0; i < 10_000; i++) filter.add("L" + i);
+
+        for (int i = 0; i < 10_000; i++) assertTrue(filter.mightContain("L" + i));
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("M" + i)) falsePositives++;
+        }
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+
+    @Test
+    @DisplayName("a filter reads back as written")
+    void writeAndRead_roundTrip() throws IOException {
+        BloomFilter filter = new BloomFilter(100);
+        filter.add("L1");
+        filter.add("L2");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.write(new DataOutputStream(bytes));
+
+        BloomFilter read = BloomFilter.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertTrue(read.mightContain("L1"));
+        assertTrue(read.mightContain("L2"));
+        assertFalse(read.mightContain("nothing-like-it"));
+    }
+}
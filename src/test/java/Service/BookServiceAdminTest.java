@@ -90,14 +90,21 @@ class BookServiceAdminTest {
             staticBook.when(FileBookRepository::getInstance).thenReturn(fileBook);
             staticCD.when(FileCDRepository::getInstance).thenReturn(fileCD);
 
-            when(fileBook.findAllBooks()).thenReturn(List.of(book));
+            when(fileBook.findByIsbn("1234567890")).thenReturn(book);
 
             assertFalse(admin.addBook(book, 5));
-            staticBook.verify(() -> FileBookRepository.saveBook(any(), anyInt()), never());
+            verify(fileBook, never()).add(any(), anyInt());
             
         }
     }
 
+    @Test
+    void addCD_alreadyExists_returnsFalse() {
+        when(fileCD.findByIsbn("9876543210")).thenReturn(cd);
+
+        assertFalse(admin.addCD(cd, 2));
+    }
+
     @Test
     void addBook_isbnExistsInCD_returnsFalse() throws Exception {
         try (MockedStatic<FileBookRepository> staticBook = mockStatic(FileBookRepository.class);
@@ -106,7 +113,6 @@ class BookServiceAdminTest {
             staticBook.when(FileBookRepository::getInstance).thenReturn(fileBook);
             staticCD.when(FileCDRepository::getInstance).thenReturn(fileCD);
 
-            when(fileBook.findAllBooks()).thenReturn(List.of());
             when(fileCD.findByIsbn("1234567890")).thenReturn(cd);
 
             assertFalse(admin.addBook(book, 5));
@@ -121,11 +127,11 @@ class BookServiceAdminTest {
             staticBook.when(FileBookRepository::getInstance).thenReturn(fileBook);
             staticCD.when(FileCDRepository::getInstance).thenReturn(fileCD);
 
-            when(fileBook.findAllBooks()).thenReturn(List.of());
+            when(fileBook.findByIsbn(anyString())).thenReturn(null);
             when(fileCD.findByIsbn(anyString())).thenReturn(null);
 
             assertTrue(admin.addBook(book, 3));
-            staticBook.verify(() -> FileBookRepository.saveBook(book, 3));
+            verify(fileBook).add(book, 3);
         }
     }
 
@@ -139,11 +145,11 @@ class BookServiceAdminTest {
             staticBook.when(FileBookRepository::getInstance).thenReturn(fileBook);
             staticCD.when(FileCDRepository::getInstance).thenReturn(fileCD);
 
-            when(fileCD.findAllCDs()).thenReturn(List.of());
+            when(fileCD.findByIsbn(anyString())).thenReturn(null);
             when(fileBook.findByIsbn(anyString())).thenReturn(null);
 
             assertTrue(admin.addCD(cd, 2));
-            staticCD.verify(() -> FileCDRepository.saveCD(cd, 2));
+            verify(fileCD).add(cd, 2);
         }
     }
 
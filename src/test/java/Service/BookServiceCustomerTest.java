@@ -985,4 +985,50 @@ class BookServiceCustomerTest {
         assertTrue(output.contains("BOOK") || output.contains("CD") ||
                 output.contains("no active loans"));
     }
-}
\ No newline at end of file
+
+    @Test
+    @Order(111)
+    @DisplayName("Return releases exactly the copy the loan holds")
+    void returnBook_ReleasesLoanedCopy() throws Exception {
+        User cleanUser = new User("copyuser", "pass", "customer", "copy@test.com", new Date());
+        service.setCurrentUser(cleanUser);
+
+        assertTrue(service.borrowMediaItem("BOOK001"));
+        FileBookRepository.getInstance().findByIsbn("BOOK001").setAvailable(true);
+        assertTrue(service.borrowMediaItem("BOOK001"));
+
+        Field field = BookServiceCustomer.class.getDeclaredField("loanRepository");
+        field.setAccessible(true);
+        FileLoanRepository loans = (FileLoanRepository) field.get(service);
+        List<Loan> active = loans.getActiveLoansForUser("copyuser");
+        assertEquals(2, active.size());
+        Loan second = active.get(1);
+        assertEquals("BOOK001-2", second.getCopyId());
+
+        assertTrue(service.returnBook(second.getLoanId()));
+
+        FileMediaCopyRepository copies = FileMediaCopyRepository.getInstance();
+        assertFalse(copies.findCopyById("BOOK001-1").isAvailable());
+        assertTrue(copies.findCopyById("BOOK001-2").isAvailable());
+    }
+
+    @Test
+    @Order(112)
+    @DisplayName("A return whose loan cannot be closed keeps the copy on loan")
+    void completeReturn_LoanNotClosed_KeepsCopy() throws Exception {
+        Field field = BookServiceCustomer.class.getDeclaredField("loanRepository");
+        field.setAccessible(true);
+        field.set(service, new FileLoanRepository() {
+            @Override
+            public boolean returnItem(String loanId, LocalDate returnDate) {
+                return false;
+            }
+        });
+
+        assertFalse(service.completeReturn("LOAN001"));
+
+        assertTrue(outContent.toString().contains("could not be saved"));
+        assertFalse(FileMediaCopyRepository.getInstance().findCopyById("BOOK003-1").isAvailable());
+        assertTrue(Files.readString(tempCopiesFile).contains("BOOK003-1;BOOK003;false"));
+    }
+}
@@ -36,7 +36,7 @@ class BookServiceTest {
         injectMockContext(service, ctx);
 
         List<Book> list = List.of(new Book("T","A","1"));
-        when(repo.findAllBooks()).thenReturn(list);
+        when(repo.findAll()).thenReturn(list);
         when(ctx.executeSearch(list, "abc")).thenReturn(list);
 
         List<Book> result = service.searchByTitle("abc");
@@ -56,7 +56,7 @@ class BookServiceTest {
         injectMockContext(service, ctx);
 
         List<Book> list = List.of(new Book("T","A","1"));
-        when(repo.findAllBooks()).thenReturn(list);
+        when(repo.findAll()).thenReturn(list);
         when(ctx.executeSearch(list, "xyz")).thenReturn(list);
 
         List<Book> result = service.searchByAuthor("xyz");
@@ -76,7 +76,7 @@ class BookServiceTest {
         injectMockContext(service, ctx);
 
         List<Book> list = List.of(new Book("T","A","1"));
-        when(repo.findAllBooks()).thenReturn(list);
+        when(repo.findAll()).thenReturn(list);
         when(ctx.executeSearch(list, "111")).thenReturn(list);
 
         List<Book> result = service.searchByISBN("111");
@@ -0,0 +1,171 @@
+package Service;
+
+import Domain.Book;
+import Domain.Loan;
+import Domain.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactLoanStoreTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 1);
+
+    private CompactLoanStore store;
+    private User alice;
+    private User bob;
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        store = new CompactLoanStore();
+        alice = new User("alice", "pw", "customer");
+        bob = new User("bob", "pw", "customer");
+        book = new Book("Java", "A", "999");
+    }
+
+    @Test
+    @DisplayName("a loan is rebuilt with the fields it was stored with")
+    void view_rebuildsStoredFields() {
+        String id = UUID.randomUUID().toString();
+        int slot = store.add(id, alice, book, DAY, DAY.plusDays(3), "999-2");
+
+        Loan loan = store.view(slot);
+
+        assertEquals(id, loan.getLoanId());
+        assertSame(alice, loan.getUser());
+        assertSame(book, loan.getMediaItem());
+        assertEquals(DAY, loan.getBorrowDate());
+        assertEquals(DAY.plusDays(3), loan.getReturnDate());
+        assertEquals("999-2", loan.getCopyId());
+        assertSame(loan, store.view(slot));
+    }
+
+    @Test
+    @DisplayName("UUID and free-form loan IDs are both found")
+    void find_handlesUuidAndTextIds() {
+        String uuid = UUID.randomUUID().toString();
+        int uuidSlot = store.add(uuid, alice, book, DAY, null, null);
+        int textSlot = store.add("LOAN-7", alice, book, DAY, null, "odd-copy");
+
+        assertEquals(uuidSlot, store.find(uuid));
+        assertEquals(textSlot, store.find("LOAN-7"));
+        assertEquals(-1, store.find(UUID.randomUUID().toString()));
+        assertEquals(-1, store.find(uuid.toUpperCase()));
+        assertEquals("odd-copy", store.view(textSlot).getCopyId());
+    }
+
+    @Test
+    @DisplayName("time-ordered loan IDs are packed and found")
+    void find_handlesTimeOrderedIds() {
+        TimeOrderedLoanIdGenerator ids = new TimeOrderedLoanIdGenerator();
+        String first = ids.nextId();
+        String second = ids.nextId();
+        int firstSlot = store.add(first, alice, book, DAY, null, null);
+        int secondSlot = store.add(second, bob, book, DAY, null, null);
+
+        assertEquals(firstSlot, store.find(first));
+        assertEquals(secondSlot, store.find(second));
+        assertEquals(second, store.loanId(secondSlot));
+        assertEquals(-1, store.find(ids.nextId()));
+    }
+
+    @Test
+    @DisplayName("a duplicate loan ID keeps referring to the first loan")
+    void find_keepsFirstOfDuplicateIds() {
+        int first = store.add("L1", alice, book, DAY, null, null);
+        store.add("L1", bob, book, DAY, null, null);
+
+        assertEquals(first, store.find("L1"));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    @DisplayName("active loans are listed per user and by due day until returned")
+    void activeQueries_followReturns() {
+        int a1 = store.add("A1", alice, book, DAY, null, null);
+        int b1 = store.add("B1", bob, book, DAY.minusDays(5), null, null);
+        int a2 = store.add("A2", alice, book, DAY.minusDays(10), null, null);
+        store.add("A3", alice, book, DAY, DAY, null);
+        long due = DAY.plusDays(book.getBorrowingPeriodDays()).toEpochDay();
+
+        assertEquals(List.of("A1", "A2"), ids(store.activeFor("alice")));
+        assertEquals(List.of("A2", "B1", "A1"), ids(store.activeDueBetween(Long.MIN_VALUE, due)));
+        assertEquals(List.of("B1"), ids(store.activeDueBetween(due - 5, due - 1)));
+
+        store.markReturned(a1, DAY.plusDays(1));
+        store.markReturned(b1, DAY.plusDays(1));
+
+        assertEquals(List.of("A2"), ids(store.activeFor("alice")));
+        assertEquals(List.of(), ids(store.activeFor("bob")));
+        assertEquals(List.of("A2"), ids(store.active()));
+        assertEquals(List.of("A2"), ids(store.activeDueBetween(Long.MIN_VALUE, Long.MAX_VALUE)));
+        assertFalse(store.isActive(a1));
+        assertTrue(store.isActive(a2));
+    }
+
+    @Test
+    @DisplayName("removed loans are no longer found and their slots are reused")
+    void remove_freesSlot() {
+        String id = UUID.randomUUID().toString();
+        int slot = store.add(id, alice, book, DAY, null, null);
+
+        store.remove(slot);
+
+        assertEquals(-1, store.find(id));
+        assertEquals(0, store.size());
+        assertEquals(List.of(), store.activeFor("alice"));
+        assertEquals(slot, store.add("NEXT", bob, book, DAY, null, null));
+        assertEquals("NEXT", store.view(slot).getLoanId());
+    }
+
+    @Test
+    @DisplayName("thousands of loans stay findable through growth and removals")
+    void find_survivesGrowthAndRemovals() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String id = UUID.randomUUID().toString();
+            ids.add(id);
+            store.add(id, i % 2 == 0 ? alice : bob, book, DAY.plusDays(i % 30), null, null);
+        }
+        for (int i = 0; i < 5000; i += 3) store.remove(store.find(ids.get(i)));
+
+        for (int i = 0; i < 5000; i++) {
+            int slot = store.find(ids.get(i));
+            if (i % 3 == 0) {
+                assertEquals(-1, slot);
+            } else {
+                assertEquals(ids.get(i), store.loanId(slot));
+            }
+        }
+        assertEquals(5000 - 1667, store.size());
+    }
+
+    @Test
+    @DisplayName("records are written in the loans file format")
+    void writeRecords_matchesLoanRecords() throws IOException {
+        String id = UUID.randomUUID().toString();
+        store.add(id, alice, book, DAY, null, "999-1");
+        int returned = store.add("L2", bob, book, DAY, DAY.plusDays(2), null);
+
+        StringBuilder out = new StringBuilder();
+        store.copy().writeRecords(out);
+
+        assertEquals(List.of(
+                        id + ";alice;999;" + DAY + ";NULL;999-1",
+                        FileLoanRepository.toRecord(store.view(returned))),
+                out.toString().lines().toList());
+    }
+
+    private static List<String> ids(List<Loan> loans) {
+        return loans.stream().map(Loan::getLoanId).toList();
+    }
+}
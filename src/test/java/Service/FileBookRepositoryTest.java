@@ -168,4 +168,38 @@ class FileBookRepositoryTest {
             assertTrue(Files.size(testFile) > 0);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void reloadBooks_keepsBookInstances() throws Exception {
+        Files.write(testFile, List.of("Harry Potter;J.K. Rowling;9999999999;true"));
+        FileBookRepository repo = FileBookRepository.getInstance();
+        Book before = repo.findByIsbn("9999999999");
+
+        Files.write(testFile, List.of("Harry Potter 2;J.K. Rowling;9999999999;false"));
+        repo.reloadBooks();
+
+        assertSame(before, repo.findByIsbn("9999999999"));
+        assertEquals("Harry Potter 2", before.getTitle());
+        assertFalse(before.isAvailable());
+    }
+
+    @Test
+    void updateBookAvailability_skipsWriteWhenUnchanged() throws Exception {
+        FileMediaCopyRepository mockCopies = mock(FileMediaCopyRepository.class);
+
+        try (MockedStatic<FileMediaCopyRepository> mocked = mockStatic(FileMediaCopyRepository.class)) {
+            mocked.when(FileMediaCopyRepository::getInstance).thenReturn(mockCopies);
+            Mockito.when(mockCopies.getAvailableCopiesCount(TEST_ISBN)).thenReturn(1);
+            FileBookRepository.saveBook(new Book("Test Book", "Author", TEST_ISBN), 1);
+            Files.writeString(testFile, "marker\n", java.nio.file.StandardOpenOption.APPEND);
+
+            FileBookRepository.getInstance().updateBookAvailability(TEST_ISBN);
+            assertTrue(Files.readString(testFile).contains("marker"));
+
+            Mockito.when(mockCopies.getAvailableCopiesCount(TEST_ISBN)).thenReturn(0);
+            FileBookRepository.getInstance().updateBookAvailability(TEST_ISBN);
+            assertFalse(Files.readString(testFile).contains("marker"));
+            assertTrue(Files.readString(testFile).contains("Test Book;Author;" + TEST_ISBN + ";false"));
+        }
+    }
+}
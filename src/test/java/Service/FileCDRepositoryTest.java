@@ -7,7 +7,11 @@ import org.junit.jupiter.api.*;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -323,6 +327,90 @@ class FileCDRepositoryTest {
         assertNotSame(repo1, repo2);
     }
 
+    @Test
+    @DisplayName("getInstance returns a single instance across threads")
+    void getInstance_isThreadSafe() throws Exception {
+        FileCDRepository.reset();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<FileCDRepository>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                results.add(pool.submit(FileCDRepository::getInstance));
+            }
+            FileCDRepository first = results.get(0).get();
+            for (Future<FileCDRepository> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // ============ Cache Tests ============
+
+    @Test
+    @DisplayName("findAllCDs is served from the cache until reload")
+    void findAllCDs_servedFromCacheUntilReload() throws IOException {
+        FileCDRepository.saveCD(new CD("Album", "Artist", "CD-001"), 1);
+        Files.writeString(tempCDFile, "Album;Artist;CD-001;true\nOther;Artist;CD-002;true\n");
+
+        assertEquals(1, repo.findAllCDs().size());
+        assertNull(repo.findByIsbn("CD-002"));
+
+        repo.reload();
+
+        assertEquals(2, repo.findAllCDs().size());
+        assertNotNull(repo.findByIsbn("CD-002"));
+    }
+
+    @Test
+    @DisplayName("updateCD updates the cached CD in place and writes through")
+    void updateCD_updatesInPlaceAndWritesThrough() {
+        FileCDRepository.saveCD(new CD("Old Title", "Artist", "CD-001"), 1);
+        CD cached = repo.findByIsbn("CD-001");
+
+        repo.updateCD(new CD("New Title", "Artist", "CD-001"));
+
+        assertSame(cached, repo.findByIsbn("CD-001"));
+        assertEquals("New Title", cached.getTitle());
+        assertTrue(readFileContent(tempCDFile).contains("New Title;Artist;CD-001;true"));
+    }
+
+    @Test
+    @DisplayName("updateCDAvailability writes the new availability through to the file")
+    void updateCDAvailability_writesThrough() {
+        FileCDRepository.saveCD(new CD("Album", "Artist", "CD-001"), 1);
+        FileMediaCopyRepository.getInstance().getCopiesByIsbn("CD-001").get(0).setAvailable(false);
+
+        repo.updateCDAvailability("CD-001");
+
+        assertTrue(readFileContent(tempCDFile).contains("Album;Artist;CD-001;false"));
+    }
+
+    @Test
+    @DisplayName("reload updates the cached CD objects instead of replacing them")
+    void reload_keepsCDInstances() throws IOException {
+        FileCDRepository.saveCD(new CD("Album", "Artist", "CD-001"), 1);
+        CD before = repo.findByIsbn("CD-001");
+
+        Files.writeString(tempCDFile, "Album (Remastered);Artist;CD-001;false\n");
+        repo.reload();
+
+        assertSame(before, repo.findByIsbn("CD-001"));
+        assertEquals("Album (Remastered)", before.getTitle());
+        assertFalse(before.isAvailable());
+    }
+
+    @Test
+    @DisplayName("findAllCDs returns a copy that does not alter the cache")
+    void findAllCDs_returnsDefensiveCopy() {
+        FileCDRepository.saveCD(new CD("Album", "Artist", "CD-001"), 1);
+
+        repo.findAllCDs().clear();
+
+        assertEquals(1, repo.findAllCDs().size());
+    }
+
     // ============ Edge Cases Tests ============
 
     @Test
@@ -375,6 +463,39 @@ class FileCDRepositoryTest {
         assertEquals(0, countLines(tempCDFile));
     }
 
+    @Test
+    @DisplayName("index mode reads CDs through the ISBN index and stores availability in place")
+    void indexMode_usesIsbnIndex() throws IOException {
+        FileCDRepository.setIndexMode(true);
+        try {
+            FileCDRepository.saveCD(new CD("Album", "Artist", "CD-001"), 1);
+            FileCDRepository.saveCD(new CD("Other", "Artist", "CD-002"), 1);
+
+            FileCDRepository.reset();
+            FileCDRepository indexed = FileCDRepository.getInstance();
+            CD cd = indexed.findByIsbn("cd-001");
+            assertEquals("Album", cd.getTitle());
+            assertSame(cd, indexed.findByIsbn("CD-001"));
+            assertEquals(2, indexed.findAllCDs().size());
+
+            MediaCopy copy = FileMediaCopyRepository.getInstance().getCopiesByIsbn("CD-001").get(0);
+            assertEquals("CD-001", copy.getIsbn());
+            assertSame(cd, copy.getMediaItem());
+            copy.setAvailable(false);
+            FileMediaCopyRepository.getInstance().saveToFile();
+            long length = Files.size(tempCDFile);
+            indexed.updateCDAvailability("CD-001");
+
+            assertFalse(cd.isAvailable());
+            assertEquals(length, Files.size(tempCDFile));
+            assertTrue(readFileContent(tempCDFile).startsWith("Album;Artist;CD-001;false\n"));
+            assertTrue(Files.exists(Path.of(tempCDFile + IndexedCatalog.INDEX_SUFFIX)));
+        } finally {
+            FileCDRepository.setIndexMode(false);
+            Files.deleteIfExists(Path.of(tempCDFile + IndexedCatalog.INDEX_SUFFIX));
+        }
+    }
+
     // ============ Helper Methods ============
 
     private int countLines(Path path) {
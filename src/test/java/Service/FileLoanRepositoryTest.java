@@ -14,6 +14,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -92,6 +93,18 @@ class FileLoanRepositoryTest {
         assertEquals(1, countLines(tempLoansFile));
     }
 
+    @Test
+    @DisplayName("borrowItem with a copy ID records the copy and it survives a reload")
+    void borrowItem_withCopyId_persistsCopy() {
+        Loan loan = repo.borrowItem(alice, book, "999-1");
+
+        assertEquals("999-1", loan.getCopyId());
+        assertTrue(readFirstLine(tempLoansFile).endsWith(";999-1"));
+
+        FileLoanRepository reloaded = new FileLoanRepository();
+        assertEquals("999-1", reloaded.findLoanById(loan.getLoanId()).getCopyId());
+    }
+
     @Test
     @DisplayName("returnItem sets return date, makes book available, and saves to file")
     void returnItem_worksCorrectly() {
@@ -141,6 +154,40 @@ class FileLoanRepositoryTest {
         assertNull(repo.findLoanById("fake-id"));
     }
 
+    @Test
+    @DisplayName("new loans get short, increasing IDs that can be typed loosely")
+    void borrowItem_mintsTimeOrderedIds() {
+        Book book2 = new Book("Python", "Author2", "888");
+        FileBookRepository.getInstance().saveBook(book2, 1);
+        FileLoanRepository newRepo = new FileLoanRepository();
+
+        Loan first = newRepo.borrowItem(alice, book);
+        Loan second = newRepo.borrowItem(alice, book2);
+
+        assertEquals(TimeOrderedLoanIdGenerator.LENGTH, first.getLoanId().length());
+        assertTrue(first.getLoanId().compareTo(second.getLoanId()) < 0);
+        assertSame(first, newRepo.findLoanById(first.getLoanId().toLowerCase()));
+        assertTrue(newRepo.returnItem(" " + first.getLoanId().toLowerCase() + " ", LocalDate.now()));
+        assertTrue(readFirstLine(tempLoansFile).startsWith(first.getLoanId() + ";"));
+    }
+
+    @Test
+    @DisplayName("the loan ID generator can be replaced")
+    void setIdGenerator_replacesGenerator() {
+        LoanIdGenerator original = FileLoanRepository.getIdGenerator();
+        try {
+            FileLoanRepository.setIdGenerator(() -> "FIXED-1");
+
+            Loan loan = repo.borrowItem(alice, book);
+
+            assertEquals("FIXED-1", loan.getLoanId());
+            assertSame(loan, repo.findLoanById("FIXED-1"));
+        } finally {
+            FileLoanRepository.setIdGenerator(original);
+        }
+        assertThrows(IllegalArgumentException.class, () -> FileLoanRepository.setIdGenerator(null));
+    }
+
     // ============ Exception Handling Tests ============
 
     @Test
@@ -234,17 +281,38 @@ class FileLoanRepositoryTest {
         oldBook.setAvailable(false);
         Loan oldLoan = new Loan("OLD123", alice, oldBook, LocalDate.now().minusDays(40));
 
-        Field loansField = repo.getClass().getDeclaredField("loans");
-        loansField.setAccessible(true);
-        @SuppressWarnings("unchecked")
-        List<Loan> loansList = (List<Loan>) loansField.get(repo);
-        loansList.add(oldLoan);
+        Method addLoan = repo.getClass().getDeclaredMethod("addLoan", Loan.class);
+        addLoan.setAccessible(true);
+        addLoan.invoke(repo, oldLoan);
 
         List<Loan> overdue = repo.getOverdueLoans(LocalDate.now());
         assertEquals(1, overdue.size());
         assertEquals("OLD123", overdue.get(0).getLoanId());
     }
 
+    @Test
+    @DisplayName("overdue and due-soon queries follow the due date order")
+    void dueDateQueries_useDueDateOrder() throws Exception {
+        Method addLoan = repo.getClass().getDeclaredMethod("addLoan", Loan.class);
+        addLoan.setAccessible(true);
+        LocalDate today = LocalDate.now();
+        Loan later = new Loan("LATER", alice, new Book("B1", "X", "701"), today.minusDays(35));
+        Loan earlier = new Loan("EARLIER", alice, new Book("B2", "X", "702"), today.minusDays(40));
+        Loan dueSoon = new Loan("SOON", alice, new Book("B3", "X", "703"), today.minusDays(25));
+        Loan returned = new Loan("DONE", alice, new Book("B4", "X", "704"), today.minusDays(50));
+        returned.returnItem(today.minusDays(45));
+        for (Loan loan : List.of(later, earlier, dueSoon, returned)) addLoan.invoke(repo, loan);
+
+        Loan current = repo.borrowItem(alice, book);
+
+        assertEquals(List.of(earlier, later), repo.getOverdueLoans(today));
+        assertEquals(List.of(dueSoon), repo.getLoansDueWithin(today, 7));
+        assertEquals(List.of(dueSoon, current), repo.getLoansDueWithin(today, 28));
+
+        repo.returnItem("SOON", today);
+        assertTrue(repo.getLoansDueWithin(today, 7).isEmpty());
+    }
+
     // ============ File Loading Tests ============
 
     @Test
@@ -304,6 +372,144 @@ class FileLoanRepositoryTest {
         assertTrue(loadedLoan.getMediaItem().isAvailable());
     }
 
+    @Test
+    @DisplayName("loadLoans resolves books and CDs in one pass and reports the counts")
+    void loadLoans_reportsCounts() throws IOException {
+        FileCDRepository.getInstance().saveCD(new CD("Greatest Hits", "Artist", "CD-001"), 1);
+        LocalDate today = LocalDate.now();
+        Files.writeString(tempLoansFile,
+                "L1;alice;999;" + today + ";NULL\n"
+                        + "L2;alice;cd-001;" + today + ";" + today + "\n"
+                        + "L3;bob;UNKNOWN;" + today + ";NULL\n"
+                        + "broken;line\n");
+
+        FileLoanRepository newRepo = new FileLoanRepository();
+        FileLoanRepository.LoadReport report = newRepo.getLoadReport();
+
+        assertEquals(4, report.getSnapshotLines());
+        assertEquals(2, report.getLoansLoaded());
+        assertEquals(2, report.getRecordsSkipped());
+        assertEquals(0, report.getJournalRecords());
+        assertEquals(2, report.getCatalogItems());
+        assertTrue(report.getElapsedMillis() >= 0);
+        assertSame(FileCDRepository.getInstance().findByIsbn("CD-001"),
+                newRepo.findLoanById("L2").getMediaItem());
+    }
+
+    @Test
+    @DisplayName("loans loaded for the same username share one User")
+    void loadLoans_sharesUsers() throws IOException {
+        Book book2 = new Book("Python", "Author2", "888");
+        FileBookRepository.getInstance().saveBook(book2, 1);
+        LocalDate today = LocalDate.now();
+        Files.writeString(tempLoansFile,
+                "L1;alice;999;" + today + ";NULL\n" + "L2;alice;888;" + today + ";NULL\n");
+
+        FileLoanRepository newRepo = new FileLoanRepository();
+
+        assertSame(newRepo.findLoanById("L1").getUser(), newRepo.findLoanById("L2").getUser());
+    }
+
+    @Test
+    @DisplayName("borrowItem links the loan to the catalog instance of the item")
+    void borrowItem_usesCatalogInstance() {
+        Book detached = new Book("Java", "Yahya", "999");
+
+        Loan loan = repo.borrowItem(alice, detached);
+        repo.returnItem(loan.getLoanId(), LocalDate.now());
+
+        assertSame(FileBookRepository.getInstance().findByIsbn("999"), loan.getMediaItem());
+        assertTrue(FileBookRepository.getInstance().findByIsbn("999").isAvailable());
+    }
+
+    @Test
+    @DisplayName("active loans per user follow borrows and returns")
+    void getActiveLoansForUser_tracksBorrowAndReturn() {
+        Book book2 = new Book("Python", "Author2", "888");
+        FileBookRepository.getInstance().saveBook(book2, 1);
+        User bob = new User("bob", "456", "customer");
+
+        Loan first = repo.borrowItem(alice, book);
+        Loan second = repo.borrowItem(bob, book2);
+
+        assertEquals(List.of(first), repo.getActiveLoansForUser("alice"));
+        assertEquals(List.of(second), repo.getActiveLoansForUser("bob"));
+
+        repo.returnItem(first.getLoanId(), LocalDate.now());
+
+        assertTrue(repo.getActiveLoansForUser("alice").isEmpty());
+        assertSame(first, repo.findLoanById(first.getLoanId()));
+        assertTrue(repo.getActiveLoansForUser("nobody").isEmpty());
+    }
+
+    @Test
+    @DisplayName("loan indexes are rebuilt from the snapshot and journal")
+    void loadLoans_rebuildsIndexes() throws IOException {
+        LocalDate today = LocalDate.now();
+        Book book2 = new Book("Python", "Author2", "888");
+        FileBookRepository.getInstance().saveBook(book2, 1);
+        Files.writeString(tempLoansFile,
+                "L1;alice;999;" + today + ";" + today + "\n" + "L2;alice;888;" + today + ";NULL\n");
+
+        FileLoanRepository newRepo = new FileLoanRepository();
+
+        assertEquals(List.of("L2"), newRepo.getActiveLoansForUser("alice").stream().map(Loan::getLoanId).toList());
+        assertNotNull(newRepo.findLoanById("L1"));
+        assertNull(newRepo.findLoanById("L3"));
+    }
+
+    @Test
+    @DisplayName("archive mode moves returned loans out of memory and the loans file, still found by ID")
+    void archiveMode_movesReturnedLoansToArchive() throws IOException {
+        FileLoanRepository.setArchiveMode(true);
+        try {
+            FileLoanRepository archiving = new FileLoanRepository();
+            Loan loan = archiving.borrowItem(alice, book);
+            LocalDate returnDate = LocalDate.now();
+
+            assertTrue(archiving.returnItem(loan.getLoanId(), returnDate));
+
+            assertTrue(archiving.getAllLoans().isEmpty());
+            assertEquals(0, countLines(tempLoansFile));
+            assertEquals(returnDate, new FileLoanRepository().findLoanById(loan.getLoanId()).getReturnDate());
+            assertEquals(List.of(YearMonth.from(returnDate)), archiving.getArchivedPeriods());
+            List<Loan> archived = new FileLoanRepository().getArchivedLoans(YearMonth.from(returnDate));
+            assertEquals(1, archived.size());
+            assertEquals(loan.getLoanId(), archived.get(0).getLoanId());
+            assertEquals(returnDate, archived.get(0).getReturnDate());
+        } finally {
+            FileLoanRepository.setArchiveMode(false);
+            deleteArchive();
+        }
+    }
+
+    @Test
+    @DisplayName("archive mode archives returned loans found in an existing loans file")
+    void archiveMode_archivesReturnedLoansOnNextSnapshot() throws IOException {
+        LocalDate returnDate = LocalDate.of(2025, 1, 10);
+        Book book2 = new Book("Python", "Author2", "888");
+        FileBookRepository.getInstance().saveBook(book2, 1);
+        Files.writeString(tempLoansFile, "OLD;alice;999;2025-01-01;" + returnDate + "\n");
+
+        FileLoanRepository.setArchiveMode(true);
+        try {
+            FileLoanRepository archiving = new FileLoanRepository();
+            assertTrue(archiving.getAllLoans().isEmpty());
+            assertEquals(returnDate, archiving.findLoanById("OLD").getReturnDate());
+            assertEquals(1, archiving.getArchivedLoans(YearMonth.of(2025, 1)).size());
+
+            archiving.borrowItem(alice, book2);
+
+            assertFalse(Files.readString(tempLoansFile).contains("OLD;"));
+            assertEquals(List.of(YearMonth.of(2025, 1)), archiving.getArchivedPeriods());
+            assertEquals("OLD", archiving.getArchivedLoans(YearMonth.of(2025, 1)).get(0).getLoanId());
+            assertEquals(returnDate, new FileLoanRepository().findLoanById("OLD").getReturnDate());
+        } finally {
+            FileLoanRepository.setArchiveMode(false);
+            deleteArchive();
+        }
+    }
+
     // ============ Edge Cases Tests ============
 
     @Test
@@ -375,6 +581,17 @@ class FileLoanRepositoryTest {
         }
     }
 
+    private void deleteArchive() throws IOException {
+        for (String suffix : new String[]{LoanArchive.DIRECTORY_SUFFIX, LoanLedger.DIRECTORY_SUFFIX}) {
+            Path dir = Path.of(tempLoansFile + suffix);
+            if (!Files.exists(dir)) continue;
+            try (var files = Files.list(dir)) {
+                for (Path file : files.toList()) Files.delete(file);
+            }
+            Files.delete(dir);
+        }
+    }
+
     private String readFirstLine(Path path) {
         try {
             return Files.lines(path).findFirst().orElse("");
@@ -70,12 +70,7 @@ class FileMediaCopyRepositoryTest {
         MediaCopy copy = new MediaCopy("NODASH", book);
         copy.setAvailable(true);
 
-        // Access private field to add copy directly
-        var field = repo.getClass().getDeclaredField("copies");
-        field.setAccessible(true);
-        @SuppressWarnings("unchecked")
-        List<MediaCopy> copies = (List<MediaCopy>) field.get(repo);
-        copies.add(copy);
+        repo.addCopy(copy);
 
         // Call private method to test
         Method method = repo.getClass().getDeclaredMethod("getMaxCopyIndexForIsbn", String.class);
@@ -98,11 +93,7 @@ class FileMediaCopyRepositoryTest {
         // Copy with non-numeric suffix like "ISBN-002-ABC"
         MediaCopy copy = new MediaCopy("ISBN-002-ABC", book);
 
-        var field = repo.getClass().getDeclaredField("copies");
-        field.setAccessible(true);
-        @SuppressWarnings("unchecked")
-        List<MediaCopy> copies = (List<MediaCopy>) field.get(repo);
-        copies.add(copy);
+        repo.addCopy(copy);
 
         Method method = repo.getClass().getDeclaredMethod("getMaxCopyIndexForIsbn", String.class);
         method.setAccessible(true);
@@ -126,14 +117,9 @@ class FileMediaCopyRepositoryTest {
         MediaCopy copy2 = new MediaCopy("ISBN-003-3", book);
         MediaCopy copy3 = new MediaCopy("ISBN-003-2", book);
 
-        var field = repo.getClass().getDeclaredField("copies");
-        field.setAccessible(true);
-        @SuppressWarnings("unchecked")
-        List<MediaCopy> copies = (List<MediaCopy>) field.get(repo);
-        copies.clear();
-        copies.add(copy1);
-        copies.add(copy2);
-        copies.add(copy3);
+        repo.addCopy(copy1);
+        repo.addCopy(copy2);
+        repo.addCopy(copy3);
 
         Method method = repo.getClass().getDeclaredMethod("getMaxCopyIndexForIsbn", String.class);
         method.setAccessible(true);
@@ -189,45 +175,68 @@ class FileMediaCopyRepositoryTest {
     }
 
     @Test
-    @DisplayName("getAvailableCopiesCount - with null MediaItem in copy")
-    void getAvailableCopiesCount_NullMediaItem() throws Exception {
+    @DisplayName("addCopy - copy with null MediaItem is ignored")
+    void addCopy_NullMediaItem() {
         FileMediaCopyRepository.reset();
         repo = FileMediaCopyRepository.getInstance();
 
-        // Create a copy with null MediaItem
         MediaCopy copyWithNull = new MediaCopy("COPY-NULL-1", null);
         copyWithNull.setAvailable(true);
 
-        var field = repo.getClass().getDeclaredField("copies");
-        field.setAccessible(true);
-        @SuppressWarnings("unchecked")
-        List<MediaCopy> copies = (List<MediaCopy>) field.get(repo);
-        copies.add(copyWithNull);
+        assertDoesNotThrow(() -> repo.addCopy(copyWithNull));
+        assertEquals(0, repo.getAvailableCopiesCount("ANY-ISBN"));
+        assertTrue(repo.getCopiesByIsbn("ANY-ISBN").isEmpty());
+    }
+
+    @Test
+    @DisplayName("getAvailableCopiesCount - tracks copies borrowed and returned directly")
+    void getAvailableCopiesCount_TracksAvailabilityChanges() {
+        Book book = new Book("Test", "Author", "ISBN-010");
+        FileBookRepository.saveBook(book, 3);
+
+        List<MediaCopy> copies = repo.getCopiesByIsbn("ISBN-010");
+        copies.get(0).setAvailable(false);
+        copies.get(1).setAvailable(false);
+        copies.get(1).setAvailable(false);
+
+        assertEquals(1, repo.getAvailableCopiesCount("ISBN-010"));
+
+        copies.get(0).setAvailable(true);
 
-        // Should handle null gracefully (might throw NPE)
-        assertThrows(NullPointerException.class, () -> {
-            repo.getAvailableCopiesCount("ANY-ISBN");
-        });
+        assertEquals(2, repo.getAvailableCopiesCount("ISBN-010"));
     }
 
     @Test
-    @DisplayName("getCopiesByIsbn - with null MediaItem in copy")
-    void getCopiesByIsbn_NullMediaItem() throws Exception {
+    @DisplayName("getAvailableCopiesCount - counts loaded copies and ignores ISBN case")
+    void getAvailableCopiesCount_AfterLoad() throws IOException {
+        Book book = new Book("Test", "Author", "ISBN-011");
+        FileBookRepository.saveBook(book, 0);
+        Files.writeString(tempCopiesFile,
+                "ISBN-011-1;ISBN-011;true\n" +
+                        "ISBN-011-2;ISBN-011;false\n" +
+                        "ISBN-011-7;ISBN-011;true\n");
+
         FileMediaCopyRepository.reset();
         repo = FileMediaCopyRepository.getInstance();
 
-        MediaCopy copyWithNull = new MediaCopy("COPY-NULL-2", null);
+        assertEquals(2, repo.getAvailableCopiesCount("isbn-011"));
+        assertEquals(3, repo.getCopiesByIsbn("ISBN-011").size());
+    }
 
-        var field = repo.getClass().getDeclaredField("copies");
-        field.setAccessible(true);
-        @SuppressWarnings("unchecked")
-        List<MediaCopy> copies = (List<MediaCopy>) field.get(repo);
-        copies.add(copyWithNull);
+    @Test
+    @DisplayName("addCopiesByBookIsbn - continues numbering after the highest copy index")
+    void addCopiesByBookIsbn_ContinuesAfterMaxIndex() throws IOException {
+        Book book = new Book("Test", "Author", "ISBN-012");
+        FileBookRepository.saveBook(book, 0);
+        Files.writeString(tempCopiesFile, "ISBN-012-4;ISBN-012;true\n");
 
-        // Should handle null gracefully
-        assertThrows(NullPointerException.class, () -> {
-            repo.getCopiesByIsbn("ANY-ISBN");
-        });
+        FileMediaCopyRepository.reset();
+        repo = FileMediaCopyRepository.getInstance();
+        repo.addCopiesByBookIsbn("ISBN-012", 2, true);
+
+        List<MediaCopy> copies = repo.getCopiesByIsbn("ISBN-012");
+        assertEquals("ISBN-012-5", copies.get(1).getCopyId());
+        assertEquals("ISBN-012-6", copies.get(2).getCopyId());
     }
 
     @Test
@@ -328,4 +337,225 @@ class FileMediaCopyRepositoryTest {
         assertTrue(copies.isEmpty());
     }
 
+    @Test
+    @DisplayName("checkoutCopy - hands out an available copy and marks it borrowed")
+    void checkoutCopy_TakesAvailableCopy() throws IOException {
+        Book book = new Book("Test", "Author", "ISBN-020");
+        FileBookRepository.saveBook(book, 0);
+        Files.writeString(tempCopiesFile,
+                "ISBN-020-1;ISBN-020;false\n" +
+                        "ISBN-020-2;ISBN-020;true\n");
+
+        FileMediaCopyRepository.reset();
+        repo = FileMediaCopyRepository.getInstance();
+
+        MediaCopy copy = repo.checkoutCopy("ISBN-020");
+
+        assertEquals("ISBN-020-2", copy.getCopyId());
+        assertFalse(copy.isAvailable());
+        assertNull(repo.checkoutCopy("ISBN-020"));
+        assertTrue(Files.readString(tempCopiesFile).contains("ISBN-020-2;ISBN-020;false"));
+    }
+
+    @Test
+    @DisplayName("checkoutCopy - returns null for unknown ISBN")
+    void checkoutCopy_UnknownIsbn() {
+        assertNull(repo.checkoutCopy("NON-EXISTENT"));
+    }
+
+    @Test
+    @DisplayName("releaseCopy - releases exactly the given copy")
+    void releaseCopy_ReleasesGivenCopy() {
+        Book book = new Book("Test", "Author", "ISBN-021");
+        FileBookRepository.saveBook(book, 2);
+
+        MediaCopy first = repo.checkoutCopy("ISBN-021");
+        MediaCopy second = repo.checkoutCopy("ISBN-021");
+
+        assertTrue(repo.releaseCopy(second.getCopyId()));
+
+        assertFalse(first.isAvailable());
+        assertTrue(second.isAvailable());
+        assertSame(second, repo.checkoutCopy("ISBN-021"));
+    }
+
+    @Test
+    @DisplayName("releaseCopy - returns false for unknown or already available copies")
+    void releaseCopy_NotOnLoan() {
+        Book book = new Book("Test", "Author", "ISBN-022");
+        FileBookRepository.saveBook(book, 1);
+
+        assertFalse(repo.releaseCopy("ISBN-022-1"));
+        assertFalse(repo.releaseCopy("NO-SUCH-COPY"));
+    }
+
+    @Test
+    @DisplayName("releaseAnyCopy - releases a borrowed copy of the title")
+    void releaseAnyCopy_ReleasesBorrowedCopy() {
+        Book book = new Book("Test", "Author", "ISBN-023");
+        FileBookRepository.saveBook(book, 2);
+        repo.checkoutCopy("ISBN-023");
+
+        MediaCopy released = repo.releaseAnyCopy("ISBN-023");
+
+        assertEquals("ISBN-023-1", released.getCopyId());
+        assertEquals(2, repo.getAvailableCopiesCount("ISBN-023"));
+        assertNull(repo.releaseAnyCopy("ISBN-023"));
+    }
+
+    @Test
+    @DisplayName("write-behind - changes stay pending until flush and are coalesced")
+    void writeBehind_FlushWritesPendingChanges() throws IOException {
+        Book book = new Book("Test", "Author", "ISBN-030");
+        FileBookRepository.saveBook(book, 2);
+        FileMediaCopyRepository.setWriteBehindMillis(60_000);
+        try {
+            repo = FileMediaCopyRepository.getInstance();
+            MediaCopy copy = repo.getCopiesByIsbn("ISBN-030").get(0);
+
+            copy.setAvailable(false);
+            copy.setAvailable(true);
+            copy.setAvailable(false);
+            repo.saveToFile();
+
+            assertEquals(1, repo.getPendingWriteCount());
+            assertTrue(Files.readString(tempCopiesFile).contains("ISBN-030-1;ISBN-030;true"));
+
+            repo.flush();
+
+            assertEquals(0, repo.getPendingWriteCount());
+            assertTrue(Files.readString(tempCopiesFile).contains("ISBN-030-1;ISBN-030;false"));
+        } finally {
+            FileMediaCopyRepository.setWriteBehindMillis(0);
+        }
+    }
+
+    @Test
+    @DisplayName("write-behind - background writer flushes after the window")
+    void writeBehind_BackgroundFlush() throws Exception {
+        Book book = new Book("Test", "Author", "ISBN-031");
+        FileBookRepository.saveBook(book, 1);
+        FileMediaCopyRepository.setWriteBehindMillis(20);
+        try {
+            repo = FileMediaCopyRepository.getInstance();
+            repo.checkoutCopy("ISBN-031");
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (!Files.readString(tempCopiesFile).contains("ISBN-031-1;ISBN-031;false")
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertTrue(Files.readString(tempCopiesFile).contains("ISBN-031-1;ISBN-031;false"));
+            assertEquals(0, repo.getPendingWriteCount());
+        } finally {
+            FileMediaCopyRepository.setWriteBehindMillis(0);
+        }
+    }
+
+    @Test
+    @DisplayName("write-behind - reset writes out pending changes first")
+    void writeBehind_ResetFlushes() throws IOException {
+        Book book = new Book("Test", "Author", "ISBN-032");
+        FileBookRepository.saveBook(book, 0);
+        FileMediaCopyRepository.setWriteBehindMillis(60_000);
+        try {
+            repo = FileMediaCopyRepository.getInstance();
+            repo.addCopiesByBookIsbn("ISBN-032", 2, true);
+
+            FileMediaCopyRepository.reset();
+
+            assertEquals(2, FileMediaCopyRepository.getInstance().getCopiesByIsbn("ISBN-032").size());
+        } finally {
+            FileMediaCopyRepository.setWriteBehindMillis(0);
+        }
+    }
+
+    @Test
+    @DisplayName("write-behind - a failed background write is retried")
+    void writeBehind_FailedWriteIsRetried() throws Exception {
+        Book book = new Book("Test", "Author", "ISBN-033");
+        FileBookRepository.saveBook(book, 1);
+        Path dir = Files.createTempDirectory("test_copies_retry");
+        Path copiesFile = dir.resolve("copies.txt");
+        Files.copy(tempCopiesFile, copiesFile);
+        FileMediaCopyRepository.setRepoPath(copiesFile.toString());
+        FileMediaCopyRepository.setWriteBehindMillis(20);
+        try {
+            repo = FileMediaCopyRepository.getInstance();
+            Files.delete(copiesFile);
+            Files.delete(dir);
+            repo.checkoutCopy("ISBN-033");
+
+            Thread.sleep(100);
+            assertEquals(1, repo.getPendingWriteCount());
+
+            Files.createDirectory(dir);
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (!(Files.exists(copiesFile) && Files.readString(copiesFile).contains("ISBN-033-1;ISBN-033;false"))
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertTrue(Files.readString(copiesFile).contains("ISBN-033-1;ISBN-033;false"));
+            assertEquals(0, repo.getPendingWriteCount());
+        } finally {
+            FileMediaCopyRepository.setWriteBehindMillis(0);
+            FileMediaCopyRepository.setRepoPath(tempCopiesFile.toString());
+            Files.deleteIfExists(copiesFile);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    @DisplayName("binary format - converts the text file and keeps availability changes in their slots")
+    void binaryFormat_ConvertsAndUpdatesSlots() throws IOException {
+        Book book = new Book("Test", "Author", "ISBN-040");
+        FileBookRepository.saveBook(book, 2);
+        Path binaryFile = Path.of(tempCopiesFile + FileMediaCopyRepository.BINARY_SUFFIX);
+        FileMediaCopyRepository.setBinaryFormat(true);
+        try {
+            repo = FileMediaCopyRepository.getInstance();
+            assertTrue(Files.exists(binaryFile));
+            long size = Files.size(binaryFile);
+
+            repo.checkoutCopy("ISBN-040");
+            repo.addCopiesByBookIsbn("ISBN-040", 1, true);
+
+            assertEquals(size + BinaryCopyFile.RECORD_SIZE, Files.size(binaryFile));
+
+            FileMediaCopyRepository.reset();
+            repo = FileMediaCopyRepository.getInstance();
+
+            assertEquals(3, repo.getCopiesByIsbn("ISBN-040").size());
+            assertFalse(repo.findCopyById("ISBN-040-1").isAvailable());
+            assertEquals(2, repo.getAvailableCopiesCount("ISBN-040"));
+        } finally {
+            FileMediaCopyRepository.setBinaryFormat(false);
+            Files.deleteIfExists(binaryFile);
+        }
+    }
+
+    @Test
+    @DisplayName("binary format - saveToFile writes copies changed directly")
+    void binaryFormat_SaveToFileWritesDirectChanges() throws IOException {
+        Book book = new Book("Test", "Author", "ISBN-041");
+        FileBookRepository.saveBook(book, 1);
+        Path binaryFile = Path.of(tempCopiesFile + FileMediaCopyRepository.BINARY_SUFFIX);
+        FileMediaCopyRepository.setBinaryFormat(true);
+        try {
+            repo = FileMediaCopyRepository.getInstance();
+            repo.getCopiesByIsbn("ISBN-041").get(0).setAvailable(false);
+            repo.saveToFile();
+
+            assertEquals(0, repo.getPendingWriteCount());
+
+            FileMediaCopyRepository.reset();
+            assertEquals(0, FileMediaCopyRepository.getInstance().getAvailableCopiesCount("ISBN-041"));
+        } finally {
+            FileMediaCopyRepository.setBinaryFormat(false);
+            Files.deleteIfExists(binaryFile);
+        }
+    }
+
 }
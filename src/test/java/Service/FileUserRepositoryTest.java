@@ -35,6 +35,7 @@ class FileUserRepositoryTest {
         // restore original repo path
         FileUserRepository.repoPath = originalRepoPath;
         Files.deleteIfExists(tempUsersFile);
+        Files.deleteIfExists(loginJournalFile());
     }
 
     @BeforeEach
@@ -48,6 +49,17 @@ class FileUserRepositoryTest {
                         "bob;pw2;customer;bob@test.com;" + now + "\n" +
                         "charlie;pw3;admin;charlie@test.com;" + earlier + "\n";
         Files.writeString(tempUsersFile, content, StandardOpenOption.TRUNCATE_EXISTING);
+        Files.deleteIfExists(loginJournalFile());
+        repo.reload();
+    }
+
+    @AfterEach
+    void tearDown() {
+        FileUserRepository.setLoginJournalMode(false);
+    }
+
+    private Path loginJournalFile() {
+        return Path.of(tempUsersFile + LoginJournal.SUFFIX);
     }
 
     @Test
@@ -110,6 +122,27 @@ class FileUserRepositoryTest {
         assertTrue(aliceHasToday);
     }
 
+    @Test
+    @DisplayName("updateDate updates every row of a username with the matching password")
+    void updateDate_updatesDuplicateRows() throws IOException {
+        Files.writeString(tempUsersFile,
+                "alice;pw1;customer;a@test.com;2020-01-01\n"
+                        + "bob;pw2;customer;b@test.com;2020-01-01\n"
+                        + "alice;pw1;customer;a2@test.com;2020-01-01\n"
+                        + "alice;other;customer;a3@test.com;2020-01-01\n",
+                StandardOpenOption.TRUNCATE_EXISTING);
+        FileUserRepository fresh = new FileUserRepository();
+
+        fresh.updateDate(fresh.findUser("alice", "pw1"));
+
+        String today = dateFormat.format(new Date());
+        assertEquals(List.of(
+                "alice;pw1;customer;a@test.com;" + today,
+                "bob;pw2;customer;b@test.com;2020-01-01",
+                "alice;pw1;customer;a2@test.com;" + today,
+                "alice;other;customer;a3@test.com;2020-01-01"), Files.readAllLines(tempUsersFile));
+    }
+
     @Test
     void unregisterUserByUsername_removesUserAndReturnsTrue() throws IOException {
         boolean removed = repo.unregisterUserByUsername("charlie");
@@ -155,10 +188,135 @@ class FileUserRepositoryTest {
         String extra = "badlinewithoutsemicolons\n" +
                 "eve;pw5;customer;eve@test.com;2022-02-02\n";
         Files.writeString(tempUsersFile, Files.readString(tempUsersFile) + extra, StandardOpenOption.TRUNCATE_EXISTING);
+        repo.reload();
 
         List<User> users = repo.getAllUsers();
         // original 3 plus eve => 4 valid users; malformed line ignored
         assertTrue(users.stream().anyMatch(u -> "eve".equals(u.getUsername())));
         assertEquals(4, users.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void findUser_servedFromResidentIndex() {
+        User first = repo.findUser("alice", "pw1");
+        User second = repo.findUserByUsername("alice");
+
+        assertSame(first, second);
+    }
+
+    @Test
+    void addUser_isVisibleWithoutRereading() {
+        assertTrue(repo.addUser("dave", "pw4", "dave@test.com", new Date()));
+
+        assertTrue(repo.isUsernameExists("dave"));
+        assertNotNull(repo.findUser("dave", "pw4"));
+        assertEquals("dave", repo.getAllUsers().get(3).getUsername());
+    }
+
+    @Test
+    void unregisterUserByUsername_removesFromIndex() {
+        assertTrue(repo.unregisterUserByUsername("charlie"));
+
+        assertNull(repo.findUserByUsername("charlie"));
+        assertFalse(repo.isUsernameExists("charlie"));
+        assertEquals(2, repo.getAllUsers().size());
+    }
+
+    @Test
+    void externalChanges_areReloadedOnRequest() throws IOException {
+        assertFalse(repo.isUsernameExists("frank"));
+
+        Files.writeString(tempUsersFile, "frank;pw6;customer;frank@test.com;2021-03-03\n",
+                StandardOpenOption.APPEND);
+
+        assertFalse(repo.isUsernameExists("frank"));
+        repo.reload();
+        assertTrue(repo.isUsernameExists("frank"));
+        assertEquals("2021-03-03", dateFormat.format(repo.findUserByUsername("frank").getLastLoginDate()));
+    }
+
+    @Test
+    void updateDate_inJournalMode_appendsWithoutRewritingUsers() throws IOException {
+        FileUserRepository.setLoginJournalMode(true);
+        FileUserRepository journaled = new FileUserRepository();
+        String before = Files.readString(tempUsersFile);
+
+        journaled.updateDate(journaled.findUser("alice", "pw1"));
+
+        String today = dateFormat.format(new Date());
+        assertEquals(before, Files.readString(tempUsersFile));
+        List<String> records = new ArrayList<>();
+        new RecordLog(loginJournalFile().toFile()).replay(records::add);
+        assertEquals(List.of("alice;" + today), records);
+        assertEquals(today, dateFormat.format(journaled.findUserByUsername("alice").getLastLoginDate()));
+    }
+
+    @Test
+    void journaledLogins_areMergedOnLoad() throws IOException {
+        FileUserRepository.setLoginJournalMode(true);
+        new FileUserRepository().updateDate(new User("alice", "pw1", "customer", "alice@test.com", new Date(0)));
+
+        FileUserRepository reloaded = new FileUserRepository();
+
+        String today = dateFormat.format(new Date());
+        assertEquals(today, dateFormat.format(reloaded.findUserByUsername("alice").getLastLoginDate()));
+        assertEquals(today, dateFormat.format(reloaded.getAllUsers().get(0).getLastLoginDate()));
+    }
+
+    @Test
+    void journaledLogins_latestDatePerUserWins() throws IOException {
+        RecordLog journal = new RecordLog(loginJournalFile().toFile());
+        journal.appendAll(List.of("alice;2024-05-03", "charlie;2024-01-01", "alice;2024-05-01",
+                "ghost;2024-06-01", "charlie;2019-12-31"), true);
+        journal.close();
+        FileUserRepository.setLoginJournalMode(true);
+
+        FileUserRepository reloaded = new FileUserRepository();
+
+        assertEquals("2024-05-03", dateFormat.format(reloaded.findUserByUsername("alice").getLastLoginDate()));
+        assertEquals("2024-01-01", dateFormat.format(reloaded.findUserByUsername("charlie").getLastLoginDate()));
+        assertNull(reloaded.findUserByUsername("ghost"));
+    }
+
+    @Test
+    void updateDate_sameDay_writesNothing() throws IOException {
+        FileUserRepository.setLoginJournalMode(true);
+        FileUserRepository journaled = new FileUserRepository();
+
+        journaled.updateDate(journaled.findUser("bob", "pw2"));
+
+        assertFalse(Files.exists(loginJournalFile()));
+    }
+
+    @Test
+    void unregister_keepsJournaledLogins() throws IOException {
+        FileUserRepository.setLoginJournalMode(true);
+        FileUserRepository journaled = new FileUserRepository();
+        journaled.updateDate(journaled.findUser("alice", "pw1"));
+
+        assertTrue(journaled.unregisterUserByUsername("charlie"));
+
+        String today = dateFormat.format(new Date());
+        assertTrue(Files.readString(tempUsersFile).contains("alice;pw1;customer;alice@test.com;2020-01-01"));
+        assertTrue(Files.exists(loginJournalFile()));
+        assertEquals(today, dateFormat.format(
+                new FileUserRepository().findUserByUsername("alice").getLastLoginDate()));
+    }
+
+    @Test
+    void unregister_passesOtherRowsThroughUnchanged() throws IOException {
+        String content = "alice;pw1;customer;alice@test.com;2020-1-1\r\n"
+                + "# not a user row\n"
+                + "charlie;pw3;admin;charlie@test.com;2020-01-01\n"
+                + "bob;pw2;customer;bob@test.com;2021-02-02";
+        Files.writeString(tempUsersFile, content, StandardOpenOption.TRUNCATE_EXISTING);
+
+        assertTrue(repo.unregisterUserByUsername("charlie"));
+
+        assertEquals("alice;pw1;customer;alice@test.com;2020-1-1\r\n"
+                + "# not a user row\n"
+                + "bob;pw2;customer;bob@test.com;2021-02-02", Files.readString(tempUsersFile));
+        assertFalse(Files.exists(Path.of(tempUsersFile + ".tmp")));
+        assertNull(repo.findUserByUsername("charlie"));
+    }
+}
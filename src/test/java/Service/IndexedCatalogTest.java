@@ -0,0 +1,137 @@
+package Service;
+
+import Domain.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedCatalogTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path catalog;
+    private final MediaItemRegistry registry = MediaItemRegistry.getInstance();
+
+    @BeforeEach
+    void setUp() {
+        catalog = tempDir.resolve("books.txt");
+        registry.clear(Book.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.clear(Book.class);
+    }
+
+    private IndexedCatalog<Book> open() throws IOException {
+        return new IndexedCatalog<>(catalog.toString(), Book.class, Book::new, 8);
+    }
+
+    @Test
+    @DisplayName("an existing file is indexed and items are read and interned on lookup")
+    void find_readsRecordThroughIndex() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) lines.add("Title " + i + ";Author;ISBN-" + i + ";" + (i % 2 == 0));
+        lines.add("Duplicate;Other;isbn-7;true");
+        Files.write(catalog, lines);
+
+        try (IndexedCatalog<Book> books = open()) {
+            assertEquals(3000, books.getIndex().size());
+            assertTrue(Files.exists(Path.of(catalog + IndexedCatalog.INDEX_SUFFIX)));
+            assertNull(registry.find(Book.class, "ISBN-7"));
+
+            Book book = books.find(" isbn-7 ");
+            assertEquals("Title 7", book.getTitle());
+            assertFalse(book.isAvailable());
+            assertSame(book, books.find("ISBN-7"));
+            assertSame(book, registry.find(Book.class, "ISBN-7"));
+            assertNull(registry.find(Book.class, "ISBN-8"));
+            assertNull(books.find("ISBN-3000"));
+        }
+    }
+
+    @Test
+    @DisplayName("the index is reused while the file is unchanged and rebuilt when it changes")
+    void open_reusesOrRebuildsIndex() throws IOException {
+        Files.write(catalog, List.of("A;X;111;true", "B;Y;222;false"));
+        try (IndexedCatalog<Book> books = open()) {
+            assertEquals("A", books.find("111").getTitle());
+        }
+
+        try (IsbnBTree index = IsbnBTree.open(new File(catalog + IndexedCatalog.INDEX_SUFFIX), 8)) {
+            assertTrue(index.isCurrent(Files.size(catalog), catalog.toFile().lastModified()));
+        }
+
+        Files.write(catalog, List.of("C;Z;333;true", "B;Y;222;false", "D;W;444;true"));
+        registry.clear(Book.class);
+        try (IndexedCatalog<Book> books = open()) {
+            assertNull(books.find("111"));
+            assertEquals("C", books.find("333").getTitle());
+            assertEquals("B", books.find("222").getTitle());
+        }
+    }
+
+    @Test
+    @DisplayName("availability is overwritten in place and unpadded records are padded once")
+    void writeAvailability_inPlaceOrRewrite() throws IOException {
+        Files.write(catalog, List.of("A;X;111;true", "B;Y;222;false"));
+        try (IndexedCatalog<Book> books = open()) {
+            assertTrue(books.writeAvailability("111", false));
+            assertEquals(List.of("A;X;111;false", "B;Y;222;false"), Files.readAllLines(catalog));
+
+            long length = Files.size(catalog);
+            assertTrue(books.writeAvailability("222", true));
+            assertTrue(books.writeAvailability("111", true));
+            assertEquals(List.of("A;X;111;true ", "B;Y;222;true "), Files.readAllLines(catalog));
+            assertEquals(length, Files.size(catalog));
+
+            assertEquals(Boolean.TRUE, books.storedAvailability("111"));
+            assertNull(books.storedAvailability("333"));
+            assertFalse(books.writeAvailability("333", true));
+        }
+
+        try (IndexedCatalog<Book> books = open()) {
+            assertTrue(books.getIndex().isCurrent(Files.size(catalog), catalog.toFile().lastModified()));
+            assertTrue(books.find("222").isAvailable());
+        }
+    }
+
+    @Test
+    @DisplayName("appended and replaced items are indexed and listed in file order")
+    void append_replace_findAll() throws IOException {
+        Files.writeString(catalog, "A;X;111;true");
+        try (IndexedCatalog<Book> books = open()) {
+            Book added = books.append(new Book("B", "Y", "222"), true);
+            Book duplicate = books.append(new Book("B2", "Y", "222"), true);
+            assertSame(added, books.find("222"));
+            assertNotSame(added, duplicate);
+
+            Book a = books.find("111");
+            a.setTitle("A2");
+            a.setAvailable(false);
+            books.replace(a);
+            books.replace(new Book("C", "Z", "333"));
+
+            assertEquals(List.of("A2;X;111;false", "B;Y;222;true ", "B2;Y;222;true ", "C;Z;333;true "),
+                    Files.readAllLines(catalog));
+            List<Book> all = books.findAll();
+            assertEquals(4, all.size());
+            assertSame(a, all.get(0));
+            assertSame(added, all.get(1));
+            assertNotSame(added, all.get(2));
+            assertEquals("C", books.find("333").getTitle());
+        }
+    }
+}
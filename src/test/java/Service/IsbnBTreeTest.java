@@ -0,0 +1,103 @@
+package Service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsbnBTreeTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File treeFile() {
+        return tempDir.resolve("books.txt.idx").toFile();
+    }
+
+    private static String key(int i) {
+        return String.format("978-%09d", (i * 7919) % 20000);
+    }
+
+    @Test
+    @DisplayName("many keys split into several levels and are all found after a reopen")
+    void put_manyKeys_foundAfterReopen() throws IOException {
+        try (IsbnBTree tree = IsbnBTree.open(treeFile(), 16)) {
+            for (int i = 0; i < 20000; i++) tree.put(key(i), i * 100L);
+            tree.put(key(5), 42);
+            assertEquals(20000, tree.size());
+            tree.setSource(123, 456);
+        }
+        assertTrue(treeFile().length() > 100L * IsbnBTree.PAGE_SIZE);
+
+        try (IsbnBTree tree = IsbnBTree.open(treeFile(), 16)) {
+            assertTrue(tree.isCurrent(123, 456));
+            assertEquals(20000, tree.size());
+            assertEquals(42, tree.get(key(5)));
+            for (int i = 0; i < 20000; i += 97) {
+                if (i != 5) assertEquals(i * 100L, tree.get(key(i)));
+            }
+            assertEquals(-1, tree.get("979-000000000"));
+            assertEquals(-1, tree.get(""));
+        }
+    }
+
+    @Test
+    @DisplayName("a lookup reads one page per level and the cache stays within its size")
+    void get_readsFewPages_cacheBounded() throws IOException {
+        try (IsbnBTree tree = IsbnBTree.open(treeFile(), 16)) {
+            for (int i = 0; i < 20000; i++) tree.put(key(i), i);
+        }
+
+        try (IsbnBTree tree = IsbnBTree.open(treeFile(), 8)) {
+            tree.get(key(1));
+            long depth = tree.getPageReads();
+            assertTrue(depth >= 2 && depth <= 4, "depth " + depth);
+
+            for (int i = 0; i < 20000; i += 13) tree.get(key(i));
+            assertTrue(tree.getCachedPages() <= 8);
+
+            long before = tree.getPageReads();
+            tree.get(key(7777));
+            assertTrue(tree.getPageReads() - before <= depth);
+        }
+    }
+
+    @Test
+    @DisplayName("a tree left dirty is emptied on open")
+    void open_dirtyTree_isCleared() throws IOException {
+        IsbnBTree tree = IsbnBTree.open(treeFile(), 16);
+        tree.put("111", 1);
+        tree.setSource(10, 20);
+        tree.flush();
+        tree.put("222", 2);
+
+        try (IsbnBTree reopened = IsbnBTree.open(treeFile(), 16)) {
+            assertFalse(reopened.isCurrent(10, 20));
+            assertEquals(0, reopened.size());
+            assertEquals(-1, reopened.get("111"));
+        }
+        tree.close();
+    }
+
+    @Test
+    @DisplayName("a damaged file and an overlong key are rejected")
+    void open_damagedFile_andLongKey() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(treeFile(), "rw")) {
+            raf.write(new byte[3 * IsbnBTree.PAGE_SIZE]);
+        }
+
+        try (IsbnBTree tree = IsbnBTree.open(treeFile(), 16)) {
+            assertEquals(0, tree.size());
+            assertThrows(IllegalArgumentException.class,
+                    () -> tree.put("9".repeat(IsbnBTree.MAX_KEY_LENGTH + 1), 1));
+            tree.put("9".repeat(IsbnBTree.MAX_KEY_LENGTH), 1);
+            assertEquals(1, tree.get("9".repeat(IsbnBTree.MAX_KEY_LENGTH)));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package Service;
+
+import Domain.Book;
+import Domain.CD;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsbnIndexTest {
+
+    @Test
+    @DisplayName("get matches ISBNs ignoring case and surrounding whitespace")
+    void get_isCaseAndWhitespaceInsensitive() {
+        IsbnIndex<CD> index = new IsbnIndex<>();
+        CD cd = new CD("Album", "Artist", "CD-ABC");
+        index.put(cd);
+
+        assertSame(cd, index.get("cd-abc"));
+        assertSame(cd, index.get("  CD-ABC "));
+        assertNull(index.get("CD-XYZ"));
+        assertNull(index.get(null));
+    }
+
+    @Test
+    @DisplayName("putIfAbsent keeps the first of duplicate ISBNs")
+    void putIfAbsent_keepsFirst() {
+        IsbnIndex<Book> index = new IsbnIndex<>();
+        Book first = new Book("First", "A", "111");
+        Book second = new Book("Second", "B", "111");
+
+        index.rebuild(List.of(first, second));
+
+        assertSame(first, index.get("111"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    @DisplayName("items without an ISBN are not indexed")
+    void put_skipsNullIsbn() {
+        IsbnIndex<CD> index = new IsbnIndex<>();
+        index.put(new CD("Album", "Artist", null));
+
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    @DisplayName("FileCDRepository.findByIsbn sees CDs saved after the index was built")
+    void cdRepository_indexMaintainedOnSave() throws Exception {
+        Path cdFile = Files.createTempFile("index_cds", ".txt");
+        Path copiesFile = Files.createTempFile("index_copies", ".txt");
+        String originalCdPath = FileCDRepository.repoPath;
+        String originalCopiesPath = FileMediaCopyRepository.repoPath;
+        try {
+            FileCDRepository.reset();
+            FileMediaCopyRepository.reset();
+            FileCDRepository.repoPath = cdFile.toString();
+            FileMediaCopyRepository.setRepoPath(copiesFile.toString());
+
+            FileCDRepository repo = FileCDRepository.getInstance();
+            assertNull(repo.findByIsbn("CD-100"));
+
+            FileCDRepository.saveCD(new CD("Album", "Artist", "CD-100"), 1);
+
+            assertEquals("Album", repo.findByIsbn(" cd-100").getTitle());
+        } finally {
+            FileCDRepository.repoPath = originalCdPath;
+            FileMediaCopyRepository.setRepoPath(originalCopiesPath);
+            FileCDRepository.reset();
+            Files.deleteIfExists(cdFile);
+            Files.deleteIfExists(copiesFile);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package Service;
+
+import Domain.Book;
+import Domain.CD;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcCatalogRepositoryTest {
+
+    private JdbcDatabase db;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = JdbcDatabase.open("jdbc:h2:mem:" + UUID.randomUUID());
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    @DisplayName("added books are found by ISBN regardless of case and spacing, in insertion order")
+    void add_thenFind() {
+        db.books().add(new Book("Java", "Gosling", "ISBN-A"), 2);
+        db.books().add(new Book("Clean Code", "Martin", "978-1-11"), 1);
+
+        List<Book> books = db.books().findAll();
+        assertEquals(List.of("ISBN-A", "978-1-11"), books.stream().map(Book::getIsbn).toList());
+        assertTrue(books.get(0).isAvailable());
+
+        Book found = db.books().findByIsbn(" isbn-a ");
+        assertNotNull(found);
+        assertEquals("Java", found.getTitle());
+        assertEquals("Gosling", found.getAuthor());
+        assertEquals(2, db.copies().getAvailableCopiesCount("ISBN-A"));
+    }
+
+    @Test
+    @DisplayName("books and CDs are kept apart")
+    void booksAndCds_areSeparate() {
+        db.books().add(new Book("Java", "Gosling", "B1"), 1);
+        db.cds().add(new CD("Album", "Artist", "C1"), 1);
+
+        assertEquals(1, db.books().findAll().size());
+        assertEquals(1, db.cds().findAll().size());
+        assertNull(db.books().findByIsbn("C1"));
+        assertNull(db.cds().findByIsbn("B1"));
+        assertEquals("Album", db.cds().findByIsbn("C1").getTitle());
+    }
+
+    @Test
+    @DisplayName("a duplicate ISBN is rejected and adds no copies")
+    void add_duplicateIsbn_rolledBack() {
+        db.books().add(new Book("Java", "Gosling", "B1"), 1);
+        db.books().add(new Book("Other", "Someone", "B1"), 3);
+
+        assertEquals(1, db.books().findAll().size());
+        assertEquals("Java", db.books().findByIsbn("B1").getTitle());
+        assertEquals(1, db.copies().getCopiesByIsbn("B1").size());
+    }
+
+    @Test
+    @DisplayName("availability follows the copies on the shelf")
+    void updateAvailability_followsCopies() {
+        db.books().add(new Book("Java", "Gosling", "B1"), 1);
+
+        db.copies().checkoutCopy("B1");
+        db.books().updateAvailability("B1");
+        assertFalse(db.books().findByIsbn("B1").isAvailable());
+
+        db.copies().releaseCopy("B1-1");
+        db.books().updateAvailability("B1");
+        assertTrue(db.books().findByIsbn("B1").isAvailable());
+    }
+}
@@ -0,0 +1,93 @@
+package Service;
+
+import Domain.Book;
+import Domain.MediaCopy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcCopyRepositoryTest {
+
+    private JdbcDatabase db;
+    private CopyRepository copies;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = JdbcDatabase.open("jdbc:h2:mem:" + UUID.randomUUID());
+        copies = db.copies();
+        db.books().add(new Book("Java", "Gosling", "B1"), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    @DisplayName("copy numbers continue after the highest existing copy")
+    void addCopies_continuesNumbering() {
+        copies.addCopiesByBookIsbn("B1", 2, false);
+
+        List<MediaCopy> all = copies.getCopiesByIsbn("B1");
+        assertEquals(List.of("B1-1", "B1-2", "B1-3", "B1-4"), all.stream().map(MediaCopy::getCopyId).toList());
+        assertFalse(all.get(3).isAvailable());
+        assertEquals(2, copies.getAvailableCopiesCount("B1"));
+        assertEquals("Java", all.get(0).getMediaItem().getTitle());
+    }
+
+    @Test
+    @DisplayName("copies of an unknown item are not added")
+    void addCopies_unknownItem_ignored() {
+        copies.addCopiesByBookIsbn("NOPE", 2, true);
+
+        assertTrue(copies.getCopiesByIsbn("NOPE").isEmpty());
+        assertEquals(0, copies.getAvailableCopiesCount("NOPE"));
+    }
+
+    @Test
+    @DisplayName("checkout takes the first copy on the shelf until none is left")
+    void checkoutCopy_inOrder() {
+        assertEquals("B1-1", copies.checkoutCopy("B1").getCopyId());
+        assertEquals("B1-2", copies.checkoutCopy("B1").getCopyId());
+        assertNull(copies.checkoutCopy("B1"));
+        assertFalse(copies.findCopyById("B1-1").isAvailable());
+    }
+
+    @Test
+    @DisplayName("a copy is released only if it is checked out")
+    void releaseCopy_onlyBorrowed() {
+        assertFalse(copies.releaseCopy("B1-1"));
+
+        copies.checkoutCopy("B1");
+        assertTrue(copies.releaseCopy("B1-1"));
+        assertTrue(copies.findCopyById("B1-1").isAvailable());
+        assertFalse(copies.releaseCopy("missing"));
+    }
+
+    @Test
+    @DisplayName("releaseAnyCopy puts back a borrowed copy of the title")
+    void releaseAnyCopy_releasesBorrowed() {
+        assertNull(copies.releaseAnyCopy("B1"));
+
+        copies.checkoutCopy("B1");
+        MediaCopy released = copies.releaseAnyCopy("B1");
+        assertEquals("B1-1", released.getCopyId());
+        assertTrue(released.isAvailable());
+        assertEquals(2, copies.getAvailableCopiesCount("B1"));
+    }
+
+    @Test
+    @DisplayName("copyIndexOf reads the number after the last dash")
+    void copyIndexOf_parsesSuffix() {
+        assertEquals(12, JdbcCopyRepository.copyIndexOf("978-0-12"));
+        assertEquals(0, JdbcCopyRepository.copyIndexOf("B1-x"));
+        assertEquals(0, JdbcCopyRepository.copyIndexOf("B1"));
+    }
+}
@@ -0,0 +1,144 @@
+package Service;
+
+import Domain.Book;
+import Domain.CD;
+import Domain.Loan;
+import Domain.MediaItem;
+import Domain.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcLoanRepositoryTest {
+
+    private final User alice = new User("alice", "pw", "customer");
+    private final User bob = new User("bob", "pw", "customer");
+
+    private JdbcDatabase db;
+    private LoanRepository loans;
+    private Book book;
+    private CD cd;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = JdbcDatabase.open("jdbc:h2:mem:" + UUID.randomUUID());
+        loans = db.loans();
+        book = new Book("Java", "Gosling", "B1");
+        cd = new CD("Album", "Artist", "C1");
+        db.books().add(book, 2);
+        db.cds().add(cd, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    private Loan store(String loanId, User user, MediaItem item, LocalDate borrowed, LocalDate returned)
+            throws SQLException {
+        Loan loan = new Loan(loanId, user, item, borrowed, returned);
+        db.transaction(c -> {
+            try (PreparedStatement ps = c.prepareStatement(JdbcLoanRepository.INSERT)) {
+                JdbcLoanRepository.bind(ps, loan);
+                return ps.executeUpdate();
+            }
+        });
+        return loan;
+    }
+
+    @Test
+    @DisplayName("a borrowed item is an active loan until it is returned")
+    void borrowAndReturn() {
+        Loan loan = loans.borrowItem(alice, book, "B1-1");
+
+        assertNotNull(loan);
+        assertEquals(TimeOrderedLoanIdGenerator.LENGTH, loan.getLoanId().length());
+        Loan found = loans.findLoanById(loan.getLoanId());
+        assertEquals("alice", found.getUser().getUsername());
+        assertEquals("B1", found.getMediaItem().getIsbnOrId());
+        assertEquals("B1-1", found.getCopyId());
+        assertEquals(LocalDate.now().plusDays(28), found.getDueDate());
+        assertEquals(1, loans.getActiveLoansForUser("alice").size());
+
+        assertTrue(loans.returnItem(loan.getLoanId(), LocalDate.now()));
+        assertFalse(loans.returnItem(loan.getLoanId(), LocalDate.now()));
+        assertTrue(loans.getActiveLoansForUser("alice").isEmpty());
+        assertEquals(LocalDate.now(), loans.findLoanById(loan.getLoanId()).getReturnDate());
+    }
+
+    @Test
+    @DisplayName("borrowing an unavailable item is refused")
+    void borrow_unavailable_throws() {
+        book.setAvailable(false);
+        assertThrows(IllegalStateException.class, () -> loans.borrowItem(alice, book));
+        assertThrows(IllegalArgumentException.class, () -> loans.borrowItem(null, cd));
+    }
+
+    @Test
+    @DisplayName("new loan IDs sort after the newest stored ID")
+    void borrow_idsFollowStoredIds() throws SQLException {
+        String stored = new TimeOrderedLoanIdGenerator(() -> System.currentTimeMillis() + 60_000).nextId();
+        store(stored, bob, cd, LocalDate.now(), null);
+
+        Loan loan = loans.borrowItem(alice, book);
+        assertTrue(loan.getLoanId().compareTo(stored) > 0);
+    }
+
+    @Test
+    @DisplayName("loan IDs come from the generator the repository was created with")
+    void borrow_usesInjectedGenerator() {
+        LoanRepository numbered = new JdbcLoanRepository(db, () -> "LOAN-1");
+
+        assertEquals("LOAN-1", numbered.borrowItem(alice, book).getLoanId());
+        assertNotNull(numbered.findLoanById("LOAN-1"));
+    }
+
+    @Test
+    @DisplayName("overdue and soon-due loans are selected by due date")
+    void dueDateQueries() throws SQLException {
+        LocalDate today = LocalDate.of(2025, 3, 20);
+        store("L1", alice, cd, today.minusDays(10), null);
+        store("L2", bob, book, today.minusDays(26), null);
+        store("L3", alice, book, today.minusDays(40), today.minusDays(1));
+
+        assertEquals(List.of("L1"), ids(loans.getOverdueLoans(today)));
+        assertEquals(List.of("L2"), ids(loans.getLoansDueWithin(today, 3)));
+        assertTrue(loans.getLoansDueWithin(today, 1).isEmpty());
+        assertEquals(List.of("L1", "L2"), ids(loans.getAllActiveLoans()));
+    }
+
+    @Test
+    @DisplayName("returned loans are archived by the month they were returned in")
+    void archive_byReturnMonth() throws SQLException {
+        store("L1", alice, book, LocalDate.of(2024, 12, 20), LocalDate.of(2025, 1, 5));
+        store("L2", bob, cd, LocalDate.of(2025, 1, 25), LocalDate.of(2025, 2, 1));
+        store("L3", bob, book, LocalDate.of(2025, 1, 2), LocalDate.of(2025, 1, 31));
+        store("L4", alice, cd, LocalDate.of(2025, 1, 10), null);
+
+        assertEquals(List.of(YearMonth.of(2025, 1), YearMonth.of(2025, 2)), loans.getArchivedPeriods());
+        assertEquals(List.of("L1", "L3"), ids(loans.getArchivedLoans(YearMonth.of(2025, 1))));
+        assertEquals(List.of("L2"), ids(loans.getArchivedLoans(YearMonth.of(2025, 2))));
+    }
+
+    @Test
+    @DisplayName("an unknown loan ID is neither found nor returned")
+    void unknownLoan() {
+        assertNull(loans.findLoanById("missing"));
+        assertNull(loans.findLoanById(null));
+        assertFalse(loans.returnItem("missing", null));
+    }
+
+    private static List<String> ids(List<Loan> loans) {
+        return loans.stream().map(Loan::getLoanId).toList();
+    }
+}
@@ -0,0 +1,87 @@
+package Service;
+
+import Domain.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcUserRepositoryTest {
+
+    private JdbcDatabase db;
+    private UserRepository users;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        db = JdbcDatabase.open("jdbc:h2:mem:" + UUID.randomUUID());
+        users = db.users();
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    private static Date day(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    @Test
+    @DisplayName("added users are customers found by username and password")
+    void addUser_thenFind() {
+        assertTrue(users.addUser("alice", "pw", "alice@test.com", day(LocalDate.of(2025, 1, 1))));
+
+        User alice = users.findUser("alice", "pw");
+        assertNotNull(alice);
+        assertEquals("customer", alice.getRole());
+        assertEquals("alice@test.com", alice.getEmail());
+        assertEquals(day(LocalDate.of(2025, 1, 1)), alice.getLastLoginDate());
+        assertNull(users.findUser("alice", "wrong"));
+        assertTrue(users.isUsernameExists("alice"));
+        assertFalse(users.isUsernameExists("bob"));
+    }
+
+    @Test
+    @DisplayName("a taken username is refused")
+    void addUser_duplicate_refused() {
+        users.addUser("alice", "pw", "a@test.com", new Date());
+        assertFalse(users.addUser("alice", "other", "b@test.com", new Date()));
+        assertEquals(1, users.getAllUsers().size());
+    }
+
+    @Test
+    @DisplayName("updateDate stores today as the last login")
+    void updateDate_setsToday() {
+        users.addUser("alice", "pw", "a@test.com", day(LocalDate.of(2025, 1, 1)));
+        User alice = users.findUser("alice", "pw");
+
+        users.updateDate(alice);
+
+        assertEquals(day(LocalDate.now()), users.findUserByUsername("alice").getLastLoginDate());
+        assertEquals(LocalDate.now(),
+                LocalDate.ofInstant(alice.getLastLoginDate().toInstant(), ZoneId.systemDefault()));
+    }
+
+    @Test
+    @DisplayName("users are unregistered one by one or as a group")
+    void unregister() {
+        users.addUser("alice", "pw", "a@test.com", new Date());
+        users.addUser("bob", "pw", "b@test.com", new Date());
+        users.addUser("carol", "pw", "c@test.com", new Date());
+
+        assertTrue(users.unregisterUserByUsername("alice"));
+        assertFalse(users.unregisterUserByUsername("alice"));
+
+        assertTrue(users.unregisterAllUsers(List.of(users.findUserByUsername("bob"))));
+        assertEquals(List.of("carol"), users.getAllUsers().stream().map(User::getUsername).toList());
+    }
+}
@@ -126,4 +126,12 @@ public class LibrarianServiceTest {
         assertEquals(0, result, "The total fine should be 0 when there are no overdue loans.");
         verify(mockLoanRepo, times(1)).getOverdueLoans(LocalDate.now());
     }
+
+    @Test
+    void testGetLoansDueWithin_DelegatesToRepository() {
+        when(mockLoanRepo.getLoansDueWithin(LocalDate.now(), 3)).thenReturn(List.of(loanActive));
+        List<Loan> result = librarianService.getLoansDueWithin(3);
+        assertEquals(List.of(loanActive), result);
+        verify(mockLoanRepo, times(1)).getLoansDueWithin(LocalDate.now(), 3);
+    }
 }
@@ -0,0 +1,234 @@
+package Service;
+
+import Domain.Book;
+import Domain.Loan;
+import Domain.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibraryTransactionTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path books;
+    private Path copies;
+    private Path loans;
+    private Path log;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        books = tempDir.resolve("books.txt");
+        Path cds = tempDir.resolve("cds.txt");
+        copies = tempDir.resolve("copies.txt");
+        loans = tempDir.resolve("loans.txt");
+        log = Path.of(loans + LibraryTransaction.SUFFIX);
+        Files.writeString(books, "Java;Author;B1;true\n");
+        Files.writeString(cds, "");
+        Files.writeString(copies, "B1-1;B1;true\n");
+        Files.writeString(loans, "");
+
+        FileBookRepository.setRepoPath(books.toString());
+        FileCDRepository.repoPath = cds.toString();
+        FileCDRepository.reset();
+        FileMediaCopyRepository.setRepoPath(copies.toString());
+        FileLoanRepository.setRepoPath(loans.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        JdbcDatabase db = Repositories.getDatabase();
+        Repositories.useFiles();
+        if (db != null) db.close();
+        assertFalse(LibraryTransaction.isActive());
+    }
+
+    private JdbcDatabase useDatabase() throws SQLException {
+        JdbcDatabase db = JdbcDatabase.open("jdbc:h2:mem:" + UUID.randomUUID());
+        Repositories.useDatabase(db);
+        db.books().add(new Book("Java", "Author", "B1"), 1);
+        return db;
+    }
+
+    private Loan borrow() {
+        String copyId = FileMediaCopyRepository.getInstance().checkoutCopy("B1").getCopyId();
+        Loan loan = FileLoanRepository.getInstance().borrowItem(new User("alice", "pw", "customer"),
+                FileBookRepository.getInstance().findByIsbn("B1"), copyId);
+        FileBookRepository.getInstance().updateBookAvailability("B1");
+        return loan;
+    }
+
+    @Test
+    @DisplayName("files are written only when the transaction commits, and the log is removed")
+    void commit_writesFilesAfterCommitRecord() throws IOException {
+        try (LibraryTransaction tx = LibraryTransaction.begin()) {
+            Loan loan = borrow();
+
+            assertEquals("B1-1;B1;true\n", Files.readString(copies));
+            assertEquals("", Files.readString(loans));
+            assertTrue(tx.commit());
+            assertTrue(Files.readString(loans).startsWith(loan.getLoanId() + ";alice;B1;"));
+        }
+
+        assertEquals("B1-1;B1;false\n", Files.readString(copies));
+        assertEquals("Java;Author;B1;false\n", Files.readString(books));
+        assertFalse(Files.exists(log));
+    }
+
+    @Test
+    @DisplayName("a transaction closed without commit leaves the files untouched")
+    void close_withoutCommit_dropsStagedWrites() throws IOException {
+        try (LibraryTransaction ignored = LibraryTransaction.begin()) {
+            borrow();
+        }
+
+        assertEquals("B1-1;B1;true\n", Files.readString(copies));
+        assertEquals("", Files.readString(loans));
+        assertEquals("Java;Author;B1;true\n", Files.readString(books));
+        assertFalse(Files.exists(log));
+    }
+
+    @Test
+    @DisplayName("a transaction cannot be opened twice on one thread")
+    void begin_twice_throws() {
+        try (LibraryTransaction ignored = LibraryTransaction.begin()) {
+            assertTrue(LibraryTransaction.isActive());
+            assertThrows(IllegalStateException.class, LibraryTransaction::begin);
+        }
+    }
+
+    @Test
+    @DisplayName("recovery replays committed transactions and drops an unfinished one")
+    void recover_replaysCommittedBlocks() throws IOException {
+        LocalDate today = LocalDate.now();
+        Files.writeString(log,
+                "T;1\nC;B1-1;false\nB;L1;alice;B1;" + today + ";B1-1\nA;B1\nK;1;3\n"
+                        + "T;2\nR;L1;" + today + "\nC;B1-1;tr");
+
+        assertEquals(1, LibraryTransaction.recover());
+
+        assertEquals("B1-1;B1;false\n", Files.readString(copies));
+        assertEquals("L1;alice;B1;" + today + ";NULL;B1-1\n", Files.readString(loans));
+        assertEquals("Java;Author;B1;false\n", Files.readString(books));
+        assertNull(FileLoanRepository.getInstance().findLoanById("L1").getReturnDate());
+        assertFalse(Files.exists(log));
+    }
+
+    @Test
+    @DisplayName("replaying a transaction that already reached the files changes nothing")
+    void recover_isIdempotent() throws IOException {
+        LocalDate today = LocalDate.now();
+        Files.writeString(copies, "B1-1;B1;false\n");
+        Files.writeString(loans, "L1;alice;B1;" + today + ";NULL;B1-1\n");
+        Files.writeString(books, "Java;Author;B1;false\n");
+        FileBookRepository.reset();
+        FileMediaCopyRepository.reset();
+        FileLoanRepository.reset();
+        Files.writeString(log, "T;1\nC;B1-1;false\nB;L1;alice;B1;" + today + ";B1-1\nA;B1\nK;1;3\n");
+
+        assertEquals(1, LibraryTransaction.recover());
+
+        assertEquals(1, FileLoanRepository.getInstance().getAllActiveLoans().size());
+        assertEquals("L1;alice;B1;" + today + ";NULL;B1-1\n", Files.readString(loans));
+    }
+
+    @Test
+    @DisplayName("a committed transaction whose files failed to write is redone later")
+    void commit_keepsLogWhenWriteFails() throws IOException {
+        try (LibraryTransaction tx = LibraryTransaction.begin()) {
+            FileMediaCopyRepository.getInstance().checkoutCopy("B1");
+            LibraryTransaction.stage("failing", () -> false);
+
+            assertFalse(tx.commit());
+        }
+        assertTrue(Files.exists(log));
+        FileMediaCopyRepository.reset();
+        Files.writeString(copies, "B1-1;B1;true\n");
+
+        try (LibraryTransaction tx = LibraryTransaction.begin()) {
+            tx.commit();
+        }
+
+        assertEquals("B1-1;B1;false\n", Files.readString(copies));
+        assertFalse(Files.exists(log));
+    }
+
+    @Test
+    @DisplayName("a failed commit or a close without commit undoes the changes in memory")
+    void rollback_undoesInMemoryChanges() throws IOException {
+        Loan loan;
+        try (LibraryTransaction tx = LibraryTransaction.begin()) {
+            loan = borrow();
+            LibraryTransaction.stage("failing", () -> false, "A;B1");
+
+            assertFalse(tx.commit());
+        }
+        Files.delete(log);
+
+        assertEquals(1, FileMediaCopyRepository.getInstance().getAvailableCopiesCount("B1"));
+        assertNull(FileLoanRepository.getInstance().findLoanById(loan.getLoanId()));
+        assertTrue(FileBookRepository.getInstance().findByIsbn("B1").isAvailable());
+
+        try (LibraryTransaction tx = LibraryTransaction.begin()) {
+            loan = borrow();
+            assertTrue(tx.commit());
+        }
+        try (LibraryTransaction ignored = LibraryTransaction.begin()) {
+            FileMediaCopyRepository.getInstance().releaseCopy(loan.getCopyId());
+            assertTrue(FileLoanRepository.getInstance().returnItem(loan.getLoanId(), null));
+            FileBookRepository.getInstance().updateBookAvailability("B1");
+        }
+
+        assertEquals(0, FileMediaCopyRepository.getInstance().getAvailableCopiesCount("B1"));
+        assertNull(loan.getReturnDate());
+        assertSame(loan, FileLoanRepository.getInstance().getActiveLoansForUser("alice").get(0));
+        assertFalse(FileBookRepository.getInstance().findByIsbn("B1").isAvailable());
+    }
+
+    @Test
+    @DisplayName("with a database, a borrow whose loan insert fails leaves the copy available")
+    void database_failedLoanInsert_rollsBackCheckout() throws SQLException {
+        JdbcDatabase db = useDatabase();
+        BookServiceCustomer service = new BookServiceCustomer();
+        service.setCurrentUser(new User("a".repeat(200), "pw", "customer"));
+
+        assertFalse(service.borrowMediaItem("B1"));
+
+        assertEquals(1, db.copies().getAvailableCopiesCount("B1"));
+        assertTrue(db.loans().getAllActiveLoans().isEmpty());
+        assertTrue(db.books().findByIsbn("B1").isAvailable());
+        assertFalse(Files.exists(log));
+    }
+
+    @Test
+    @DisplayName("with a database, changes are kept on commit and rolled back on close")
+    void database_commitAndRollback() throws SQLException {
+        JdbcDatabase db = useDatabase();
+        User alice = new User("alice", "pw", "customer");
+
+        try (LibraryTransaction ignored = LibraryTransaction.begin()) {
+            db.copies().checkoutCopy("B1");
+        }
+        assertEquals(1, db.copies().getAvailableCopiesCount("B1"));
+
+        try (LibraryTransaction tx = LibraryTransaction.begin()) {
+            String copyId = db.copies().checkoutCopy("B1").getCopyId();
+            db.loans().borrowItem(alice, db.books().findByIsbn("B1"), copyId);
+            assertTrue(tx.commit());
+        }
+        assertEquals(0, db.copies().getAvailableCopiesCount("B1"));
+        assertEquals(1, db.loans().getActiveLoansForUser("alice").size());
+    }
+}
@@ -0,0 +1,66 @@
+package Service;
+
+import Domain.Book;
+import Domain.Loan;
+import Domain.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoanArchiveTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Loan returnedLoan(String id, LocalDate returnDate) {
+        Loan loan = new Loan(id, new User("alice", "pw", "customer"), new Book("Java", "A", "999"),
+                returnDate.minusDays(3), returnDate);
+        loan.setCopyId("999-1");
+        return loan;
+    }
+
+    @Test
+    @DisplayName("returned loans are filed under the month they were returned in")
+    void append_partitionsByReturnMonth() throws IOException {
+        String loansPath = tempDir.resolve("loans.txt").toString();
+        LoanArchive archive = new LoanArchive(loansPath);
+
+        archive.append(List.of(
+                returnedLoan("L1", LocalDate.of(2025, 1, 31)),
+                returnedLoan("L2", LocalDate.of(2025, 2, 1)),
+                returnedLoan("L3", LocalDate.of(2025, 1, 5))));
+
+        assertEquals(List.of(YearMonth.of(2025, 1), YearMonth.of(2025, 2)), archive.getPeriods());
+        assertEquals(List.of("L1;alice;999;2025-01-28;2025-01-31;999-1", "L3;alice;999;2025-01-02;2025-01-05;999-1"),
+                Files.readAllLines(Path.of(loansPath + LoanArchive.DIRECTORY_SUFFIX, "2025-01.txt")));
+    }
+
+    @Test
+    @DisplayName("scan reads one partition and reports missing months")
+    void scan_readsOnePartition() throws IOException {
+        LoanArchive archive = new LoanArchive(tempDir.resolve("loans.txt").toString());
+        archive.append(List.of(returnedLoan("L1", LocalDate.of(2025, 3, 10))));
+        List<String> ids = new ArrayList<>();
+
+        assertTrue(archive.scan(YearMonth.of(2025, 3), r -> ids.add(r.field(0))));
+        assertFalse(archive.scan(YearMonth.of(2025, 4), r -> ids.add(r.field(0))));
+
+        assertEquals(List.of("L1"), ids);
+    }
+
+    @Test
+    @DisplayName("an archive that was never written has no periods")
+    void getPeriods_emptyArchive() {
+        assertTrue(new LoanArchive(tempDir.resolve("loans.txt").toString()).getPeriods().isEmpty());
+    }
+}
@@ -0,0 +1,231 @@
+package Service;
+
+import Domain.Book;
+import Domain.Loan;
+import Domain.User;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoanJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path loansFile;
+    private Path booksFile;
+    private User alice;
+    private Book book;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        loansFile = tempDir.resolve("loans.txt");
+        booksFile = tempDir.resolve("books.txt");
+        Path copiesFile = tempDir.resolve("copies.txt");
+        Path cdFile = tempDir.resolve("cds.txt");
+        Files.writeString(loansFile, "");
+        Files.writeString(booksFile, "");
+        Files.writeString(copiesFile, "");
+        Files.writeString(cdFile, "");
+
+        FileBookRepository.reset();
+        FileLoanRepository.reset();
+        FileMediaCopyRepository.reset();
+        FileCDRepository.reset();
+
+        FileBookRepository.setRepoPath(booksFile.toString());
+        FileLoanRepository.setRepoPath(loansFile.toString());
+        FileMediaCopyRepository.setRepoPath(copiesFile.toString());
+        FileCDRepository.repoPath = cdFile.toString();
+        FileLoanRepository.setJournalMode(true);
+
+        alice = new User("alice", "123", "customer");
+        book = new Book("Java", "Yahya", "999");
+        FileBookRepository.saveBook(book, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        FileLoanRepository.setJournalMode(false);
+    }
+
+    private Path journalFile() {
+        return Path.of(loansFile + LoanJournal.SUFFIX);
+    }
+
+    // ============ Journal File Tests ============
+
+    @Test
+    @DisplayName("replay delivers borrow and return records in order")
+    void replay_deliversRecordsInOrder() throws IOException {
+        LoanJournal journal = new LoanJournal(loansFile.toString());
+        Loan loan = new Loan("L1", alice, book, LocalDate.of(2025, 1, 1));
+        journal.appendBorrow(loan);
+        journal.appendReturn("L1", LocalDate.of(2025, 1, 5));
+        journal.close();
+
+        List<String> seen = new ArrayList<>();
+        int count = new LoanJournal(loansFile.toString()).replay(new LoanJournal.Listener() {
+            @Override
+            public void onBorrow(String loanId, String username, String itemId, LocalDate borrowDate, String copyId) {
+                seen.add("B " + loanId + " " + username + " " + itemId + " " + borrowDate);
+            }
+
+            @Override
+            public void onReturn(String loanId, LocalDate returnDate) {
+                seen.add("R " + loanId + " " + returnDate);
+            }
+        });
+
+        assertEquals(2, count);
+        assertEquals(List.of("B L1 alice 999 2025-01-01", "R L1 2025-01-05"), seen);
+    }
+
+    @Test
+    @DisplayName("replay skips a torn last line and the next append starts a new line")
+    void replay_skipsTornLine() throws IOException {
+        Files.writeString(journalFile(), "B;L1;alice;999;2025-01-01\nR;L1;2025-0");
+
+        LoanJournal journal = new LoanJournal(loansFile.toString());
+        journal.appendReturn("L1", LocalDate.of(2025, 1, 9));
+        journal.close();
+
+        List<String> returns = new ArrayList<>();
+        int count = new LoanJournal(loansFile.toString()).replay(new LoanJournal.Listener() {
+            @Override
+            public void onBorrow(String loanId, String username, String itemId, LocalDate borrowDate, String copyId) {
+            }
+
+            @Override
+            public void onReturn(String loanId, LocalDate returnDate) {
+                returns.add(returnDate.toString());
+            }
+        });
+
+        assertEquals(2, count);
+        assertEquals(List.of("2025-01-09"), returns);
+    }
+
+    @Test
+    @DisplayName("rotate moves records aside and discardRotated removes them")
+    void rotate_thenDiscard() throws IOException {
+        LoanJournal journal = new LoanJournal(loansFile.toString());
+        journal.appendReturn("L1", LocalDate.now());
+        journal.rotate();
+
+        assertEquals(0, journal.getRecordCount());
+        assertFalse(Files.exists(journalFile()));
+        assertTrue(journal.exists());
+
+        journal.discardRotated();
+        assertFalse(journal.exists());
+    }
+
+    // ============ Journal Mode Repository Tests ============
+
+    @Test
+    @DisplayName("borrow in journal mode appends to the journal, not the snapshot")
+    void borrow_appendsToJournal() throws IOException {
+        FileLoanRepository repo = new FileLoanRepository();
+
+        repo.borrowItem(alice, book);
+
+        assertEquals(0, Files.size(loansFile));
+        List<String> records = new ArrayList<>();
+        new RecordLog(journalFile().toFile()).replay(records::add);
+        assertEquals(1, records.size());
+    }
+
+    @Test
+    @DisplayName("restart replays snapshot plus journal")
+    void restart_replaysJournal() {
+        FileLoanRepository repo = new FileLoanRepository();
+        Loan first = repo.borrowItem(alice, book);
+        repo.returnItem(first.getLoanId(), LocalDate.now());
+        Loan second = repo.borrowItem(alice, book);
+
+        FileLoanRepository reloaded = new FileLoanRepository();
+
+        assertNotNull(reloaded.findLoanById(first.getLoanId()).getReturnDate());
+        assertNull(reloaded.findLoanById(second.getLoanId()).getReturnDate());
+        assertEquals(1, reloaded.getActiveLoansForUser("alice").size());
+    }
+
+    @Test
+    @DisplayName("compactJournal folds the journal into the snapshot")
+    void compactJournal_foldsIntoSnapshot() throws IOException {
+        FileLoanRepository repo = new FileLoanRepository();
+        Loan loan = repo.borrowItem(alice, book);
+
+        repo.compactJournal();
+
+        assertFalse(Files.exists(journalFile()));
+        List<String> lines = Files.readAllLines(loansFile);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).startsWith(loan.getLoanId()));
+
+        FileLoanRepository reloaded = new FileLoanRepository();
+        assertEquals(1, reloaded.getAllActiveLoans().size());
+    }
+
+    @Test
+    @DisplayName("a torn journal tail is cut off at load and reported")
+    void load_reportsDiscardedJournalBytes() throws IOException {
+        FileLoanRepository repo = new FileLoanRepository();
+        Loan loan = repo.borrowItem(alice, book);
+        repo.borrowItem(alice, book);
+        long intact = Files.size(journalFile());
+        try (RandomAccessFile raf = new RandomAccessFile(journalFile().toFile(), "rw")) {
+            raf.setLength(intact - 5);
+        }
+
+        FileLoanRepository reloaded = new FileLoanRepository();
+
+        RecordLog.Recovery recovery = reloaded.getLoadReport().getJournalRecovery();
+        assertEquals(1, recovery.getRecords());
+        assertEquals(Files.size(journalFile()), recovery.getBytesRead());
+        assertEquals(intact - 5 - recovery.getBytesRead(), recovery.getBytesDiscarded());
+        assertEquals(1, reloaded.getAllActiveLoans().size());
+        assertNotNull(reloaded.findLoanById(loan.getLoanId()));
+    }
+
+    @Test
+    @DisplayName("replaying a journal already folded into the snapshot does not duplicate loans")
+    void replay_isIdempotent() throws IOException {
+        FileLoanRepository repo = new FileLoanRepository();
+        Loan loan = repo.borrowItem(alice, book);
+        byte[] journalContent = Files.readAllBytes(journalFile());
+
+        repo.compactJournal();
+        Files.write(journalFile(), journalContent);
+
+        FileLoanRepository reloaded = new FileLoanRepository();
+        assertEquals(1, reloaded.getAllActiveLoans().size());
+        assertNotNull(reloaded.findLoanById(loan.getLoanId()));
+    }
+
+    @Test
+    @DisplayName("a full save in rewrite mode drops the journal it supersedes")
+    void rewriteMode_clearsJournal() throws IOException {
+        FileLoanRepository repo = new FileLoanRepository();
+        repo.borrowItem(alice, book);
+
+        Book other = new Book("Python", "B", "888");
+        FileBookRepository.saveBook(other, 1);
+        FileLoanRepository.setJournalMode(false);
+        FileLoanRepository rewriting = new FileLoanRepository();
+        rewriting.borrowItem(alice, other);
+
+        assertFalse(Files.exists(journalFile()));
+        assertEquals(2, Files.readAllLines(loansFile).size());
+    }
+}
@@ -0,0 +1,129 @@
+package Service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoanLedgerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private String loansPath() {
+        return tempDir.resolve("loans.txt").toString();
+    }
+
+    private static String record(int id, String returnDate) {
+        return String.format("L%05d;alice;999;2025-01-01;%s;999-1", id, returnDate);
+    }
+
+    private static List<String> records(int from, int to, String returnDate) {
+        List<String> records = new ArrayList<>();
+        for (int i = from; i < to; i++) records.add(record(i, returnDate));
+        return records;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (var files = Files.list(Path.of(loansPath() + LoanLedger.DIRECTORY_SUFFIX))) {
+            return files.filter(f -> f.toString().endsWith(LoanLedger.SEGMENT_SUFFIX)).sorted().toList();
+        }
+    }
+
+    @Test
+    @DisplayName("records are found in the memtable and after a restart")
+    void get_fromMemtableAndLog() throws IOException {
+        LoanLedger ledger = new LoanLedger(loansPath(), 100);
+        ledger.putAll(records(0, 10, "2025-01-05"));
+
+        assertEquals(record(3, "2025-01-05"), ledger.get("L00003"));
+        assertNull(ledger.get("L00010"));
+        assertEquals(0, ledger.getSegmentCount());
+
+        LoanLedger reopened = new LoanLedger(loansPath(), 100);
+        assertEquals(10, reopened.getMemtableSize());
+        assertEquals(record(9, "2025-01-05"), reopened.get("L00009"));
+    }
+
+    @Test
+    @DisplayName("a full memtable is flushed to a segment that is searched by index block")
+    void flush_writesSearchableSegment() throws IOException {
+        LoanLedger ledger = new LoanLedger(loansPath(), 100);
+        List<String> reversed = new ArrayList<>(records(0, 100, "2025-01-05"));
+        Collections.reverse(reversed);
+        ledger.putAll(reversed);
+
+        assertEquals(1, ledger.getSegmentCount());
+        assertEquals(0, ledger.getMemtableSize());
+        assertFalse(Files.exists(Path.of(loansPath() + LoanLedger.DIRECTORY_SUFFIX, LoanLedger.MEMTABLE_LOG)));
+
+        LoanLedger reopened = new LoanLedger(loansPath(), 100);
+        for (int i = 0; i < 100; i++) assertEquals(record(i, "2025-01-05"), reopened.get(String.format("L%05d", i)));
+        assertNull(reopened.get("L00100"));
+        assertNull(reopened.get("A"));
+        assertNull(reopened.get("Z"));
+    }
+
+    @Test
+    @DisplayName("segments of one size are merged, with the newest record for an ID kept")
+    void compact_mergesSegments() throws IOException {
+        LoanLedger ledger = new LoanLedger(loansPath(), 10);
+        for (int batch = 0; batch < LoanLedger.FAN_IN; batch++) {
+            ledger.putAll(records(batch * 5, batch * 5 + 10, "2025-01-0" + (batch + 1)));
+        }
+        ledger.compact();
+
+        assertEquals(1, ledger.getSegmentCount());
+        assertEquals(List.of("0000000001-0000000004" + LoanLedger.SEGMENT_SUFFIX),
+                segmentFiles().stream().map(p -> p.getFileName().toString()).toList());
+        assertEquals(record(0, "2025-01-01"), ledger.get("L00000"));
+        assertEquals(record(7, "2025-01-02"), ledger.get("L00007"));
+        assertEquals(record(19, "2025-01-04"), ledger.get("L00019"));
+        assertEquals(record(24, "2025-01-04"), ledger.get("L00024"));
+
+        LoanLedger reopened = new LoanLedger(loansPath(), 10);
+        assertEquals(record(12, "2025-01-03"), reopened.get("L00012"));
+    }
+
+    @Test
+    @DisplayName("segment count stays logarithmic as history grows")
+    void compact_boundsSegmentCount() throws IOException {
+        LoanLedger ledger = new LoanLedger(loansPath(), 10);
+        for (int batch = 0; batch < 64; batch++) {
+            ledger.putAll(records(batch * 10, batch * 10 + 10, "2025-02-01"));
+            ledger.compact();
+        }
+
+        assertTrue(ledger.getSegmentCount() <= 4, "segments: " + ledger.getSegmentCount());
+        assertEquals(record(0, "2025-02-01"), ledger.get("L00000"));
+        assertEquals(record(639, "2025-02-01"), ledger.get("L00639"));
+    }
+
+    @Test
+    @DisplayName("segments left over from an interrupted merge are dropped on open")
+    void open_dropsMergedInputs() throws IOException {
+        LoanLedger ledger = new LoanLedger(loansPath(), 10);
+        for (int batch = 0; batch < LoanLedger.FAN_IN; batch++) {
+            ledger.putAll(records(batch * 10, batch * 10 + 10, "2025-01-05"));
+        }
+        List<Path> inputs = segmentFiles();
+        List<byte[]> copies = new ArrayList<>();
+        for (Path input : inputs) copies.add(Files.readAllBytes(input));
+        ledger.compact();
+        for (int i = 0; i < inputs.size(); i++) Files.write(inputs.get(i), copies.get(i));
+
+        LoanLedger reopened = new LoanLedger(loansPath(), 10);
+
+        assertEquals(1, reopened.getSegmentCount());
+        assertEquals(1, segmentFiles().size());
+        assertEquals(record(35, "2025-01-05"), reopened.get("L00035"));
+    }
+}
@@ -0,0 +1,67 @@
+package Service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<String> replay(LoginJournal journal) {
+        List<String> records = new ArrayList<>();
+        journal.replay((username, date) -> records.add(username + " " + date));
+        return records;
+    }
+
+    @Test
+    @DisplayName("appended logins are replayed in write order")
+    void append_thenReplay() throws IOException {
+        LoginJournal journal = new LoginJournal(tempDir.resolve("users.txt").toString());
+        journal.append("alice", LocalDate.of(2025, 1, 1));
+        journal.append("bob", LocalDate.of(2025, 1, 2));
+        journal.close();
+
+        LoginJournal reopened = new LoginJournal(tempDir.resolve("users.txt").toString());
+        assertEquals(List.of("alice 2025-01-01", "bob 2025-01-02"), replay(reopened));
+        assertEquals(2, reopened.getRecordCount());
+    }
+
+    @Test
+    @DisplayName("a torn last line is skipped and the next record starts a new line")
+    void tornTail_isSkipped() throws IOException {
+        Path users = tempDir.resolve("users.txt");
+        Path file = tempDir.resolve("users.txt" + LoginJournal.SUFFIX);
+        Files.writeString(file, "alice;2025-01-01\nbob;2025-0", StandardOpenOption.CREATE);
+
+        LoginJournal journal = new LoginJournal(users.toString());
+        journal.append("carol", LocalDate.of(2025, 1, 3));
+        journal.close();
+
+        assertEquals(List.of("alice 2025-01-01", "carol 2025-01-03"), replay(journal));
+    }
+
+    @Test
+    @DisplayName("clear deletes the journal")
+    void clear_deletesJournal() throws IOException {
+        LoginJournal journal = new LoginJournal(tempDir.resolve("users.txt").toString());
+        journal.append("alice", LocalDate.of(2025, 1, 1));
+
+        journal.clear();
+
+        assertFalse(journal.exists());
+        assertEquals(0, journal.getRecordCount());
+        assertTrue(replay(journal).isEmpty());
+    }
+}
@@ -0,0 +1,79 @@
+package Service;
+
+import Domain.Book;
+import Domain.CD;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaItemRegistryTest {
+
+    private final MediaItemRegistry registry = MediaItemRegistry.getInstance();
+
+    @BeforeEach
+    void setUp() {
+        registry.clear(Book.class);
+        registry.clear(CD.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.clear(Book.class);
+        registry.clear(CD.class);
+    }
+
+    @Test
+    @DisplayName("intern keeps the first instance and updates it from later ones")
+    void intern_returnsFirstInstance() {
+        Book first = new Book("Old Title", "Author", "978-1");
+        Book second = new Book("New Title", "Other", " 978-1 ");
+        second.setAvailable(false);
+
+        assertSame(first, registry.intern(first));
+        assertSame(first, registry.intern(second));
+
+        assertEquals("New Title", first.getTitle());
+        assertEquals("Other", first.getAuthor());
+        assertFalse(first.isAvailable());
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    @DisplayName("books and CDs with the same ISBN are separate entries")
+    void intern_separatesTypes() {
+        Book book = registry.intern(new Book("Title", "Author", "X-1"));
+        CD cd = registry.intern(new CD("Album", "Artist", "X-1"));
+
+        assertSame(book, registry.find(Book.class, "x-1"));
+        assertSame(cd, registry.find(CD.class, "x-1"));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    @DisplayName("canonical looks up without registering or changing anything")
+    void canonical_doesNotRegister() {
+        Book registered = registry.intern(new Book("Title", "Author", "978-2"));
+        Book detached = new Book("Other", "Author", "978-2");
+        Book unknown = new Book("Unknown", "Author", "978-3");
+
+        assertSame(registered, registry.canonical(detached));
+        assertEquals("Title", registered.getTitle());
+        assertSame(unknown, registry.canonical(unknown));
+        assertNull(registry.find(Book.class, "978-3"));
+    }
+
+    @Test
+    @DisplayName("clear forgets only the given type")
+    void clear_removesOneType() {
+        registry.intern(new Book("Title", "Author", "978-4"));
+        CD cd = registry.intern(new CD("Album", "Artist", "CD-4"));
+
+        registry.clear(Book.class);
+
+        assertNull(registry.find(Book.class, "978-4"));
+        assertSame(cd, registry.find(CD.class, "CD-4"));
+    }
+}
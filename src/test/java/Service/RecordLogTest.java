@@ -0,0 +1,142 @@
+package Service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+    private RecordLog log;
+
+    @BeforeEach
+    void setUp() {
+        file = tempDir.resolve("loans.txt.journal");
+        log = new RecordLog(file.toFile());
+    }
+
+    private List<String> replay(RecordLog source) {
+        List<String> records = new ArrayList<>();
+        source.replay(records::add);
+        return records;
+    }
+
+    @Test
+    @DisplayName("appended records are framed and replayed in write order")
+    void append_thenReplay() throws IOException {
+        log.append("B;L1;alice;999;2025-01-01");
+        log.appendAll(List.of("R;L1;2025-01-05", "B;L2;bob;ü;2025-01-06"), true);
+        log.close();
+
+        RecordLog reopened = new RecordLog(file.toFile());
+        assertEquals(List.of("B;L1;alice;999;2025-01-01", "R;L1;2025-01-05", "B;L2;bob;ü;2025-01-06"),
+                replay(reopened));
+        RecordLog.Recovery recovery = reopened.getLastRecovery();
+        assertEquals(3, recovery.getRecords());
+        assertEquals(Files.size(file), recovery.getBytesRead());
+        assertEquals(0, recovery.getBytesDiscarded());
+    }
+
+    @Test
+    @DisplayName("a frame cut short is truncated away and appends continue after the last good record")
+    void tornTail_isTruncated() throws IOException {
+        log.append("alice;2025-01-01");
+        log.append("bob;2025-01-02");
+        log.close();
+        long intact = Files.size(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(intact - 3);
+        }
+
+        RecordLog reopened = new RecordLog(file.toFile());
+        assertEquals(List.of("alice;2025-01-01"), replay(reopened));
+        RecordLog.Recovery recovery = reopened.getLastRecovery();
+        assertEquals(1, recovery.getRecords());
+        assertEquals(intact - 3 - recovery.getBytesRead(), recovery.getBytesDiscarded());
+        assertEquals(recovery.getBytesRead(), Files.size(file));
+
+        reopened.append("carol;2025-01-03");
+        reopened.close();
+        assertEquals(List.of("alice;2025-01-01", "carol;2025-01-03"), replay(reopened));
+        assertEquals(0, reopened.getLastRecovery().getBytesDiscarded());
+    }
+
+    @Test
+    @DisplayName("a record failing its checksum ends the log")
+    void checksumMismatch_discardsRestOfLog() throws IOException {
+        log.appendAll(List.of("T;1", "C;B1-1;false", "K;1;1"), true);
+        log.close();
+        int corrupt = RecordLog.HEADER_LENGTH + RecordLog.FRAME_OVERHEAD + 3 + RecordLog.FRAME_OVERHEAD;
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(corrupt);
+            raf.write('X');
+        }
+
+        assertEquals(List.of("T;1"), replay(log));
+        assertEquals(RecordLog.HEADER_LENGTH + RecordLog.FRAME_OVERHEAD + 3, Files.size(file));
+        assertTrue(log.getLastRecovery().getBytesDiscarded() > 0);
+    }
+
+    @Test
+    @DisplayName("a length beyond the end of the file or zero is taken as a torn tail")
+    void badLength_isTornTail() throws IOException {
+        log.append("alice;2025-01-01");
+        log.close();
+        long intact = Files.size(file);
+        Files.write(file, new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        assertEquals(List.of("alice;2025-01-01"), replay(log));
+        assertEquals(10, log.getLastRecovery().getBytesDiscarded());
+        assertEquals(intact, Files.size(file));
+    }
+
+    @Test
+    @DisplayName("a journal written one record per line is read and framed before the next append")
+    void lineLayout_isReadAndConverted() throws IOException {
+        Files.writeString(file, "alice;2025-01-01\nbob;2025-0");
+
+        assertEquals(List.of("alice;2025-01-01"), replay(log));
+        assertEquals(10, log.getLastRecovery().getBytesDiscarded());
+
+        log.append("carol;2025-01-03");
+        log.close();
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            assertEquals(RecordLog.MAGIC, in.readInt());
+        }
+        assertEquals(List.of("alice;2025-01-01", "carol;2025-01-03"), replay(log));
+    }
+
+    @Test
+    @DisplayName("a missing log replays nothing and delete leaves no file")
+    void missingLog_replaysNothing() throws IOException {
+        assertTrue(replay(log).isEmpty());
+        assertSame(RecordLog.Recovery.NONE, log.getLastRecovery());
+
+        log.append("alice;2025-01-01");
+        assertTrue(log.delete());
+        assertFalse(log.exists());
+    }
+
+    @Test
+    @DisplayName("empty records are rejected")
+    void emptyRecord_isRejected() {
+        assertThrows(IllegalArgumentException.class, () -> log.append(""));
+        assertFalse(log.exists());
+    }
+}
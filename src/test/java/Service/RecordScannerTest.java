@@ -0,0 +1,148 @@
+package Service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordScannerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<List<String>> scanFields(String content, int window) throws IOException {
+        Path file = tempDir.resolve("records.txt");
+        Files.writeString(file, content);
+        List<List<String>> lines = new ArrayList<>();
+        RecordScanner.scan(file.toString(), r -> {
+            List<String> fields = new ArrayList<>();
+            for (int i = 0; i < r.fieldCount(); i++) fields.add(r.field(i));
+            lines.add(fields);
+        }, window);
+        return lines;
+    }
+
+    @Test
+    @DisplayName("fields match String.split, including dropped trailing empty fields")
+    void scan_matchesSplit() throws IOException {
+        String[] lines = {"a;b;c", "a;;c", ";b", "a;b;;", "", "single", "Café;Ünïcode;978"};
+        String content = String.join("\n", lines) + "\n";
+
+        List<List<String>> scanned = scanFields(content, RecordScanner.MAX_WINDOW);
+
+        assertEquals(lines.length, scanned.size());
+        for (int i = 0; i < lines.length; i++) {
+            List<String> expected = new ArrayList<>(Arrays.asList(lines[i].split(";")));
+            if (lines[i].isEmpty()) expected.clear();
+            assertEquals(expected, scanned.get(i), "line " + i);
+        }
+    }
+
+    @Test
+    @DisplayName("a scan started from a handler does not disturb the outer scan, and the file can be replaced")
+    void scan_nestedAndThenReplaced() throws IOException {
+        Path outer = tempDir.resolve("outer.txt");
+        Path inner = tempDir.resolve("inner.txt");
+        Files.writeString(outer, "a;1\nb;2\n");
+        Files.writeString(inner, "x;9\n");
+        List<String> seen = new ArrayList<>();
+
+        RecordScanner.scan(outer.toString(), r -> {
+            String first = r.field(0);
+            try {
+                RecordScanner.scan(inner.toString(), n -> seen.add(n.field(0)));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            seen.add(first + r.field(1));
+        });
+        assertEquals(List.of("x", "a1", "x", "b2"), seen);
+
+        try (SnapshotWriter out = SnapshotWriter.open(outer.toString())) {
+            out.writeLine("c;3");
+            out.commit();
+        }
+        assertEquals("c;3\n", Files.readString(outer));
+    }
+
+    @Test
+    @DisplayName("CRLF line endings and a missing final newline are handled")
+    void scan_handlesCrLfAndLastLine() throws IOException {
+        List<List<String>> scanned = scanFields("a;b\r\nc;d", RecordScanner.MAX_WINDOW);
+
+        assertEquals(List.of(List.of("a", "b"), List.of("c", "d")), scanned);
+    }
+
+    @Test
+    @DisplayName("lines crossing a read window are read whole")
+    void scan_acrossWindows() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) content.append("copy-").append(i).append(";978;true\n");
+
+        List<List<String>> scanned = scanFields(content.toString(), 37);
+
+        assertEquals(100, scanned.size());
+        assertEquals(List.of("copy-57", "978", "true"), scanned.get(57));
+    }
+
+    @Test
+    @DisplayName("typed accessors parse booleans, dates and NULL markers")
+    void record_typedAccessors() throws IOException {
+        Path file = tempDir.resolve("loans.txt");
+        Files.writeString(file, "L1;TRUE;2025-02-28;NULL;  \n");
+        List<String> seen = new ArrayList<>();
+
+        RecordScanner.scan(file.toString(), r -> {
+            seen.add(String.valueOf(r.booleanField(1)));
+            seen.add(String.valueOf(r.booleanField(0)));
+            seen.add(r.dateField(2).toString());
+            seen.add(String.valueOf(r.fieldEquals(3, "NULL")));
+            seen.add(String.valueOf(r.fieldEquals(0, "NULL")));
+            seen.add(String.valueOf(r.isBlank()));
+        });
+
+        assertEquals(List.of("true", "false", "2025-02-28", "true", "false", "false"), seen);
+    }
+
+    @Test
+    @DisplayName("dateField rejects invalid dates like LocalDate.parse")
+    void record_invalidDate() throws IOException {
+        Path file = tempDir.resolve("loans.txt");
+        Files.writeString(file, "2025-02-30\n");
+
+        assertThrows(java.time.DateTimeException.class,
+                () -> RecordScanner.scan(file.toString(), r -> r.dateField(0)));
+    }
+
+    @Test
+    @DisplayName("blank lines are recognised")
+    void record_isBlank() throws IOException {
+        Path file = tempDir.resolve("cds.txt");
+        Files.writeString(file, "   \nAlbum;Artist;CD-1;true\n");
+        List<Boolean> blank = new ArrayList<>();
+
+        RecordScanner.scan(file.toString(), r -> blank.add(r.isBlank()));
+
+        assertEquals(List.of(true, false), blank);
+    }
+
+    @Test
+    @DisplayName("scanning a missing file fails and an empty file has no lines")
+    void scan_missingAndEmptyFiles() throws IOException {
+        Path empty = tempDir.resolve("empty.txt");
+        Files.writeString(empty, "");
+
+        assertEquals(0, RecordScanner.scan(empty.toString(), r -> fail()));
+        assertThrows(NoSuchFileException.class,
+                () -> RecordScanner.scan(tempDir.resolve("missing.txt").toString(), r -> fail()));
+    }
+}
@@ -0,0 +1,47 @@
+package Service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositoriesTest {
+
+    @AfterEach
+    void tearDown() {
+        Repositories.useFiles();
+    }
+
+    @Test
+    @DisplayName("the file repositories are used by default")
+    void default_isFiles() {
+        assertNull(Repositories.getDatabase());
+        assertSame(FileBookRepository.getInstance(), Repositories.books());
+        assertSame(FileCDRepository.getInstance(), Repositories.cds());
+        assertSame(FileMediaCopyRepository.getInstance(), Repositories.copies());
+        assertSame(FileLoanRepository.getInstance(), Repositories.loans());
+        assertSame(FileUserRepository.getInstance(), Repositories.users());
+    }
+
+    @Test
+    @DisplayName("useDatabase switches every repository to the database until useFiles")
+    void useDatabase_switchesBackend() throws SQLException {
+        try (JdbcDatabase db = JdbcDatabase.open("jdbc:h2:mem:" + UUID.randomUUID())) {
+            Repositories.useDatabase(db);
+
+            assertSame(db, Repositories.getDatabase());
+            assertSame(db.books(), Repositories.books());
+            assertSame(db.cds(), Repositories.cds());
+            assertSame(db.copies(), Repositories.copies());
+            assertSame(db.loans(), Repositories.loans());
+            assertSame(db.users(), Repositories.users());
+
+            Repositories.useFiles();
+            assertSame(FileUserRepository.getInstance(), Repositories.users());
+        }
+    }
+}
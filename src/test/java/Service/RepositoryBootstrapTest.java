@@ -0,0 +1,67 @@
+package Service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositoryBootstrapTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path books = tempDir.resolve("books.txt");
+        Path cds = tempDir.resolve("cds.txt");
+        Path copies = tempDir.resolve("copies.txt");
+        Path loans = tempDir.resolve("loans.txt");
+        Path users = tempDir.resolve("users.txt");
+        Files.writeString(books, "Java;Author;B1;true\n");
+        Files.writeString(cds, "Album;Artist;C1;true\n");
+        Files.writeString(copies, "B1-1;B1;false\nB1-2;B1;true\nC1-1;C1;true\n");
+        Files.writeString(loans, "L1;alice;B1;" + LocalDate.now() + ";NULL;B1-1\n");
+        Files.writeString(users, "alice;pw;customer;alice@test.com;2025-01-01\n");
+
+        FileBookRepository.setRepoPath(books.toString());
+        FileCDRepository.repoPath = cds.toString();
+        FileCDRepository.reset();
+        FileMediaCopyRepository.setRepoPath(copies.toString());
+        FileLoanRepository.setRepoPath(loans.toString());
+        FileUserRepository.setRepoPath(users.toString());
+    }
+
+    @Test
+    @DisplayName("every repository is loaded and linked when the completion barrier fires")
+    void completion_loadsAllRepositories() throws Exception {
+        RepositoryBootstrap bootstrap = new RepositoryBootstrap(2);
+
+        bootstrap.getCompletion().get(10, TimeUnit.SECONDS);
+
+        assertTrue(bootstrap.isDone());
+        assertTrue(bootstrap.getElapsedMillis() >= 0);
+        assertNotNull(FileBookRepository.getInstance().findByIsbn("B1"));
+        assertNotNull(FileCDRepository.getInstance().findByIsbn("C1"));
+        assertEquals(1, FileMediaCopyRepository.getInstance().getAvailableCopiesCount("B1"));
+        assertEquals("B1-1", FileLoanRepository.getInstance().findLoanById("L1").getCopyId());
+        assertSame(FileBookRepository.getInstance().findByIsbn("B1"),
+                FileLoanRepository.getInstance().findLoanById("L1").getMediaItem());
+    }
+
+    @Test
+    @DisplayName("await returns true after a successful load")
+    void await_reportsSuccess() {
+        RepositoryBootstrap bootstrap = new RepositoryBootstrap(1);
+
+        assertTrue(bootstrap.await());
+        assertTrue(bootstrap.isDone());
+    }
+}
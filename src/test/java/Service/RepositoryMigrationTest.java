@@ -0,0 +1,102 @@
+package Service;
+
+import Domain.Loan;
+import Domain.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositoryMigrationTest {
+
+    @TempDir
+    Path tempDir;
+
+    private JdbcDatabase db;
+
+    @BeforeEach
+    void setUp() throws IOException, SQLException {
+        Path books = tempDir.resolve("books.txt");
+        Path cds = tempDir.resolve("cds.txt");
+        Path copies = tempDir.resolve("copies.txt");
+        Path loans = tempDir.resolve("loans.txt");
+        Path users = tempDir.resolve("users.txt");
+        Files.writeString(books, "Java;Author;B1;true\nClean Code;Martin;B2;false\n");
+        Files.writeString(cds, "Album;Artist;C1;true\n");
+        Files.writeString(copies, "B1-1;B1;false\nB1-2;B1;true\nB2-1;B2;false\nC1-1;C1;true\n");
+        Files.writeString(loans, "L1;alice;B1;" + LocalDate.now() + ";NULL;B1-1\n"
+                + "L2;bob;B2;2025-01-02;2025-01-20;B2-1\n");
+        Files.writeString(users, "alice;pw;customer;alice@test.com;2025-01-01\n"
+                + "admin;secret;admin;admin@test.com;2025-02-01\n");
+
+        FileBookRepository.setRepoPath(books.toString());
+        FileCDRepository.repoPath = cds.toString();
+        FileCDRepository.reset();
+        FileMediaCopyRepository.setRepoPath(copies.toString());
+        FileLoanRepository.setRepoPath(loans.toString());
+        FileUserRepository.setRepoPath(users.toString());
+
+        db = JdbcDatabase.open("jdbc:h2:mem:" + UUID.randomUUID());
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    @DisplayName("every item, copy, loan and user is imported")
+    void migrate_importsEverything() throws SQLException {
+        RepositoryMigration.Report report = RepositoryMigration.migrate(db);
+
+        assertEquals(3, report.getItems());
+        assertEquals(4, report.getCopies());
+        assertEquals(2, report.getLoans());
+        assertEquals(2, report.getUsers());
+        assertTrue(report.getElapsedMillis() >= 0);
+
+        assertTrue(db.books().findByIsbn("B1").isAvailable());
+        assertFalse(db.books().findByIsbn("B2").isAvailable());
+        assertEquals("Album", db.cds().findByIsbn("C1").getTitle());
+        assertEquals(1, db.copies().getAvailableCopiesCount("B1"));
+
+        List<Loan> active = db.loans().getActiveLoansForUser("alice");
+        assertEquals(1, active.size());
+        assertEquals("B1-1", active.get(0).getCopyId());
+        assertEquals(List.of(YearMonth.of(2025, 1)), db.loans().getArchivedPeriods());
+
+        User admin = db.users().findUser("admin", "secret");
+        assertEquals("admin", admin.getRole());
+        assertEquals(LocalDate.of(2025, 2, 1),
+                LocalDate.ofInstant(admin.getLastLoginDate().toInstant(), ZoneId.systemDefault()));
+    }
+
+    @Test
+    @DisplayName("migrating again replaces the database contents instead of adding to them")
+    void migrate_twice_replaces() throws SQLException {
+        db.users().addUser("stale", "pw", "s@test.com", null);
+
+        RepositoryMigration.migrate(db);
+        RepositoryMigration.Report again = RepositoryMigration.migrate(db);
+
+        assertEquals(3, again.getItems());
+        assertEquals(3, db.books().findAll().size() + db.cds().findAll().size());
+        assertEquals(4, db.copies().getCopiesByIsbn("B1").size() + db.copies().getCopiesByIsbn("B2").size()
+                + db.copies().getCopiesByIsbn("C1").size());
+        assertNull(db.users().findUserByUsername("stale"));
+        assertEquals(2, db.users().getAllUsers().size());
+    }
+}
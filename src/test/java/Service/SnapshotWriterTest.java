@@ -0,0 +1,107 @@
+package Service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        SnapshotWriter.setSync(false);
+    }
+
+    @Test
+    @DisplayName("a committed snapshot replaces the file and leaves no temporary file")
+    void commit_replacesFile() throws IOException {
+        Path file = tempDir.resolve("books.txt");
+        Files.writeString(file, "old\n");
+
+        try (SnapshotWriter out = SnapshotWriter.open(file.toString())) {
+            out.writeLine("Java;Author;B1;true").writeLine("Café;Zoë;B2;false");
+            out.commit();
+        }
+
+        assertEquals("Java;Author;B1;true\nCafé;Zoë;B2;false\n", Files.readString(file, StandardCharsets.UTF_8));
+        assertFalse(Files.exists(tempDir.resolve("books.txt" + SnapshotWriter.TEMP_SUFFIX)));
+    }
+
+    @Test
+    @DisplayName("a snapshot closed without commit leaves the old file untouched")
+    void close_withoutCommit_keepsOldFile() throws IOException {
+        Path file = tempDir.resolve("loans.txt");
+        Files.writeString(file, "L1;alice;B1;2025-01-01;NULL\n");
+
+        try (SnapshotWriter out = SnapshotWriter.open(file.toString())) {
+            out.writeLine("partial");
+        }
+
+        assertEquals("L1;alice;B1;2025-01-01;NULL\n", Files.readString(file));
+        assertFalse(Files.exists(tempDir.resolve("loans.txt" + SnapshotWriter.TEMP_SUFFIX)));
+    }
+
+    @Test
+    @DisplayName("content larger than the buffer is written completely")
+    void commit_writesBeyondBuffer() throws IOException {
+        Path file = tempDir.resolve("copies.txt");
+        StringBuilder expected = new StringBuilder();
+        SnapshotWriter.setSync(true);
+
+        try (SnapshotWriter out = SnapshotWriter.open(file.toString())) {
+            for (int i = 0; expected.length() < 3 * SnapshotWriter.BUFFER_SIZE; i++) {
+                String line = "B" + i + "-1;B" + i + ";" + (i % 2 == 0) + (i % 1000 == 0 ? ";é" : "");
+                out.writeLine(line);
+                expected.append(line).append('\n');
+            }
+            byte[] raw = "raw;bytes\n".getBytes(StandardCharsets.UTF_8);
+            out.write(raw, 0, raw.length);
+            expected.append("raw;bytes\n");
+            out.commit();
+        }
+
+        assertEquals(expected.toString(), Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("a finished snapshot refuses further writes")
+    void write_afterCommit_throws() throws IOException {
+        SnapshotWriter out = SnapshotWriter.open(tempDir.resolve("users.txt").toString());
+        out.commit();
+
+        assertThrows(IOException.class, () -> out.writeLine("late"));
+        assertEquals("", Files.readString(tempDir.resolve("users.txt")));
+    }
+
+    @Test
+    @DisplayName("writes are forced in sync mode or on a thread inside a sync scope only")
+    void isSyncing_globalOrThreadScope() throws Exception {
+        assertFalse(SnapshotWriter.isSyncing());
+
+        SnapshotWriter.setThreadSync(true);
+        try {
+            assertTrue(SnapshotWriter.isSyncing());
+            boolean[] other = new boolean[1];
+            Thread thread = new Thread(() -> other[0] = SnapshotWriter.isSyncing());
+            thread.start();
+            thread.join();
+            assertFalse(other[0]);
+        } finally {
+            SnapshotWriter.setThreadSync(false);
+        }
+        assertFalse(SnapshotWriter.isSyncing());
+
+        SnapshotWriter.setSync(true);
+        assertTrue(SnapshotWriter.isSyncing());
+    }
+}
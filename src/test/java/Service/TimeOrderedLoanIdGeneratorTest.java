@@ -0,0 +1,100 @@
+package Service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeOrderedLoanIdGeneratorTest {
+
+    private static final long NOW = Instant.parse("2025-06-01T12:00:00Z").toEpochMilli();
+
+    @Test
+    @DisplayName("IDs are ten characters and sort in issue order")
+    void nextId_isShortAndOrdered() {
+        AtomicLong clock = new AtomicLong(NOW);
+        TimeOrderedLoanIdGenerator generator = new TimeOrderedLoanIdGenerator(clock::get);
+
+        String previous = generator.nextId();
+        for (int i = 0; i < 3000; i++) {
+            if (i % 100 == 0) clock.addAndGet(1);
+            String id = generator.nextId();
+            assertEquals(TimeOrderedLoanIdGenerator.LENGTH, id.length());
+            assertTrue(previous.compareTo(id) < 0, previous + " !< " + id);
+            previous = id;
+        }
+    }
+
+    @Test
+    @DisplayName("IDs keep increasing when the clock goes back")
+    void nextId_survivesClockGoingBack() {
+        AtomicLong clock = new AtomicLong(NOW);
+        TimeOrderedLoanIdGenerator generator = new TimeOrderedLoanIdGenerator(clock::get);
+
+        String before = generator.nextId();
+        clock.set(NOW - 60_000);
+
+        assertTrue(before.compareTo(generator.nextId()) < 0);
+    }
+
+    @Test
+    @DisplayName("IDs issued from many threads are unique and increase per thread")
+    void nextId_isUniqueAcrossThreads() throws Exception {
+        TimeOrderedLoanIdGenerator generator = new TimeOrderedLoanIdGenerator();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<List<String>>> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            results.add(pool.submit(() -> {
+                List<String> ids = new ArrayList<>();
+                for (int i = 0; i < 5000; i++) ids.add(generator.nextId());
+                return ids;
+            }));
+        }
+
+        Set<String> all = new HashSet<>();
+        for (Future<List<String>> result : results) {
+            List<String> ids = result.get(30, TimeUnit.SECONDS);
+            for (int i = 1; i < ids.size(); i++) assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0);
+            all.addAll(ids);
+        }
+        pool.shutdown();
+        assertEquals(40_000, all.size());
+    }
+
+    @Test
+    @DisplayName("observed IDs are never issued again")
+    void observe_movesPastExistingIds() {
+        TimeOrderedLoanIdGenerator generator = new TimeOrderedLoanIdGenerator(() -> NOW);
+        String future = TimeOrderedLoanIdGenerator.encode((NOW + 86_400_000L - TimeOrderedLoanIdGenerator.EPOCH_MILLIS) << 10);
+
+        generator.observe(future);
+        generator.observe("not-an-id");
+
+        assertTrue(future.compareTo(generator.nextId()) < 0);
+    }
+
+    @Test
+    @DisplayName("the issue time can be read back from an ID")
+    void timestampOf_returnsIssueTime() {
+        TimeOrderedLoanIdGenerator generator = new TimeOrderedLoanIdGenerator(() -> NOW);
+
+        assertEquals(Instant.ofEpochMilli(NOW), TimeOrderedLoanIdGenerator.timestampOf(generator.nextId()));
+        assertNull(TimeOrderedLoanIdGenerator.timestampOf("L1"));
+    }
+
+    @Test
+    @DisplayName("typed IDs are read case-insensitively with look-alike characters")
+    void normalize_acceptsLooseInput() {
+        assertEquals("01J8Z3K4QF", TimeOrderedLoanIdGenerator.normalize(" oIj8z-3k4qf "));
+        assertEquals("0011000000", TimeOrderedLoanIdGenerator.normalize("OOlIoooooo"));
+        assertNull(TimeOrderedLoanIdGenerator.normalize("01J8Z3K4Q"));
+        assertNull(TimeOrderedLoanIdGenerator.normalize("01J8Z3K4QFX"));
+        assertNull(TimeOrderedLoanIdGenerator.normalize("01J8Z3K4QU"));
+        assertNull(TimeOrderedLoanIdGenerator.normalize(null));
+    }
+}